@@ -0,0 +1,12 @@
+package de.libutzki.axon.benchmarks;
+
+import de.libutzki.axon.localeventstore.GlobalEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+@RequiredArgsConstructor
+@Value
+@GlobalEvent
+public class BenchmarkEvent {
+	private final String payload;
+}
@@ -0,0 +1,67 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.callbacks.FutureCallback;
+import org.axonframework.common.Registration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code EmbeddedServerCommandBus.dispatch}
+ * of a command which is sent by Child1 and handled by Child2.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+public class CommandBusBenchmark {
+
+	private static final String COMMAND_NAME = "benchmarkCommand";
+
+	@Param( { "false", "true" } )
+	public boolean asyncCommandDispatch;
+
+	private EmbeddedServerContexts contexts;
+	private Registration registration;
+	private CommandBus commandBus;
+
+	@Setup
+	public void setUp( ) {
+		contexts = new EmbeddedServerContexts( false, Map.of( "axon.embeddedserver.async-command-dispatch.enabled", asyncCommandDispatch ) );
+		registration = contexts.child2( ).getBean( CommandBus.class ).subscribe( COMMAND_NAME, command -> command.getPayload( ) );
+		commandBus = contexts.child1( ).getBean( CommandBus.class );
+	}
+
+	@TearDown
+	public void tearDown( ) {
+		registration.cancel( );
+		contexts.close( );
+	}
+
+	@Benchmark
+	public Object dispatch( ) {
+		final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+		commandBus.dispatch( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( "payload" ), COMMAND_NAME ), callback );
+		return callback.getResult( ).getPayload( );
+	}
+}
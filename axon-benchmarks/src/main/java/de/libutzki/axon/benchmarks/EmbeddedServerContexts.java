@@ -0,0 +1,89 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.ParentContextApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import de.libutzki.axon.embeddedserver.AxonEmbeddedServerConfiguration;
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.example.axonserver.child1.Child1Config;
+import de.libutzki.axon.example.axonserver.child2.Child2Config;
+import de.libutzki.axon.example.axonserver.parent.ParentConfig;
+
+/**
+ * The {@link EmbeddedServerContexts} start the parent context, the embedded server and the two child contexts of the
+ * example the same way the integration tests do. Each context uses its own in-memory H2 database, so the benchmarks
+ * don't need any infrastructure. Unlike the tests, the databases don't reuse query results (see the constructor).
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class EmbeddedServerContexts implements AutoCloseable {
+
+	private final ConfigurableApplicationContext parentContext;
+	private final ConfigurableApplicationContext embeddedServerContext;
+	private final ConfigurableApplicationContext child1Context;
+	private final ConfigurableApplicationContext child2Context;
+
+	EmbeddedServerContexts( final boolean useLocalEventStore ) {
+		this( useLocalEventStore, Map.of( ) );
+	}
+
+	EmbeddedServerContexts( final boolean useLocalEventStore, final Map<String, Object> additionalProperties ) {
+		final String[] args = new String[0];
+
+		final StandardEnvironment environment = new StandardEnvironment( );
+		final Map<String, Object> properties = new LinkedHashMap<>( );
+		properties.put( "axon.localeventstore.enabled", useLocalEventStore );
+		properties.put( "axon.axonserver.enabled", false );
+		properties.put( "logging.level.root", "warn" );
+		// H2 1.4.200 reuses the result of a query as long as the table has not been modified since. The insert of an event
+		// counts as modification, but its commit doesn't. So an event producer polling in between would not see the event
+		// until the next one is appended, which a benchmark waiting for that event never does.
+		properties.put( "spring.datasource.url", "jdbc:h2:mem:${random.uuid};DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;OPTIMIZE_REUSE_RESULTS=FALSE" );
+		properties.putAll( additionalProperties );
+		environment.getPropertySources( ).addFirst( new MapPropertySource( "Benchmark Properties", properties ) );
+
+		final SpringApplication parentApplication = new SpringApplication( ParentConfig.class );
+		parentApplication.setBannerMode( Banner.Mode.OFF );
+		parentApplication.setEnvironment( environment );
+		parentContext = parentApplication.run( args );
+
+		embeddedServerContext = runChild( AxonEmbeddedServerConfiguration.class, args );
+		child1Context = runChild( Child1Config.class, args );
+		child2Context = runChild( Child2Config.class, args );
+	}
+
+	private ConfigurableApplicationContext runChild( final Class<?> primarySource, final String[] args ) {
+		final SpringApplication springApplication = new SpringApplication( primarySource );
+		springApplication.setBannerMode( Banner.Mode.OFF );
+		springApplication.addInitializers( new ParentContextApplicationContextInitializer( parentContext ) );
+		return springApplication.run( args );
+	}
+
+	ConfigurableApplicationContext child1( ) {
+		return child1Context;
+	}
+
+	ConfigurableApplicationContext child2( ) {
+		return child2Context;
+	}
+
+	EmbeddedServer embeddedServer( ) {
+		return parentContext.getBean( EmbeddedServer.class );
+	}
+
+	@Override
+	public void close( ) {
+		child1Context.close( );
+		child2Context.close( );
+		embeddedServerContext.close( );
+		parentContext.close( );
+	}
+}
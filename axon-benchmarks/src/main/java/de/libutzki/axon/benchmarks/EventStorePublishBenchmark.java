@@ -0,0 +1,68 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code EmbeddedServerEventStore.publish} of single events by Child1, with and without group commit. The
+ * events are either published without a unit of work or within one, like the events of a command handler. Run it with
+ * {@code -t <threads>} to measure concurrent publishers.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Threads( 1 )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+public class EventStorePublishBenchmark {
+
+	@Param( { "false", "true" } )
+	public boolean groupCommit;
+
+	@Param( { "false", "true" } )
+	public boolean unitOfWork;
+
+	private EmbeddedServerContexts contexts;
+	private EventStore eventStore;
+
+	@Setup
+	public void setUp( ) {
+		contexts = new EmbeddedServerContexts( false, Map.of( "axon.embeddedserver.group-commit.enabled", groupCommit ) );
+		eventStore = contexts.child1( ).getBean( "eventStore", EventStore.class );
+	}
+
+	@TearDown
+	public void tearDown( ) {
+		contexts.close( );
+	}
+
+	@Benchmark
+	public void publish( ) {
+		if ( unitOfWork ) {
+			DefaultUnitOfWork.startAndGet( null ).execute( ( ) -> eventStore.publish( GenericEventMessage.asEventMessage( new BenchmarkEvent( "publish" ) ) ) );
+		} else {
+			eventStore.publish( GenericEventMessage.asEventMessage( new BenchmarkEvent( "publish" ) ) );
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.common.Registration;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.libutzki.axon.localeventstore.LocalAndGlobalEventStoreAdapter;
+
+/**
+ * Measures the time a {@link de.libutzki.axon.localeventstore.GlobalEvent} published to the
+ * {@link LocalAndGlobalEventStoreAdapter} of Child1 needs until it has been forwarded to the embedded server, with and
+ * without group commit.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+public class ForwardingBenchmark {
+
+	@Param( { "false", "true" } )
+	public boolean groupCommit;
+
+	private final Semaphore forwardedEvents = new Semaphore( 0 );
+
+	private EmbeddedServerContexts contexts;
+	private Registration registration;
+	private EventStore eventStore;
+
+	@Setup
+	public void setUp( ) {
+		contexts = new EmbeddedServerContexts( true, Map.of( "axon.embeddedserver.group-commit.enabled", groupCommit ) );
+		registration = contexts.embeddedServer( ).registerEventProcessor( events -> forwardedEvents.release( events.size( ) ) );
+		eventStore = contexts.child1( ).getBean( LocalAndGlobalEventStoreAdapter.class );
+	}
+
+	@TearDown
+	public void tearDown( ) {
+		registration.cancel( );
+		contexts.close( );
+	}
+
+	@Benchmark
+	public void forward( ) throws InterruptedException {
+		eventStore.publish( GenericEventMessage.asEventMessage( new BenchmarkEvent( "forward" ) ) );
+		// A forwarded event which is never observed fails the iteration instead of blocking the run.
+		if ( !forwardedEvents.tryAcquire( 10, TimeUnit.SECONDS ) ) {
+			throw new IllegalStateException( "The event has not been forwarded within 10 seconds." );
+		}
+	}
+}
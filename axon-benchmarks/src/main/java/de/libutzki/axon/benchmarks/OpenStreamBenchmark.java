@@ -0,0 +1,85 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+
+/**
+ * Measures the throughput of a stream opened at the tail of the event store, in events per second. {@code embeddedServer}
+ * reads the serialized events from {@link EmbeddedServer#openStream(org.axonframework.eventhandling.TrackingToken)},
+ * {@code eventStore} reads and deserializes them via the connector's event store as a tracking processor of Child1 does.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+public class OpenStreamBenchmark {
+
+	private static final int EVENTS = 1000;
+
+	private EmbeddedServerContexts contexts;
+	private EmbeddedServer embeddedServer;
+	private EventStore eventStore;
+
+	@Setup
+	public void setUp( ) {
+		contexts = new EmbeddedServerContexts( false );
+		embeddedServer = contexts.embeddedServer( );
+		eventStore = contexts.child1( ).getBean( "eventStore", EventStore.class );
+		final List<GenericEventMessage<BenchmarkEvent>> events = IntStream.range( 0, EVENTS )
+				.mapToObj( i -> new GenericEventMessage<>( new BenchmarkEvent( "event-" + i ) ) )
+				.collect( Collectors.toList( ) );
+		eventStore.publish( events );
+	}
+
+	@TearDown
+	public void tearDown( ) {
+		contexts.close( );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( EVENTS )
+	public void embeddedServer( final Blackhole blackhole ) {
+		try ( Stream<? extends TrackedEventData<?>> eventStream = embeddedServer.openStream( null ) ) {
+			eventStream.limit( EVENTS ).forEach( blackhole::consume );
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( EVENTS )
+	public void eventStore( final Blackhole blackhole ) throws InterruptedException {
+		try ( BlockingStream<TrackedEventMessage<?>> eventStream = eventStore.openStream( null ) ) {
+			for ( int i = 0; i < EVENTS; i++ ) {
+				blackhole.consume( eventStream.nextAvailable( ).getPayload( ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.axonframework.common.Registration;
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.queryhandling.GenericQueryMessage;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+import org.axonframework.queryhandling.QueryResponseMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code EmbeddedServerQueryBus.query} of a query which is handled by Child2 and
+ * {@code EmbeddedServerQueryBus.scatterGather} of a query which is handled by both child
+ * contexts. The queries are sent by Child1.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+public class QueryBusBenchmark {
+
+	private static final String QUERY_NAME = "benchmarkQuery";
+	private static final String SCATTER_GATHER_QUERY_NAME = "benchmarkScatterGatherQuery";
+
+	private EmbeddedServerContexts contexts;
+	private Registration queryRegistration;
+	private Registration child1ScatterGatherRegistration;
+	private Registration child2ScatterGatherRegistration;
+	private QueryBus queryBus;
+
+	@Setup
+	public void setUp( ) {
+		contexts = new EmbeddedServerContexts( false );
+		final QueryBus child2QueryBus = contexts.child2( ).getBean( QueryBus.class );
+		queryRegistration = child2QueryBus.subscribe( QUERY_NAME, String.class, query -> "response" );
+		child2ScatterGatherRegistration = child2QueryBus.subscribe( SCATTER_GATHER_QUERY_NAME, String.class, query -> "child2" );
+		queryBus = contexts.child1( ).getBean( QueryBus.class );
+		child1ScatterGatherRegistration = queryBus.subscribe( SCATTER_GATHER_QUERY_NAME, String.class, query -> "child1" );
+	}
+
+	@TearDown
+	public void tearDown( ) {
+		queryRegistration.cancel( );
+		child1ScatterGatherRegistration.cancel( );
+		child2ScatterGatherRegistration.cancel( );
+		contexts.close( );
+	}
+
+	@Benchmark
+	public String query( ) {
+		return queryBus.query( new GenericQueryMessage<>( "payload", QUERY_NAME, ResponseTypes.instanceOf( String.class ) ) ).join( ).getPayload( );
+	}
+
+	@Benchmark
+	public long scatterGather( ) {
+		try ( Stream<QueryResponseMessage<String>> responses = queryBus.scatterGather( new GenericQueryMessage<>( "payload", SCATTER_GATHER_QUERY_NAME, ResponseTypes.instanceOf( String.class ) ), 1, TimeUnit.SECONDS ) ) {
+			return responses.count( );
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package de.libutzki.axon.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.DomainEventStream;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+
+/**
+ * Measures sourcing an aggregate with 100 events via {@link EventStore#readEvents(String)} of Child1, either from all
+ * events or from a snapshot of the last event.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Fork( 1 )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+public class ReadEventsBenchmark {
+
+	private static final String AGGREGATE_TYPE = "BenchmarkAggregate";
+	private static final String AGGREGATE_IDENTIFIER = "benchmarkAggregate";
+	private static final int EVENTS = 100;
+
+	@Param( { "false", "true" } )
+	public boolean snapshot;
+
+	private EmbeddedServerContexts contexts;
+	private EventStore eventStore;
+
+	@Setup
+	public void setUp( ) throws InterruptedException {
+		contexts = new EmbeddedServerContexts( false );
+		eventStore = contexts.child1( ).getBean( "eventStore", EventStore.class );
+		final List<GenericDomainEventMessage<BenchmarkEvent>> events = LongStream.range( 0, EVENTS )
+				.mapToObj( sequenceNumber -> new GenericDomainEventMessage<>( AGGREGATE_TYPE, AGGREGATE_IDENTIFIER, sequenceNumber, new BenchmarkEvent( "event-" + sequenceNumber ) ) )
+				.collect( Collectors.toList( ) );
+		eventStore.publish( events );
+		if ( snapshot ) {
+			eventStore.storeSnapshot( new GenericDomainEventMessage<>( AGGREGATE_TYPE, AGGREGATE_IDENTIFIER, EVENTS - 1, new BenchmarkEvent( "snapshot" ) ) );
+			awaitSnapshot( contexts.embeddedServer( ) );
+		}
+	}
+
+	@TearDown
+	public void tearDown( ) {
+		contexts.close( );
+	}
+
+	@Benchmark
+	public void readEvents( final Blackhole blackhole ) {
+		final DomainEventStream eventStream = eventStore.readEvents( AGGREGATE_IDENTIFIER );
+		while ( eventStream.hasNext( ) ) {
+			blackhole.consume( eventStream.next( ).getPayload( ) );
+		}
+	}
+
+	/**
+	 * Snapshots are written asynchronously, so wait until the snapshot can be read from the storage engine.
+	 */
+	private static void awaitSnapshot( final EmbeddedServer embeddedServer ) throws InterruptedException {
+		final long deadline = System.currentTimeMillis( ) + 10_000;
+		while ( System.currentTimeMillis( ) < deadline ) {
+			try ( Stream<? extends DomainEventData<?>> snapshotData = embeddedServer.readSnapshotData( AGGREGATE_IDENTIFIER ) ) {
+				if ( snapshotData.findAny( ).isPresent( ) ) {
+					return;
+				}
+			}
+			Thread.sleep( 10 );
+		}
+		throw new IllegalStateException( "The snapshot has not been written within 10 seconds." );
+	}
+}
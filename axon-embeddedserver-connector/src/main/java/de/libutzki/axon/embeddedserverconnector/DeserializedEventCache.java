@@ -0,0 +1,77 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackedEventMessage;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+
+/**
+ * The {@link DeserializedEventCache} holds the upcasted and lazily deserialized {@link TrackedEventMessage
+ * TrackedEventMessages} of the most recently read events. It is shared by all tracking streams of a context, so that an
+ * event which is read by several event processors is upcasted once and its payload is deserialized once.<br>
+ * <br>
+ * The messages are cached by event identifier. The tracking token can't be used as key, as its position is the upper
+ * bound of the stream and not necessarily the global index of the event. A cached message is handed out with the
+ * tracking token of the requesting stream.<br>
+ * <br>
+ * The cache is bounded by the number of events, the least recently added events are evicted first. Hits and misses are
+ * reported to the {@link EmbeddedServerMonitor} with the name of the context.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class DeserializedEventCache {
+
+	private final Map<String, List<TrackedEventMessage<?>>> cache;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+	private final String contextName;
+
+	DeserializedEventCache( final int maxEvents, final EmbeddedServerMonitor embeddedServerMonitor, final String contextName ) {
+		if ( maxEvents <= 0 ) {
+			throw new IllegalArgumentException( "The deserialized event cache has to hold at least one event." );
+		}
+		this.embeddedServerMonitor = embeddedServerMonitor;
+		this.contextName = contextName.isEmpty( ) ? EmbeddedServerMonitor.UNKNOWN_CONTEXT : contextName;
+		this.cache = new LinkedHashMap<String, List<TrackedEventMessage<?>>>( ) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry<String, List<TrackedEventMessage<?>>> eldest ) {
+				return size( ) > maxEvents;
+			}
+		};
+	}
+
+	/**
+	 * Converts each event of the given stream to the messages returned by {@code upcastAndDeserialize}, unless they are
+	 * cached already. As the conversion function is applied to each event separately, context-aware upcasters do not see
+	 * the preceding events.
+	 */
+	Stream<TrackedEventMessage<?>> upcastAndDeserialize( final Stream<? extends TrackedEventData<?>> trackedEventDataStream,
+			final Function<Stream<? extends TrackedEventData<?>>, Stream<TrackedEventMessage<?>>> upcastAndDeserialize ) {
+		return trackedEventDataStream.flatMap( eventData -> {
+			List<TrackedEventMessage<?>> eventMessages;
+			synchronized ( cache ) {
+				eventMessages = cache.get( eventData.getEventIdentifier( ) );
+			}
+			if ( eventMessages != null ) {
+				embeddedServerMonitor.deserializedEventCacheHit( contextName );
+			} else {
+				embeddedServerMonitor.deserializedEventCacheMiss( contextName );
+				eventMessages = upcastAndDeserialize.apply( Stream.of( eventData ) ).collect( Collectors.toList( ) );
+				synchronized ( cache ) {
+					cache.put( eventData.getEventIdentifier( ), eventMessages );
+				}
+			}
+			return eventMessages.stream( ).map( eventMessage -> eventMessage.withTrackingToken( eventData.trackingToken( ) ) );
+		} );
+	}
+}
@@ -40,7 +40,7 @@ final class EmbeddedServerCommandBus implements CommandBus {
 
 	@Override
 	public <C, R> void dispatch( final CommandMessage<C> command, final CommandCallback<? super C, ? super R> callback ) {
-		embeddedServer.dispatch( command, callback );
+		embeddedServer.dispatch( command, callback, localCommandBus );
 	}
 
 	@Override
@@ -51,7 +51,7 @@ final class EmbeddedServerCommandBus implements CommandBus {
 		embeddedServer.registerCommandBusForCommand( localCommandBus, commandName );
 		return ( ) -> {
 			final boolean delegateCancelationSuccessful = delegateRegistration.cancel( );
-			final boolean wrapperCancelationSuccessful = embeddedServer.unregisterCommandBusForCommand( commandName );
+			final boolean wrapperCancelationSuccessful = embeddedServer.unregisterCommandBusForCommand( localCommandBus, commandName );
 			return delegateCancelationSuccessful && wrapperCancelationSuccessful;
 		};
 	}
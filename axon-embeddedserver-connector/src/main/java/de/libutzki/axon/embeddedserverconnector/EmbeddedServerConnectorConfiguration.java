@@ -13,6 +13,7 @@ import org.axonframework.queryhandling.SimpleQueryBus;
 import org.axonframework.serialization.Serializer;
 import org.axonframework.spring.config.AxonConfiguration;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -21,6 +22,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EventStreamOptions;
 
 /**
  * This configuration activates the connectors for the embedded server case if the {@link EmbeddedServer} bean is
@@ -32,23 +34,40 @@ import de.libutzki.axon.embeddedserver.EmbeddedServer;
 @ConditionalOnProperty( name = "axon.embeddedserver.enabled", matchIfMissing = true )
 public class EmbeddedServerConnectorConfiguration {
 
-	@Bean( name = "eventStore" )
+	@Bean( name = "eventStore", destroyMethod = "shutDown" )
 	@Qualifier( "eventBus" )
 	@ConditionalOnMissingBean( name = "eventStore" )
 	public EventStore embeddedEventStore( final EmbeddedServer embeddedServer, @Qualifier( "eventSerializer" ) final Serializer eventSerializer,
-			final AxonConfiguration configuration ) {
-		return new EmbeddedServerEventStore( embeddedServer, eventSerializer, configuration.upcasterChain( ) );
+			final AxonConfiguration configuration, @Value( "${axon.embeddedserver.connector.deserialized-event-cache.max-events:10000}" ) final int deserializedEventCacheMaxEvents,
+			@Value( "${axon.embeddedserver.connector.snapshot-cache.max-entries:1000}" ) final int snapshotCacheMaxEntries,
+			@Value( "${axon.embeddedserver.connector.snapshot-cache.time-to-live:60000}" ) final long snapshotCacheTimeToLive,
+			@Value( "${axon.embeddedserver.connector.exclude-own-origin:true}" ) final boolean excludeOwnOrigin, @Value( "${spring.application.name:}" ) final String contextName,
+			@Value( "${axon.embeddedserver.connector.blacklisting.enabled:false}" ) final boolean blacklistingEnabled,
+			@Value( "${axon.embeddedserver.connector.prefetch.max-events:1000}" ) final int prefetchMaxEvents,
+			@Value( "${axon.embeddedserver.connector.prefetch.max-bytes:16777216}" ) final long prefetchMaxBytes ) {
+		final DeserializedEventCache deserializedEventCache = deserializedEventCacheMaxEvents > 0 ? new DeserializedEventCache( deserializedEventCacheMaxEvents, embeddedServer.getMonitor( ), contextName ) : null;
+		final SnapshotCache snapshotCache = snapshotCacheMaxEntries > 0 ? new SnapshotCache( embeddedServer, snapshotCacheMaxEntries, snapshotCacheTimeToLive ) : null;
+		// Events which have been forwarded by this context are tagged with its name, so the server skips them.
+		final EventStreamOptions streamOptions = ( excludeOwnOrigin && !contextName.isEmpty( ) ? EventStreamOptions.NONE.withExcludedOrigin( contextName ) : EventStreamOptions.NONE )
+				.withContext( contextName );
+		final EventPrefetchExecutor eventPrefetchExecutor = prefetchMaxEvents > 0 ? new EventPrefetchExecutor( prefetchMaxEvents, prefetchMaxBytes ) : null;
+		return new EmbeddedServerEventStore( embeddedServer, eventSerializer, configuration.upcasterChain( ), deserializedEventCache, snapshotCache, streamOptions, blacklistingEnabled,
+				eventPrefetchExecutor, contextName );
 	}
 
 	@Bean
 	@Qualifier( "localSegment" )
 	@ConditionalOnMissingBean( name = "commandBus" )
-	public CommandBus commandBus( final EmbeddedServer embeddedServer, final AxonConfiguration axonConfiguration, final TransactionManager transactionManager ) {
+	public CommandBus commandBus( final EmbeddedServer embeddedServer, final AxonConfiguration axonConfiguration, final TransactionManager transactionManager,
+			@Value( "${spring.application.name:}" ) final String contextName ) {
 		final SimpleCommandBus simpleCommandBus = SimpleCommandBus.builder( )
 				.transactionManager( transactionManager )
 				.messageMonitor( axonConfiguration.messageMonitor( CommandBus.class, "commandBus" ) )
 				.build( );
 		simpleCommandBus.registerHandlerInterceptor( new CorrelationDataInterceptor<>( axonConfiguration.correlationDataProviders( ) ) );
+		if ( !contextName.isEmpty( ) ) {
+			embeddedServer.registerContextName( simpleCommandBus, contextName );
+		}
 
 		return new EmbeddedServerCommandBus( embeddedServer, simpleCommandBus );
 	}
@@ -56,7 +75,8 @@ public class EmbeddedServerConnectorConfiguration {
 	@Bean
 	@Qualifier( "localSegment" )
 	@ConditionalOnMissingBean( name = "queryBus" )
-	public QueryBus queryBus( final EmbeddedServer embeddedServer, final AxonConfiguration axonConfiguration, final TransactionManager transactionManager ) {
+	public QueryBus queryBus( final EmbeddedServer embeddedServer, final AxonConfiguration axonConfiguration, final TransactionManager transactionManager,
+			@Value( "${spring.application.name:}" ) final String contextName ) {
 		final SimpleQueryBus simpleQueryBus = SimpleQueryBus.builder( )
 				.messageMonitor( axonConfiguration.messageMonitor( QueryBus.class, "queryBus" ) )
 				.transactionManager( transactionManager )
@@ -66,6 +86,9 @@ public class EmbeddedServerConnectorConfiguration {
 						( ) -> LoggingQueryInvocationErrorHandler.builder( ).build( ) ) )
 				.build( );
 		simpleQueryBus.registerHandlerInterceptor( new CorrelationDataInterceptor<>( axonConfiguration.correlationDataProviders( ) ) );
+		if ( !contextName.isEmpty( ) ) {
+			embeddedServer.registerContextName( simpleQueryBus, contextName );
+		}
 
 		return new EmbeddedServerQueryBus( embeddedServer, simpleQueryBus );
 	}
@@ -1,9 +1,12 @@
 package de.libutzki.axon.embeddedserverconnector;
 
+import static org.axonframework.common.ObjectUtils.getOrDefault;
 import static org.axonframework.eventsourcing.EventStreamUtils.upcastAndDeserializeDomainEvents;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -12,23 +15,40 @@ import org.axonframework.common.stream.BlockingStream;
 import org.axonframework.eventhandling.DomainEventData;
 import org.axonframework.eventhandling.DomainEventMessage;
 import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericDomainEventEntry;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventhandling.Segment;
 import org.axonframework.eventhandling.TrackedEventData;
 import org.axonframework.eventhandling.TrackedEventMessage;
 import org.axonframework.eventhandling.TrackingToken;
 import org.axonframework.eventsourcing.eventstore.DomainEventStream;
 import org.axonframework.eventsourcing.eventstore.EventStore;
 import org.axonframework.messaging.MessageDispatchInterceptor;
+import org.axonframework.serialization.LazyDeserializingObject;
+import org.axonframework.serialization.SerializedMessage;
+import org.axonframework.serialization.SerializedObject;
 import org.axonframework.serialization.Serializer;
 import org.axonframework.serialization.upcasting.event.EventUpcaster;
+import org.axonframework.serialization.upcasting.event.InitialEventRepresentation;
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
+import org.axonframework.serialization.upcasting.event.NoOpEventUpcaster;
 
 import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EventStreamOptions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
 /**
  * The {@link EmbeddedServerEventStore} wraps an {@link EmbeddedServer} to avoid that the server has to implement the
  * {@link EventStore} interface. It basically dispatches each method to the embedded server. Furthermore, it applies the
- * upcaster chain when calling {@link #openStream(TrackingToken)} or {@link #readEvents(String)}.
+ * upcaster chain when calling {@link #openStream(TrackingToken)} or {@link #readEvents(String)}. All streams opened by
+ * this event store share the optional {@link DeserializedEventCache}. Snapshots are cached by the optional
+ * {@link SnapshotCache}. The given {@link EventStreamOptions} are passed to the server whenever a stream is opened. If
+ * blacklisting is enabled, each stream additionally passes the payload types which its tracking processor has
+ * blacklisted. Streams opened by a segment thread of an {@link EmbeddedServerTrackingEventProcessor} only contain the
+ * events of the thread's segment. If the optional {@link EventPrefetchExecutor} is given, each stream is advanced in the
+ * background. Published events and reads of aggregates and snapshots are passed to the server with the name of the
+ * context, so that the server's monitor can tell the contexts apart.
  */
 @RequiredArgsConstructor
 @Log4j2
@@ -37,6 +57,12 @@ final class EmbeddedServerEventStore implements EventStore {
 	private final EmbeddedServer embeddedServer;
 	private final Serializer serializer;
 	private final EventUpcaster upcasterChain;
+	private final DeserializedEventCache deserializedEventCache;
+	private final SnapshotCache snapshotCache;
+	private final EventStreamOptions streamOptions;
+	private final boolean blacklistingEnabled;
+	private final EventPrefetchExecutor eventPrefetchExecutor;
+	private final String contextName;
 
 	@Override
 	public Registration subscribe( final Consumer<List<? extends EventMessage<?>>> eventProcessor ) {
@@ -45,7 +71,7 @@ final class EmbeddedServerEventStore implements EventStore {
 
 	@Override
 	public void publish( final List<? extends EventMessage<?>> events ) {
-		embeddedServer.publish( events );
+		embeddedServer.publish( events, contextName );
 
 	}
 
@@ -56,8 +82,14 @@ final class EmbeddedServerEventStore implements EventStore {
 
 	@Override
 	public BlockingStream<TrackedEventMessage<?>> openStream( final TrackingToken trackingToken ) {
-		final Stream<? extends TrackedEventData<?>> trackedEventDataStream = embeddedServer.openStream( trackingToken );
-		return new EmbeddedServerTrackingEventStream( trackedEventDataStream, upcasterChain, serializer );
+		final Set<String> blacklistedPayloadTypes = blacklistingEnabled ? ConcurrentHashMap.newKeySet( ) : null;
+		EventStreamOptions options = blacklistingEnabled ? streamOptions.withExcludedPayloadTypes( blacklistedPayloadTypes ) : streamOptions;
+		final Segment segment = EmbeddedServerTrackingEventProcessor.currentSegment( );
+		if ( segment != null ) {
+			options = options.withSegment( segment );
+		}
+		final Stream<? extends TrackedEventData<?>> trackedEventDataStream = embeddedServer.openStream( trackingToken, options );
+		return new EmbeddedServerTrackingEventStream( embeddedServer, trackedEventDataStream, upcasterChain, serializer, deserializedEventCache, blacklistedPayloadTypes, eventPrefetchExecutor );
 	}
 
 	@Override
@@ -74,25 +106,62 @@ final class EmbeddedServerEventStore implements EventStore {
 		if ( optionalSnapshot.isPresent( ) ) {
 			final DomainEventMessage<?> snapshot = optionalSnapshot.get( );
 
-			final Stream<? extends DomainEventData<?>> eventDataStreamAfterSnapshot = embeddedServer.readEvents( aggregateIdentifier, snapshot.getSequenceNumber( ) + 1 );
+			final Stream<? extends DomainEventData<?>> eventDataStreamAfterSnapshot = embeddedServer.readEvents( aggregateIdentifier, snapshot.getSequenceNumber( ) + 1, contextName );
 			final DomainEventStream domainEvents = upcastAndDeserializeDomainEvents( eventDataStreamAfterSnapshot, serializer, upcasterChain );
 			eventStream = DomainEventStream.concat( DomainEventStream.of( snapshot ), domainEvents );
 		} else {
-			final Stream<? extends DomainEventData<?>> eventDataStream = embeddedServer.readEvents( aggregateIdentifier );
+			final Stream<? extends DomainEventData<?>> eventDataStream = embeddedServer.readEvents( aggregateIdentifier, 0L, contextName );
 			eventStream = upcastAndDeserializeDomainEvents( eventDataStream, serializer, upcasterChain );
 		}
 		return eventStream;
 	}
 
 	private Optional<? extends DomainEventMessage<?>> readSnapshot( final String aggregateIdentifier ) {
-		return upcastAndDeserializeDomainEvents( embeddedServer.readSnapshotData( aggregateIdentifier ), serializer, upcasterChain )
-				.asStream( )
+		final Optional<IntermediateEventRepresentation> snapshot = snapshotCache == null
+				? loadSnapshot( aggregateIdentifier )
+				: snapshotCache.get( aggregateIdentifier, this::loadSnapshot );
+		return snapshot.map( this::toDomainEventMessage );
+	}
+
+	private Optional<IntermediateEventRepresentation> loadSnapshot( final String aggregateIdentifier ) {
+		return getOrDefault( upcasterChain, NoOpEventUpcaster.INSTANCE )
+				.upcast( embeddedServer.readSnapshotData( aggregateIdentifier, contextName ).map( snapshotData -> new InitialEventRepresentation( snapshotData, serializer ) ) )
 				.findFirst( );
 	}
 
+	/**
+	 * Creates a new message for each call, so that each load of the aggregate deserializes its own aggregate instance.
+	 */
+	private DomainEventMessage<?> toDomainEventMessage( final IntermediateEventRepresentation snapshot ) {
+		final SerializedMessage<?> serializedMessage = new SerializedMessage<>( snapshot.getMessageIdentifier( ),
+				new LazyDeserializingObject<>( snapshot::getData, snapshot.getType( ), serializer ),
+				snapshot.getMetaData( ) );
+		return new GenericDomainEventMessage<>( snapshot.getAggregateType( ).orElse( null ), snapshot.getAggregateIdentifier( ).get( ), snapshot.getSequenceNumber( ).get( ),
+				serializedMessage, snapshot::getTimestamp );
+	}
+
 	@Override
 	public void storeSnapshot( final DomainEventMessage<?> snapshot ) {
 		embeddedServer.storeSnapshot( snapshot );
+		if ( snapshotCache != null ) {
+			final SerializedObject<byte[]> payload = snapshot.serializePayload( serializer, byte[].class );
+			final SerializedObject<byte[]> metaData = snapshot.serializeMetaData( serializer, byte[].class );
+			final GenericDomainEventEntry<byte[]> snapshotData = new GenericDomainEventEntry<>( snapshot.getType( ), snapshot.getAggregateIdentifier( ), snapshot.getSequenceNumber( ),
+					snapshot.getIdentifier( ), snapshot.getTimestamp( ), payload.getType( ).getName( ), payload.getType( ).getRevision( ), payload.getData( ), metaData.getData( ) );
+			snapshotCache.put( snapshot.getAggregateIdentifier( ), Optional.of( new InitialEventRepresentation( snapshotData, serializer ) ) );
+		}
+	}
+
+	/**
+	 * Stops listening for snapshots stored by other contexts and stops prefetching events.
+	 */
+	public void shutDown( ) {
+		if ( snapshotCache != null ) {
+			snapshotCache.shutDown( );
+		}
+		if ( eventPrefetchExecutor != null ) {
+			eventPrefetchExecutor.shutDown( );
+		}
 	}
 
 }
@@ -53,12 +53,12 @@ final class EmbeddedServerQueryBus implements QueryBus {
 
 	@Override
 	public <Q, R> CompletableFuture<QueryResponseMessage<R>> query( final QueryMessage<Q, R> query ) {
-		return embeddedServer.query( query );
+		return embeddedServer.query( query, localQueryBus );
 	}
 
 	@Override
 	public <Q, R> Stream<QueryResponseMessage<R>> scatterGather( final QueryMessage<Q, R> query, final long timeout, final TimeUnit unit ) {
-		return embeddedServer.scatterGather( query, timeout, unit );
+		return embeddedServer.scatterGather( query, timeout, unit, localQueryBus );
 	}
 
 	@Override
@@ -0,0 +1,122 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import org.axonframework.config.EventProcessingConfiguration;
+import org.axonframework.config.EventProcessingConfigurer.EventProcessorBuilder;
+import org.axonframework.eventhandling.EventHandlerInvoker;
+import org.axonframework.eventhandling.MultiEventHandlerInvoker;
+import org.axonframework.eventhandling.Segment;
+import org.axonframework.eventhandling.SimpleEventHandlerInvoker;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingEventProcessorConfiguration;
+import org.axonframework.eventhandling.async.SequentialPerAggregatePolicy;
+
+import de.libutzki.axon.embeddedserver.EventStreamOptions;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link EmbeddedServerTrackingEventProcessor} is a {@link TrackingEventProcessor} whose segment threads only
+ * receive the events of their own segment from the embedded server. Each thread opens its own stream, which would
+ * otherwise contain all events, so that a processor with N segments would read each event N times and drop all but one
+ * of them on the client.<br>
+ * <br>
+ * While a thread processes a segment, the segment is passed to the streams opened by the {@link EmbeddedServerEventStore}
+ * on this thread (see {@link EventStreamOptions#withSegment(Segment)}). This also applies to the global event stream of
+ * the local event store adapter. The server assigns events to segments like the {@link SequentialPerAggregatePolicy}
+ * does, so the segment is only passed if all event handler invokers of the processor use this policy. Otherwise the
+ * processor behaves like a regular {@link TrackingEventProcessor}.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+public class EmbeddedServerTrackingEventProcessor extends TrackingEventProcessor {
+
+	private static final ThreadLocal<Segment> currentSegment = new ThreadLocal<>( );
+
+	private final boolean segmentFilteringSupported;
+
+	protected EmbeddedServerTrackingEventProcessor( final Builder builder ) {
+		super( builder );
+		segmentFilteringSupported = isSequencedPerAggregate( eventHandlerInvoker( ) );
+		if ( !segmentFilteringSupported ) {
+			log.debug( "Processor [{}] does not use the SequentialPerAggregatePolicy. Its segments are not filtered by the embedded server.", getName( ) );
+		}
+	}
+
+	public static Builder builder( ) {
+		return new Builder( );
+	}
+
+	/**
+	 * Returns an {@link EventProcessorBuilder} which creates an {@link EmbeddedServerTrackingEventProcessor} reading from
+	 * the configured event store. Apart from the given {@code configuration} it uses the components which are configured
+	 * for the processor, e.g.:
+	 *
+	 * <pre>
+	 * configurer.eventProcessing( ).registerEventProcessor( "processor",
+	 * 		EmbeddedServerTrackingEventProcessor.factory( TrackingEventProcessorConfiguration.forParallelProcessing( 4 ) ) );
+	 * </pre>
+	 */
+	public static EventProcessorBuilder factory( final TrackingEventProcessorConfiguration configuration ) {
+		return ( name, config, eventHandlerInvoker ) -> {
+			final EventProcessingConfiguration eventProcessingConfiguration = config.eventProcessingConfiguration( );
+			return builder( )
+					.name( name )
+					.eventHandlerInvoker( eventHandlerInvoker )
+					.messageSource( config.eventStore( ) )
+					.tokenStore( eventProcessingConfiguration.tokenStore( name ) )
+					.transactionManager( eventProcessingConfiguration.transactionManager( name ) )
+					.errorHandler( eventProcessingConfiguration.errorHandler( name ) )
+					.rollbackConfiguration( eventProcessingConfiguration.rollbackConfiguration( name ) )
+					.messageMonitor( eventProcessingConfiguration.messageMonitor( TrackingEventProcessor.class, name ) )
+					.trackingEventProcessorConfiguration( configuration )
+					.build( );
+		};
+	}
+
+	/**
+	 * Returns the segment which is processed by the current thread or {@code null} if the current thread is not a segment
+	 * thread of an {@link EmbeddedServerTrackingEventProcessor} or the processor's segments are not filtered.
+	 */
+	static Segment currentSegment( ) {
+		return currentSegment.get( );
+	}
+
+	// The processing loop ends as soon as the segment has been split or merged, so the streams opened within the loop
+	// always belong to the given segment (or a segment which covers it).
+	@Override
+	protected void processingLoop( final Segment segment ) {
+		if ( !segmentFilteringSupported || segment.getMask( ) == 0 ) {
+			super.processingLoop( segment );
+			return;
+		}
+		currentSegment.set( segment );
+		try {
+			super.processingLoop( segment );
+		} finally {
+			currentSegment.remove( );
+		}
+	}
+
+	private static boolean isSequencedPerAggregate( final EventHandlerInvoker eventHandlerInvoker ) {
+		if ( eventHandlerInvoker instanceof MultiEventHandlerInvoker ) {
+			return ( ( MultiEventHandlerInvoker ) eventHandlerInvoker ).delegates( ).stream( ).allMatch( EmbeddedServerTrackingEventProcessor::isSequencedPerAggregate );
+		}
+		if ( eventHandlerInvoker instanceof SimpleEventHandlerInvoker ) {
+			return ( ( SimpleEventHandlerInvoker ) eventHandlerInvoker ).getSequencingPolicy( ) instanceof SequentialPerAggregatePolicy;
+		}
+		return false;
+	}
+
+	/**
+	 * Builder class to instantiate an {@link EmbeddedServerTrackingEventProcessor}. It offers the same options as the
+	 * builder of the {@link TrackingEventProcessor}.
+	 */
+	public static class Builder extends TrackingEventProcessor.Builder {
+
+		@Override
+		public EmbeddedServerTrackingEventProcessor build( ) {
+			return new EmbeddedServerTrackingEventProcessor( this );
+		}
+	}
+}
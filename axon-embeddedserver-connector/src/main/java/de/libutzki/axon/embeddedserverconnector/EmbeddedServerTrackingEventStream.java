@@ -4,23 +4,51 @@ import static org.axonframework.common.ObjectUtils.getOrDefault;
 
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import org.axonframework.common.Registration;
 import org.axonframework.eventhandling.EventUtils;
+import org.axonframework.eventhandling.GenericTrackedDomainEventMessage;
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
 import org.axonframework.eventhandling.TrackedEventData;
 import org.axonframework.eventhandling.TrackedEventMessage;
 import org.axonframework.eventhandling.TrackingEventStream;
+import org.axonframework.messaging.Message;
+import org.axonframework.serialization.LazyDeserializingObject;
+import org.axonframework.serialization.SerializedMessage;
 import org.axonframework.serialization.Serializer;
 import org.axonframework.serialization.upcasting.event.EventUpcaster;
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
 import org.axonframework.serialization.upcasting.event.NoOpEventUpcaster;
 
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EventStreamOptions;
+import de.libutzki.axon.embeddedserver.PassThroughEventData;
 import lombok.extern.log4j.Log4j2;
 
 /**
  * The {@link EmbeddedServerTrackingEventStream} is responsible for transforming a stream of {@link TrackedEventData}
  * into a stream of {@link TrackedEventMessage}. It does so by applying
- * {@link EventUtils#upcastAndDeserializeTrackedEvents(Stream, Serializer, EventUpcaster)}.
+ * {@link EventUtils#upcastAndDeserializeTrackedEvents(Stream, Serializer, EventUpcaster)}. If the event data is a
+ * {@link PassThroughEventData} which has not been upcasted, the published message is used instead of deserializing the
+ * payload and the metadata (see {@link PassThroughEventRepresentation}). If a {@link DeserializedEventCache} is given,
+ * the events are converted one by one and the converted messages are shared with other streams.<br>
+ * <br>
+ * If the stream is given the set of excluded payload types which the server's stream filters by (see
+ * {@link EventStreamOptions#withExcludedPayloadTypes(Set)}), the payload types blacklisted by a tracking processor are
+ * added to it. The server skips the events of these types from then on.<br>
+ * <br>
+ * Instead of polling the embedded server periodically, the stream waits until it is notified about newly committed
+ * events (see {@link EmbeddedServer#registerEventAvailabilityListener(Runnable)}).<br>
+ * <br>
+ * If an {@link EventPrefetchExecutor} is given, the stream is advanced by an {@link EventPrefetcher} in the background
+ * and the tracking processor takes the prefetched messages from its buffer.
  *
  * @author oliver.libutzki
  *
@@ -28,21 +56,100 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 final class EmbeddedServerTrackingEventStream implements TrackingEventStream {
 
+	private static final long PREFETCHER_TERMINATION_TIMEOUT_SECONDS = 10;
+
 	private final Stream<TrackedEventMessage<?>> eventStream;
+	private final Serializer serializer;
+	private final Set<String> blacklistedPayloadTypes;
 	private final Iterator<TrackedEventMessage<?>> eventStreamIterator;
+	private final EventPrefetcher eventPrefetcher;
+	private final Registration eventAvailabilityRegistration;
+	private final Lock eventAvailabilityLock = new ReentrantLock( );
+	private final Condition eventAvailabilityCondition = eventAvailabilityLock.newCondition( );
+	private boolean eventsAvailable;
 	private TrackedEventMessage<?> peekEvent;
+	private long bytesRead;
 
-	public EmbeddedServerTrackingEventStream( final Stream<? extends TrackedEventData<?>> trackedEventDataStream, final EventUpcaster upcasterChain, final Serializer serializer ) {
-		this.eventStream = EventUtils.upcastAndDeserializeTrackedEvents(
-				trackedEventDataStream,
+	public EmbeddedServerTrackingEventStream( final EmbeddedServer embeddedServer, final Stream<? extends TrackedEventData<?>> trackedEventDataStream, final EventUpcaster upcasterChain, final Serializer serializer,
+			final DeserializedEventCache deserializedEventCache, final Set<String> blacklistedPayloadTypes, final EventPrefetchExecutor eventPrefetchExecutor ) {
+		final Function<Stream<? extends TrackedEventData<?>>, Stream<TrackedEventMessage<?>>> upcastAndDeserialize = eventDataStream -> upcastAndDeserializeTrackedEvents(
+				eventDataStream,
 				serializer,
 				getOrDefault( upcasterChain, NoOpEventUpcaster.INSTANCE ) );
+		// The prefetcher measures its buffer by the size of the event data which has been read for the prefetched messages.
+		final Stream<? extends TrackedEventData<?>> measuredEventDataStream = eventPrefetchExecutor == null
+				? trackedEventDataStream
+				: trackedEventDataStream.peek( eventData -> bytesRead += EventPrefetcher.estimateSize( eventData ) );
+		this.eventStream = deserializedEventCache == null
+				? upcastAndDeserialize.apply( measuredEventDataStream )
+				: deserializedEventCache.upcastAndDeserialize( measuredEventDataStream, upcastAndDeserialize );
+		this.serializer = serializer;
+		this.blacklistedPayloadTypes = blacklistedPayloadTypes;
 		this.eventStreamIterator = eventStream.iterator( );
+		this.eventAvailabilityRegistration = embeddedServer.registerEventAvailabilityListener( this::signalEventsAvailable );
+		this.eventPrefetcher = eventPrefetchExecutor == null ? null : eventPrefetchExecutor.start( eventStreamIterator, ( ) -> bytesRead, this::awaitEventsAvailable );
+	}
+
+	/**
+	 * Equivalent to {@link EventUtils#upcastAndDeserializeTrackedEvents(Stream, Serializer, EventUpcaster)}, but passes
+	 * through the published messages.
+	 */
+	private static Stream<TrackedEventMessage<?>> upcastAndDeserializeTrackedEvents( final Stream<? extends TrackedEventData<?>> trackedEventDataStream, final Serializer serializer,
+			final EventUpcaster upcasterChain ) {
+		return upcasterChain
+				.upcast( trackedEventDataStream.map( eventData -> PassThroughEventRepresentation.of( eventData, serializer ) ) )
+				.map( intermediateRepresentation -> toTrackedEventMessage( intermediateRepresentation, serializer ) );
+	}
+
+	private static TrackedEventMessage<?> toTrackedEventMessage( final IntermediateEventRepresentation intermediateRepresentation, final Serializer serializer ) {
+		final Message<?> message = PassThroughEventRepresentation.publishedEventMessage( intermediateRepresentation )
+				.<Message<?>> map( eventMessage -> eventMessage )
+				.orElseGet( ( ) -> new SerializedMessage<>( intermediateRepresentation.getMessageIdentifier( ),
+						new LazyDeserializingObject<>( intermediateRepresentation::getData, intermediateRepresentation.getType( ), serializer ),
+						intermediateRepresentation.getMetaData( ) ) );
+		if ( intermediateRepresentation.getAggregateIdentifier( ).isPresent( ) ) {
+			return new GenericTrackedDomainEventMessage<>( intermediateRepresentation.getTrackingToken( ).get( ),
+					intermediateRepresentation.getAggregateType( ).orElse( null ),
+					intermediateRepresentation.getAggregateIdentifier( ).get( ),
+					intermediateRepresentation.getSequenceNumber( ).get( ),
+					message,
+					intermediateRepresentation::getTimestamp );
+		}
+		return new GenericTrackedEventMessage<>( intermediateRepresentation.getTrackingToken( ).get( ), message, intermediateRepresentation::getTimestamp );
+	}
+
+	private void signalEventsAvailable( ) {
+		eventAvailabilityLock.lock( );
+		try {
+			eventsAvailable = true;
+			eventAvailabilityCondition.signalAll( );
+		} finally {
+			eventAvailabilityLock.unlock( );
+		}
+	}
 
+	/**
+	 * Waits until new events have been signaled or the deadline is reached. The signal is reset afterwards, so that events
+	 * committed after this method returns are signaled again.
+	 */
+	private void awaitEventsAvailable( final long deadline ) throws InterruptedException {
+		eventAvailabilityLock.lock( );
+		try {
+			long nanosLeft = TimeUnit.MILLISECONDS.toNanos( deadline - System.currentTimeMillis( ) );
+			while ( !eventsAvailable && nanosLeft > 0 ) {
+				nanosLeft = eventAvailabilityCondition.awaitNanos( nanosLeft );
+			}
+			eventsAvailable = false;
+		} finally {
+			eventAvailabilityLock.unlock( );
+		}
 	}
 
 	@Override
 	public Optional<TrackedEventMessage<?>> peek( ) {
+		if ( eventPrefetcher != null ) {
+			return eventPrefetcher.peek( );
+		}
 		if ( peekEvent == null && eventStreamIterator.hasNext( ) ) {
 			peekEvent = eventStreamIterator.next( );
 		}
@@ -53,8 +160,11 @@ final class EmbeddedServerTrackingEventStream implements TrackingEventStream {
 	public boolean hasNextAvailable( final int timeout, final TimeUnit timeUnit ) throws InterruptedException {
 		final long deadline = System.currentTimeMillis( ) + timeUnit.toMillis( timeout );
 		try {
+			if ( eventPrefetcher != null ) {
+				return eventPrefetcher.hasNextAvailable( deadline );
+			}
 			while ( peekEvent == null && !eventStreamIterator.hasNext( ) && System.currentTimeMillis( ) < deadline ) {
-				Thread.sleep( 100 );
+				awaitEventsAvailable( deadline );
 			}
 			return peekEvent != null || eventStreamIterator.hasNext( );
 		} catch ( final InterruptedException e ) {
@@ -67,6 +177,9 @@ final class EmbeddedServerTrackingEventStream implements TrackingEventStream {
 	@Override
 	public TrackedEventMessage<?> nextAvailable( ) {
 		try {
+			if ( eventPrefetcher != null ) {
+				return eventPrefetcher.nextAvailable( );
+			}
 			hasNextAvailable( Integer.MAX_VALUE, TimeUnit.MILLISECONDS );
 			return peekEvent == null ? eventStreamIterator.next( ) : peekEvent;
 		} catch ( final InterruptedException e ) {
@@ -78,8 +191,39 @@ final class EmbeddedServerTrackingEventStream implements TrackingEventStream {
 		}
 	}
 
+	/**
+	 * Stops the prefetcher and waits until it does not read from the event stream anymore.
+	 */
+	private boolean stopPrefetching( ) {
+		eventPrefetcher.stop( );
+		signalEventsAvailable( );
+		try {
+			return eventPrefetcher.awaitTermination( PREFETCHER_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS );
+		} catch ( final InterruptedException e ) {
+			Thread.currentThread( ).interrupt( );
+			return false;
+		}
+	}
+
+	@Override
+	public void blacklist( final TrackedEventMessage<?> ignoredMessage ) {
+		if ( blacklistedPayloadTypes == null ) {
+			return;
+		}
+		final String payloadType = serializer.typeForClass( ignoredMessage.getPayloadType( ) ).getName( );
+		if ( blacklistedPayloadTypes.add( payloadType ) ) {
+			log.debug( "Payload type [{}] is blacklisted. The embedded server skips its events from now on.", payloadType );
+		}
+	}
+
 	@Override
 	public void close( ) {
+		eventAvailabilityRegistration.cancel( );
+		if ( eventPrefetcher != null && !stopPrefetching( ) ) {
+			// The prefetcher is blocked in the event stream. Closing the stream releases the resources it is blocked on.
+			log.warn( "Event prefetcher did not terminate in time. Interrupting it and closing the event stream anyway." );
+			eventPrefetcher.interrupt( );
+		}
 		eventStream.close( );
 	}
 }
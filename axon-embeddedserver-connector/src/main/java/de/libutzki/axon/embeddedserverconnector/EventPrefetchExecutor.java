@@ -0,0 +1,65 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.axonframework.eventhandling.TrackedEventMessage;
+
+import de.libutzki.axon.embeddedserverconnector.EventPrefetcher.EventAvailability;
+
+/**
+ * The {@link EventPrefetchExecutor} runs the {@link EventPrefetcher EventPrefetchers} of the streams opened by an
+ * {@link EmbeddedServerEventStore}. Each open stream occupies a daemon thread until it is closed. All prefetchers use
+ * the same buffer limits.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class EventPrefetchExecutor {
+
+	private final int maxEvents;
+	private final long maxBytes;
+	private final AtomicInteger threadCount = new AtomicInteger( );
+	private final ExecutorService executor;
+	private final Set<EventPrefetcher> activePrefetchers = ConcurrentHashMap.newKeySet( );
+
+	EventPrefetchExecutor( final int maxEvents, final long maxBytes ) {
+		this.maxEvents = maxEvents;
+		this.maxBytes = maxBytes;
+		this.executor = Executors.newCachedThreadPool( runnable -> {
+			final Thread thread = new Thread( runnable, "EmbeddedServerEventPrefetcher-" + threadCount.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	}
+
+	/**
+	 * Starts prefetching the given source in the background (see
+	 * {@link EventPrefetcher#EventPrefetcher(Iterator, LongSupplier, EventAvailability, int, long)}).
+	 */
+	EventPrefetcher start( final Iterator<TrackedEventMessage<?>> source, final LongSupplier bytesRead, final EventAvailability eventAvailability ) {
+		final EventPrefetcher eventPrefetcher = new EventPrefetcher( source, bytesRead, eventAvailability, maxEvents, maxBytes );
+		activePrefetchers.add( eventPrefetcher );
+		executor.execute( ( ) -> {
+			try {
+				eventPrefetcher.run( );
+			} finally {
+				activePrefetchers.remove( eventPrefetcher );
+			}
+		} );
+		return eventPrefetcher;
+	}
+
+	/**
+	 * Stops all prefetchers. Their threads terminate as soon as they stop waiting for new events.
+	 */
+	void shutDown( ) {
+		activePrefetchers.forEach( EventPrefetcher::stop );
+		executor.shutdown( );
+	}
+}
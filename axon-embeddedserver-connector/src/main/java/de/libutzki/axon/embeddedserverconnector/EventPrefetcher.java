@@ -0,0 +1,300 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.serialization.SerializedObject;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link EventPrefetcher} advances the event stream of an {@link EmbeddedServerTrackingEventStream} on a background
+ * thread. Reading from the embedded server, upcasting and deserializing the payload and the meta data happen while the
+ * tracking processor handles the preceding events. The prefetched messages are buffered until the processor asks for
+ * them.<br>
+ * <br>
+ * The buffer is bounded by the number of events and by the (estimated) number of bytes of the serialized events. The
+ * background thread waits as soon as one of the limits is reached. Payloads which can't be deserialized are left to
+ * the processor, so it decides whether to handle or to skip them. Any other failure of the stream is rethrown to the
+ * processor after it has taken all events which have been prefetched before.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class EventPrefetcher implements Runnable {
+
+	/**
+	 * The maximum time the background thread waits for newly committed events before it checks whether it has been
+	 * closed.
+	 */
+	private static final long AWAIT_EVENTS_MILLIS = 1000;
+
+	/**
+	 * Waits until new events have been signaled or the given deadline (in milliseconds) is reached.
+	 */
+	@FunctionalInterface
+	interface EventAvailability {
+
+		void await( long deadline ) throws InterruptedException;
+	}
+
+	private final Iterator<TrackedEventMessage<?>> source;
+	private final LongSupplier bytesRead;
+	private final EventAvailability eventAvailability;
+	private final int maxEvents;
+	private final long maxBytes;
+
+	private final Lock lock = new ReentrantLock( );
+	private final Condition notEmpty = lock.newCondition( );
+	private final Condition notFull = lock.newCondition( );
+	private final Deque<PrefetchedEvent> buffer = new ArrayDeque<>( );
+	private final CountDownLatch terminated = new CountDownLatch( 1 );
+	private long bufferedBytes;
+	private boolean drained;
+	private RuntimeException failure;
+	private Thread thread;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a prefetcher of the given source. {@code bytesRead} returns the total size of the event data which the
+	 * source has read so far. It is only invoked by the background thread.
+	 */
+	EventPrefetcher( final Iterator<TrackedEventMessage<?>> source, final LongSupplier bytesRead, final EventAvailability eventAvailability, final int maxEvents,
+			final long maxBytes ) {
+		if ( maxEvents <= 0 ) {
+			throw new IllegalArgumentException( "The prefetch buffer has to hold at least one event." );
+		}
+		this.source = source;
+		this.bytesRead = bytesRead;
+		this.eventAvailability = eventAvailability;
+		this.maxEvents = maxEvents;
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public void run( ) {
+		setThread( Thread.currentThread( ) );
+		try {
+			long previousBytesRead = 0;
+			while ( awaitCapacity( ) ) {
+				if ( !source.hasNext( ) ) {
+					setDrained( true );
+					eventAvailability.await( System.currentTimeMillis( ) + AWAIT_EVENTS_MILLIS );
+					setDrained( false );
+					continue;
+				}
+				final TrackedEventMessage<?> eventMessage = source.next( );
+				decode( eventMessage );
+				final long currentBytesRead = bytesRead.getAsLong( );
+				add( new PrefetchedEvent( eventMessage, currentBytesRead - previousBytesRead ) );
+				previousBytesRead = currentBytesRead;
+			}
+		} catch ( final InterruptedException e ) {
+			Thread.currentThread( ).interrupt( );
+		} catch ( final RuntimeException e ) {
+			lock.lock( );
+			try {
+				failure = e;
+				notEmpty.signalAll( );
+			} finally {
+				lock.unlock( );
+			}
+		} finally {
+			setThread( null );
+			setDrained( true );
+			terminated.countDown( );
+		}
+	}
+
+	private void setThread( final Thread thread ) {
+		lock.lock( );
+		try {
+			this.thread = thread;
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	private void setDrained( final boolean drained ) {
+		lock.lock( );
+		try {
+			this.drained = drained;
+			notEmpty.signalAll( );
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	private static void decode( final TrackedEventMessage<?> eventMessage ) {
+		try {
+			eventMessage.getMetaData( );
+			eventMessage.getPayload( );
+		} catch ( final RuntimeException e ) {
+			log.debug( "Unable to deserialize event [{}] in advance. Leaving it to the processor.", eventMessage.getIdentifier( ), e );
+		}
+	}
+
+	/**
+	 * Waits until the buffer has room for another event. Returns {@code false} if the prefetcher has been closed.
+	 */
+	private boolean awaitCapacity( ) throws InterruptedException {
+		lock.lock( );
+		try {
+			while ( !closed && ( buffer.size( ) >= maxEvents || ( !buffer.isEmpty( ) && bufferedBytes >= maxBytes ) ) ) {
+				notFull.await( );
+			}
+			return !closed;
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	private void add( final PrefetchedEvent prefetchedEvent ) {
+		lock.lock( );
+		try {
+			buffer.addLast( prefetchedEvent );
+			bufferedBytes += prefetchedEvent.size;
+			notEmpty.signalAll( );
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	/**
+	 * Returns the next prefetched event without removing it.
+	 */
+	Optional<TrackedEventMessage<?>> peek( ) {
+		lock.lock( );
+		try {
+			throwFailureIfDrained( );
+			return Optional.ofNullable( buffer.peekFirst( ) ).map( prefetchedEvent -> prefetchedEvent.eventMessage );
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	/**
+	 * Waits until an event has been prefetched or the given deadline (in milliseconds) is reached. Like the stream of the
+	 * embedded server, it reports that no event is available only after the background thread has reached the end of the
+	 * stream, even if the deadline has passed already.
+	 */
+	boolean hasNextAvailable( final long deadline ) throws InterruptedException {
+		lock.lock( );
+		try {
+			long nanosLeft = TimeUnit.MILLISECONDS.toNanos( deadline - System.currentTimeMillis( ) );
+			while ( buffer.isEmpty( ) && failure == null ) {
+				if ( nanosLeft > 0 ) {
+					nanosLeft = notEmpty.awaitNanos( nanosLeft );
+				} else if ( !drained ) {
+					notEmpty.await( );
+				} else {
+					break;
+				}
+			}
+			throwFailureIfDrained( );
+			return !buffer.isEmpty( );
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	/**
+	 * Removes and returns the next prefetched event, waiting until one is available.
+	 */
+	TrackedEventMessage<?> nextAvailable( ) throws InterruptedException {
+		lock.lock( );
+		try {
+			while ( buffer.isEmpty( ) && failure == null ) {
+				notEmpty.await( );
+			}
+			throwFailureIfDrained( );
+			final PrefetchedEvent prefetchedEvent = buffer.removeFirst( );
+			bufferedBytes -= prefetchedEvent.size;
+			notFull.signalAll( );
+			return prefetchedEvent.eventMessage;
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	private void throwFailureIfDrained( ) {
+		if ( buffer.isEmpty( ) && failure != null ) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Stops prefetching. If the background thread is waiting for new events, it terminates after it has been woken up.
+	 */
+	void stop( ) {
+		lock.lock( );
+		try {
+			closed = true;
+			notFull.signalAll( );
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	/**
+	 * Interrupts the background thread, if it has not terminated yet. The thread is blocked in the source if it has not
+	 * terminated after it has been {@link #stop() stopped}.
+	 */
+	void interrupt( ) {
+		lock.lock( );
+		try {
+			if ( thread != null ) {
+				thread.interrupt( );
+			}
+		} finally {
+			lock.unlock( );
+		}
+	}
+
+	/**
+	 * Waits until the background thread has terminated, so that the source may be closed.
+	 */
+	boolean awaitTermination( final long timeout, final TimeUnit unit ) throws InterruptedException {
+		return terminated.await( timeout, unit );
+	}
+
+	/**
+	 * Returns the estimated size of the given event data, which is the length of its serialized payload and meta data.
+	 */
+	static long estimateSize( final TrackedEventData<?> eventData ) {
+		return estimateSize( eventData.getPayload( ) ) + estimateSize( eventData.getMetaData( ) );
+	}
+
+	private static long estimateSize( final SerializedObject<?> serializedObject ) {
+		final Object data = serializedObject.getData( );
+		if ( data instanceof byte[] ) {
+			return ( ( byte[] ) data ).length;
+		}
+		if ( data instanceof String ) {
+			return ( ( String ) data ).length( ) * 2L;
+		}
+		return 0;
+	}
+
+	private static final class PrefetchedEvent {
+
+		private final TrackedEventMessage<?> eventMessage;
+		private final long size;
+
+		PrefetchedEvent( final TrackedEventMessage<?> eventMessage, final long size ) {
+			this.eventMessage = eventMessage;
+			this.size = size;
+		}
+	}
+}
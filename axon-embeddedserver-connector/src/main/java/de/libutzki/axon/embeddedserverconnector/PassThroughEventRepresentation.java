@@ -0,0 +1,60 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import java.util.Optional;
+
+import org.axonframework.eventhandling.EventData;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.upcasting.event.InitialEventRepresentation;
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
+
+import de.libutzki.axon.embeddedserver.PassThroughEventData;
+
+/**
+ * The {@link PassThroughEventRepresentation} is the {@link InitialEventRepresentation} of a
+ * {@link PassThroughEventData}. It keeps the published {@link EventMessage}, which may be used instead of deserializing
+ * the event.<br>
+ * <br>
+ * Upcasters which do not apply to an event return its representation unchanged, while upcasters which do apply create a
+ * new representation. Hence the published message is only used if the representation survived the upcaster chain.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class PassThroughEventRepresentation extends InitialEventRepresentation {
+
+	private final EventMessage<?> eventMessage;
+	private final Serializer serializer;
+
+	private PassThroughEventRepresentation( final PassThroughEventData<?> eventData, final Serializer serializer ) {
+		super( eventData, serializer );
+		this.eventMessage = eventData.getEventMessage( );
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Creates the initial representation of the given event data.
+	 */
+	static IntermediateEventRepresentation of( final EventData<?> eventData, final Serializer serializer ) {
+		if ( eventData instanceof PassThroughEventData ) {
+			return new PassThroughEventRepresentation( ( PassThroughEventData<?> ) eventData, serializer );
+		}
+		return new InitialEventRepresentation( eventData, serializer );
+	}
+
+	/**
+	 * Returns the published event message if the given representation has not been upcasted and the serializer would
+	 * deserialize the payload to the same type.
+	 */
+	static Optional<EventMessage<?>> publishedEventMessage( final IntermediateEventRepresentation intermediateRepresentation ) {
+		if ( !( intermediateRepresentation instanceof PassThroughEventRepresentation ) ) {
+			return Optional.empty( );
+		}
+		final PassThroughEventRepresentation passThroughRepresentation = ( PassThroughEventRepresentation ) intermediateRepresentation;
+		final EventMessage<?> eventMessage = passThroughRepresentation.eventMessage;
+		if ( !eventMessage.getPayloadType( ).equals( passThroughRepresentation.serializer.classForType( passThroughRepresentation.getType( ) ) ) ) {
+			return Optional.empty( );
+		}
+		return Optional.of( eventMessage );
+	}
+}
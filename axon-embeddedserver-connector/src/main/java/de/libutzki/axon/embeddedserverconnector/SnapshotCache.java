@@ -0,0 +1,114 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.axonframework.common.Registration;
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+
+/**
+ * The {@link SnapshotCache} holds the upcasted snapshot of the most recently loaded aggregates, including the
+ * information that an aggregate has no snapshot at all. The snapshot is kept in its serialized form, as the
+ * deserialized payload becomes the aggregate instance and must not be shared between two loads of the aggregate.<br>
+ * <br>
+ * Cached snapshots are invalidated whenever the {@link EmbeddedServer} reports that a snapshot of the aggregate has been
+ * stored (see {@link EmbeddedServer#registerSnapshotListener(java.util.function.Consumer)}) and after a time-to-live.
+ * As any snapshot is a valid state of the aggregate, an outdated snapshot only results in applying more events.<br>
+ * <br>
+ * A snapshot which has been loaded while a snapshot has been stored or invalidated is not cached, as the loaded
+ * snapshot may be older than the stored one. To detect this, each change of the cache increments a version, which is
+ * compared before and after the load.<br>
+ * <br>
+ * The cache is bounded by the number of aggregates, the least recently used aggregates are evicted first.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class SnapshotCache {
+
+	private final Map<String, CacheEntry> cache;
+	private final long timeToLive;
+	private final Registration snapshotListenerRegistration;
+	private long version;
+
+	SnapshotCache( final EmbeddedServer embeddedServer, final int maxEntries, final long timeToLive ) {
+		if ( maxEntries <= 0 ) {
+			throw new IllegalArgumentException( "The snapshot cache has to hold at least one aggregate." );
+		}
+		this.cache = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry<String, CacheEntry> eldest ) {
+				return size( ) > maxEntries;
+			}
+		};
+		this.timeToLive = timeToLive;
+		this.snapshotListenerRegistration = embeddedServer.registerSnapshotListener( this::invalidate );
+	}
+
+	/**
+	 * Returns the cached snapshot of the given aggregate. If there is none or it has expired, the snapshot is loaded by the
+	 * given {@code snapshotLoader} and cached afterwards, unless a snapshot has been stored or invalidated meanwhile.
+	 */
+	Optional<IntermediateEventRepresentation> get( final String aggregateIdentifier, final Function<String, Optional<IntermediateEventRepresentation>> snapshotLoader ) {
+		final long now = System.currentTimeMillis( );
+		final long loadedVersion;
+		synchronized ( cache ) {
+			final CacheEntry cacheEntry = cache.get( aggregateIdentifier );
+			if ( cacheEntry != null && cacheEntry.expiresAt > now ) {
+				return cacheEntry.snapshot;
+			}
+			loadedVersion = version;
+		}
+		final Optional<IntermediateEventRepresentation> snapshot = snapshotLoader.apply( aggregateIdentifier );
+		final CacheEntry cacheEntry = new CacheEntry( snapshot, System.currentTimeMillis( ) + timeToLive );
+		synchronized ( cache ) {
+			if ( version == loadedVersion ) {
+				cache.put( aggregateIdentifier, cacheEntry );
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Caches the given snapshot of the aggregate. An empty snapshot records that the aggregate has no snapshot.
+	 */
+	void put( final String aggregateIdentifier, final Optional<IntermediateEventRepresentation> snapshot ) {
+		final CacheEntry cacheEntry = new CacheEntry( snapshot, System.currentTimeMillis( ) + timeToLive );
+		synchronized ( cache ) {
+			version++;
+			cache.put( aggregateIdentifier, cacheEntry );
+		}
+	}
+
+	void invalidate( final String aggregateIdentifier ) {
+		synchronized ( cache ) {
+			version++;
+			cache.remove( aggregateIdentifier );
+		}
+	}
+
+	/**
+	 * Stops listening for stored snapshots.
+	 */
+	void shutDown( ) {
+		snapshotListenerRegistration.cancel( );
+	}
+
+	private static final class CacheEntry {
+
+		private final Optional<IntermediateEventRepresentation> snapshot;
+		private final long expiresAt;
+
+		CacheEntry( final Optional<IntermediateEventRepresentation> snapshot, final long expiresAt ) {
+			this.snapshot = snapshot;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
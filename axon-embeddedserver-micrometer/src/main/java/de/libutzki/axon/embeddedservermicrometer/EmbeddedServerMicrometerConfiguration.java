@@ -0,0 +1,65 @@
+package de.libutzki.axon.embeddedservermicrometer;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SearchStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The {@link EmbeddedServerMicrometerConfiguration} registers the monitors of the embedded server, which export their
+ * metrics to the {@link MeterRegistry} of the context (or one of its parents). It is auto-configured if a
+ * {@link MeterRegistry} bean is available and {@code axon.embeddedserver.micrometer.enabled} is not set to
+ * {@code false}.<br>
+ * <br>
+ * The embedded server is exported to the parent context, so the contexts of the connectors see it as well. Hence the
+ * monitors are only registered in the context which defines the {@link EmbeddedServer} bean itself. The message monitors
+ * are registered with the bean names the embedded server looks for, as Axon's metrics modules do not provide message
+ * monitors for the embedded server.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Configuration
+@AutoConfigureAfter( name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration" )
+@ConditionalOnBean( MeterRegistry.class )
+@ConditionalOnProperty( name = "axon.embeddedserver.micrometer.enabled", matchIfMissing = true )
+public class EmbeddedServerMicrometerConfiguration {
+
+	@Configuration
+	@ConditionalOnBean( value = EmbeddedServer.class, search = SearchStrategy.CURRENT )
+	static class EmbeddedServerMonitorConfiguration {
+
+		@Bean
+		@Primary
+		public EmbeddedServerMonitor micrometerEmbeddedServerMonitor( final MeterRegistry meterRegistry ) {
+			return new MicrometerEmbeddedServerMonitor( meterRegistry );
+		}
+
+		@Bean
+		public MicrometerMessageMonitor embeddedServerCommandMonitor( final MeterRegistry meterRegistry ) {
+			return new MicrometerMessageMonitor( meterRegistry, "embeddedserver.commands" );
+		}
+
+		@Bean
+		public MicrometerMessageMonitor embeddedServerQueryMonitor( final MeterRegistry meterRegistry ) {
+			return new MicrometerMessageMonitor( meterRegistry, "embeddedserver.queries" );
+		}
+
+		@Bean
+		public MicrometerMessageMonitor embeddedServerScatterGatherMonitor( final MeterRegistry meterRegistry ) {
+			return new MicrometerMessageMonitor( meterRegistry, "embeddedserver.scattergatherqueries" );
+		}
+
+		@Bean
+		public MicrometerMessageMonitor embeddedServerEventMonitor( final MeterRegistry meterRegistry ) {
+			return new MicrometerMessageMonitor( meterRegistry, "embeddedserver.events" );
+		}
+	}
+}
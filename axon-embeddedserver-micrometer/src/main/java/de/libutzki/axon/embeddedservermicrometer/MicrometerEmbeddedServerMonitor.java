@@ -0,0 +1,161 @@
+package de.libutzki.axon.embeddedservermicrometer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The {@link MicrometerEmbeddedServerMonitor} exports the notifications of the embedded server to a Micrometer
+ * {@link MeterRegistry}. All meters are prefixed with {@code embeddedserver.}. Durations are recorded by timers, the
+ * number of events or rows per call by distribution summaries and the current sizes (e.g. of the snapshot queue) by
+ * gauges. The meters of the appends, fetches and reads and of the deserialized event cache are tagged with the
+ * {@code context} which has caused the work.
+ *
+ * @author oliver.libutzki
+ *
+ */
+public final class MicrometerEmbeddedServerMonitor implements EmbeddedServerMonitor {
+
+	private static final String CONTEXT_TAG = "context";
+
+	private final MeterRegistry meterRegistry;
+
+	private final Timer groupCommitTimer;
+	private final DistributionSummary groupCommitPublishCallsSummary;
+	private final DistributionSummary groupCommitEventsSummary;
+	private final Timer snapshotsWrittenTimer;
+	private final DistributionSummary snapshotsWrittenSummary;
+	private final Counter snapshotWriteFailedCounter;
+	private final Counter snapshotSupersededCounter;
+	private final Counter snapshotDroppedCounter;
+	private final AtomicInteger snapshotQueueSize;
+	private final ConcurrentMap<String, AtomicInteger> asyncCommandQueueDepths = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<String, AtomicInteger> commandHandlerCounts = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<String, AtomicInteger> queryHandlerCounts = new ConcurrentHashMap<>( );
+
+	public MicrometerEmbeddedServerMonitor( final MeterRegistry meterRegistry ) {
+		this.meterRegistry = meterRegistry;
+		groupCommitTimer = meterRegistry.timer( "embeddedserver.groupcommit.duration" );
+		groupCommitPublishCallsSummary = meterRegistry.summary( "embeddedserver.groupcommit.publishcalls" );
+		groupCommitEventsSummary = meterRegistry.summary( "embeddedserver.groupcommit.events" );
+		snapshotsWrittenTimer = meterRegistry.timer( "embeddedserver.snapshot.written.duration" );
+		snapshotsWrittenSummary = meterRegistry.summary( "embeddedserver.snapshot.written.batch" );
+		snapshotWriteFailedCounter = meterRegistry.counter( "embeddedserver.snapshot.failed" );
+		snapshotSupersededCounter = meterRegistry.counter( "embeddedserver.snapshot.superseded" );
+		snapshotDroppedCounter = meterRegistry.counter( "embeddedserver.snapshot.dropped" );
+		snapshotQueueSize = meterRegistry.gauge( "embeddedserver.snapshot.queue.size", new AtomicInteger( ) );
+	}
+
+	@Override
+	public void eventsAppended( final String originContext, final int batchSize, final long durationNanos ) {
+		meterRegistry.timer( "embeddedserver.events.appended.duration", CONTEXT_TAG, originContext ).record( durationNanos, TimeUnit.NANOSECONDS );
+		meterRegistry.summary( "embeddedserver.events.appended.batch", CONTEXT_TAG, originContext ).record( batchSize );
+	}
+
+	@Override
+	public void groupCommitted( final int publishCalls, final int events, final long durationNanos ) {
+		groupCommitTimer.record( durationNanos, TimeUnit.NANOSECONDS );
+		groupCommitPublishCallsSummary.record( publishCalls );
+		groupCommitEventsSummary.record( events );
+	}
+
+	@Override
+	public void eventsFetched( final String originContext, final int rows, final long durationNanos ) {
+		meterRegistry.timer( "embeddedserver.events.fetched.duration", CONTEXT_TAG, originContext ).record( durationNanos, TimeUnit.NANOSECONDS );
+		meterRegistry.summary( "embeddedserver.events.fetched.rows", CONTEXT_TAG, originContext ).record( rows );
+	}
+
+	@Override
+	public void catchUpEventsFetched( final String originContext, final int rows, final long durationNanos ) {
+		meterRegistry.timer( "embeddedserver.catchup.fetched.duration", CONTEXT_TAG, originContext ).record( durationNanos, TimeUnit.NANOSECONDS );
+		meterRegistry.summary( "embeddedserver.catchup.fetched.rows", CONTEXT_TAG, originContext ).record( rows );
+	}
+
+	@Override
+	public void aggregateEventsRead( final String originContext, final int rows, final long durationNanos ) {
+		meterRegistry.timer( "embeddedserver.aggregate.read.duration", CONTEXT_TAG, originContext ).record( durationNanos, TimeUnit.NANOSECONDS );
+		meterRegistry.summary( "embeddedserver.aggregate.read.rows", CONTEXT_TAG, originContext ).record( rows );
+	}
+
+	@Override
+	public void snapshotRead( final String originContext, final long durationNanos ) {
+		meterRegistry.timer( "embeddedserver.snapshot.read.duration", CONTEXT_TAG, originContext ).record( durationNanos, TimeUnit.NANOSECONDS );
+	}
+
+	@Override
+	public void snapshotsWritten( final int batchSize, final long durationNanos ) {
+		snapshotsWrittenTimer.record( durationNanos, TimeUnit.NANOSECONDS );
+		snapshotsWrittenSummary.record( batchSize );
+	}
+
+	@Override
+	public void snapshotWriteFailed( ) {
+		snapshotWriteFailedCounter.increment( );
+	}
+
+	@Override
+	public void snapshotSuperseded( ) {
+		snapshotSupersededCounter.increment( );
+	}
+
+	@Override
+	public void snapshotDropped( ) {
+		snapshotDroppedCounter.increment( );
+	}
+
+	@Override
+	public void snapshotQueueSizeChanged( final int queueSize ) {
+		snapshotQueueSize.set( queueSize );
+	}
+
+	@Override
+	public void deserializedEventCacheHit( final String context ) {
+		meterRegistry.counter( "embeddedserver.deserializedeventcache.hits", CONTEXT_TAG, context ).increment( );
+	}
+
+	@Override
+	public void deserializedEventCacheMiss( final String context ) {
+		meterRegistry.counter( "embeddedserver.deserializedeventcache.misses", CONTEXT_TAG, context ).increment( );
+	}
+
+	@Override
+	public void asyncCommandQueued( final String targetContext, final int queueDepth ) {
+		gauge( asyncCommandQueueDepths, "embeddedserver.asynccommand.queue.depth", CONTEXT_TAG, targetContext ).set( queueDepth );
+	}
+
+	@Override
+	public void asyncCommandStarted( final String targetContext, final long waitTimeNanos ) {
+		meterRegistry.timer( "embeddedserver.asynccommand.wait", CONTEXT_TAG, targetContext ).record( waitTimeNanos, TimeUnit.NANOSECONDS );
+	}
+
+	@Override
+	public void asyncCommandRejected( final String targetContext ) {
+		meterRegistry.counter( "embeddedserver.asynccommand.rejected", CONTEXT_TAG, targetContext ).increment( );
+	}
+
+	@Override
+	public void commandHandlersChanged( final String commandName, final int commandBusCount ) {
+		gauge( commandHandlerCounts, "embeddedserver.command.handlers", "command", commandName ).set( commandBusCount );
+	}
+
+	@Override
+	public void queryHandlersChanged( final String queryName, final int queryBusCount ) {
+		gauge( queryHandlerCounts, "embeddedserver.query.handlers", "query", queryName ).set( queryBusCount );
+	}
+
+	/**
+	 * Returns the value of the gauge with the given tag, which is registered on first use. The values are kept in the
+	 * given map, as the registry only holds a weak reference to them.
+	 */
+	private AtomicInteger gauge( final ConcurrentMap<String, AtomicInteger> values, final String name, final String tagKey, final String tagValue ) {
+		return values.computeIfAbsent( tagValue, key -> meterRegistry.gauge( name, Tags.of( tagKey, key ), new AtomicInteger( ) ) );
+	}
+}
@@ -0,0 +1,78 @@
+package de.libutzki.axon.embeddedservermicrometer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.messaging.Message;
+import org.axonframework.monitoring.MessageMonitor;
+import org.axonframework.queryhandling.QueryMessage;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * The {@link MicrometerMessageMonitor} records the duration of the messages dispatched by the embedded server in a
+ * Micrometer timer. The timer is tagged with the originating and the target context, which the embedded server adds to
+ * the meta data of the monitored messages, the name of the message and the outcome ({@code success}, {@code failure}
+ * or {@code ignored}). The name of a command or query is the name it is routed by, which may differ from its payload
+ * type. Other messages (i.e. events) are named by the fully qualified name of their payload type.
+ *
+ * @author oliver.libutzki
+ *
+ */
+public final class MicrometerMessageMonitor implements MessageMonitor<Message<?>> {
+
+	private final MeterRegistry meterRegistry;
+	private final String meterName;
+
+	public MicrometerMessageMonitor( final MeterRegistry meterRegistry, final String meterName ) {
+		this.meterRegistry = meterRegistry;
+		this.meterName = meterName;
+	}
+
+	@Override
+	public MonitorCallback onMessageIngested( final Message<?> message ) {
+		final long start = System.nanoTime( );
+		final Tags tags = Tags.of(
+				"origin", contextName( message, EmbeddedServerMonitor.ORIGIN_CONTEXT ),
+				"target", contextName( message, EmbeddedServerMonitor.TARGET_CONTEXT ),
+				"messageName", messageName( message ) );
+		return new MonitorCallback( ) {
+
+			@Override
+			public void reportSuccess( ) {
+				record( "success" );
+			}
+
+			@Override
+			public void reportFailure( final Throwable cause ) {
+				record( "failure" );
+			}
+
+			@Override
+			public void reportIgnored( ) {
+				record( "ignored" );
+			}
+
+			private void record( final String outcome ) {
+				meterRegistry.timer( meterName, tags.and( "outcome", outcome ) ).record( System.nanoTime( ) - start, TimeUnit.NANOSECONDS );
+			}
+		};
+	}
+
+	private static String messageName( final Message<?> message ) {
+		if ( message instanceof CommandMessage ) {
+			return ( ( CommandMessage<?> ) message ).getCommandName( );
+		}
+		if ( message instanceof QueryMessage ) {
+			return ( ( QueryMessage<?, ?> ) message ).getQueryName( );
+		}
+		return message.getPayloadType( ).getName( );
+	}
+
+	private static String contextName( final Message<?> message, final String key ) {
+		final Object contextName = message.getMetaData( ).get( key );
+		return contextName == null ? EmbeddedServerMonitor.UNKNOWN_CONTEXT : contextName.toString( );
+	}
+}
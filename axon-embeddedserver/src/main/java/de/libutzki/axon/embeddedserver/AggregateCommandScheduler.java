@@ -0,0 +1,173 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link AggregateCommandScheduler} executes the commands of an aggregate one after another, while the commands of
+ * different aggregates are still executed in parallel. This way concurrent commands of a hot aggregate do not collide on
+ * the sequence numbers of their events.<br>
+ * <br>
+ * A command whose aggregate is idle is executed on the caller's thread. Otherwise it is queued and executed on a thread
+ * of the scheduler as soon as the preceding command of the aggregate has been completed. Note that a command handler
+ * must not wait for the result of another command of its own aggregate, as this command can't be executed before the
+ * handler has finished.<br>
+ * <br>
+ * The number of queued commands per aggregate and the number of threads are bounded. A command which exceeds the queue
+ * of its aggregate is rejected. If a command has not been completed within the completion timeout (e.g. as its callback
+ * got lost), the next command of the aggregate is executed anyway.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class AggregateCommandScheduler {
+
+	private final ConcurrentMap<String, Deque<Runnable>> queuedCommands = new ConcurrentHashMap<>( );
+	private final LongAdder queuedCount = new LongAdder( );
+	private final AtomicInteger threadCount = new AtomicInteger( );
+	private final int maxQueuedCommands;
+	private final long completionTimeout;
+	private final ThreadPoolExecutor executorService;
+	private final ScheduledExecutorService timeoutService = Executors.newSingleThreadScheduledExecutor( runnable -> {
+		final Thread thread = new Thread( runnable, "EmbeddedServerAggregateSchedulerTimeout" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/**
+	 * @param maxQueuedCommands
+	 *                          The maximum number of commands which are queued behind the running command of an aggregate.
+	 * @param completionTimeout
+	 *                          The time in milliseconds after which the next command of an aggregate is executed, even
+	 *                          if the preceding command has not been completed yet.
+	 */
+	AggregateCommandScheduler( final int poolSize, final int maxQueuedCommands, final long completionTimeout ) {
+		this.maxQueuedCommands = maxQueuedCommands;
+		this.completionTimeout = completionTimeout;
+		// Each aggregate has at most one command in the queue of the executor, which is the next one of its queue.
+		this.executorService = new ThreadPoolExecutor( poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>( ), runnable -> {
+			final Thread thread = new Thread( runnable, "EmbeddedServerAggregateScheduler-" + threadCount.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		}, ( runnable, executor ) -> runnable.run( ) ); // Commands which are dequeued during the shutdown are executed on the completing thread.
+		this.executorService.allowCoreThreadTimeOut( true );
+	}
+
+	/**
+	 * Executes the given {@code command} as soon as all preceding commands of the aggregate have been completed. The
+	 * command is passed a {@link Runnable} which it has to run as soon as it has been completed.
+	 *
+	 * @return {@code false} if the command has been rejected, as the queue of the aggregate is full.
+	 */
+	boolean schedule( final String aggregateIdentifier, final Consumer<Runnable> command ) {
+		final Runnable task = ( ) -> {
+			final AtomicBoolean completed = new AtomicBoolean( );
+			final ScheduledFuture<?>[] timeout = new ScheduledFuture<?>[1];
+			final Runnable completion = ( ) -> {
+				if ( completed.compareAndSet( false, true ) ) {
+					if ( timeout[0] != null ) {
+						timeout[0].cancel( false );
+					}
+					executeNext( aggregateIdentifier );
+				}
+			};
+			try {
+				timeout[0] = timeoutService.schedule( ( ) -> {
+					if ( !completed.get( ) ) {
+						log.warn( "A command of aggregate [{}] has not been completed within {} ms. Executing the next command of the aggregate.", aggregateIdentifier,
+								completionTimeout );
+						completion.run( );
+					}
+				}, completionTimeout, TimeUnit.MILLISECONDS );
+			} catch ( final RejectedExecutionException e ) {
+				// The scheduler has been shut down, the command is executed without a timeout.
+			}
+			try {
+				command.accept( completion );
+			} catch ( final RuntimeException e ) {
+				completion.run( );
+				throw e;
+			}
+		};
+
+		final AtomicBoolean idle = new AtomicBoolean( );
+		final AtomicBoolean rejected = new AtomicBoolean( );
+		queuedCommands.compute( aggregateIdentifier, ( k, queue ) -> {
+			if ( queue == null ) {
+				idle.set( true );
+				return new ArrayDeque<>( );
+			}
+			if ( queue.size( ) >= maxQueuedCommands ) {
+				rejected.set( true );
+			} else {
+				queue.add( task );
+			}
+			return queue;
+		} );
+		if ( rejected.get( ) ) {
+			return false;
+		}
+		if ( idle.get( ) ) {
+			task.run( );
+		} else {
+			queuedCount.increment( );
+		}
+		return true;
+	}
+
+	long getQueuedCount( ) {
+		return queuedCount.sum( );
+	}
+
+	/**
+	 * Waits for the queued commands and stops the threads.
+	 */
+	void shutDown( ) {
+		executorService.shutdown( );
+		try {
+			if ( !executorService.awaitTermination( 30, TimeUnit.SECONDS ) ) {
+				log.warn( "The queued commands have not been executed within 30 seconds." );
+			}
+		} catch ( final InterruptedException e ) {
+			log.warn( "Interrupted while waiting for the aggregate command scheduler to finish.", e );
+			Thread.currentThread( ).interrupt( );
+		}
+		timeoutService.shutdownNow( );
+		log.debug( "Aggregate command scheduler: {} commands have been queued behind a command of the same aggregate.", getQueuedCount( ) );
+	}
+
+	private void executeNext( final String aggregateIdentifier ) {
+		final Runnable[] next = new Runnable[1];
+		queuedCommands.computeIfPresent( aggregateIdentifier, ( k, queue ) -> {
+			next[0] = queue.poll( );
+			return next[0] == null ? null : queue;
+		} );
+		if ( next[0] != null ) {
+			// The next command is executed on another thread, so that the stack of the completing thread does not grow with
+			// each queued command.
+			executorService.execute( ( ) -> {
+				try {
+					next[0].run( );
+				} catch ( final RuntimeException e ) {
+					log.warn( "Failed to dispatch a queued command of aggregate [{}].", aggregateIdentifier, e );
+				}
+			} );
+		}
+	}
+}
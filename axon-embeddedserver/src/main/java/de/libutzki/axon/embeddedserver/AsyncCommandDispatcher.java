@@ -0,0 +1,129 @@
+package de.libutzki.axon.embeddedserver;
+
+import static org.axonframework.commandhandling.GenericCommandResultMessage.asCommandResultMessage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandCallback;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.distributed.CommandDispatchException;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link AsyncCommandDispatcher} dispatches commands to the {@link CommandBus} of the target context on a thread
+ * pool which belongs to that context. This way a slow command handler in one context does not block the threads of the
+ * sending context, and the contexts do not compete for the same handler threads.<br>
+ * <br>
+ * Each pool has a bounded queue. If the queue of the target context is full, the command is rejected and the rejection is
+ * reported to the callback as command result. Commands which are sent by a handler thread of any context are dispatched
+ * on the current thread. Otherwise a handler of context A which waits for the result of a command to context B, whose
+ * handler waits for a command to context A, might wait for a thread of the pool it occupies itself.<br>
+ * <br>
+ * The queue depth, the time the commands have been waiting in the queue and the rejected commands are reported to the
+ * {@link EmbeddedServerMonitor} per context. The pool of a command bus is shut down when the command bus is removed.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class AsyncCommandDispatcher {
+
+	private static final ThreadLocal<ContextExecutor> CURRENT_EXECUTOR = new ThreadLocal<>( );
+
+	private final ConcurrentMap<CommandBus, ContextExecutor> executors = new ConcurrentHashMap<>( );
+	private final AtomicInteger contextCount = new AtomicInteger( );
+	private final int poolSize;
+	private final int queueCapacity;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+
+	AsyncCommandDispatcher( final int poolSize, final int queueCapacity, final EmbeddedServerMonitor embeddedServerMonitor ) {
+		if ( poolSize <= 0 || queueCapacity <= 0 ) {
+			throw new IllegalArgumentException( "The pool size and the queue capacity of the command dispatcher have to be positive." );
+		}
+		this.poolSize = poolSize;
+		this.queueCapacity = queueCapacity;
+		this.embeddedServerMonitor = embeddedServerMonitor;
+	}
+
+	/**
+	 * Dispatches the given command to the given command bus on the thread pool of the command bus, unless the current
+	 * thread is a handler thread itself. This method never blocks.
+	 *
+	 * @param contextName
+	 *                    The name of the target context, which is passed to the {@link EmbeddedServerMonitor}.
+	 */
+	<C, R> void dispatch( final CommandBus commandBus, final String contextName, final CommandMessage<C> command, final CommandCallback<? super C, ? super R> callback ) {
+		if ( CURRENT_EXECUTOR.get( ) != null ) {
+			commandBus.dispatch( command, callback );
+			return;
+		}
+		final ContextExecutor executor = executors.computeIfAbsent( commandBus, k -> new ContextExecutor( contextCount.incrementAndGet( ) ) );
+		final long queuedAt = System.nanoTime( );
+		try {
+			executor.execute( ( ) -> {
+				embeddedServerMonitor.asyncCommandStarted( contextName, System.nanoTime( ) - queuedAt );
+				commandBus.dispatch( command, callback );
+			} );
+			embeddedServerMonitor.asyncCommandQueued( contextName, executor.getQueue( ).size( ) );
+		} catch ( final RejectedExecutionException e ) {
+			embeddedServerMonitor.asyncCommandRejected( contextName );
+			log.debug( "Rejecting command [{}] as the queue of its context is full or the context has been removed.", command.getCommandName( ) );
+			callback.onResult( command, asCommandResultMessage( new CommandDispatchException( String.format( "The command %s has been rejected as the queue of its context is full.", command.getCommandName( ) ) ) ) );
+		}
+	}
+
+	/**
+	 * Stops the thread pool of the given command bus after its queued commands have been executed. Commands which are
+	 * dispatched to the command bus afterwards get a new pool.
+	 */
+	void remove( final CommandBus commandBus ) {
+		final ContextExecutor executor = executors.remove( commandBus );
+		if ( executor != null ) {
+			executor.shutdown( );
+		}
+	}
+
+	/**
+	 * Executes the queued commands and stops the thread pools.
+	 */
+	void shutDown( ) {
+		executors.values( ).forEach( ThreadPoolExecutor::shutdown );
+		executors.values( ).forEach( executor -> {
+			try {
+				if ( !executor.awaitTermination( 30, TimeUnit.SECONDS ) ) {
+					log.warn( "The commands of {} have not been executed within 30 seconds.", executor.name );
+				}
+			} catch ( final InterruptedException e ) {
+				log.warn( "Interrupted while waiting for the command dispatcher to finish.", e );
+				Thread.currentThread( ).interrupt( );
+			}
+		} );
+	}
+
+	private final class ContextExecutor extends ThreadPoolExecutor {
+
+		private final String name;
+		private final AtomicInteger threadCount = new AtomicInteger( );
+
+		ContextExecutor( final int contextNumber ) {
+			super( poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( queueCapacity ), new AbortPolicy( ) );
+			this.name = "EmbeddedServerCommandDispatcher-" + contextNumber;
+			setThreadFactory( runnable -> {
+				final Thread thread = new Thread( ( ) -> {
+					CURRENT_EXECUTOR.set( this );
+					runnable.run( );
+				}, name + "-" + threadCount.incrementAndGet( ) );
+				thread.setDaemon( true );
+				return thread;
+			} );
+		}
+	}
+}
@@ -1,14 +1,27 @@
 package de.libutzki.axon.embeddedserver;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.sql.DataSource;
 
+import org.axonframework.commandhandling.distributed.AnnotationRoutingStrategy;
+import org.axonframework.commandhandling.distributed.RoutingStrategy;
+import org.axonframework.commandhandling.distributed.UnresolvedRoutingKeyPolicy;
 import org.axonframework.common.jdbc.PersistenceExceptionResolver;
 import org.axonframework.common.jpa.EntityManagerProvider;
+import org.axonframework.common.transaction.TransactionManager;
 import org.axonframework.eventsourcing.eventstore.EventStore;
 import org.axonframework.eventsourcing.eventstore.jpa.SQLErrorCodesResolver;
+import org.axonframework.messaging.Message;
+import org.axonframework.monitoring.MessageMonitor;
+import org.axonframework.spring.config.AxonConfiguration;
 import org.axonframework.springboot.util.jpa.ContainerManagedEntityManagerProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -25,9 +38,90 @@ import org.springframework.context.annotation.PropertySource;
 @PropertySource( "classpath:/de/libutzki/axon/embeddedserver/embeddedserver.properties" )
 public class AxonEmbeddedServerConfiguration {
 
+	@Bean( destroyMethod = "shutDown" )
+	public EmbeddedServer embeddedServer( final EmbeddedServerEventStorageEngine eventStorageEngine, final EventStore eventStore, final TransactionManager transactionManager,
+			final QueryRoutingPolicy queryRoutingPolicy, @Qualifier( "embeddedServerCommandRoutingStrategy" ) final RoutingStrategy commandRoutingStrategy,
+			final AxonConfiguration axonConfiguration, final EmbeddedServerMonitor embeddedServerMonitor,
+			@Qualifier( "embeddedServerCommandMonitor" ) final ObjectProvider<MessageMonitor<?>> commandMonitor,
+			@Qualifier( "embeddedServerQueryMonitor" ) final ObjectProvider<MessageMonitor<?>> queryMonitor,
+			@Qualifier( "embeddedServerScatterGatherMonitor" ) final ObjectProvider<MessageMonitor<?>> scatterGatherMonitor,
+			@Qualifier( "embeddedServerEventMonitor" ) final ObjectProvider<MessageMonitor<?>> eventMonitor,
+			@Value( "${axon.embeddedserver.tail-cache.max-events}" ) final int tailCacheMaxEvents,
+			@Value( "${axon.embeddedserver.tail-cache.max-bytes}" ) final long tailCacheMaxBytes,
+			@Value( "${axon.embeddedserver.catch-up.regions}" ) final int catchUpRegions,
+			@Value( "${axon.embeddedserver.catch-up.max-events}" ) final int catchUpMaxEvents,
+			@Value( "${axon.embeddedserver.catch-up.batch-size}" ) final int catchUpBatchSize,
+			@Value( "${axon.embeddedserver.pass-through.enabled}" ) final boolean passThroughEnabled,
+			@Value( "${axon.embeddedserver.snapshot-writer.queue-capacity}" ) final int snapshotWriterQueueCapacity,
+			@Value( "${axon.embeddedserver.snapshot-writer.batch-size}" ) final int snapshotWriterBatchSize,
+			@Value( "${axon.embeddedserver.group-commit.enabled}" ) final boolean groupCommitEnabled,
+			@Value( "${axon.embeddedserver.group-commit.window}" ) final long groupCommitWindow,
+			@Value( "${axon.embeddedserver.group-commit.max-batch-size}" ) final int groupCommitMaxBatchSize,
+			@Value( "${axon.embeddedserver.async-command-dispatch.enabled}" ) final boolean asyncCommandDispatchEnabled,
+			@Value( "${axon.embeddedserver.async-command-dispatch.pool-size}" ) final int asyncCommandDispatchPoolSize,
+			@Value( "${axon.embeddedserver.async-command-dispatch.queue-capacity}" ) final int asyncCommandDispatchQueueCapacity,
+			@Value( "${axon.embeddedserver.scatter-gather.pool-size}" ) final int scatterGatherPoolSize,
+			@Value( "${axon.embeddedserver.scatter-gather.queue-capacity}" ) final int scatterGatherQueueCapacity,
+			@Value( "${axon.embeddedserver.aggregate-command-scheduling.enabled}" ) final boolean aggregateCommandSchedulingEnabled,
+			@Value( "${axon.embeddedserver.aggregate-command-scheduling.pool-size}" ) final int aggregateCommandSchedulingPoolSize,
+			@Value( "${axon.embeddedserver.aggregate-command-scheduling.max-queued-commands}" ) final int aggregateCommandSchedulingMaxQueuedCommands,
+			@Value( "${axon.embeddedserver.aggregate-command-scheduling.completion-timeout}" ) final long aggregateCommandSchedulingCompletionTimeout ) {
+		final List<CatchUpRegion> catchUpRegionList = IntStream.range( 0, catchUpRegions )
+				.mapToObj( i -> new CatchUpRegion( eventStorageEngine, catchUpMaxEvents, catchUpBatchSize, embeddedServerMonitor ) )
+				.collect( Collectors.toList( ) );
+		final EventTailCache eventTailCache = new EventTailCache( eventStorageEngine, tailCacheMaxEvents, tailCacheMaxBytes, passThroughEnabled, axonConfiguration.eventSerializer( ),
+				catchUpRegionList, embeddedServerMonitor );
+		final SnapshotWriter snapshotWriter = new SnapshotWriter( eventStorageEngine, transactionManager, snapshotWriterQueueCapacity, snapshotWriterBatchSize, embeddedServerMonitor );
+		final GroupCommitPublisher groupCommitPublisher = groupCommitEnabled ? new GroupCommitPublisher( eventStore, transactionManager, groupCommitWindow, groupCommitMaxBatchSize, embeddedServerMonitor ) : null;
+		final AsyncCommandDispatcher asyncCommandDispatcher = asyncCommandDispatchEnabled ? new AsyncCommandDispatcher( asyncCommandDispatchPoolSize, asyncCommandDispatchQueueCapacity, embeddedServerMonitor ) : null;
+		final ScatterGatherDispatcher scatterGatherDispatcher = new ScatterGatherDispatcher( scatterGatherPoolSize, scatterGatherQueueCapacity );
+		final AggregateCommandScheduler aggregateCommandScheduler = aggregateCommandSchedulingEnabled
+				? new AggregateCommandScheduler( aggregateCommandSchedulingPoolSize, aggregateCommandSchedulingMaxQueuedCommands, aggregateCommandSchedulingCompletionTimeout )
+				: null;
+		return new DefaultEmbeddedServer( eventStorageEngine, eventStore, transactionManager, eventTailCache, snapshotWriter, groupCommitPublisher, asyncCommandDispatcher, scatterGatherDispatcher, queryRoutingPolicy, commandRoutingStrategy,
+				aggregateCommandScheduler,
+				messageMonitor( commandMonitor, axonConfiguration, "embeddedServerCommands" ),
+				messageMonitor( queryMonitor, axonConfiguration, "embeddedServerQueries" ),
+				messageMonitor( scatterGatherMonitor, axonConfiguration, "embeddedServerScatterGatherQueries" ),
+				messageMonitor( eventMonitor, axonConfiguration, "embeddedServerEvents" ),
+				embeddedServerMonitor );
+	}
+
+	// Axon's metrics modules only provide monitors for the component types they know (e.g. CommandBus), so they return a
+	// NoOpMessageMonitor for the embedded server. Thus an explicitly registered monitor bean takes precedence.
+	@SuppressWarnings( "unchecked" )
+	private static <T extends Message<?>> MessageMonitor<? super T> messageMonitor( final ObjectProvider<MessageMonitor<?>> explicitMonitor, final AxonConfiguration axonConfiguration,
+			final String componentName ) {
+		final MessageMonitor<?> messageMonitor = explicitMonitor.getIfAvailable( );
+		return messageMonitor != null ? ( MessageMonitor<? super T> ) messageMonitor : axonConfiguration.messageMonitor( EmbeddedServer.class, componentName );
+	}
+
+	@ConditionalOnMissingBean
+	@Bean
+	public EmbeddedServerMonitor embeddedServerMonitor( ) {
+		return EmbeddedServerMonitor.NO_OP;
+	}
+
+	// Commands without a resolvable routing key (e.g. commands which do not target an aggregate) are spread randomly.
+	@ConditionalOnMissingBean( name = "embeddedServerCommandRoutingStrategy" )
+	@Bean
+	public RoutingStrategy embeddedServerCommandRoutingStrategy( ) {
+		return new AnnotationRoutingStrategy( UnresolvedRoutingKeyPolicy.RANDOM_KEY );
+	}
+
+	@ConditionalOnMissingBean
 	@Bean
-	public EmbeddedServer embeddedServer( final EmbeddedServerJpaEventStorageEngine eventStorageEngine, final EventStore eventStore ) {
-		return new DefaultEmbeddedServer( eventStorageEngine, eventStore );
+	public QueryRoutingPolicy queryRoutingPolicy( @Value( "${axon.embeddedserver.query-routing.policy}" ) final String policy ) {
+		switch ( policy ) {
+			case "least-outstanding-requests":
+				return QueryRoutingPolicy.leastOutstandingRequests( );
+			case "round-robin":
+				return QueryRoutingPolicy.roundRobin( );
+			case "locality-preferred":
+				return QueryRoutingPolicy.localityPreferred( QueryRoutingPolicy.leastOutstandingRequests( ) );
+			default:
+				throw new IllegalArgumentException( String.format( "Unknown query routing policy '%s'. Use least-outstanding-requests, round-robin or locality-preferred.", policy ) );
+		}
 	}
 
 	// The entityManagerProvider and persistenceExceptionResolver would usually be initialized in the JpaAutoConfiguration,
@@ -0,0 +1,150 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+
+/**
+ * A {@link CatchUpRegion} is a window of events which lies before the window of the {@link EventTailCache}. It is read
+ * from the storage engine by a single reader on behalf of all streams which have joined the region, so that streams at
+ * roughly the same position (e.g. processors replaying the event store) share a single cursor instead of querying the
+ * storage engine on their own.<br>
+ * <br>
+ * Each stream keeps its own cursor into the region. The leading stream fetches the next batch as soon as it has reached
+ * the end of the region. The region is bounded by the number of events, so a stream which falls behind the region is
+ * evicted and has to read from the storage engine on its own. A region which is not used by any stream is moved to the
+ * position of the next stream which is not able to join any other region.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class CatchUpRegion {
+
+	private final EmbeddedServerEventStorageEngine eventStorageEngine;
+	private final int maxEvents;
+	private final int batchSize;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+	private final TrackedEventData<?>[] entries;
+	private long firstSequence;
+	private long nextSequence;
+	private boolean positioned;
+	private TrackingToken baseToken;
+
+	private final Object fetchLock = new Object( );
+	private TrackingToken readToken;
+	private int consumers;
+
+	CatchUpRegion( final EmbeddedServerEventStorageEngine eventStorageEngine, final int maxEvents, final int batchSize, final EmbeddedServerMonitor embeddedServerMonitor ) {
+		if ( maxEvents <= 0 || batchSize <= 0 ) {
+			throw new IllegalArgumentException( "A catch-up region has to hold and fetch at least one event." );
+		}
+		this.eventStorageEngine = eventStorageEngine;
+		this.maxEvents = maxEvents;
+		this.batchSize = Math.min( batchSize, maxEvents );
+		this.embeddedServerMonitor = embeddedServerMonitor;
+		this.entries = new TrackedEventData<?>[maxEvents];
+	}
+
+	/**
+	 * Joins the region if it covers the given token, which means the token lies between the base token of the region and
+	 * the token of the last fetched event. A region which has never been moved covers no token. If {@code moveIfIdle} is
+	 * set and the region neither covers the token nor is used by any other stream, the region is moved to the given
+	 * token. Returns the sequence of the first entry the stream may continue with or {@code -1} if the stream has not
+	 * joined the region.
+	 */
+	long join( final TrackingToken trackingToken, final boolean moveIfIdle ) {
+		synchronized ( fetchLock ) {
+			lock.writeLock( ).lock( );
+			try {
+				final boolean coversToken = positioned && EventTailCache.covers( trackingToken, baseToken ) && EventTailCache.covers( readToken, trackingToken );
+				if ( moveIfIdle && consumers == 0 && !coversToken ) {
+					while ( firstSequence < nextSequence ) {
+						entries[( int ) ( firstSequence++ % maxEvents )] = null;
+					}
+					positioned = true;
+					baseToken = trackingToken;
+					readToken = trackingToken;
+				} else if ( !coversToken ) {
+					return -1;
+				}
+				consumers++;
+				return firstSequence;
+			} finally {
+				lock.writeLock( ).unlock( );
+			}
+		}
+	}
+
+	/**
+	 * Leaves the region, which may be moved afterwards if it is not used by any other stream.
+	 */
+	void leave( ) {
+		synchronized ( fetchLock ) {
+			consumers--;
+		}
+	}
+
+	/**
+	 * Returns the entry with the given sequence, {@code null} if it has not been fetched yet or throws an
+	 * {@link EventTailCache.EvictedException} if it has already been evicted.
+	 */
+	TrackedEventData<?> entryAt( final long sequence ) {
+		lock.readLock( ).lock( );
+		try {
+			if ( sequence < firstSequence ) {
+				throw EventTailCache.EvictedException.INSTANCE;
+			}
+			return sequence < nextSequence ? entries[( int ) ( sequence % maxEvents )] : null;
+		} finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * Fetches the next batch if the entry with the given sequence has not been fetched yet. If another stream is fetching
+	 * at the same time, this stream waits for it and uses its result instead. Returns whether the entry is available
+	 * afterwards. The fetch is reported with the given context of the fetching stream.
+	 */
+	boolean fetch( final long sequence, final String context ) {
+		synchronized ( fetchLock ) {
+			if ( sequence < nextSequence ) {
+				return true;
+			}
+			final long start = System.nanoTime( );
+			int rows = 0;
+			try ( Stream<? extends TrackedEventData<?>> eventDataStream = eventStorageEngine.readEventData( readToken, false ) ) {
+				final Iterator<? extends TrackedEventData<?>> iterator = eventDataStream.iterator( );
+				while ( rows < batchSize && iterator.hasNext( ) ) {
+					final TrackedEventData<?> eventData = iterator.next( );
+					readToken = eventData.trackingToken( );
+					append( eventData );
+					rows++;
+				}
+			}
+			embeddedServerMonitor.catchUpEventsFetched( context, rows, System.nanoTime( ) - start );
+			return rows > 0;
+		}
+	}
+
+	private void append( final TrackedEventData<?> eventData ) {
+		lock.writeLock( ).lock( );
+		try {
+			if ( nextSequence - firstSequence >= maxEvents ) {
+				final int index = ( int ) ( firstSequence % maxEvents );
+				baseToken = entries[index].trackingToken( );
+				entries[index] = null;
+				firstSequence++;
+			}
+			entries[( int ) ( nextSequence % maxEvents )] = eventData;
+			nextSequence++;
+		} finally {
+			lock.writeLock( ).unlock( );
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.distributed.RoutingStrategy;
+import org.axonframework.common.digest.Digester;
+
+/**
+ * The {@link CommandBusRing} is a consistent hash of the {@link CommandBus CommandBusses} which are registered for a
+ * command. Like Axon's {@code ConsistentHash}, each command bus is placed on the ring several times and a routing key is
+ * owned by the next command bus on the ring. Hence every aggregate is handled by one command bus, and if a command bus
+ * joins or leaves the ring only the routing keys of the affected segments move.<br>
+ * <br>
+ * The {@link CommandBusRing} is immutable.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class CommandBusRing {
+
+	static final CommandBusRing EMPTY = new CommandBusRing( new LinkedHashMap<>( ) );
+
+	private static final int SEGMENTS_PER_COMMAND_BUS = 100;
+
+	private final Map<CommandBus, String> members;
+	private final SortedMap<String, CommandBus> ring = new TreeMap<>( );
+
+	private CommandBusRing( final Map<CommandBus, String> members ) {
+		this.members = members;
+		members.forEach( ( commandBus, memberName ) -> {
+			for ( int segment = 0; segment < SEGMENTS_PER_COMMAND_BUS; segment++ ) {
+				ring.put( Digester.md5Hex( memberName + "#" + segment ), commandBus );
+			}
+		} );
+	}
+
+	/**
+	 * Returns a ring which additionally contains the given command bus. The {@code memberName} determines the position of
+	 * the command bus on the ring and has to be unique.
+	 */
+	CommandBusRing with( final CommandBus commandBus, final String memberName ) {
+		if ( members.containsKey( commandBus ) ) {
+			return this;
+		}
+		final Map<CommandBus, String> newMembers = new LinkedHashMap<>( members );
+		newMembers.put( commandBus, memberName );
+		return new CommandBusRing( newMembers );
+	}
+
+	/**
+	 * Returns a ring which does not contain the given command bus.
+	 */
+	CommandBusRing without( final CommandBus commandBus ) {
+		if ( !members.containsKey( commandBus ) ) {
+			return this;
+		}
+		final Map<CommandBus, String> newMembers = new LinkedHashMap<>( members );
+		newMembers.remove( commandBus );
+		return new CommandBusRing( newMembers );
+	}
+
+	boolean contains( final CommandBus commandBus ) {
+		return members.containsKey( commandBus );
+	}
+
+	int size( ) {
+		return members.size( );
+	}
+
+	boolean isEmpty( ) {
+		return members.isEmpty( );
+	}
+
+	/**
+	 * Returns the command bus which owns the routing key of the given command or {@code null} if the ring is empty. The
+	 * routing key is only resolved if there are several command busses.
+	 */
+	CommandBus route( final CommandMessage<?> command, final RoutingStrategy routingStrategy ) {
+		if ( members.size( ) <= 1 ) {
+			return members.isEmpty( ) ? null : members.keySet( ).iterator( ).next( );
+		}
+		final SortedMap<String, CommandBus> tailMap = ring.tailMap( Digester.md5Hex( routingStrategy.getRoutingKey( command ) ) );
+		return tailMap.isEmpty( ) ? ring.get( ring.firstKey( ) ) : tailMap.get( tailMap.firstKey( ) );
+	}
+}
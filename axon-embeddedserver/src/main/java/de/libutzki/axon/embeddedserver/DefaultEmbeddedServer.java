@@ -2,30 +2,46 @@ package de.libutzki.axon.embeddedserver;
 
 import static org.axonframework.commandhandling.GenericCommandResultMessage.asCommandResultMessage;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.axonframework.commandhandling.CommandBus;
 import org.axonframework.commandhandling.CommandCallback;
 import org.axonframework.commandhandling.CommandMessage;
 import org.axonframework.commandhandling.NoHandlerForCommandException;
-import org.axonframework.common.ObjectUtils;
+import org.axonframework.commandhandling.distributed.CommandDispatchException;
+import org.axonframework.commandhandling.distributed.RoutingStrategy;
 import org.axonframework.common.Registration;
+import org.axonframework.common.transaction.TransactionManager;
 import org.axonframework.eventhandling.DomainEventData;
 import org.axonframework.eventhandling.DomainEventMessage;
 import org.axonframework.eventhandling.EventMessage;
 import org.axonframework.eventhandling.TrackedEventData;
 import org.axonframework.eventhandling.TrackingToken;
 import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.Message;
 import org.axonframework.messaging.MessageDispatchInterceptor;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.monitoring.MessageMonitor;
+import org.axonframework.monitoring.MessageMonitor.MonitorCallback;
+import org.axonframework.monitoring.NoOpMessageMonitor;
 import org.axonframework.queryhandling.NoHandlerForQueryException;
 import org.axonframework.queryhandling.QueryBus;
 import org.axonframework.queryhandling.QueryMessage;
@@ -43,105 +59,351 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 final class DefaultEmbeddedServer implements EmbeddedServer {
 
-	private final ConcurrentMap<String, CommandBus> commandBusMap = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<String, CommandBusRing> commandBusMap = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<CommandBus, String> commandBusNames = new ConcurrentHashMap<>( );
+	private final AtomicInteger commandBusCount = new AtomicInteger( );
 	private final ConcurrentMap<String, Set<QueryBus>> queryBusMap = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<QueryBus, QueryBusStatistics> queryBusStatistics = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<Object, String> contextNames = new ConcurrentHashMap<>( );
+	private final Set<Runnable> eventAvailabilityListeners = new CopyOnWriteArraySet<>( );
+	private final List<MessageDispatchInterceptor<? super EventMessage<?>>> dispatchInterceptors = new CopyOnWriteArrayList<>( );
 
-	private final EmbeddedServerJpaEventStorageEngine embeddedServerJpaEventStorageEngine;
+	private final EmbeddedServerEventStorageEngine eventStorageEngine;
 	private final EventStore eventStore;
+	private final TransactionManager transactionManager;
+	private final EventTailCache eventTailCache;
+	private final SnapshotWriter snapshotWriter;
+	private final GroupCommitPublisher groupCommitPublisher;
+	private final AsyncCommandDispatcher asyncCommandDispatcher;
+	private final ScatterGatherDispatcher scatterGatherDispatcher;
+	private final QueryRoutingPolicy queryRoutingPolicy;
+	private final RoutingStrategy routingStrategy;
+	private final AggregateCommandScheduler aggregateCommandScheduler;
+	private final MessageMonitor<? super CommandMessage<?>> commandMonitor;
+	private final MessageMonitor<? super QueryMessage<?, ?>> queryMonitor;
+	private final MessageMonitor<? super QueryMessage<?, ?>> scatterGatherMonitor;
+	private final MessageMonitor<? super EventMessage<?>> eventMonitor;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+	private final String transactionResourceKey = getClass( ).getName( ) + ".transaction@" + System.identityHashCode( this );
+	private final String groupCommitResourceKey = getClass( ).getName( ) + ".groupCommit@" + System.identityHashCode( this );
 
 	@Override
-	public <C, R> void dispatch( final CommandMessage<C> command, final CommandCallback<? super C, ? super R> callback ) {
-		final CommandBus commandBus = commandBusMap.get( command.getCommandName( ) );
+	public <C, R> void dispatch( final CommandMessage<C> command, final CommandCallback<? super C, ? super R> callback, final CommandBus originCommandBus ) {
+		final CommandBus commandBus = commandBusMap.getOrDefault( command.getCommandName( ), CommandBusRing.EMPTY ).route( command, routingStrategy );
+		final MonitorCallback monitorCallback = commandMonitor.onMessageIngested( monitoredMessage( commandMonitor, command, originCommandBus, commandBus ) );
+		final CommandCallback<C, R> monitoringCallback = ( commandMessage, commandResultMessage ) -> {
+			if ( commandResultMessage.isExceptional( ) ) {
+				monitorCallback.reportFailure( commandResultMessage.exceptionResult( ) );
+			} else {
+				monitorCallback.reportSuccess( );
+			}
+			callback.onResult( commandMessage, commandResultMessage );
+		};
 
-		if ( commandBus != null ) {
-			commandBus.dispatch( command, callback );
-		} else {
+		if ( commandBus == null ) {
 			final NoHandlerForCommandException noHandlerForCommandException = new NoHandlerForCommandException( command );
-			callback.onResult( command, asCommandResultMessage( noHandlerForCommandException ) );
+			monitoringCallback.onResult( command, asCommandResultMessage( noHandlerForCommandException ) );
+		} else if ( aggregateCommandScheduler != null ) {
+			final boolean scheduled = aggregateCommandScheduler.schedule( routingStrategy.getRoutingKey( command ), completion -> {
+				final CommandCallback<C, R> completingCallback = ( commandMessage, commandResultMessage ) -> {
+					completion.run( );
+					monitoringCallback.onResult( commandMessage, commandResultMessage );
+				};
+				// A queued command is dispatched on a thread of the scheduler, so a failing dispatch has to be reported to the
+				// callback instead of being thrown.
+				try {
+					dispatch( commandBus, command, completingCallback );
+				} catch ( final RuntimeException e ) {
+					completingCallback.onResult( command, asCommandResultMessage( e ) );
+				}
+			} );
+			if ( !scheduled ) {
+				monitoringCallback.onResult( command,
+						asCommandResultMessage( new CommandDispatchException( String.format( "The command %s has been rejected as the queue of its aggregate is full.", command.getCommandName( ) ) ) ) );
+			}
+		} else {
+			dispatch( commandBus, command, monitoringCallback );
+		}
+	}
+
+	private <C, R> void dispatch( final CommandBus commandBus, final CommandMessage<C> command, final CommandCallback<? super C, ? super R> callback ) {
+		if ( asyncCommandDispatcher != null ) {
+			asyncCommandDispatcher.dispatch( commandBus, contextName( commandBus ), command, callback );
+		} else {
+			commandBus.dispatch( command, callback );
 		}
 	}
 
 	@Override
 	public void registerCommandBusForCommand( final CommandBus commandBus, final String commandName ) {
-		final CommandBus previousCommandBus = commandBusMap.putIfAbsent( commandName, commandBus );
-		if ( previousCommandBus != null && previousCommandBus != commandBus ) {
-			throw new IllegalStateException( String.format( "Multiple command busses registered for command %s.", commandName ) );
-		}
+		final String memberName = commandBusNames.computeIfAbsent( commandBus, k -> "commandBus-" + commandBusCount.incrementAndGet( ) );
+		final CommandBusRing ring = commandBusMap.compute( commandName, ( k, previousRing ) -> ( previousRing == null ? CommandBusRing.EMPTY : previousRing ).with( commandBus, memberName ) );
+		embeddedServerMonitor.commandHandlersChanged( commandName, ring.size( ) );
 	}
 
 	@Override
-	public boolean unregisterCommandBusForCommand( final String commandName ) {
-		return commandBusMap.remove( commandName ) != null;
+	public boolean unregisterCommandBusForCommand( final CommandBus commandBus, final String commandName ) {
+		final AtomicBoolean removed = new AtomicBoolean( );
+		final CommandBusRing ring = commandBusMap.computeIfPresent( commandName, ( k, previousRing ) -> {
+			removed.set( previousRing.contains( commandBus ) );
+			final CommandBusRing newRing = previousRing.without( commandBus );
+			return newRing.isEmpty( ) ? null : newRing;
+		} );
+		if ( removed.get( ) ) {
+			embeddedServerMonitor.commandHandlersChanged( commandName, ring == null ? 0 : ring.size( ) );
+			if ( asyncCommandDispatcher != null && commandBusMap.values( ).stream( ).noneMatch( otherRing -> otherRing.contains( commandBus ) ) ) {
+				asyncCommandDispatcher.remove( commandBus );
+			}
+		}
+		return removed.get( );
 	}
 
 	@Override
 	public void registerQueryBusForQuery( final QueryBus queryBus, final String queryName ) {
 		final Set<QueryBus> set = queryBusMap.computeIfAbsent( queryName, k -> new CopyOnWriteArraySet<>( ) );
-		set.add( queryBus );
+		if ( set.add( queryBus ) ) {
+			embeddedServerMonitor.queryHandlersChanged( queryName, set.size( ) );
+		}
+		queryBusStatistics.computeIfAbsent( queryBus, QueryBusStatistics::new );
 	}
 
 	@Override
 	public boolean unregisterQueryBusForQuery( final QueryBus localQueryBus, final String queryName ) {
 		final Set<QueryBus> set = queryBusMap.getOrDefault( queryName, Collections.emptySet( ) );
-		return set.remove( localQueryBus );
+		final boolean removed = set.remove( localQueryBus );
+		if ( removed ) {
+			embeddedServerMonitor.queryHandlersChanged( queryName, set.size( ) );
+			// The statistics are kept as long as the query bus is registered for any other query.
+			queryBusStatistics.computeIfPresent( localQueryBus,
+					( queryBus, statistics ) -> queryBusMap.values( ).stream( ).anyMatch( otherSet -> otherSet.contains( queryBus ) ) ? statistics : null );
+		}
+		return removed;
 	}
 
 	@Override
-	public <Q, R> CompletableFuture<QueryResponseMessage<R>> query( final QueryMessage<Q, R> query ) {
+	public <Q, R> CompletableFuture<QueryResponseMessage<R>> query( final QueryMessage<Q, R> query, final QueryBus originQueryBus ) {
 		final Set<QueryBus> set = queryBusMap.getOrDefault( query.getQueryName( ), Collections.emptySet( ) );
-		if ( set.isEmpty( ) ) {
+		final List<QueryBusStatistics> candidates = set.stream( ).map( this::statistics ).collect( Collectors.toList( ) );
+		if ( candidates.isEmpty( ) ) {
 			throw new NoHandlerForQueryException( String.format( "No handler found for [%s].", query.getQueryName( ) ) );
 		}
-		if ( set.size( ) > 1 ) {
-			throw new NoHandlerForQueryException( String.format( "Multiple handlers found for [%s].", query.getQueryName( ) ) );
+
+		final QueryBusStatistics statistics = candidates.size( ) == 1 ? candidates.get( 0 ) : queryRoutingPolicy.select( query, candidates, originQueryBus );
+		final MonitorCallback monitorCallback = queryMonitor.onMessageIngested( monitoredMessage( queryMonitor, query, originQueryBus, statistics.getQueryBus( ) ) );
+		final long start = System.nanoTime( );
+		statistics.queryStarted( );
+		final CompletableFuture<QueryResponseMessage<R>> result;
+		try {
+			result = statistics.getQueryBus( ).query( query );
+		} catch ( final RuntimeException e ) {
+			statistics.queryCompleted( System.nanoTime( ) - start );
+			monitorCallback.reportFailure( e );
+			throw e;
 		}
+		result.whenComplete( ( response, exception ) -> {
+			statistics.queryCompleted( System.nanoTime( ) - start );
+			if ( exception != null ) {
+				monitorCallback.reportFailure( exception );
+			} else if ( response.isExceptional( ) ) {
+				monitorCallback.reportFailure( response.exceptionResult( ) );
+			} else {
+				monitorCallback.reportSuccess( );
+			}
+		} );
+		return result;
+	}
 
-		final QueryBus queryBus = set.iterator( ).next( );
-		return queryBus.query( query );
+	private QueryBusStatistics statistics( final QueryBus queryBus ) {
+		final QueryBusStatistics statistics = queryBusStatistics.get( queryBus );
+		// The query bus has been unregistered concurrently.
+		return statistics != null ? statistics : new QueryBusStatistics( queryBus );
 	}
 
 	@Override
-	public <Q, R> Stream<QueryResponseMessage<R>> scatterGather( final QueryMessage<Q, R> query, final long timeout, final TimeUnit unit ) {
+	public <Q, R> Stream<QueryResponseMessage<R>> scatterGather( final QueryMessage<Q, R> query, final long timeout, final TimeUnit unit, final QueryBus originQueryBus ) {
 		final Set<QueryBus> set = queryBusMap.getOrDefault( query.getQueryName( ), Collections.emptySet( ) );
+		// Each target query bus is monitored on its own, so that the monitor gets to know the target context and the failing
+		// query busses.
+		return scatterGatherDispatcher.scatterGather( set, query, timeout, unit,
+				queryBus -> scatterGatherMonitor.onMessageIngested( monitoredMessage( scatterGatherMonitor, query, originQueryBus, queryBus ) ) );
+	}
+
+	@Override
+	public void publish( final List<? extends EventMessage<?>> events, final String originContext ) {
+		final String monitoredContext = contextNameOrUnknown( originContext );
+		// The dispatch interceptors are applied here instead of in the event store, so that the tail cache gets to know the
+		// messages as they are stored.
+		final List<? extends EventMessage<?>> interceptedEvents = intercept( events );
+		final Map<?, MonitorCallback> monitorCallbacks = eventMonitor.onMessagesIngested( interceptedEvents );
+		final long start = System.nanoTime( );
+		eventTailCache.eventsPublished( interceptedEvents );
+
+		// The events are visible to tracking consumers as soon as they have been committed. If there is no unit of work the
+		// events have already been committed when publish returns.
+		if ( CurrentUnitOfWork.isStarted( ) ) {
+			final UnitOfWork<?> unitOfWork = CurrentUnitOfWork.get( );
+			unitOfWork.onRollback( u -> {
+				eventTailCache.eventsDiscarded( interceptedEvents );
+				final Throwable cause = u.getExecutionResult( ) == null ? null : u.getExecutionResult( ).getExceptionResult( );
+				monitorCallbacks.values( ).forEach( monitorCallback -> monitorCallback.reportFailure( cause ) );
+			} );
+			final UnitOfWork<?> rootUnitOfWork = unitOfWork.root( );
+			if ( groupCommitPublisher != null && !rootUnitOfWork.phase( ).isAfter( UnitOfWork.Phase.PREPARE_COMMIT ) ) {
+				// The events of the root unit of work are collected and join a group once it commits, i.e. after all of its
+				// prepare commit handlers have succeeded. If the group fails, the unit of work is rolled back.
+				List<EventMessage<?>> groupCommitEvents = rootUnitOfWork.getResource( groupCommitResourceKey );
+				if ( groupCommitEvents == null ) {
+					final List<EventMessage<?>> unitOfWorkEvents = new ArrayList<>( );
+					rootUnitOfWork.resources( ).put( groupCommitResourceKey, unitOfWorkEvents );
+					rootUnitOfWork.onCommit( u -> groupCommitPublisher.publish( unitOfWorkEvents ) );
+					groupCommitEvents = unitOfWorkEvents;
+				}
+				groupCommitEvents.addAll( interceptedEvents );
+			} else {
+				// The events are appended within the caller's unit of work and a transaction of the server which is attached to
+				// it, so that they are rolled back together with it.
+				if ( rootUnitOfWork.resources( ).putIfAbsent( transactionResourceKey, Boolean.TRUE ) == null ) {
+					rootUnitOfWork.attachTransaction( transactionManager );
+				}
+				eventStore.publish( interceptedEvents );
+			}
+			unitOfWork.afterCommit( u -> eventsCommitted( monitoredContext, interceptedEvents.size( ), start, monitorCallbacks ) );
+		} else {
+			try {
+				if ( groupCommitPublisher == null ) {
+					eventStore.publish( interceptedEvents );
+				} else {
+					groupCommitPublisher.publish( interceptedEvents );
+				}
+			} catch ( final RuntimeException e ) {
+				eventTailCache.eventsDiscarded( interceptedEvents );
+				monitorCallbacks.values( ).forEach( monitorCallback -> monitorCallback.reportFailure( e ) );
+				throw e;
+			}
+			eventsCommitted( monitoredContext, interceptedEvents.size( ), start, monitorCallbacks );
+		}
+	}
+
+	private List<? extends EventMessage<?>> intercept( final List<? extends EventMessage<?>> events ) {
+		if ( dispatchInterceptors.isEmpty( ) ) {
+			return events;
+		}
+		final List<EventMessage<?>> interceptedEvents = new ArrayList<>( events );
+		for ( final MessageDispatchInterceptor<? super EventMessage<?>> dispatchInterceptor : dispatchInterceptors ) {
+			final BiFunction<Integer, ? super EventMessage<?>, ? super EventMessage<?>> function = dispatchInterceptor.handle( interceptedEvents );
+			for ( int i = 0; i < interceptedEvents.size( ); i++ ) {
+				interceptedEvents.set( i, ( EventMessage<?> ) function.apply( i, interceptedEvents.get( i ) ) );
+			}
+		}
+		return interceptedEvents;
+	}
+
+	private void eventsCommitted( final String originContext, final int batchSize, final long start, final Map<?, MonitorCallback> monitorCallbacks ) {
+		eventTailCache.eventsCommitted( );
+		embeddedServerMonitor.eventsAppended( originContext, batchSize, System.nanoTime( ) - start );
+		monitorCallbacks.values( ).forEach( MonitorCallback::reportSuccess );
+		eventAvailabilityListeners.forEach( Runnable::run );
+	}
+
+	/**
+	 * Returns the message which is passed to the given monitor. If the monitor is not a no-op monitor, the names of the
+	 * originating and target context are added to the meta data of the message.
+	 */
+	private <M extends Message<?>> M monitoredMessage( final MessageMonitor<?> monitor, final M message, final Object originBus, final Object targetBus ) {
+		if ( monitor == NoOpMessageMonitor.INSTANCE ) {
+			return message;
+		}
+		final Map<String, String> contextMetaData = new HashMap<>( );
+		contextMetaData.put( EmbeddedServerMonitor.ORIGIN_CONTEXT, contextName( originBus ) );
+		contextMetaData.put( EmbeddedServerMonitor.TARGET_CONTEXT, contextName( targetBus ) );
+		@SuppressWarnings( "unchecked" )
+		final M monitoredMessage = ( M ) message.andMetaData( contextMetaData );
+		return monitoredMessage;
+	}
 
-		final long deadline = System.currentTimeMillis( ) + unit.toMillis( timeout );
-		return set
-				.stream( )
-				.flatMap( queryBus -> {
-					final long leftTimeout = ObjectUtils.getRemainingOfDeadline( deadline );
-					return queryBus.scatterGather( query, leftTimeout, TimeUnit.MILLISECONDS );
-				} );
+	private String contextName( final Object bus ) {
+		return bus == null ? EmbeddedServerMonitor.UNKNOWN_CONTEXT : contextNames.getOrDefault( bus, EmbeddedServerMonitor.UNKNOWN_CONTEXT );
+	}
+
+	private static String contextNameOrUnknown( final String context ) {
+		return context == null || context.isEmpty( ) ? EmbeddedServerMonitor.UNKNOWN_CONTEXT : context;
+	}
+
+	@Override
+	public void registerContextName( final CommandBus localCommandBus, final String contextName ) {
+		contextNames.put( localCommandBus, contextName );
 	}
 
 	@Override
-	public void publish( final List<? extends EventMessage<?>> events ) {
-		eventStore.publish( events );
+	public void registerContextName( final QueryBus localQueryBus, final String contextName ) {
+		contextNames.put( localQueryBus, contextName );
+	}
 
+	@Override
+	public Registration registerEventAvailabilityListener( final Runnable listener ) {
+		eventAvailabilityListeners.add( listener );
+		return ( ) -> eventAvailabilityListeners.remove( listener );
 	}
 
 	@Override
 	public Stream<? extends TrackedEventData<?>> openStream( final TrackingToken trackingToken ) {
-		return embeddedServerJpaEventStorageEngine.readEventData( trackingToken, false );
+		return openStream( trackingToken, EventStreamOptions.NONE );
 	}
 
 	@Override
-	public Stream<? extends DomainEventData<?>> readEvents( final String aggregateIdentifier ) {
-		return embeddedServerJpaEventStorageEngine.readEventData( aggregateIdentifier, 0L );
+	public Stream<? extends TrackedEventData<?>> openStream( final TrackingToken trackingToken, final EventStreamOptions options ) {
+		return eventTailCache.openStream( trackingToken, options );
 	}
 
 	@Override
-	public Stream<? extends DomainEventData<?>> readEvents( final String aggregateIdentifier, final long firstSequenceNumber ) {
-		return embeddedServerJpaEventStorageEngine.readEventData( aggregateIdentifier, firstSequenceNumber );
+	public Stream<? extends DomainEventData<?>> readEvents( final String aggregateIdentifier, final long firstSequenceNumber, final String originContext ) {
+		final String monitoredContext = contextNameOrUnknown( originContext );
+		return MonitoredStream.of( eventStorageEngine.readEventData( aggregateIdentifier, firstSequenceNumber ),
+				( rows, durationNanos ) -> embeddedServerMonitor.aggregateEventsRead( monitoredContext, rows, durationNanos ) );
 	}
 
 	@Override
-	public Stream<? extends DomainEventData<?>> readSnapshotData( final String aggregateIdentifier ) {
-		return embeddedServerJpaEventStorageEngine.readSnapshotData( aggregateIdentifier );
+	public Stream<? extends DomainEventData<?>> readSnapshotData( final String aggregateIdentifier, final String originContext ) {
+		final String monitoredContext = contextNameOrUnknown( originContext );
+		// The snapshot is read lazily. Usually only the first snapshot is taken and the stream isn't closed, so the read is
+		// reported as soon as the first snapshot has been read or the stream has turned out to be empty.
+		final long start = System.nanoTime( );
+		final AtomicBoolean reported = new AtomicBoolean( );
+		final Runnable reportSnapshotRead = ( ) -> {
+			if ( reported.compareAndSet( false, true ) ) {
+				embeddedServerMonitor.snapshotRead( monitoredContext, System.nanoTime( ) - start );
+			}
+		};
+		final Stream<? extends DomainEventData<?>> snapshotData = eventStorageEngine.readSnapshotData( aggregateIdentifier ).peek( snapshot -> reportSnapshotRead.run( ) );
+		return MonitoredStream.of( snapshotData, ( snapshots, durationNanos ) -> reportSnapshotRead.run( ) );
 	}
 
 	@Override
 	public void storeSnapshot( final DomainEventMessage<?> snapshot ) {
-		embeddedServerJpaEventStorageEngine.storeSnapshot( snapshot );
+		snapshotWriter.storeSnapshot( snapshot );
+	}
+
+	@Override
+	public Registration registerSnapshotListener( final Consumer<String> listener ) {
+		return snapshotWriter.registerSnapshotListener( listener );
+	}
+
+	/**
+	 * Executes the queued commands, cancels pending scatter-gather queries, writes the pending events and the queued snapshots
+	 * and stops the background threads.
+	 */
+	void shutDown( ) {
+		if ( aggregateCommandScheduler != null ) {
+			aggregateCommandScheduler.shutDown( );
+		}
+		if ( asyncCommandDispatcher != null ) {
+			asyncCommandDispatcher.shutDown( );
+		}
+		scatterGatherDispatcher.shutDown( );
+		if ( groupCommitPublisher != null ) {
+			groupCommitPublisher.shutDown( );
+		}
+		snapshotWriter.shutDown( );
 	}
 
 	@Override
@@ -151,7 +413,13 @@ final class DefaultEmbeddedServer implements EmbeddedServer {
 
 	@Override
 	public Registration registerDispatchInterceptor( final MessageDispatchInterceptor<? super EventMessage<?>> dispatchInterceptor ) {
-		return eventStore.registerDispatchInterceptor( dispatchInterceptor );
+		dispatchInterceptors.add( dispatchInterceptor );
+		return ( ) -> dispatchInterceptors.remove( dispatchInterceptor );
+	}
+
+	@Override
+	public EmbeddedServerMonitor getMonitor( ) {
+		return embeddedServerMonitor;
 	}
 
 }
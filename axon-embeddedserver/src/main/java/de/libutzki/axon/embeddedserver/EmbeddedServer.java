@@ -48,30 +48,74 @@ public interface EmbeddedServer {
 	 * @throws NoHandlerForCommandException
 	 *                                      If there is currently no command bus registered to handle the command.
 	 */
-	<C, R> void dispatch( CommandMessage<C> command, CommandCallback<? super C, ? super R> callback );
+	default <C, R> void dispatch( final CommandMessage<C> command, final CommandCallback<? super C, ? super R> callback ) {
+		dispatch( command, callback, null );
+	}
 
 	/**
-	 * Registers the given command bus for the given command name.
+	 * Dispatches the given command to the responsible command bus.
+	 *
+	 * @param <C>
+	 *                         The type of payload of the command.
+	 * @param <R>
+	 *                         The type of result of the command handling.
+	 * @param command
+	 *                         The command to dispatch.
+	 * @param callback
+	 *                         The corresponding callback.
+	 * @param originCommandBus
+	 *                         The local command bus of the sending context or {@code null} if it is unknown.
+	 *
+	 * @throws NoHandlerForCommandException
+	 *                                      If there is currently no command bus registered to handle the command.
+	 */
+	<C, R> void dispatch( CommandMessage<C> command, CommandCallback<? super C, ? super R> callback, CommandBus originCommandBus );
+
+	/**
+	 * Registers the name of the context the given local command bus belongs to. The name is used to identify the context
+	 * in the monitored messages.
+	 *
+	 * @param localCommandBus
+	 *                        The local command bus of the context.
+	 * @param contextName
+	 *                        The name of the context.
+	 */
+	void registerContextName( CommandBus localCommandBus, String contextName );
+
+	/**
+	 * Registers the name of the context the given local query bus belongs to. The name is used to identify the context in
+	 * the monitored messages.
+	 *
+	 * @param localQueryBus
+	 *                      The local query bus of the context.
+	 * @param contextName
+	 *                      The name of the context.
+	 */
+	void registerContextName( QueryBus localQueryBus, String contextName );
+
+	/**
+	 * Registers the given command bus for the given command name. If several command busses are registered for the same
+	 * command name, the commands are routed by the routing key of the command, so that all commands of an aggregate are
+	 * handled by the same command bus.
 	 *
 	 * @param commandBus
 	 *                    The command bus to be registered
 	 * @param commandName
 	 *                    The command name.
-	 *
-	 * @throws IllegalStateException
-	 *                               If there is already a command bus registered for the given command name.
 	 */
 	void registerCommandBusForCommand( CommandBus commandBus, String commandName );
 
 	/**
-	 * Unregisters the command bus for the given command name.
+	 * Unregisters the given command bus for the given command name.
 	 *
+	 * @param commandBus
+	 *                    The command bus to be unregistered
 	 * @param commandName
 	 *                    The command name.
 	 *
-	 * @return true if and only if the command bus for the given command name has been removed.
+	 * @return true if and only if the command bus has been removed.
 	 */
-	boolean unregisterCommandBusForCommand( String commandName );
+	boolean unregisterCommandBusForCommand( CommandBus commandBus, String commandName );
 
 	/**
 	 * Registers the given query bus for the given query name.
@@ -108,9 +152,31 @@ public interface EmbeddedServer {
 	 * @return The result of the query execution.
 	 *
 	 * @throws NoHandlerForQueryException
-	 *                                    If there is no or multiple handlers for the given query.
+	 *                                    If there is no handler for the given query.
 	 */
-	<Q, R> CompletableFuture<QueryResponseMessage<R>> query( QueryMessage<Q, R> query );
+	default <Q, R> CompletableFuture<QueryResponseMessage<R>> query( final QueryMessage<Q, R> query ) {
+		return query( query, null );
+	}
+
+	/**
+	 * Executes the given query with the responsible query bus. If several query busses are registered for the query, one of
+	 * them is selected by the {@link QueryRoutingPolicy}.
+	 *
+	 * @param <Q>
+	 *                       The type of payload of the query.
+	 * @param <R>
+	 *                       The type of result of the query.
+	 * @param query
+	 *                       The query to execute.
+	 * @param originQueryBus
+	 *                       The local query bus of the sending context or {@code null} if it is unknown.
+	 *
+	 * @return The result of the query execution.
+	 *
+	 * @throws NoHandlerForQueryException
+	 *                                    If there is no handler for the given query.
+	 */
+	<Q, R> CompletableFuture<QueryResponseMessage<R>> query( QueryMessage<Q, R> query, QueryBus originQueryBus );
 
 	/**
 	 * Dispatch the given {@code query} to all QueryHandlers subscribed to the given {@code query}'s queryName/responseType.
@@ -134,7 +200,29 @@ public interface EmbeddedServer {
 	 *                the response type of the query
 	 * @return stream of query results
 	 */
-	<Q, R> Stream<QueryResponseMessage<R>> scatterGather( QueryMessage<Q, R> query, long timeout, TimeUnit unit );
+	default <Q, R> Stream<QueryResponseMessage<R>> scatterGather( final QueryMessage<Q, R> query, final long timeout, final TimeUnit unit ) {
+		return scatterGather( query, timeout, unit, null );
+	}
+
+	/**
+	 * Dispatch the given {@code query} to all QueryHandlers subscribed to the given {@code query}'s queryName/responseType
+	 * (see {@link #scatterGather(QueryMessage, long, TimeUnit)}).
+	 *
+	 * @param query
+	 *                       the query
+	 * @param timeout
+	 *                       time to wait for results
+	 * @param unit
+	 *                       unit for the timeout
+	 * @param originQueryBus
+	 *                       The local query bus of the sending context or {@code null} if it is unknown.
+	 * @param <Q>
+	 *                       the payload type of the query
+	 * @param <R>
+	 *                       the response type of the query
+	 * @return stream of query results
+	 */
+	<Q, R> Stream<QueryResponseMessage<R>> scatterGather( QueryMessage<Q, R> query, long timeout, TimeUnit unit, QueryBus originQueryBus );
 
 	/**
 	 * Registers the given event bus for the given event name.
@@ -156,7 +244,24 @@ public interface EmbeddedServer {
 	 * @param events
 	 *               The collection of events to publish
 	 */
-	void publish( List<? extends EventMessage<?>> events );
+	default void publish( final List<? extends EventMessage<?>> events ) {
+		publish( events, null );
+	}
+
+	/**
+	 * Publish a collection of events on this bus (one, or multiple). The events will be dispatched to all subscribed
+	 * listeners.
+	 * <p>
+	 * Implementations may treat the given {@code events} as a single batch and distribute the events as such to all
+	 * subscribed EventListeners.
+	 *
+	 * @param events
+	 *                      The collection of events to publish
+	 * @param originContext
+	 *                      The name of the publishing context, which is reported to the {@link EmbeddedServerMonitor}, or
+	 *                      {@code null} if it is unknown
+	 */
+	void publish( List<? extends EventMessage<?>> events, String originContext );
 
 	/**
 	 * Open a stream containing all {@link TrackedEventData} since given tracking token. Pass a {@code trackingToken} of
@@ -170,6 +275,33 @@ public interface EmbeddedServer {
 	 */
 	Stream<? extends TrackedEventData<?>> openStream( TrackingToken trackingToken );
 
+	/**
+	 * Open a stream containing the {@link TrackedEventData} since given tracking token which are not excluded by the given
+	 * {@code options}. The excluded events are skipped inside the server. Note that the returned stream is
+	 * <em>infinite</em>, so beware of applying terminal operations to the returned stream.
+	 *
+	 * @param trackingToken
+	 *                      object containing the position in the stream or {@code null} to open a stream containing all
+	 *                      messages
+	 * @param options
+	 *                      the restrictions of the stream
+	 * @return a stream of events since the given trackingToken
+	 */
+	Stream<? extends TrackedEventData<?>> openStream( TrackingToken trackingToken, EventStreamOptions options );
+
+	/**
+	 * Registers the given {@code listener} which is notified whenever events have been committed to the event store.
+	 * Consumers of {@link #openStream(TrackingToken)} can use this notification to wait for new events instead of polling
+	 * the event store.
+	 * <p>
+	 * The listener is invoked on the publishing thread, so it should return quickly and must not block.
+	 *
+	 * @param listener
+	 *                 The listener to be notified about newly committed events.
+	 * @return a handle to unregister the {@code listener}.
+	 */
+	Registration registerEventAvailabilityListener( Runnable listener );
+
 	/**
 	 * Returns a stream of serialized event entries for given {@code aggregateIdentifier}.
 	 * <p>
@@ -180,7 +312,9 @@ public interface EmbeddedServer {
 	 *                            the identifier of the aggregate whose event entries to fetch
 	 * @return a stream of all currently stored event entries of the aggregate
 	 */
-	Stream<? extends DomainEventData<?>> readEvents( String aggregateIdentifier );
+	default Stream<? extends DomainEventData<?>> readEvents( final String aggregateIdentifier ) {
+		return readEvents( aggregateIdentifier, 0L );
+	}
 
 	/**
 	 * Returns a stream of serialized event entries for given {@code aggregateIdentifier}.
@@ -192,7 +326,41 @@ public interface EmbeddedServer {
 	 *                            the identifier of the aggregate whose event entries to fetch
 	 * @return a stream of all currently stored event entries of the aggregate
 	 */
-	Stream<? extends DomainEventData<?>> readEvents( String aggregateIdentifier, final long firstSequenceNumber );
+	default Stream<? extends DomainEventData<?>> readEvents( final String aggregateIdentifier, final long firstSequenceNumber ) {
+		return readEvents( aggregateIdentifier, firstSequenceNumber, null );
+	}
+
+	/**
+	 * Returns a stream of serialized event entries for given {@code aggregateIdentifier}.
+	 * <p>
+	 * The returned stream is <em>finite</em>, ending with the last known event of the aggregate. If the event store holds
+	 * no events of the given aggregate an empty stream is returned.
+	 *
+	 * @param aggregateIdentifier
+	 *                            the identifier of the aggregate whose event entries to fetch
+	 * @param firstSequenceNumber
+	 *                            the sequence number of the first event entry to fetch
+	 * @param originContext
+	 *                            the name of the reading context, which is reported to the {@link EmbeddedServerMonitor},
+	 *                            or {@code null} if it is unknown
+	 * @return a stream of all currently stored event entries of the aggregate
+	 */
+	Stream<? extends DomainEventData<?>> readEvents( String aggregateIdentifier, long firstSequenceNumber, String originContext );
+
+	/**
+	 * Returns a stream of serialized event entries for given {@code aggregateIdentifier} if the backing database contains a
+	 * snapshot of the aggregate.
+	 * <p>
+	 * It is required that specific event storage engines return snapshots in descending order of their sequence number.
+	 * </p>
+	 *
+	 * @param aggregateIdentifier
+	 *                            The aggregate identifier to fetch a snapshot for
+	 * @return A stream of serialized snapshots of the aggregate
+	 */
+	default Stream<? extends DomainEventData<?>> readSnapshotData( final String aggregateIdentifier ) {
+		return readSnapshotData( aggregateIdentifier, null );
+	}
 
 	/**
 	 * Returns a stream of serialized event entries for given {@code aggregateIdentifier} if the backing database contains a
@@ -203,9 +371,12 @@ public interface EmbeddedServer {
 	 *
 	 * @param aggregateIdentifier
 	 *                            The aggregate identifier to fetch a snapshot for
+	 * @param originContext
+	 *                            The name of the reading context, which is reported to the {@link EmbeddedServerMonitor},
+	 *                            or {@code null} if it is unknown
 	 * @return A stream of serialized snapshots of the aggregate
 	 */
-	Stream<? extends DomainEventData<?>> readSnapshotData( String aggregateIdentifier );
+	Stream<? extends DomainEventData<?>> readSnapshotData( String aggregateIdentifier, String originContext );
 
 	/**
 	 * Stores the given (temporary) {@code snapshot} event. This snapshot replaces the segment of the event stream
@@ -224,6 +395,18 @@ public interface EmbeddedServer {
 	 */
 	void storeSnapshot( DomainEventMessage<?> snapshot );
 
+	/**
+	 * Registers the given {@code listener} which is notified with the aggregate identifier whenever a snapshot has been
+	 * stored. Consumers which cache snapshots can use this notification to invalidate them.
+	 * <p>
+	 * The listener is invoked on the storing thread, so it should return quickly and must not block.
+	 *
+	 * @param listener
+	 *                 The listener to be notified about stored snapshots.
+	 * @return a handle to unregister the {@code listener}.
+	 */
+	Registration registerSnapshotListener( Consumer<String> listener );
+
 	/**
 	 * Register the given {@code interceptor} with this bus. When subscribed it will intercept any event messages published
 	 * on this bus.
@@ -237,4 +420,12 @@ public interface EmbeddedServer {
 	 */
 	Registration registerDispatchInterceptor( MessageDispatchInterceptor<? super EventMessage<?>> dispatchInterceptor );
 
+	/**
+	 * Returns the monitor of this server. The connectors of the contexts report their work (e.g. the accesses of their
+	 * caches) to it, so that the work of the server and of its contexts is monitored at a single place.
+	 *
+	 * @return the monitor of this server.
+	 */
+	EmbeddedServerMonitor getMonitor( );
+
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.stream.Stream;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+
+/**
+ * An {@link EmbeddedServerEventStorageEngine} is an {@link EventStorageEngine} which provides access to the serialized
+ * event data. The embedded server never returns messages, so that clients are able to apply their own upcaster chain.
+ *
+ * @author oliver.libutzki
+ *
+ * @see EmbeddedServerJpaEventStorageEngine
+ * @see EmbeddedServerSegmentEventStorageEngine
+ */
+interface EmbeddedServerEventStorageEngine extends EventStorageEngine {
+
+	/**
+	 * Returns a stream of serialized event entries after the given {@code trackingToken}. The stream ends with the last
+	 * event which has been committed when the stream is read. Advancing the stream again afterwards returns events which
+	 * have been committed in the meantime.
+	 *
+	 * @param trackingToken
+	 *                      object containing the position in the stream or {@code null} to open a stream containing all
+	 *                      events
+	 * @param mayBlock
+	 *                      whether the storage engine may wait for new events
+	 * @return a stream of serialized event entries since the given trackingToken
+	 */
+	Stream<? extends TrackedEventData<?>> readEventData( TrackingToken trackingToken, boolean mayBlock );
+
+	/**
+	 * Returns a finite stream of serialized event entries for the given {@code identifier} starting at the given
+	 * {@code firstSequenceNumber}.
+	 *
+	 * @param identifier
+	 *                            the identifier of the aggregate whose event entries to fetch
+	 * @param firstSequenceNumber
+	 *                            the sequence number of the first event entry to fetch
+	 * @return a stream of the aggregate's serialized event entries
+	 */
+	Stream<? extends DomainEventData<?>> readEventData( String identifier, long firstSequenceNumber );
+
+	/**
+	 * Returns a stream of serialized snapshots of the given aggregate in descending order of their sequence number.
+	 *
+	 * @param aggregateIdentifier
+	 *                            The aggregate identifier to fetch a snapshot for
+	 * @return A stream of serialized snapshots of the aggregate
+	 */
+	Stream<? extends DomainEventData<?>> readSnapshotData( String aggregateIdentifier );
+
+}
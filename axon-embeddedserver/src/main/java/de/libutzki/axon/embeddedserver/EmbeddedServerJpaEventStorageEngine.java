@@ -3,6 +3,7 @@ package de.libutzki.axon.embeddedserver;
 import java.util.Optional;
 import java.util.stream.Stream;
 
+import org.axonframework.common.transaction.TransactionManager;
 import org.axonframework.eventhandling.DomainEventData;
 import org.axonframework.eventhandling.DomainEventMessage;
 import org.axonframework.eventhandling.TrackedEventData;
@@ -10,30 +11,52 @@ import org.axonframework.eventhandling.TrackedEventMessage;
 import org.axonframework.eventhandling.TrackingToken;
 import org.axonframework.eventsourcing.eventstore.DomainEventStream;
 import org.axonframework.eventsourcing.eventstore.jpa.JpaEventStorageEngine;
+import org.axonframework.serialization.Serializer;
 
 /**
  * In contrast to the {@link JpaEventStorageEngine} the {@link EmbeddedServerJpaEventStorageEngine} provides a public
  * {@link #readEventData(TrackingToken)} method in order to provide a stream of {@link TrackedEventData}. This stream
- * can be used by clients in order to apply an upcaster chain.
+ * can be used by clients in order to apply an upcaster chain.<br>
+ * <br>
+ * Snapshots are stored by the clients' snapshotters, whose transactions do not span the embedded server's database.
+ * Hence the {@link EmbeddedServerJpaEventStorageEngine} stores snapshots in a transaction of its own.
  *
  * @author oliver.libutzki
  *
  */
-final class EmbeddedServerJpaEventStorageEngine extends JpaEventStorageEngine {
+final class EmbeddedServerJpaEventStorageEngine extends JpaEventStorageEngine implements EmbeddedServerEventStorageEngine {
 
 	public static Builder builder( ) {
 		return new Builder( );
 	}
 
 	public static class Builder extends org.axonframework.eventsourcing.eventstore.jpa.JpaEventStorageEngine.Builder {
+
+		private TransactionManager transactionManager;
+
+		@Override
+		public Builder transactionManager( final TransactionManager transactionManager ) {
+			super.transactionManager( transactionManager );
+			this.transactionManager = transactionManager;
+			return this;
+		}
+
 		@Override
 		public EmbeddedServerJpaEventStorageEngine build( ) {
 			return new EmbeddedServerJpaEventStorageEngine( this );
 		}
 	}
 
+	private final TransactionManager transactionManager;
+
 	protected EmbeddedServerJpaEventStorageEngine( final Builder builder ) {
 		super( builder );
+		transactionManager = builder.transactionManager;
+	}
+
+	@Override
+	protected void storeSnapshot( final DomainEventMessage<?> snapshot, final Serializer serializer ) {
+		transactionManager.executeInTransaction( ( ) -> super.storeSnapshot( snapshot, serializer ) );
 	}
 
 	@Override
@@ -9,18 +9,25 @@ import org.axonframework.spring.config.AxonConfiguration;
 import org.axonframework.springboot.autoconfig.JpaEventStoreAutoConfiguration;
 import org.axonframework.springboot.util.RegisterDefaultEntities;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * The {@link EmbeddedServerJpaEventStoreConfiguration} provides the {@link EmbeddedServerJpaEventStorageEngine} as
  * {@link EventStorageEngine}. The bean definiton has to be outsourced to a seperate configuration in order to ensure
- * that it is initialized before the {@link JpaEventStoreAutoConfiguration}.
+ * that it is initialized before the {@link JpaEventStoreAutoConfiguration}.<br>
+ * <br>
+ * The events of an append are inserted with JDBC batches. The Hibernate properties are only applied to the entity
+ * manager factory of the embedded server, so they do not affect the persistence units of the other contexts.
  *
  * @author oliver.libutzki
  *
  */
 @Configuration
+@ConditionalOnProperty( name = "axon.embeddedserver.storage-engine", havingValue = "jpa", matchIfMissing = true )
 @RegisterDefaultEntities( packages = {
 		"org.axonframework.eventsourcing.eventstore.jpa"
 } )
@@ -41,4 +48,12 @@ class EmbeddedServerJpaEventStoreConfiguration {
 				.transactionManager( transactionManager )
 				.build( );
 	}
+
+	@Bean
+	public HibernatePropertiesCustomizer embeddedServerJdbcBatchingCustomizer( @Value( "${axon.embeddedserver.jpa.batch-size}" ) final int batchSize ) {
+		return hibernateProperties -> {
+			hibernateProperties.putIfAbsent( "hibernate.jdbc.batch_size", batchSize );
+			hibernateProperties.putIfAbsent( "hibernate.order_inserts", true );
+		};
+	}
 }
@@ -0,0 +1,234 @@
+package de.libutzki.axon.embeddedserver;
+
+import org.axonframework.monitoring.MessageMonitor;
+
+/**
+ * The {@link EmbeddedServerMonitor} is notified about the work of the {@link EmbeddedServer} which is not related to a
+ * single message, e.g. reading from the storage engine. It complements the {@link MessageMonitor MessageMonitors} which
+ * monitor the dispatched commands, queries and events. The messages passed to these message monitors contain the names
+ * of the originating and the target context as meta data ({@link #ORIGIN_CONTEXT} and {@link #TARGET_CONTEXT}), so that
+ * they can be used as tags.<br>
+ * <br>
+ * All methods are invoked on the thread which has done the work, so implementations have to be threadsafe and should
+ * return quickly. A custom monitor (e.g. one exporting to a metrics registry) can be provided as a Spring bean.
+ *
+ * @author oliver.libutzki
+ *
+ */
+public interface EmbeddedServerMonitor {
+
+	/**
+	 * The meta data key of the name of the context which has sent a monitored message.
+	 */
+	String ORIGIN_CONTEXT = "embeddedServer.originContext";
+
+	/**
+	 * The meta data key of the name of the context which handles a monitored message.
+	 */
+	String TARGET_CONTEXT = "embeddedServer.targetContext";
+
+	/**
+	 * The context name which is used if the context is unknown or not unique.
+	 */
+	String UNKNOWN_CONTEXT = "unknown";
+
+	/**
+	 * A monitor which ignores all notifications.
+	 */
+	EmbeddedServerMonitor NO_OP = new EmbeddedServerMonitor( ) {
+	};
+
+	/**
+	 * Invoked after a batch of events has been committed.
+	 *
+	 * @param originContext
+	 *                       The name of the context which has published the events or {@link #UNKNOWN_CONTEXT}.
+	 * @param batchSize
+	 *                       The number of events of the batch.
+	 * @param durationNanos
+	 *                       The time between publishing and committing the events.
+	 */
+	default void eventsAppended( final String originContext, final int batchSize, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked after the group commit publisher has committed the events of several publish calls in one transaction.
+	 *
+	 * @param publishCalls
+	 *                       The number of publish calls of the batch. All events of a unit of work count as one call.
+	 * @param events
+	 *                       The number of events of the batch.
+	 * @param durationNanos
+	 *                       The duration of the transaction.
+	 */
+	default void groupCommitted( final int publishCalls, final int events, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked after the tail cache has fetched newly committed events from the storage engine on behalf of the streams
+	 * opened by {@link EmbeddedServer#openStream(org.axonframework.eventhandling.TrackingToken)}. The fetched events are
+	 * shared by all streams, but the fetch is reported with the context of the stream which has triggered it.
+	 *
+	 * @param originContext
+	 *                       The name of the context whose stream has triggered the fetch or {@link #UNKNOWN_CONTEXT}.
+	 * @param rows
+	 *                       The number of fetched events.
+	 * @param durationNanos
+	 *                       The duration of the fetch.
+	 */
+	default void eventsFetched( final String originContext, final int rows, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked after a catch-up region has fetched events from the storage engine on behalf of the streams which lie
+	 * before the window of the tail cache. Like {@link #eventsFetched(String, int, long)}, the fetch is reported with the
+	 * context of the stream which has triggered it.
+	 *
+	 * @param originContext
+	 *                       The name of the context whose stream has triggered the fetch or {@link #UNKNOWN_CONTEXT}.
+	 * @param rows
+	 *                       The number of fetched events.
+	 * @param durationNanos
+	 *                       The duration of the fetch.
+	 */
+	default void catchUpEventsFetched( final String originContext, final int rows, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked after the events of an aggregate have been read completely or the stream returned by
+	 * {@link EmbeddedServer#readEvents(String)} has been closed.
+	 *
+	 * @param originContext
+	 *                       The name of the context which has read the events or {@link #UNKNOWN_CONTEXT}.
+	 * @param rows
+	 *                       The number of read events.
+	 * @param durationNanos
+	 *                       The time between opening and finishing the stream.
+	 */
+	default void aggregateEventsRead( final String originContext, final int rows, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked after the snapshot of an aggregate has been read, i.e. after the first snapshot has been taken from the stream
+	 * or the stream has turned out to be empty.
+	 *
+	 * @param originContext
+	 *                       The name of the context which has read the snapshot or {@link #UNKNOWN_CONTEXT}.
+	 * @param durationNanos
+	 *                       The duration of the read.
+	 */
+	default void snapshotRead( final String originContext, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked after a batch of snapshots has been written by the snapshot writer.
+	 *
+	 * @param batchSize
+	 *                       The number of snapshots of the batch.
+	 * @param durationNanos
+	 *                       The duration of the transaction.
+	 */
+	default void snapshotsWritten( final int batchSize, final long durationNanos ) {
+	}
+
+	/**
+	 * Invoked whenever the snapshot writer has failed to write a snapshot, which is lost then.
+	 */
+	default void snapshotWriteFailed( ) {
+	}
+
+	/**
+	 * Invoked whenever a snapshot has been queued while another snapshot of the aggregate was queued already, so that only
+	 * the newer one of them is written.
+	 */
+	default void snapshotSuperseded( ) {
+	}
+
+	/**
+	 * Invoked whenever a snapshot has been dropped, as the queue of the snapshot writer was full.
+	 */
+	default void snapshotDropped( ) {
+	}
+
+	/**
+	 * Invoked whenever the number of aggregates whose snapshots are queued by the snapshot writer has changed.
+	 *
+	 * @param queueSize
+	 *                  The number of queued snapshots.
+	 */
+	default void snapshotQueueSizeChanged( final int queueSize ) {
+	}
+
+	/**
+	 * Invoked whenever a tracking stream of a context has found an event in the context's deserialized event cache, so
+	 * that it has not been upcasted and deserialized again.
+	 *
+	 * @param context
+	 *                The name of the context or {@link #UNKNOWN_CONTEXT}.
+	 */
+	default void deserializedEventCacheHit( final String context ) {
+	}
+
+	/**
+	 * Invoked whenever a tracking stream of a context has not found an event in the context's deserialized event cache, so
+	 * that it has upcasted the event and added it to the cache.
+	 *
+	 * @param context
+	 *                The name of the context or {@link #UNKNOWN_CONTEXT}.
+	 */
+	default void deserializedEventCacheMiss( final String context ) {
+	}
+
+	/**
+	 * Invoked after a command has been queued for the thread pool of its target context.
+	 *
+	 * @param targetContext
+	 *                      The name of the target context.
+	 * @param queueDepth
+	 *                      The number of commands which are queued for the context now.
+	 */
+	default void asyncCommandQueued( final String targetContext, final int queueDepth ) {
+	}
+
+	/**
+	 * Invoked when a thread of the pool of the target context starts executing a queued command.
+	 *
+	 * @param targetContext
+	 *                       The name of the target context.
+	 * @param waitTimeNanos
+	 *                       The time the command has been waiting in the queue.
+	 */
+	default void asyncCommandStarted( final String targetContext, final long waitTimeNanos ) {
+	}
+
+	/**
+	 * Invoked whenever a command has been rejected, as the queue of its target context was full.
+	 *
+	 * @param targetContext
+	 *                      The name of the target context.
+	 */
+	default void asyncCommandRejected( final String targetContext ) {
+	}
+
+	/**
+	 * Invoked whenever a command bus has been registered or unregistered for the given command.
+	 *
+	 * @param commandName
+	 *                        The name of the command.
+	 * @param commandBusCount
+	 *                        The number of command busses which are registered for the command now.
+	 */
+	default void commandHandlersChanged( final String commandName, final int commandBusCount ) {
+	}
+
+	/**
+	 * Invoked whenever a query bus has been registered or unregistered for the given query.
+	 *
+	 * @param queryName
+	 *                      The name of the query.
+	 * @param queryBusCount
+	 *                      The number of query busses which are registered for the query now.
+	 */
+	default void queryHandlersChanged( final String queryName, final int queryBusCount ) {
+	}
+}
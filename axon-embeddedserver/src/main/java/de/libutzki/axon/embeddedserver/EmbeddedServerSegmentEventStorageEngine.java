@@ -0,0 +1,452 @@
+package de.libutzki.axon.embeddedserver;
+
+import static org.axonframework.common.BuilderUtils.assertNonNull;
+import static org.axonframework.common.BuilderUtils.assertStrictPositive;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.axonframework.common.Assert;
+import org.axonframework.common.jdbc.PersistenceExceptionResolver;
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.EventUtils;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventsourcing.eventstore.AbstractEventStorageEngine;
+import org.axonframework.eventsourcing.eventstore.DomainEventStream;
+import org.axonframework.eventsourcing.snapshotting.SnapshotFilter;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.modelling.command.AggregateStreamCreationException;
+import org.axonframework.modelling.command.ConcurrencyException;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.upcasting.event.EventUpcaster;
+
+/**
+ * The {@link EmbeddedServerSegmentEventStorageEngine} stores events in append-only, memory-mapped segment files instead
+ * of a relational database. It keeps two indices in memory, which are rebuilt from the segment files on startup:
+ * <ul>
+ * <li>the position of each event by its global index, which is used to track the event stream sequentially</li>
+ * <li>the global indices of each aggregate's events, which is used to read an aggregate's event stream</li>
+ * </ul>
+ * Snapshots are appended to separate segment files and only the position of the latest snapshot of an aggregate is
+ * kept.<br>
+ * <br>
+ * Appending is serialized, so the global index does not contain any gaps and a {@link GlobalSequenceTrackingToken} is
+ * used for tracking. The events passed to a single append are validated completely (sequence numbers and size) before
+ * they are written as a single batch, so either all or none of them are stored.<br>
+ * <br>
+ * If a {@link UnitOfWork} is active, the engine takes part in it like a transactional resource: the appended events
+ * become visible to readers after the unit of work has been committed and are truncated if it is rolled back. Until
+ * the unit of work has completed, no other unit of work may append events. The segment files are flushed to the storage
+ * device when the engine is shut down, otherwise flushing is left to the operating system. Hence a batch which has
+ * been written right before a crash of the machine may be lost, and one which has been written before a crash of the
+ * JVM is kept even if its unit of work would not have been committed.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class EmbeddedServerSegmentEventStorageEngine extends AbstractEventStorageEngine implements EmbeddedServerEventStorageEngine {
+
+	private static final String EVENT_SEGMENT_SUFFIX = ".events";
+	private static final String SNAPSHOT_SEGMENT_SUFFIX = ".snapshots";
+
+	private final SegmentFileStore eventSegments;
+	private final SegmentFileStore snapshotSegments;
+
+	private final ReentrantLock appendLock = new ReentrantLock( );
+	private final String pendingAppendKey = PendingAppend.class.getName( ) + "@" + System.identityHashCode( this );
+	private final Object snapshotLock = new Object( );
+	private final ConcurrentMap<String, AggregateIndex> aggregateIndices = new ConcurrentHashMap<>( );
+	private final ConcurrentMap<String, Long> snapshotPositions = new ConcurrentHashMap<>( );
+	private volatile long[] eventPositions = new long[1024];
+	private volatile int eventCount;
+
+	public static Builder builder( ) {
+		return new Builder( );
+	}
+
+	public static class Builder extends AbstractEventStorageEngine.Builder {
+
+		private Path storageDirectory;
+		private int segmentSize = 256 * 1024 * 1024;
+
+		/**
+		 * Sets the directory containing the segment files.
+		 */
+		public Builder storageDirectory( final Path storageDirectory ) {
+			assertNonNull( storageDirectory, "The storage directory may not be null" );
+			this.storageDirectory = storageDirectory;
+			return this;
+		}
+
+		/**
+		 * Sets the size of a segment file in bytes. Defaults to 256 MB.
+		 */
+		public Builder segmentSize( final int segmentSize ) {
+			assertStrictPositive( segmentSize, "The segment size must be positive" );
+			this.segmentSize = segmentSize;
+			return this;
+		}
+
+		@Override
+		public Builder snapshotSerializer( final Serializer snapshotSerializer ) {
+			super.snapshotSerializer( snapshotSerializer );
+			return this;
+		}
+
+		@Override
+		public Builder upcasterChain( final EventUpcaster upcasterChain ) {
+			super.upcasterChain( upcasterChain );
+			return this;
+		}
+
+		@Override
+		public Builder persistenceExceptionResolver( final PersistenceExceptionResolver persistenceExceptionResolver ) {
+			super.persistenceExceptionResolver( persistenceExceptionResolver );
+			return this;
+		}
+
+		@Override
+		public Builder eventSerializer( final Serializer eventSerializer ) {
+			super.eventSerializer( eventSerializer );
+			return this;
+		}
+
+		@Override
+		public Builder snapshotFilter( final SnapshotFilter snapshotFilter ) {
+			super.snapshotFilter( snapshotFilter );
+			return this;
+		}
+
+		public EmbeddedServerSegmentEventStorageEngine build( ) {
+			return new EmbeddedServerSegmentEventStorageEngine( this );
+		}
+
+		@Override
+		protected void validate( ) {
+			super.validate( );
+			assertNonNull( storageDirectory, "The storage directory is a hard requirement and should be provided" );
+		}
+	}
+
+	protected EmbeddedServerSegmentEventStorageEngine( final Builder builder ) {
+		super( builder );
+		eventSegments = new SegmentFileStore( builder.storageDirectory, EVENT_SEGMENT_SUFFIX, builder.segmentSize );
+		snapshotSegments = new SegmentFileStore( builder.storageDirectory, SNAPSHOT_SEGMENT_SUFFIX, builder.segmentSize );
+		eventSegments.scan( ( position, record ) -> index( position, SegmentEventData.read( record ) ) );
+		snapshotSegments.scan( ( position, record ) -> snapshotPositions.put( SegmentEventData.read( record ).getAggregateIdentifier( ), position ) );
+	}
+
+	/**
+	 * Flushes the segment files to the storage device.
+	 */
+	public void shutDown( ) {
+		appendLock.lock( );
+		try {
+			eventSegments.force( );
+		} finally {
+			appendLock.unlock( );
+		}
+		synchronized ( snapshotLock ) {
+			snapshotSegments.force( );
+		}
+	}
+
+	@Override
+	protected void appendEvents( final List<? extends EventMessage<?>> events, final Serializer serializer ) {
+		if ( events.isEmpty( ) ) {
+			return;
+		}
+		if ( !CurrentUnitOfWork.isStarted( ) ) {
+			appendLock.lock( );
+			try {
+				final PendingAppend pendingAppend = new PendingAppend( );
+				write( pendingAppend, events, serializer );
+				pendingAppend.commit( );
+			} finally {
+				appendLock.unlock( );
+			}
+			return;
+		}
+		final UnitOfWork<?> unitOfWork = CurrentUnitOfWork.get( ).root( );
+		PendingAppend pendingAppend = unitOfWork.getResource( pendingAppendKey );
+		if ( pendingAppend == null ) {
+			// The lock is held until the unit of work has completed, so the pending batches are the last ones in the segment
+			// and may be truncated on rollback.
+			appendLock.lock( );
+			pendingAppend = new PendingAppend( );
+			unitOfWork.resources( ).put( pendingAppendKey, pendingAppend );
+			final PendingAppend registeredAppend = pendingAppend;
+			unitOfWork.afterCommit( u -> registeredAppend.commit( ) );
+			unitOfWork.onRollback( u -> registeredAppend.rollback( ) );
+			unitOfWork.onCleanup( u -> appendLock.unlock( ) );
+		}
+		write( pendingAppend, events, serializer );
+	}
+
+	/**
+	 * Validates the given events against the stored and the pending events, serializes them and writes them as a single
+	 * batch. The written events are not indexed until the pending append is committed.
+	 */
+	private void write( final PendingAppend pendingAppend, final List<? extends EventMessage<?>> events, final Serializer serializer ) {
+		final Map<String, Long> lastSequenceNumbers = new HashMap<>( );
+		for ( final EventMessage<?> event : events ) {
+			if ( event instanceof DomainEventMessage ) {
+				final DomainEventMessage<?> domainEvent = ( DomainEventMessage<?> ) event;
+				final String aggregateIdentifier = domainEvent.getAggregateIdentifier( );
+				final Long lastSequenceNumber = lastSequenceNumbers.computeIfAbsent( aggregateIdentifier, pendingAppend::lastSequenceNumberFor );
+				if ( lastSequenceNumber != null && domainEvent.getSequenceNumber( ) <= lastSequenceNumber ) {
+					throw conflict( domainEvent );
+				}
+				lastSequenceNumbers.put( aggregateIdentifier, domainEvent.getSequenceNumber( ) );
+			}
+		}
+
+		final long firstGlobalIndex = eventCount + pendingAppend.size( );
+		final List<ByteBuffer> records = new ArrayList<>( events.size( ) );
+		for ( final EventMessage<?> event : events ) {
+			final DomainEventMessage<?> domainEvent = EventUtils.asDomainEventMessage( event );
+			final SerializedObject<byte[]> payload = domainEvent.serializePayload( serializer, byte[].class );
+			final SerializedObject<byte[]> metaData = domainEvent.serializeMetaData( serializer, byte[].class );
+			records.add( SegmentEventData.write( firstGlobalIndex + records.size( ), domainEvent, payload, metaData ) );
+		}
+		// Throws before anything has been written if the batch does not fit into a segment.
+		pendingAppend.add( eventSegments.append( records ), lastSequenceNumbers );
+	}
+
+	private RuntimeException conflict( final DomainEventMessage<?> domainEvent ) {
+		final String message = String.format( "An event for aggregate [%s] at sequence [%d] was already inserted", domainEvent.getAggregateIdentifier( ), domainEvent.getSequenceNumber( ) );
+		if ( domainEvent.getSequenceNumber( ) == 0 ) {
+			return new AggregateStreamCreationException( message );
+		}
+		return new ConcurrencyException( message );
+	}
+
+	private void index( final long position, final SegmentEventData eventData ) {
+		final int globalIndex = eventCount;
+		Assert.state( eventData.getGlobalIndex( ) == globalIndex, ( ) -> String.format( "Expected event with global index %d, but found %d.", globalIndex, eventData.getGlobalIndex( ) ) );
+		long[] positions = eventPositions;
+		if ( globalIndex == positions.length ) {
+			positions = Arrays.copyOf( positions, positions.length * 2 );
+			eventPositions = positions;
+		}
+		positions[globalIndex] = position;
+		// Non-domain events are stored with their event identifier as aggregate identifier, but they are not indexed.
+		if ( eventData.getType( ) != null ) {
+			aggregateIndices.computeIfAbsent( eventData.getAggregateIdentifier( ), id -> new AggregateIndex( ) ).add( eventData.getSequenceNumber( ), globalIndex );
+		}
+		// Publishing the new count makes the event visible to readers.
+		eventCount = globalIndex + 1;
+	}
+
+	private SegmentEventData readEvent( final long globalIndex ) {
+		return SegmentEventData.read( eventSegments.read( eventPositions[( int ) globalIndex] ) );
+	}
+
+	@Override
+	protected void storeSnapshot( final DomainEventMessage<?> snapshot, final Serializer serializer ) {
+		synchronized ( snapshotLock ) {
+			final SerializedObject<byte[]> payload = snapshot.serializePayload( serializer, byte[].class );
+			final SerializedObject<byte[]> metaData = snapshot.serializeMetaData( serializer, byte[].class );
+			final long position = snapshotSegments.append( List.of( SegmentEventData.write( -1, snapshot, payload, metaData ) ) )[0];
+			snapshotPositions.merge( snapshot.getAggregateIdentifier( ), position,
+					( previousPosition, newPosition ) -> readSnapshot( previousPosition ).getSequenceNumber( ) > snapshot.getSequenceNumber( ) ? previousPosition : newPosition );
+		}
+	}
+
+	private SegmentEventData readSnapshot( final long position ) {
+		return SegmentEventData.read( snapshotSegments.read( position ) );
+	}
+
+	@Override
+	public Stream<? extends TrackedEventData<?>> readEventData( final TrackingToken trackingToken, final boolean mayBlock ) {
+		Assert.isTrue( trackingToken == null || trackingToken instanceof GlobalSequenceTrackingToken,
+				( ) -> String.format( "Token [%s] is of the wrong type. Expected [%s]", trackingToken, GlobalSequenceTrackingToken.class.getSimpleName( ) ) );
+		final long firstGlobalIndex = trackingToken == null ? 0 : ( ( GlobalSequenceTrackingToken ) trackingToken ).getGlobalIndex( ) + 1;
+		return StreamSupport.stream( new SegmentSpliterator( firstGlobalIndex ), false );
+	}
+
+	@Override
+	public Stream<? extends DomainEventData<?>> readEventData( final String identifier, final long firstSequenceNumber ) {
+		final AggregateIndex aggregateIndex = aggregateIndices.get( identifier );
+		if ( aggregateIndex == null ) {
+			return Stream.empty( );
+		}
+		return aggregateIndex.globalIndicesFrom( firstSequenceNumber ).mapToObj( this::readEvent );
+	}
+
+	@Override
+	public Stream<? extends DomainEventData<?>> readSnapshotData( final String aggregateIdentifier ) {
+		final Long position = snapshotPositions.get( aggregateIdentifier );
+		return position == null ? Stream.empty( ) : Stream.of( readSnapshot( position ) );
+	}
+
+	@Override
+	public Optional<Long> lastSequenceNumberFor( final String aggregateIdentifier ) {
+		final AggregateIndex aggregateIndex = aggregateIndices.get( aggregateIdentifier );
+		return aggregateIndex == null ? Optional.empty( ) : aggregateIndex.lastSequenceNumber( );
+	}
+
+	@Override
+	public TrackingToken createTailToken( ) {
+		return null;
+	}
+
+	@Override
+	public TrackingToken createHeadToken( ) {
+		final int count = eventCount;
+		return count == 0 ? null : new GlobalSequenceTrackingToken( count - 1L );
+	}
+
+	@Override
+	public TrackingToken createTokenAt( final Instant dateTime ) {
+		final int count = eventCount;
+		for ( int globalIndex = 0; globalIndex < count; globalIndex++ ) {
+			if ( !readEvent( globalIndex ).getTimestamp( ).isBefore( dateTime ) ) {
+				return globalIndex == 0 ? null : new GlobalSequenceTrackingToken( globalIndex - 1L );
+			}
+		}
+		return createHeadToken( );
+	}
+
+	@Override
+	public Stream<? extends TrackedEventMessage<?>> readEvents( final TrackingToken trackingToken, final boolean mayBlock ) {
+		throw createUnsupportedOperationException( );
+	}
+
+	@Override
+	public DomainEventStream readEvents( final String aggregateIdentifier, final long firstSequenceNumber ) {
+		throw createUnsupportedOperationException( );
+	}
+
+	@Override
+	public Optional<DomainEventMessage<?>> readSnapshot( final String aggregateIdentifier ) {
+		throw createUnsupportedOperationException( );
+	}
+
+	private UnsupportedOperationException createUnsupportedOperationException( ) {
+		return new UnsupportedOperationException( "In an embedded server scenario the server never returns messages. Clients are responsible for creating messages." );
+	}
+
+	/**
+	 * The {@link SegmentSpliterator} scans the event segments sequentially. Like the streams of the JPA storage engine, it
+	 * may be advanced again after it has reported that no further events are available.
+	 */
+	private final class SegmentSpliterator extends Spliterators.AbstractSpliterator<SegmentEventData> {
+
+		private long nextGlobalIndex;
+
+		SegmentSpliterator( final long firstGlobalIndex ) {
+			super( Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL );
+			this.nextGlobalIndex = firstGlobalIndex;
+		}
+
+		@Override
+		public boolean tryAdvance( final Consumer<? super SegmentEventData> action ) {
+			if ( nextGlobalIndex >= eventCount ) {
+				return false;
+			}
+			action.accept( readEvent( nextGlobalIndex++ ) );
+			return true;
+		}
+	}
+
+	/**
+	 * The {@link PendingAppend} contains the batches which have been written on behalf of a unit of work, but which have
+	 * not been indexed yet. It is only accessed while holding the append lock.
+	 */
+	private final class PendingAppend {
+
+		private final List<long[]> batches = new ArrayList<>( );
+		private final Map<String, Long> lastSequenceNumbers = new HashMap<>( );
+		// The batches may span several segments, so the end of the store is remembered before the first one is written.
+		private final long mark = eventSegments.mark( );
+		private int size;
+
+		Long lastSequenceNumberFor( final String aggregateIdentifier ) {
+			final Long pendingSequenceNumber = lastSequenceNumbers.get( aggregateIdentifier );
+			return pendingSequenceNumber != null ? pendingSequenceNumber : EmbeddedServerSegmentEventStorageEngine.this.lastSequenceNumberFor( aggregateIdentifier ).orElse( null );
+		}
+
+		int size( ) {
+			return size;
+		}
+
+		void add( final long[] positions, final Map<String, Long> batchLastSequenceNumbers ) {
+			batches.add( positions );
+			lastSequenceNumbers.putAll( batchLastSequenceNumbers );
+			size += positions.length;
+		}
+
+		void commit( ) {
+			for ( final long[] positions : batches ) {
+				for ( final long position : positions ) {
+					index( position, SegmentEventData.read( eventSegments.read( position ) ) );
+				}
+			}
+			batches.clear( );
+		}
+
+		void rollback( ) {
+			if ( !batches.isEmpty( ) ) {
+				eventSegments.truncate( mark );
+			}
+			batches.clear( );
+		}
+	}
+
+	/**
+	 * The {@link AggregateIndex} contains the sequence numbers and global indices of an aggregate's events in the order
+	 * they have been appended.
+	 */
+	private static final class AggregateIndex {
+
+		private long[] sequenceNumbers = new long[8];
+		private long[] globalIndices = new long[8];
+		private int size;
+
+		synchronized void add( final long sequenceNumber, final long globalIndex ) {
+			if ( size == sequenceNumbers.length ) {
+				sequenceNumbers = Arrays.copyOf( sequenceNumbers, size * 2 );
+				globalIndices = Arrays.copyOf( globalIndices, size * 2 );
+			}
+			sequenceNumbers[size] = sequenceNumber;
+			globalIndices[size] = globalIndex;
+			size++;
+		}
+
+		synchronized Optional<Long> lastSequenceNumber( ) {
+			return size == 0 ? Optional.empty( ) : Optional.of( sequenceNumbers[size - 1] );
+		}
+
+		synchronized LongStream globalIndicesFrom( final long firstSequenceNumber ) {
+			int first = Arrays.binarySearch( sequenceNumbers, 0, size, firstSequenceNumber );
+			if ( first < 0 ) {
+				first = -first - 1;
+			}
+			return Arrays.stream( Arrays.copyOfRange( globalIndices, first, size ) );
+		}
+	}
+}
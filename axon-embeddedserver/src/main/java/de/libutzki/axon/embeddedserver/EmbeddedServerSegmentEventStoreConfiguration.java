@@ -0,0 +1,38 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.nio.file.Paths;
+
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.spring.config.AxonConfiguration;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The {@link EmbeddedServerSegmentEventStoreConfiguration} provides the {@link EmbeddedServerSegmentEventStorageEngine}
+ * as {@link EventStorageEngine} if the property {@code axon.embeddedserver.storage-engine} is set to {@code segment}.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Configuration
+@ConditionalOnProperty( name = "axon.embeddedserver.storage-engine", havingValue = "segment" )
+class EmbeddedServerSegmentEventStoreConfiguration {
+	@Bean( destroyMethod = "shutDown" )
+	public EventStorageEngine eventStorageEngine( final Serializer defaultSerializer,
+			@Qualifier( "eventSerializer" ) final Serializer eventSerializer,
+			final AxonConfiguration configuration,
+			@Value( "${axon.embeddedserver.segment-storage.directory}" ) final String storageDirectory,
+			@Value( "${axon.embeddedserver.segment-storage.segment-size}" ) final int segmentSize ) {
+		return EmbeddedServerSegmentEventStorageEngine.builder( )
+				.storageDirectory( Paths.get( storageDirectory ) )
+				.segmentSize( segmentSize )
+				.snapshotSerializer( defaultSerializer )
+				.upcasterChain( configuration.upcasterChain( ) )
+				.eventSerializer( eventSerializer )
+				.build( );
+	}
+}
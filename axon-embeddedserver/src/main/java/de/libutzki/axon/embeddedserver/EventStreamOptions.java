@@ -0,0 +1,158 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.Segment;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+
+/**
+ * The {@link EventStreamOptions} restrict the events returned by {@link EmbeddedServer#openStream(TrackingToken,
+ * EventStreamOptions)}. The restrictions are applied inside the embedded server, so that the excluded events are neither
+ * handed out nor upcasted and deserialized by the client.<br>
+ * <br>
+ * The tracking tokens of the returned events still cover the excluded events, so a tracking processor does not read them
+ * again after it has handled a subsequent event.
+ *
+ * @author oliver.libutzki
+ *
+ */
+public final class EventStreamOptions {
+
+	/**
+	 * The meta data key of the name of the context which has published an event to the embedded server.
+	 */
+	public static final String ORIGIN = "origin";
+
+	/**
+	 * Options which do not restrict the stream.
+	 */
+	public static final EventStreamOptions NONE = new EventStreamOptions( null, Collections.emptySet( ), Segment.ROOT_SEGMENT, null );
+
+	private final String excludedOrigin;
+	private final Set<String> excludedPayloadTypes;
+	private final Segment segment;
+	private final String context;
+
+	private EventStreamOptions( final String excludedOrigin, final Set<String> excludedPayloadTypes, final Segment segment, final String context ) {
+		this.excludedOrigin = excludedOrigin;
+		this.excludedPayloadTypes = excludedPayloadTypes;
+		this.segment = segment;
+		this.context = context;
+	}
+
+	/**
+	 * Returns options which exclude all events whose {@link #ORIGIN} meta data equals the given {@code origin}. A context
+	 * which forwards its own events to the embedded server uses this to skip them.
+	 */
+	public EventStreamOptions withExcludedOrigin( final String origin ) {
+		return new EventStreamOptions( origin, excludedPayloadTypes, segment, context );
+	}
+
+	/**
+	 * Returns options which exclude all events whose serialized payload type name is contained in the given set. The set
+	 * is not copied, but read whenever an event is filtered. Hence the client may add payload types while the stream is
+	 * open (e.g. whenever a tracking processor blacklists a type it can't handle), so the set has to be threadsafe.
+	 */
+	public EventStreamOptions withExcludedPayloadTypes( final Set<String> payloadTypes ) {
+		return new EventStreamOptions( excludedOrigin, payloadTypes, segment, context );
+	}
+
+	/**
+	 * Returns options which exclude all events not belonging to the given {@code segment}. Like Axon's
+	 * {@link org.axonframework.eventhandling.async.SequentialPerAggregatePolicy SequentialPerAggregatePolicy}, the server
+	 * assigns an event to a segment by the hash of its aggregate identifier or, if it has not been published by an
+	 * aggregate, by the hash of its event identifier. Hence the segment must only be passed by tracking processors which
+	 * use this sequencing policy.
+	 */
+	public EventStreamOptions withSegment( final Segment segment ) {
+		return new EventStreamOptions( excludedOrigin, excludedPayloadTypes, segment, context );
+	}
+
+	/**
+	 * Returns options which name the context which opens the stream. The stream is not restricted by it, but the fetches
+	 * of the stream are reported to the {@link EmbeddedServerMonitor} with this context.
+	 */
+	public EventStreamOptions withContext( final String context ) {
+		return new EventStreamOptions( excludedOrigin, excludedPayloadTypes, segment, context );
+	}
+
+	/**
+	 * Returns the origin whose events are excluded or {@code null} if events are not filtered by their origin.
+	 */
+	public String getExcludedOrigin( ) {
+		return excludedOrigin;
+	}
+
+	/**
+	 * Returns the (live) set of serialized payload type names whose events are excluded.
+	 */
+	public Set<String> getExcludedPayloadTypes( ) {
+		return excludedPayloadTypes;
+	}
+
+	/**
+	 * Returns the segment whose events are returned. The {@link Segment#ROOT_SEGMENT} matches all events.
+	 */
+	public Segment getSegment( ) {
+		return segment;
+	}
+
+	/**
+	 * Returns the name of the context which opens the stream or {@code null} if it is unknown.
+	 */
+	public String getContext( ) {
+		return context;
+	}
+
+	/**
+	 * Returns whether the given event is excluded. The origin is only resolved if events are filtered by their origin and
+	 * the event is not excluded anyway.
+	 */
+	boolean isExcluded( final TrackedEventData<?> eventData, final Supplier<String> origin ) {
+		if ( segment.getMask( ) != 0 && !segment.matches( sequenceIdentifierOf( eventData ) ) ) {
+			return true;
+		}
+		if ( !excludedPayloadTypes.isEmpty( ) && excludedPayloadTypes.contains( eventData.getPayload( ).getType( ).getName( ) ) ) {
+			return true;
+		}
+		return excludedOrigin != null && excludedOrigin.equals( origin.get( ) );
+	}
+
+	private static String sequenceIdentifierOf( final TrackedEventData<?> eventData ) {
+		if ( eventData instanceof DomainEventData ) {
+			final String aggregateIdentifier = ( ( DomainEventData<?> ) eventData ).getAggregateIdentifier( );
+			if ( aggregateIdentifier != null ) {
+				return aggregateIdentifier;
+			}
+		}
+		return eventData.getEventIdentifier( );
+	}
+
+	@Override
+	public boolean equals( final Object obj ) {
+		if ( this == obj ) {
+			return true;
+		}
+		if ( !( obj instanceof EventStreamOptions ) ) {
+			return false;
+		}
+		final EventStreamOptions other = ( EventStreamOptions ) obj;
+		return Objects.equals( excludedOrigin, other.excludedOrigin ) && Objects.equals( excludedPayloadTypes, other.excludedPayloadTypes ) && segment.equals( other.segment )
+				&& Objects.equals( context, other.context );
+	}
+
+	@Override
+	public int hashCode( ) {
+		return Objects.hash( excludedOrigin, excludedPayloadTypes, segment, context );
+	}
+
+	@Override
+	public String toString( ) {
+		return "EventStreamOptions[excludedOrigin=" + excludedOrigin + ", excludedPayloadTypes=" + excludedPayloadTypes + ", segment=" + segment + ", context=" + context + "]";
+	}
+}
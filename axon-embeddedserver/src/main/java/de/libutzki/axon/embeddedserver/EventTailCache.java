@@ -0,0 +1,471 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.TrackedDomainEventData;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.Serializer;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link EventTailCache} keeps the most recently committed {@link TrackedEventData} in memory. It is filled by a
+ * single reader after events have been committed, so that all tracking streams near the head of the event store are
+ * served from memory instead of querying the {@link EmbeddedServerEventStorageEngine} on their own.<br>
+ * <br>
+ * The cache is bounded by the number of events and by the (estimated) number of bytes. Streams whose tracking token lies
+ * before the cached window join one of the {@link CatchUpRegion CatchUpRegions}, which are read by a single reader as
+ * well. Streams which are not able to join a region or fall behind it read from the storage engine on their own. Either
+ * way they move on to the cached window as soon as they have caught up with it.<br>
+ * <br>
+ * If the pass-through mode is enabled, the cache keeps the published {@link EventMessage EventMessages} until their
+ * serialized form is fetched and provides both as {@link PassThroughEventData}. The number of messages waiting to be
+ * fetched is bounded by the maximum number of events as well, older messages are dropped.<br>
+ * <br>
+ * Streams opened with {@link EventStreamOptions} skip the excluded events before they are handed out. Payload types are
+ * compared by their serialized name, so excluded events are never deserialized. The origin of a cached event is
+ * resolved at most once, no matter how many streams filter by it. Events which are read from a catch-up region
+ * or the storage engine are filtered by each stream on its own.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class EventTailCache {
+
+	private final EmbeddedServerEventStorageEngine eventStorageEngine;
+	private final int maxEvents;
+	private final long maxBytes;
+	private final boolean passThroughEnabled;
+	private final Serializer serializer;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+	private final CachedEvent[] entries;
+	private final long[] entrySizes;
+	private long firstSequence;
+	private long nextSequence;
+	private long cachedBytes;
+	private TrackingToken baseToken;
+
+	private final Object fetchLock = new Object( );
+	private final AtomicLong commitCounter = new AtomicLong( );
+	private long fetchedCommitCounter;
+	private TrackingToken tailToken;
+
+	private final Map<String, EventMessage<?>> publishedEventMessages;
+
+	private final List<CatchUpRegion> catchUpRegions;
+
+	EventTailCache( final EmbeddedServerEventStorageEngine eventStorageEngine, final int maxEvents, final long maxBytes, final boolean passThroughEnabled,
+			final Serializer serializer, final List<CatchUpRegion> catchUpRegions, final EmbeddedServerMonitor embeddedServerMonitor ) {
+		if ( maxEvents <= 0 ) {
+			throw new IllegalArgumentException( "The tail cache has to hold at least one event." );
+		}
+		this.eventStorageEngine = eventStorageEngine;
+		this.maxEvents = maxEvents;
+		this.maxBytes = maxBytes;
+		this.passThroughEnabled = passThroughEnabled;
+		this.serializer = serializer;
+		this.catchUpRegions = List.copyOf( catchUpRegions );
+		this.embeddedServerMonitor = embeddedServerMonitor;
+		this.entries = new CachedEvent[maxEvents];
+		this.entrySizes = new long[maxEvents];
+
+		// The embedded server is the only one writing to the event store. As the server is not yet accessible, there are no
+		// pending transactions and the head token does not miss any events.
+		this.tailToken = eventStorageEngine.createHeadToken( );
+		this.baseToken = tailToken;
+
+		this.publishedEventMessages = new LinkedHashMap<String, EventMessage<?>>( ) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry<String, EventMessage<?>> eldest ) {
+				return size( ) > maxEvents;
+			}
+		};
+	}
+
+	/**
+	 * Notifies the cache that the given events are about to be stored. In pass-through mode the messages are kept until
+	 * they are fetched after the commit.
+	 */
+	void eventsPublished( final List<? extends EventMessage<?>> events ) {
+		if ( passThroughEnabled ) {
+			synchronized ( publishedEventMessages ) {
+				events.forEach( event -> publishedEventMessages.put( event.getIdentifier( ), event ) );
+			}
+		}
+	}
+
+	/**
+	 * Notifies the cache that the given events have not been stored, because the transaction has been rolled back.
+	 */
+	void eventsDiscarded( final List<? extends EventMessage<?>> events ) {
+		if ( passThroughEnabled ) {
+			synchronized ( publishedEventMessages ) {
+				events.forEach( event -> publishedEventMessages.remove( event.getIdentifier( ), event ) );
+			}
+		}
+	}
+
+	/**
+	 * Notifies the cache that events have been committed. The cache fetches them as soon as a stream asks for them.
+	 */
+	void eventsCommitted( ) {
+		commitCounter.incrementAndGet( );
+	}
+
+	/**
+	 * Opens a stream of all events after the given tracking token which are not excluded by the given options. Events
+	 * within the cached window are served from memory, older events are read from a catch-up region or the storage
+	 * engine. The stream has to be closed, so that it leaves its catch-up region.
+	 */
+	Stream<? extends TrackedEventData<?>> openStream( final TrackingToken trackingToken, final EventStreamOptions options ) {
+		final TailCachingSpliterator spliterator = new TailCachingSpliterator( trackingToken, options );
+		return StreamSupport.stream( spliterator, false ).onClose( spliterator::leaveCatchUpRegion );
+	}
+
+	/**
+	 * Returns the sequence of the first cache entry a stream at the given token may continue with, or {@code -1} if the
+	 * token lies before the cached window.
+	 */
+	private long cursorFor( final TrackingToken trackingToken ) {
+		lock.readLock( ).lock( );
+		try {
+			return covers( trackingToken, baseToken ) ? firstSequence : -1;
+		} finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * Returns the entry with the given sequence, {@code null} if it is not committed yet or throws an
+	 * {@link EvictedException} if it has already been evicted.
+	 */
+	private CachedEvent entryAt( final long sequence ) {
+		lock.readLock( ).lock( );
+		try {
+			if ( sequence < firstSequence ) {
+				throw EvictedException.INSTANCE;
+			}
+			return sequence < nextSequence ? entries[( int ) ( sequence % maxEvents )] : null;
+		} finally {
+			lock.readLock( ).unlock( );
+		}
+	}
+
+	/**
+	 * Fetches the events committed since the last fetch. If another thread is fetching at the same time, this thread waits
+	 * for it and uses its result instead of querying the storage engine again. The fetch is reported with the given context
+	 * of the stream which has triggered it.
+	 */
+	private void fetchCommittedEvents( final String context ) {
+		synchronized ( fetchLock ) {
+			final long currentCommitCounter = commitCounter.get( );
+			if ( currentCommitCounter == fetchedCommitCounter ) {
+				return;
+			}
+			final long start = System.nanoTime( );
+			int rows = 0;
+			try ( Stream<? extends TrackedEventData<?>> eventDataStream = eventStorageEngine.readEventData( tailToken, false ) ) {
+				final Iterator<? extends TrackedEventData<?>> iterator = eventDataStream.iterator( );
+				while ( iterator.hasNext( ) ) {
+					final TrackedEventData<?> eventData = iterator.next( );
+					tailToken = eventData.trackingToken( );
+					append( new CachedEvent( withEventMessage( eventData ) ) );
+					rows++;
+				}
+			}
+			embeddedServerMonitor.eventsFetched( context, rows, System.nanoTime( ) - start );
+			fetchedCommitCounter = currentCommitCounter;
+		}
+	}
+
+	private TrackedEventData<?> withEventMessage( final TrackedEventData<?> eventData ) {
+		if ( !passThroughEnabled ) {
+			return eventData;
+		}
+		final EventMessage<?> eventMessage;
+		synchronized ( publishedEventMessages ) {
+			eventMessage = publishedEventMessages.remove( eventData.getEventIdentifier( ) );
+		}
+		if ( eventMessage == null ) {
+			return eventData;
+		}
+		return PassThroughEventData.of( eventData.trackingToken( ), ( DomainEventData<?> ) eventData, eventMessage );
+	}
+
+	private void append( final CachedEvent cachedEvent ) {
+		final long size = estimateSize( cachedEvent.eventData );
+		lock.writeLock( ).lock( );
+		try {
+			while ( nextSequence - firstSequence >= maxEvents || ( nextSequence > firstSequence && cachedBytes + size > maxBytes ) ) {
+				evictFirst( );
+			}
+			final int index = ( int ) ( nextSequence % maxEvents );
+			entries[index] = cachedEvent;
+			entrySizes[index] = size;
+			cachedBytes += size;
+			nextSequence++;
+		} finally {
+			lock.writeLock( ).unlock( );
+		}
+	}
+
+	private void evictFirst( ) {
+		final int index = ( int ) ( firstSequence % maxEvents );
+		baseToken = entries[index].eventData.trackingToken( );
+		cachedBytes -= entrySizes[index];
+		entries[index] = null;
+		firstSequence++;
+	}
+
+	/**
+	 * Returns the {@link EventStreamOptions#ORIGIN origin} of the given event or {@code null} if the event does not have
+	 * an origin or its meta data can't be deserialized by the server.
+	 */
+	private String originOf( final TrackedEventData<?> eventData ) {
+		final Map<?, ?> metaData;
+		if ( eventData instanceof PassThroughEventData ) {
+			metaData = ( ( PassThroughEventData<?> ) eventData ).getEventMessage( ).getMetaData( );
+		} else {
+			try {
+				final Object deserializedMetaData = serializer.deserialize( eventData.getMetaData( ) );
+				metaData = deserializedMetaData instanceof Map ? ( Map<?, ?> ) deserializedMetaData : Map.of( );
+			} catch ( final RuntimeException e ) {
+				log.debug( "Unable to resolve the origin of event [{}]. The event is not filtered.", eventData.getEventIdentifier( ), e );
+				return null;
+			}
+		}
+		final Object origin = metaData.get( EventStreamOptions.ORIGIN );
+		return origin instanceof String ? ( String ) origin : null;
+	}
+
+	private static long estimateSize( final TrackedEventData<?> eventData ) {
+		return estimateSize( eventData.getPayload( ) ) + estimateSize( eventData.getMetaData( ) );
+	}
+
+	private static long estimateSize( final SerializedObject<?> serializedObject ) {
+		final Object data = serializedObject.getData( );
+		if ( data instanceof byte[] ) {
+			return ( ( byte[] ) data ).length;
+		}
+		if ( data instanceof String ) {
+			return ( ( String ) data ).length( ) * 2L;
+		}
+		return 0;
+	}
+
+	static boolean covers( final TrackingToken trackingToken, final TrackingToken other ) {
+		if ( other == null ) {
+			return true;
+		}
+		return trackingToken != null && trackingToken.covers( other );
+	}
+
+	private static TrackingToken upperBound( final TrackingToken trackingToken, final TrackingToken other ) {
+		return trackingToken == null ? other : trackingToken.upperBound( other );
+	}
+
+	private static TrackedEventData<?> withTrackingToken( final TrackedEventData<?> eventData, final TrackingToken trackingToken ) {
+		if ( trackingToken.equals( eventData.trackingToken( ) ) ) {
+			return eventData;
+		}
+		if ( eventData instanceof PassThroughEventData ) {
+			return ( ( PassThroughEventData<?> ) eventData ).withTrackingToken( trackingToken );
+		}
+		return new TrackedDomainEventData<>( trackingToken, ( DomainEventData<?> ) eventData );
+	}
+
+	/**
+	 * A {@link CachedEvent} holds an event of the cache and its lazily resolved origin. Concurrent streams may resolve the
+	 * origin at the same time, which is harmless as they resolve the same value.
+	 */
+	private final class CachedEvent {
+
+		private final TrackedEventData<?> eventData;
+		private volatile boolean originResolved;
+		private volatile String origin;
+
+		CachedEvent( final TrackedEventData<?> eventData ) {
+			this.eventData = eventData;
+		}
+
+		String origin( ) {
+			if ( !originResolved ) {
+				origin = originOf( eventData );
+				originResolved = true;
+			}
+			return origin;
+		}
+	}
+
+	/**
+	 * Signals that a stream's cursor points to an entry which has already been evicted from the cache or a catch-up
+	 * region.
+	 */
+	static final class EvictedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+		static final EvictedException INSTANCE = new EvictedException( );
+
+		private EvictedException( ) {
+			super( null, null, false, false );
+		}
+	}
+
+	/**
+	 * The {@link TailCachingSpliterator} reads from a catch-up region or the storage engine until the stream's token
+	 * reaches the cached window. Afterwards it follows the cache. Like the storage engine's stream, the spliterator may be advanced again after it
+	 * has reported that no further events are available.
+	 */
+	private final class TailCachingSpliterator extends Spliterators.AbstractSpliterator<TrackedEventData<?>> {
+
+		private final EventStreamOptions options;
+		private final String context;
+		private TrackingToken trackingToken;
+		private Iterator<? extends TrackedEventData<?>> storageIterator;
+		private long cursor = -1;
+		private CatchUpRegion catchUpRegion;
+		private long catchUpCursor = -1;
+		private boolean catchUpRegionJoined;
+
+		TailCachingSpliterator( final TrackingToken trackingToken, final EventStreamOptions options ) {
+			super( Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL );
+			this.trackingToken = trackingToken;
+			this.options = options;
+			this.context = options.getContext( ) == null || options.getContext( ).isEmpty( ) ? EmbeddedServerMonitor.UNKNOWN_CONTEXT : options.getContext( );
+		}
+
+		@Override
+		public boolean tryAdvance( final Consumer<? super TrackedEventData<?>> action ) {
+			while ( true ) {
+				if ( cursor < 0 ) {
+					cursor = cursorFor( trackingToken );
+				}
+				if ( cursor < 0 ) {
+					return tryAdvanceBeforeWindow( action );
+				}
+				leaveCatchUpRegion( );
+				storageIterator = null;
+				try {
+					CachedEvent cachedEvent = entryAt( cursor );
+					if ( cachedEvent == null ) {
+						fetchCommittedEvents( context );
+						cachedEvent = entryAt( cursor );
+						if ( cachedEvent == null ) {
+							return false;
+						}
+					}
+					cursor++;
+					final TrackedEventData<?> eventData = cachedEvent.eventData;
+					if ( !covers( trackingToken, eventData.trackingToken( ) ) ) {
+						trackingToken = upperBound( trackingToken, eventData.trackingToken( ) );
+						// Excluded events only advance the token, so that the next returned event covers them.
+						if ( !options.isExcluded( eventData, cachedEvent::origin ) ) {
+							action.accept( withTrackingToken( eventData, trackingToken ) );
+							return true;
+						}
+					}
+				} catch ( final EvictedException e ) {
+					log.debug( "Tracking stream fell behind the tail cache. Continuing with the storage engine." );
+					cursor = -1;
+					return tryAdvanceBeforeWindow( action );
+				}
+			}
+		}
+
+		// A stream tries to join a region only once. If it has to read from the storage engine, it keeps doing so until it
+		// has caught up with the cached window.
+		private boolean tryAdvanceBeforeWindow( final Consumer<? super TrackedEventData<?>> action ) {
+			if ( !catchUpRegionJoined && storageIterator == null ) {
+				catchUpRegionJoined = true;
+				joinCatchUpRegion( );
+			}
+			if ( catchUpRegion != null ) {
+				try {
+					return tryAdvanceFromCatchUpRegion( action );
+				} catch ( final EvictedException e ) {
+					log.debug( "Tracking stream fell behind its catch-up region. Continuing with the storage engine." );
+					leaveCatchUpRegion( );
+				}
+			}
+			return tryAdvanceFromStorage( action );
+		}
+
+		// Streams prefer a region which covers their token. Otherwise the first idle region is moved to their token.
+		private void joinCatchUpRegion( ) {
+			for ( final boolean moveIfIdle : new boolean[] { false, true } ) {
+				for ( final CatchUpRegion candidate : catchUpRegions ) {
+					final long joinedCursor = candidate.join( trackingToken, moveIfIdle );
+					if ( joinedCursor >= 0 ) {
+						catchUpRegion = candidate;
+						catchUpCursor = joinedCursor;
+						return;
+					}
+				}
+			}
+		}
+
+		private boolean tryAdvanceFromCatchUpRegion( final Consumer<? super TrackedEventData<?>> action ) {
+			while ( true ) {
+				TrackedEventData<?> eventData = catchUpRegion.entryAt( catchUpCursor );
+				if ( eventData == null ) {
+					if ( !catchUpRegion.fetch( catchUpCursor, context ) ) {
+						return false;
+					}
+					eventData = catchUpRegion.entryAt( catchUpCursor );
+				}
+				catchUpCursor++;
+				if ( !covers( trackingToken, eventData.trackingToken( ) ) ) {
+					trackingToken = upperBound( trackingToken, eventData.trackingToken( ) );
+					final TrackedEventData<?> regionEventData = eventData;
+					if ( !options.isExcluded( regionEventData, ( ) -> originOf( regionEventData ) ) ) {
+						action.accept( withTrackingToken( regionEventData, trackingToken ) );
+						return true;
+					}
+				}
+			}
+		}
+
+		void leaveCatchUpRegion( ) {
+			if ( catchUpRegion != null ) {
+				catchUpRegion.leave( );
+				catchUpRegion = null;
+			}
+		}
+
+		private boolean tryAdvanceFromStorage( final Consumer<? super TrackedEventData<?>> action ) {
+			if ( storageIterator == null ) {
+				storageIterator = eventStorageEngine.readEventData( trackingToken, false ).iterator( );
+			}
+			while ( storageIterator.hasNext( ) ) {
+				final TrackedEventData<?> eventData = storageIterator.next( );
+				trackingToken = eventData.trackingToken( );
+				if ( !options.isExcluded( eventData, ( ) -> originOf( eventData ) ) ) {
+					action.accept( eventData );
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
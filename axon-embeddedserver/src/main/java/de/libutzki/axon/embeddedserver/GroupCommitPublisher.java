@@ -0,0 +1,176 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.eventsourcing.eventstore.EventStoreException;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link GroupCommitPublisher} collects concurrent publish calls and writes them to the {@link EventStore} in a
+ * single unit of work and transaction. This way the commit latency is shared by all callers of a batch. A unit of work
+ * hands all of its events over as a single call in its commit phase, so that it is rolled back if its events can't be
+ * committed.<br>
+ * <br>
+ * A batch is written as soon as it contains {@link #maxBatchSize} events or the first call of the batch has waited for
+ * {@link #window} milliseconds. With a window of {@code 0} the batch consists of the calls which have been queued while
+ * the previous batch was written. The calls block until their batch has been committed. If the batch fails, its calls
+ * are written one by one, so that each caller gets the result of its own events. Each committed batch is reported to
+ * the {@link EmbeddedServerMonitor}.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class GroupCommitPublisher {
+
+	private static final PublishRequest SHUTDOWN = new PublishRequest( new ArrayList<>( ) );
+
+	private final EventStore eventStore;
+	private final TransactionManager transactionManager;
+	private final long window;
+	private final int maxBatchSize;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+
+	private final BlockingQueue<PublishRequest> requests = new LinkedBlockingQueue<>( );
+	private final Thread writerThread;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates and starts the {@link GroupCommitPublisher}.
+	 */
+	GroupCommitPublisher( final EventStore eventStore, final TransactionManager transactionManager, final long window, final int maxBatchSize,
+			final EmbeddedServerMonitor embeddedServerMonitor ) {
+		if ( window < 0 || maxBatchSize <= 0 ) {
+			throw new IllegalArgumentException( "The group commit window must not be negative and the maximum batch size has to be positive." );
+		}
+		this.eventStore = eventStore;
+		this.transactionManager = transactionManager;
+		this.window = window;
+		this.maxBatchSize = maxBatchSize;
+		this.embeddedServerMonitor = embeddedServerMonitor;
+		writerThread = new Thread( this::writeBatches, "EmbeddedServerGroupCommit" );
+		writerThread.setDaemon( true );
+		writerThread.start( );
+	}
+
+	/**
+	 * Publishes the given events and blocks until they have been committed.
+	 *
+	 * @throws EventStoreException
+	 *                             if the group commit publisher has been shut down or the caller has been interrupted
+	 */
+	void publish( final List<? extends EventMessage<?>> events ) {
+		if ( !running ) {
+			throw new EventStoreException( "The group commit publisher has been shut down." );
+		}
+		final PublishRequest request = new PublishRequest( events );
+		requests.add( request );
+		try {
+			request.result.get( );
+		} catch ( final InterruptedException e ) {
+			Thread.currentThread( ).interrupt( );
+			throw new EventStoreException( "Interrupted while waiting for the events to be committed.", e );
+		} catch ( final ExecutionException e ) {
+			final Throwable cause = e.getCause( );
+			if ( cause instanceof RuntimeException ) {
+				throw ( RuntimeException ) cause;
+			}
+			throw new EventStoreException( "Failed to publish the events.", cause );
+		}
+	}
+
+	/**
+	 * Writes the pending calls and stops the writer thread.
+	 */
+	void shutDown( ) {
+		running = false;
+		requests.add( SHUTDOWN );
+		try {
+			writerThread.join( );
+		} catch ( final InterruptedException e ) {
+			log.warn( "Interrupted while waiting for the group commit publisher to finish.", e );
+			Thread.currentThread( ).interrupt( );
+		}
+		final EventStoreException exception = new EventStoreException( "The group commit publisher has been shut down." );
+		requests.forEach( request -> request.result.completeExceptionally( exception ) );
+	}
+
+	private void writeBatches( ) {
+		final List<PublishRequest> batch = new ArrayList<>( );
+		try {
+			boolean shutdownRequested = false;
+			while ( !shutdownRequested ) {
+				final PublishRequest firstRequest = requests.take( );
+				if ( firstRequest == SHUTDOWN ) {
+					shutdownRequested = true;
+					continue;
+				}
+				batch.add( firstRequest );
+				int batchSize = firstRequest.events.size( );
+				final long deadline = System.nanoTime( ) + TimeUnit.MILLISECONDS.toNanos( window );
+				while ( batchSize < maxBatchSize ) {
+					final PublishRequest request = requests.poll( deadline - System.nanoTime( ), TimeUnit.NANOSECONDS );
+					if ( request == null ) {
+						break;
+					}
+					if ( request == SHUTDOWN ) {
+						shutdownRequested = true;
+						break;
+					}
+					batch.add( request );
+					batchSize += request.events.size( );
+				}
+				write( batch );
+				batch.clear( );
+			}
+			final List<PublishRequest> remainingRequests = new ArrayList<>( );
+			requests.drainTo( remainingRequests );
+			remainingRequests.remove( SHUTDOWN );
+			if ( !remainingRequests.isEmpty( ) ) {
+				write( remainingRequests );
+			}
+		} catch ( final InterruptedException e ) {
+			Thread.currentThread( ).interrupt( );
+			final EventStoreException exception = new EventStoreException( "The group commit publisher has been interrupted." );
+			batch.forEach( request -> request.result.completeExceptionally( exception ) );
+			requests.forEach( request -> request.result.completeExceptionally( exception ) );
+		}
+	}
+
+	private void write( final List<PublishRequest> batch ) {
+		try {
+			final long start = System.nanoTime( );
+			final UnitOfWork<?> unitOfWork = DefaultUnitOfWork.startAndGet( null );
+			unitOfWork.attachTransaction( transactionManager );
+			unitOfWork.execute( ( ) -> batch.forEach( request -> eventStore.publish( request.events ) ) );
+			embeddedServerMonitor.groupCommitted( batch.size( ), batch.stream( ).mapToInt( request -> request.events.size( ) ).sum( ), System.nanoTime( ) - start );
+			batch.forEach( request -> request.result.complete( null ) );
+		} catch ( final RuntimeException e ) {
+			if ( batch.size( ) == 1 ) {
+				batch.get( 0 ).result.completeExceptionally( e );
+			} else {
+				log.debug( "Failed to commit a batch of {} publish calls. Committing them separately.", batch.size( ), e );
+				batch.forEach( request -> write( List.of( request ) ) );
+			}
+		}
+	}
+
+	@RequiredArgsConstructor
+	private static final class PublishRequest {
+		private final List<? extends EventMessage<?>> events;
+		private final CompletableFuture<Void> result = new CompletableFuture<>( );
+	}
+}
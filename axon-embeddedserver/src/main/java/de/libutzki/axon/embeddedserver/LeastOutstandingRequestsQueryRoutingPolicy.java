@@ -0,0 +1,26 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+
+/**
+ * The {@link LeastOutstandingRequestsQueryRoutingPolicy} selects the query bus with the fewest queries in flight. Ties are
+ * broken by the lower average latency.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class LeastOutstandingRequestsQueryRoutingPolicy implements QueryRoutingPolicy {
+
+	private static final Comparator<QueryBusStatistics> COMPARATOR = Comparator
+			.comparingInt( QueryBusStatistics::getInFlightCount )
+			.thenComparingDouble( QueryBusStatistics::getAverageLatency );
+
+	@Override
+	public QueryBusStatistics select( final QueryMessage<?, ?> query, final List<QueryBusStatistics> candidates, final QueryBus originQueryBus ) {
+		return candidates.stream( ).min( COMPARATOR ).orElseThrow( );
+	}
+}
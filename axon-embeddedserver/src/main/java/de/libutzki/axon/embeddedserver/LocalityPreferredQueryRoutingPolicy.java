@@ -0,0 +1,34 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.List;
+
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The {@link LocalityPreferredQueryRoutingPolicy} selects the query bus of the sending context if it is able to handle
+ * the query. This way the query is handled without leaving the context. Otherwise the query is routed by the fallback
+ * policy.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@RequiredArgsConstructor
+final class LocalityPreferredQueryRoutingPolicy implements QueryRoutingPolicy {
+
+	private final QueryRoutingPolicy fallback;
+
+	@Override
+	public QueryBusStatistics select( final QueryMessage<?, ?> query, final List<QueryBusStatistics> candidates, final QueryBus originQueryBus ) {
+		if ( originQueryBus != null ) {
+			for ( final QueryBusStatistics candidate : candidates ) {
+				if ( candidate.getQueryBus( ) == originQueryBus ) {
+					return candidate;
+				}
+			}
+		}
+		return fallback.select( query, candidates, originQueryBus );
+	}
+}
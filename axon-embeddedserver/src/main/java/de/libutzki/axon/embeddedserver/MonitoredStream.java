@@ -0,0 +1,62 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The {@link MonitoredStream} reports the number of elements and the duration of a lazily evaluated stream as soon as
+ * the stream has been consumed completely or has been closed, whichever happens first.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class MonitoredStream<T> extends Spliterators.AbstractSpliterator<T> {
+
+	@FunctionalInterface
+	interface CompletionListener {
+		void completed( int elements, long durationNanos );
+	}
+
+	private final Spliterator<T> delegate;
+	private final CompletionListener completionListener;
+	private final long start = System.nanoTime( );
+	private int elements;
+	private boolean completed;
+
+	private MonitoredStream( final Spliterator<T> delegate, final CompletionListener completionListener ) {
+		super( delegate.estimateSize( ), delegate.characteristics( ) & ~( Spliterator.SIZED | Spliterator.SUBSIZED ) );
+		this.delegate = delegate;
+		this.completionListener = completionListener;
+	}
+
+	/**
+	 * Returns a stream of the elements of the given stream which notifies the given listener on completion.
+	 */
+	static <T> Stream<T> of( final Stream<T> stream, final CompletionListener completionListener ) {
+		final MonitoredStream<T> monitoredStream = new MonitoredStream<>( stream.spliterator( ), completionListener );
+		return StreamSupport.stream( monitoredStream, false ).onClose( ( ) -> {
+			monitoredStream.complete( );
+			stream.close( );
+		} );
+	}
+
+	@Override
+	public boolean tryAdvance( final Consumer<? super T> action ) {
+		if ( delegate.tryAdvance( action ) ) {
+			elements++;
+			return true;
+		}
+		complete( );
+		return false;
+	}
+
+	private synchronized void complete( ) {
+		if ( !completed ) {
+			completed = true;
+			completionListener.completed( elements, System.nanoTime( ) - start );
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.time.Instant;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.serialization.SerializedObject;
+
+/**
+ * The {@link PassThroughEventData} is returned by {@link EmbeddedServer#openStream(TrackingToken)} if the pass-through
+ * mode is enabled and the event has been published recently. Besides the serialized form it provides the
+ * {@link EventMessage} which has been published, so that consumers within the same JVM are able to skip the
+ * deserialization.<br>
+ * <br>
+ * The serialized form is authoritative. Consumers have to fall back to it if they apply upcasters to the event or if
+ * their serializer would resolve the payload to a different type.
+ *
+ * @param <T>
+ *            The type of the serialized payload and metadata
+ *
+ * @author oliver.libutzki
+ *
+ */
+public final class PassThroughEventData<T> implements TrackedEventData<T>, DomainEventData<T> {
+
+	private final TrackingToken trackingToken;
+	private final DomainEventData<T> eventData;
+	private final EventMessage<?> eventMessage;
+
+	private PassThroughEventData( final TrackingToken trackingToken, final DomainEventData<T> eventData, final EventMessage<?> eventMessage ) {
+		this.trackingToken = trackingToken;
+		this.eventData = eventData;
+		this.eventMessage = eventMessage;
+	}
+
+	static <T> PassThroughEventData<T> of( final TrackingToken trackingToken, final DomainEventData<T> eventData, final EventMessage<?> eventMessage ) {
+		return new PassThroughEventData<>( trackingToken, eventData, eventMessage );
+	}
+
+	PassThroughEventData<T> withTrackingToken( final TrackingToken trackingToken ) {
+		return new PassThroughEventData<>( trackingToken, eventData, eventMessage );
+	}
+
+	/**
+	 * Returns the event message as it has been published (after the dispatch interceptors have been applied).
+	 */
+	public EventMessage<?> getEventMessage( ) {
+		return eventMessage;
+	}
+
+	@Override
+	public TrackingToken trackingToken( ) {
+		return trackingToken;
+	}
+
+	@Override
+	public String getEventIdentifier( ) {
+		return eventData.getEventIdentifier( );
+	}
+
+	@Override
+	public Instant getTimestamp( ) {
+		return eventData.getTimestamp( );
+	}
+
+	@Override
+	public SerializedObject<T> getMetaData( ) {
+		return eventData.getMetaData( );
+	}
+
+	@Override
+	public SerializedObject<T> getPayload( ) {
+		return eventData.getPayload( );
+	}
+
+	@Override
+	public String getType( ) {
+		return eventData.getType( );
+	}
+
+	@Override
+	public String getAggregateIdentifier( ) {
+		return eventData.getAggregateIdentifier( );
+	}
+
+	@Override
+	public long getSequenceNumber( ) {
+		return eventData.getSequenceNumber( );
+	}
+}
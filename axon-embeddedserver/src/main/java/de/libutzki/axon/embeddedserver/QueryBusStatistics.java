@@ -0,0 +1,68 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.axonframework.queryhandling.QueryBus;
+
+/**
+ * The {@link QueryBusStatistics} record the point-to-point queries which have been routed to a registered
+ * {@link QueryBus}. They are the input of the {@link QueryRoutingPolicy}.<br>
+ * <br>
+ * The average latency is an exponentially weighted moving average, so that it follows changes of the load quickly.
+ *
+ * @author oliver.libutzki
+ *
+ */
+public final class QueryBusStatistics {
+
+	private static final double LATENCY_WEIGHT = 0.2;
+
+	private final QueryBus queryBus;
+	private final AtomicInteger inFlightCount = new AtomicInteger( );
+	private final LongAdder queryCount = new LongAdder( );
+	private double averageLatency;
+
+	QueryBusStatistics( final QueryBus queryBus ) {
+		this.queryBus = queryBus;
+	}
+
+	public QueryBus getQueryBus( ) {
+		return queryBus;
+	}
+
+	/**
+	 * Returns the number of queries which have been routed to the query bus and have not been completed yet.
+	 */
+	public int getInFlightCount( ) {
+		return inFlightCount.get( );
+	}
+
+	/**
+	 * Returns the number of queries which have been completed by the query bus.
+	 */
+	public long getQueryCount( ) {
+		return queryCount.sum( );
+	}
+
+	/**
+	 * Returns the average latency of the query bus in milliseconds or {@code 0} if no query has been completed yet.
+	 */
+	public synchronized double getAverageLatency( ) {
+		return averageLatency;
+	}
+
+	void queryStarted( ) {
+		inFlightCount.incrementAndGet( );
+	}
+
+	void queryCompleted( final long latencyNanos ) {
+		inFlightCount.decrementAndGet( );
+		queryCount.increment( );
+		final double latency = latencyNanos / ( double ) TimeUnit.MILLISECONDS.toNanos( 1 );
+		synchronized ( this ) {
+			averageLatency = averageLatency == 0.0 ? latency : averageLatency + LATENCY_WEIGHT * ( latency - averageLatency );
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.List;
+
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+
+/**
+ * The {@link QueryRoutingPolicy} selects the {@link QueryBus} which handles a point-to-point query if several query
+ * busses are registered for the query, e.g. because a bounded context is run in several replica contexts.<br>
+ * <br>
+ * A custom policy can be provided as a Spring bean. Otherwise the policy is chosen by the property
+ * {@code axon.embeddedserver.query-routing.policy}.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@FunctionalInterface
+public interface QueryRoutingPolicy {
+
+	/**
+	 * Selects one of the given candidates to handle the given query.
+	 *
+	 * @param query
+	 *                       The query to be routed.
+	 * @param candidates
+	 *                       The statistics of the query busses which are registered for the query. The list contains at
+	 *                       least two candidates and its order is stable.
+	 * @param originQueryBus
+	 *                       The local query bus of the context which sent the query or {@code null} if it is unknown.
+	 * @return one of the given candidates.
+	 */
+	QueryBusStatistics select( QueryMessage<?, ?> query, List<QueryBusStatistics> candidates, QueryBus originQueryBus );
+
+	/**
+	 * Returns a policy which selects the query bus with the fewest queries in flight. Ties are broken by the lower average
+	 * latency.
+	 */
+	static QueryRoutingPolicy leastOutstandingRequests( ) {
+		return new LeastOutstandingRequestsQueryRoutingPolicy( );
+	}
+
+	/**
+	 * Returns a policy which selects the query busses in turn.
+	 */
+	static QueryRoutingPolicy roundRobin( ) {
+		return new RoundRobinQueryRoutingPolicy( );
+	}
+
+	/**
+	 * Returns a policy which selects the query bus of the sending context if it is able to handle the query. Otherwise the
+	 * query is routed by the given {@code fallback} policy.
+	 */
+	static QueryRoutingPolicy localityPreferred( final QueryRoutingPolicy fallback ) {
+		return new LocalityPreferredQueryRoutingPolicy( fallback );
+	}
+}
@@ -0,0 +1,23 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+
+/**
+ * The {@link RoundRobinQueryRoutingPolicy} selects the query busses in turn.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class RoundRobinQueryRoutingPolicy implements QueryRoutingPolicy {
+
+	private final AtomicInteger counter = new AtomicInteger( );
+
+	@Override
+	public QueryBusStatistics select( final QueryMessage<?, ?> query, final List<QueryBusStatistics> candidates, final QueryBus originQueryBus ) {
+		return candidates.get( Math.floorMod( counter.getAndIncrement( ), candidates.size( ) ) );
+	}
+}
@@ -0,0 +1,231 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.axonframework.common.ObjectUtils;
+import org.axonframework.monitoring.MessageMonitor.MonitorCallback;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+import org.axonframework.queryhandling.QueryResponseMessage;
+
+
+/**
+ * The {@link ScatterGatherDispatcher} sends a scatter-gather query to all responsible {@link QueryBus QueryBusses}
+ * concurrently. All query busses share the same deadline, so that the latency is determined by the slowest query bus
+ * instead of the sum of all of them.<br>
+ * <br>
+ * The responses are streamed in the order of their arrival. Query busses which have not responded when the deadline is
+ * reached or the stream is closed are cancelled. If a query bus fails, its exception is thrown to the consumer of the
+ * stream and the other query busses are cancelled.<br>
+ * <br>
+ * The number of threads and the queue of the pending queries are bounded. If the queue is full, the query bus is
+ * queried on the caller's thread.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class ScatterGatherDispatcher {
+
+	private static final Object END_OF_RESPONSES = new Object( );
+
+	private final AtomicInteger threadCount = new AtomicInteger( );
+	private final ExecutorService executorService;
+
+	ScatterGatherDispatcher( final int poolSize, final int queueCapacity ) {
+		final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor( poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>( queueCapacity ), runnable -> {
+			final Thread thread = new Thread( runnable, "EmbeddedServerScatterGather-" + threadCount.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		}, ( runnable, executor ) -> {
+			if ( executor.isShutdown( ) ) {
+				throw new RejectedExecutionException( "The embedded server has been shut down." );
+			}
+			runnable.run( );
+		} );
+		threadPoolExecutor.allowCoreThreadTimeOut( true );
+		this.executorService = threadPoolExecutor;
+	}
+
+	/**
+	 * Sends the given query to all given query busses and returns their responses as they arrive. The outcome of each
+	 * query bus is reported to the {@link MonitorCallback} which {@code monitorCallbacks} returns for it. Query busses
+	 * which are cancelled are reported as failed if the deadline has been reached and as ignored if the stream has been
+	 * closed before.
+	 */
+	<Q, R> Stream<QueryResponseMessage<R>> scatterGather( final Collection<QueryBus> queryBusses, final QueryMessage<Q, R> query, final long timeout, final TimeUnit unit,
+			final Function<QueryBus, MonitorCallback> monitorCallbacks ) {
+		if ( queryBusses.isEmpty( ) ) {
+			return Stream.empty( );
+		}
+		final long deadline = System.currentTimeMillis( ) + unit.toMillis( timeout );
+		if ( queryBusses.size( ) == 1 ) {
+			final QueryBus queryBus = queryBusses.iterator( ).next( );
+			final PendingQueryBus pendingQueryBus = new PendingQueryBus( monitorCallbacks.apply( queryBus ), deadline );
+			final Stream<QueryResponseMessage<R>> responses;
+			try {
+				responses = queryBus.scatterGather( query, timeout, unit );
+			} catch ( final RuntimeException e ) {
+				pendingQueryBus.reportFailure( e );
+				throw e;
+			}
+			return MonitoredStream.of( responses, ( elements, durationNanos ) -> pendingQueryBus.reportSuccess( ) );
+		}
+
+		final BlockingQueue<Object> responses = new LinkedBlockingQueue<>( );
+		final List<PendingQueryBus> pendingQueryBusses = new ArrayList<>( queryBusses.size( ) );
+		for ( final QueryBus queryBus : queryBusses ) {
+			final PendingQueryBus pendingQueryBus = new PendingQueryBus( monitorCallbacks.apply( queryBus ), deadline );
+			pendingQueryBusses.add( pendingQueryBus );
+			pendingQueryBus.future = executorService.submit( ( ) -> {
+				try {
+					queryBus.scatterGather( query, ObjectUtils.getRemainingOfDeadline( deadline ), TimeUnit.MILLISECONDS ).forEach( responses::add );
+					pendingQueryBus.reportSuccess( );
+				} catch ( final RuntimeException e ) {
+					pendingQueryBus.reportFailure( e );
+					responses.add( new Failure( e ) );
+				} finally {
+					responses.add( END_OF_RESPONSES );
+				}
+			} );
+		}
+		final Runnable cancelPendingQueryBusses = ( ) -> pendingQueryBusses.forEach( PendingQueryBus::cancel );
+		final Iterator<QueryResponseMessage<R>> iterator = new ResponseIterator<>( responses, pendingQueryBusses.size( ), deadline, cancelPendingQueryBusses );
+		return StreamSupport
+				.stream( Spliterators.spliteratorUnknownSize( iterator, Spliterator.ORDERED | Spliterator.NONNULL ), false )
+				.onClose( cancelPendingQueryBusses );
+	}
+
+	/**
+	 * Cancels the pending queries and stops the threads.
+	 */
+	void shutDown( ) {
+		executorService.shutdownNow( );
+	}
+
+	private static final class ResponseIterator<R> implements Iterator<QueryResponseMessage<R>> {
+
+		private final BlockingQueue<Object> responses;
+		private final long deadline;
+		private final Runnable cancelPendingQueryBusses;
+		private int pendingQueryBusses;
+		private QueryResponseMessage<R> nextResponse;
+
+		ResponseIterator( final BlockingQueue<Object> responses, final int pendingQueryBusses, final long deadline, final Runnable cancelPendingQueryBusses ) {
+			this.responses = responses;
+			this.pendingQueryBusses = pendingQueryBusses;
+			this.deadline = deadline;
+			this.cancelPendingQueryBusses = cancelPendingQueryBusses;
+		}
+
+		@Override
+		@SuppressWarnings( "unchecked" )
+		public boolean hasNext( ) {
+			while ( nextResponse == null && pendingQueryBusses > 0 ) {
+				final Object response;
+				try {
+					response = responses.poll( ObjectUtils.getRemainingOfDeadline( deadline ), TimeUnit.MILLISECONDS );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread( ).interrupt( );
+					stop( );
+					return false;
+				}
+				if ( response == null ) {
+					stop( );
+				} else if ( response instanceof Failure ) {
+					stop( );
+					throw ( ( Failure ) response ).exception;
+				} else if ( response == END_OF_RESPONSES ) {
+					pendingQueryBusses--;
+				} else {
+					nextResponse = ( QueryResponseMessage<R> ) response;
+				}
+			}
+			return nextResponse != null;
+		}
+
+		@Override
+		public QueryResponseMessage<R> next( ) {
+			if ( !hasNext( ) ) {
+				throw new NoSuchElementException( );
+			}
+			final QueryResponseMessage<R> response = nextResponse;
+			nextResponse = null;
+			return response;
+		}
+
+		private void stop( ) {
+			pendingQueryBusses = 0;
+			cancelPendingQueryBusses.run( );
+		}
+	}
+
+	/**
+	 * A query bus whose outcome is reported exactly once, either by the thread querying it or by its cancellation.
+	 */
+	private static final class PendingQueryBus {
+
+		private final MonitorCallback monitorCallback;
+		private final long deadline;
+		private final AtomicBoolean reported = new AtomicBoolean( );
+		private volatile Future<?> future;
+
+		PendingQueryBus( final MonitorCallback monitorCallback, final long deadline ) {
+			this.monitorCallback = monitorCallback;
+			this.deadline = deadline;
+		}
+
+		void reportSuccess( ) {
+			if ( reported.compareAndSet( false, true ) ) {
+				monitorCallback.reportSuccess( );
+			}
+		}
+
+		void reportFailure( final Throwable cause ) {
+			if ( reported.compareAndSet( false, true ) ) {
+				monitorCallback.reportFailure( cause );
+			}
+		}
+
+		void cancel( ) {
+			if ( reported.compareAndSet( false, true ) ) {
+				if ( System.currentTimeMillis( ) >= deadline ) {
+					monitorCallback.reportFailure( new TimeoutException( "The query bus has not responded within the timeout of the scatter-gather query." ) );
+				} else {
+					monitorCallback.reportIgnored( );
+				}
+			}
+			final Future<?> currentFuture = future;
+			if ( currentFuture != null ) {
+				currentFuture.cancel( true );
+			}
+		}
+	}
+
+	private static final class Failure {
+
+		private final RuntimeException exception;
+
+		Failure( final RuntimeException exception ) {
+			this.exception = exception;
+		}
+	}
+}
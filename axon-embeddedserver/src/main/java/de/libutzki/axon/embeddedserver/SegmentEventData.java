@@ -0,0 +1,170 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.serialization.SerializedMetaData;
+import org.axonframework.serialization.SerializedObject;
+import org.axonframework.serialization.SimpleSerializedObject;
+
+/**
+ * The {@link SegmentEventData} represents an event record which has been read from a {@link SegmentFileStore}. The
+ * header fields are read eagerly, while payload and metadata are only copied out of the memory-mapped segment when they
+ * are requested.<br>
+ * <br>
+ * A record has the following layout: global index (long), timestamp (long seconds, int nanos), sequence number (long),
+ * event identifier, type, aggregate identifier, payload type, payload revision (strings), payload and metadata (byte
+ * arrays). Strings and byte arrays are prefixed with their length, {@code -1} represents {@code null}.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class SegmentEventData implements TrackedEventData<byte[]>, DomainEventData<byte[]> {
+
+	private final ByteBuffer record;
+	private final long globalIndex;
+	private final Instant timestamp;
+	private final long sequenceNumber;
+	private final String eventIdentifier;
+	private final String type;
+	private final String aggregateIdentifier;
+	private final String payloadType;
+	private final String payloadRevision;
+	private final int payloadOffset;
+	private final int metaDataOffset;
+
+	private SegmentEventData( final ByteBuffer record ) {
+		this.record = record;
+		globalIndex = record.getLong( );
+		timestamp = Instant.ofEpochSecond( record.getLong( ), record.getInt( ) );
+		sequenceNumber = record.getLong( );
+		eventIdentifier = readString( record );
+		type = readString( record );
+		aggregateIdentifier = readString( record );
+		payloadType = readString( record );
+		payloadRevision = readString( record );
+		payloadOffset = record.position( );
+		metaDataOffset = payloadOffset + Integer.BYTES + record.getInt( payloadOffset );
+	}
+
+	/**
+	 * Reads the record, which has been written by {@link #write(long, DomainEventMessage, SerializedObject, SerializedObject)}.
+	 */
+	static SegmentEventData read( final ByteBuffer record ) {
+		return new SegmentEventData( record );
+	}
+
+	/**
+	 * Creates the record for the given event.
+	 */
+	static ByteBuffer write( final long globalIndex, final DomainEventMessage<?> event, final SerializedObject<byte[]> payload, final SerializedObject<byte[]> metaData ) {
+		final byte[] eventIdentifier = toBytes( event.getIdentifier( ) );
+		final byte[] type = toBytes( event.getType( ) );
+		final byte[] aggregateIdentifier = toBytes( event.getAggregateIdentifier( ) );
+		final byte[] payloadType = toBytes( payload.getType( ).getName( ) );
+		final byte[] payloadRevision = toBytes( payload.getType( ).getRevision( ) );
+		final int size = Long.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES
+				+ sizeOf( eventIdentifier ) + sizeOf( type ) + sizeOf( aggregateIdentifier ) + sizeOf( payloadType ) + sizeOf( payloadRevision )
+				+ sizeOf( payload.getData( ) ) + sizeOf( metaData.getData( ) );
+
+		final ByteBuffer record = ByteBuffer.allocate( size );
+		record.putLong( globalIndex );
+		record.putLong( event.getTimestamp( ).getEpochSecond( ) );
+		record.putInt( event.getTimestamp( ).getNano( ) );
+		record.putLong( event.getSequenceNumber( ) );
+		putBytes( record, eventIdentifier );
+		putBytes( record, type );
+		putBytes( record, aggregateIdentifier );
+		putBytes( record, payloadType );
+		putBytes( record, payloadRevision );
+		putBytes( record, payload.getData( ) );
+		putBytes( record, metaData.getData( ) );
+		record.flip( );
+		return record;
+	}
+
+	long getGlobalIndex( ) {
+		return globalIndex;
+	}
+
+	@Override
+	public TrackingToken trackingToken( ) {
+		return new GlobalSequenceTrackingToken( globalIndex );
+	}
+
+	@Override
+	public String getEventIdentifier( ) {
+		return eventIdentifier;
+	}
+
+	@Override
+	public Instant getTimestamp( ) {
+		return timestamp;
+	}
+
+	@Override
+	public String getType( ) {
+		return type;
+	}
+
+	@Override
+	public String getAggregateIdentifier( ) {
+		return aggregateIdentifier;
+	}
+
+	@Override
+	public long getSequenceNumber( ) {
+		return sequenceNumber;
+	}
+
+	@Override
+	public SerializedObject<byte[]> getPayload( ) {
+		return new SimpleSerializedObject<>( readBytes( payloadOffset ), byte[].class, payloadType, payloadRevision );
+	}
+
+	@Override
+	public SerializedObject<byte[]> getMetaData( ) {
+		return new SerializedMetaData<>( readBytes( metaDataOffset ), byte[].class );
+	}
+
+	private byte[] readBytes( final int offset ) {
+		final ByteBuffer buffer = record.duplicate( );
+		buffer.position( offset );
+		final byte[] bytes = new byte[buffer.getInt( )];
+		buffer.get( bytes );
+		return bytes;
+	}
+
+	private static String readString( final ByteBuffer buffer ) {
+		final int length = buffer.getInt( );
+		if ( length < 0 ) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get( bytes );
+		return new String( bytes, StandardCharsets.UTF_8 );
+	}
+
+	private static byte[] toBytes( final String string ) {
+		return string == null ? null : string.getBytes( StandardCharsets.UTF_8 );
+	}
+
+	private static int sizeOf( final byte[] bytes ) {
+		return Integer.BYTES + ( bytes == null ? 0 : bytes.length );
+	}
+
+	private static void putBytes( final ByteBuffer buffer, final byte[] bytes ) {
+		if ( bytes == null ) {
+			buffer.putInt( -1 );
+		} else {
+			buffer.putInt( bytes.length );
+			buffer.put( bytes );
+		}
+	}
+}
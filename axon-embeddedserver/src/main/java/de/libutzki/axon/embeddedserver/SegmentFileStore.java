@@ -0,0 +1,230 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.axonframework.common.Assert;
+import org.axonframework.eventsourcing.eventstore.EventStoreException;
+
+/**
+ * The {@link SegmentFileStore} manages a sequence of append-only, memory-mapped segment files of a fixed size. Records
+ * are appended in batches. A batch is prefixed with its length and contains its records, each of them prefixed with its
+ * own length. A length of zero marks the end of the data within a segment, which is the initial content of a newly
+ * mapped file.<br>
+ * <br>
+ * The length of a batch is written after its records, so a batch which has only partially been written (e.g. due to a
+ * crash) is not visible when the store is opened again. A batch is always written to a single segment. All batches
+ * appended since a {@link #mark() mark} may be truncated, even if they have been written to several segments.<br>
+ * <br>
+ * A record is addressed by its position, which combines the number of the segment (upper 32 bits) and the offset of the
+ * record within the segment (lower 32 bits).<br>
+ * <br>
+ * Appending and truncating is not threadsafe and has to be synchronized by the caller. Reading records which have been
+ * appended before is threadsafe.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class SegmentFileStore {
+
+	private static final int LENGTH_SIZE = Integer.BYTES;
+
+	private final Path directory;
+	private final String suffix;
+	private final int segmentSize;
+	private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>( );
+	private int writeOffset;
+
+	SegmentFileStore( final Path directory, final String suffix, final int segmentSize ) {
+		this.directory = directory;
+		this.suffix = suffix;
+		this.segmentSize = segmentSize;
+		try {
+			Files.createDirectories( directory );
+			try ( Stream<Path> files = Files.list( directory ) ) {
+				for ( final Path file : files.filter( file -> file.getFileName( ).toString( ).endsWith( suffix ) ).sorted( ).collect( Collectors.toList( ) ) ) {
+					segments.add( map( file ) );
+				}
+			}
+		} catch ( final IOException e ) {
+			throw new EventStoreException( String.format( "Unable to open segment files in %s.", directory ), e );
+		}
+		if ( segments.isEmpty( ) ) {
+			addSegment( );
+		}
+	}
+
+	/**
+	 * Reads all records from the beginning. This has to be done once after opening the store, as it determines the offset
+	 * for appending further batches.
+	 */
+	void scan( final BiConsumer<Long, ByteBuffer> recordConsumer ) {
+		for ( int segmentNumber = 0; segmentNumber < segments.size( ); segmentNumber++ ) {
+			final ByteBuffer segment = segments.get( segmentNumber ).duplicate( );
+			int offset = 0;
+			while ( offset + LENGTH_SIZE <= segmentSize ) {
+				final int batchLength = segment.getInt( offset );
+				if ( batchLength == 0 ) {
+					break;
+				}
+				final int batchEnd = offset + LENGTH_SIZE + batchLength;
+				int recordOffset = offset + LENGTH_SIZE;
+				while ( recordOffset < batchEnd ) {
+					final int length = segment.getInt( recordOffset );
+					recordConsumer.accept( position( segmentNumber, recordOffset ), read( segment, recordOffset, length ) );
+					recordOffset += LENGTH_SIZE + length;
+				}
+				offset = batchEnd;
+			}
+			writeOffset = offset;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes the given records occupy as a batch, including all length prefixes.
+	 */
+	static int batchSize( final List<ByteBuffer> records ) {
+		long size = LENGTH_SIZE;
+		for ( final ByteBuffer record : records ) {
+			size += LENGTH_SIZE + record.remaining( );
+		}
+		return ( int ) Math.min( size, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Appends the remaining bytes of the given records as a single batch and returns the positions of the records. Nothing
+	 * is written if the batch exceeds the segment size.
+	 */
+	long[] append( final List<ByteBuffer> records ) {
+		if ( records.isEmpty( ) ) {
+			return new long[0];
+		}
+		final int batchSize = batchSize( records );
+		if ( batchSize > segmentSize ) {
+			throw new EventStoreException( String.format( "The batch of %d bytes exceeds the segment size of %d bytes.", batchSize, segmentSize ) );
+		}
+		if ( writeOffset + batchSize > segmentSize ) {
+			addSegment( );
+		}
+		final int segmentNumber = segments.size( ) - 1;
+		final ByteBuffer segment = segments.get( segmentNumber ).duplicate( );
+		final int offset = writeOffset;
+		final long[] positions = new long[records.size( )];
+		segment.position( offset + LENGTH_SIZE );
+		for ( int i = 0; i < records.size( ); i++ ) {
+			final ByteBuffer record = records.get( i );
+			positions[i] = position( segmentNumber, segment.position( ) );
+			segment.putInt( record.remaining( ) );
+			segment.put( record.duplicate( ) );
+		}
+		final int end = offset + batchSize;
+		// Data of a batch which has been truncated or only partially been written before a crash may follow this batch. It
+		// must not be mistaken for another batch.
+		if ( end + LENGTH_SIZE <= segmentSize ) {
+			segment.putInt( end, 0 );
+		}
+		// The length is written last, so that a batch which has only partially been written is not visible after a crash.
+		segment.putInt( offset, batchSize - LENGTH_SIZE );
+		writeOffset = end;
+		return positions;
+	}
+
+	/**
+	 * Returns a mark of the current end of the store, which is passed to {@link #truncate(long)} in order to remove the
+	 * batches appended afterwards.
+	 */
+	long mark( ) {
+		return position( segments.size( ) - 1, writeOffset );
+	}
+
+	/**
+	 * Removes all batches which have been appended since the given {@link #mark() mark} was taken. Segments which have been
+	 * added since are cleared and deleted.
+	 */
+	void truncate( final long mark ) {
+		final int segmentNumber = ( int ) ( mark >>> 32 );
+		final int offset = ( int ) mark;
+		Assert.state( segmentNumber < segments.size( ), ( ) -> "The mark is beyond the end of the store." );
+		while ( segments.size( ) - 1 > segmentNumber ) {
+			removeLastSegment( );
+		}
+		if ( offset + LENGTH_SIZE <= segmentSize ) {
+			segments.get( segmentNumber ).putInt( offset, 0 );
+		}
+		writeOffset = offset;
+	}
+
+	/**
+	 * Returns the record at the given position. The returned buffer is a view of the memory-mapped file, so the record is
+	 * not copied.
+	 */
+	ByteBuffer read( final long position ) {
+		final ByteBuffer segment = segments.get( ( int ) ( position >>> 32 ) ).duplicate( );
+		final int offset = ( int ) position;
+		return read( segment, offset, segment.getInt( offset ) );
+	}
+
+	/**
+	 * Flushes all changes to the storage device.
+	 */
+	void force( ) {
+		segments.forEach( MappedByteBuffer::force );
+	}
+
+	private static ByteBuffer read( final ByteBuffer segment, final int offset, final int length ) {
+		final ByteBuffer record = segment.duplicate( );
+		record.limit( offset + LENGTH_SIZE + length );
+		record.position( offset + LENGTH_SIZE );
+		return record.slice( );
+	}
+
+	private void addSegment( ) {
+		final Path file = segmentFile( segments.size( ) );
+		try {
+			segments.add( map( file ) );
+		} catch ( final IOException e ) {
+			throw new EventStoreException( String.format( "Unable to create segment file %s.", file ), e );
+		}
+		writeOffset = 0;
+	}
+
+	private void removeLastSegment( ) {
+		final int segmentNumber = segments.size( ) - 1;
+		// A cleared segment contains no records when the store is opened again, so clearing it is sufficient if the file
+		// cannot be deleted (e.g. because the operating system does not allow to delete a mapped file). It is mapped again
+		// when the next segment is added.
+		segments.get( segmentNumber ).putInt( 0, 0 );
+		segments.remove( segmentNumber );
+		final Path file = segmentFile( segmentNumber );
+		try {
+			Files.deleteIfExists( file );
+		} catch ( final IOException e ) {
+			// The cleared file is kept.
+		}
+	}
+
+	private Path segmentFile( final int segmentNumber ) {
+		return directory.resolve( String.format( "%010d%s", segmentNumber, suffix ) );
+	}
+
+	private MappedByteBuffer map( final Path file ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+			return channel.map( MapMode.READ_WRITE, 0, segmentSize );
+		}
+	}
+
+	private static long position( final int segmentNumber, final int offset ) {
+		return ( ( long ) segmentNumber << 32 ) | offset;
+	}
+}
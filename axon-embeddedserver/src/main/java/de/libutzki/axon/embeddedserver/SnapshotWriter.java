@@ -0,0 +1,170 @@
+package de.libutzki.axon.embeddedserver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import org.axonframework.common.Registration;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link SnapshotWriter} stores snapshots asynchronously, so that snapshotting does not add latency to the caller.
+ * The snapshots are queued per aggregate. If a newer snapshot of an aggregate is queued before the older one has been
+ * written, the older one is discarded. All queued snapshots are written by a single thread in one transaction per
+ * batch.<br>
+ * <br>
+ * The queue is bounded by the number of aggregates. If it is full, further snapshots are dropped, as snapshots are only a
+ * performance optimization. Written, superseded, dropped and failed snapshots and the queue size are reported to the
+ * {@link EmbeddedServerMonitor}.<br>
+ * <br>
+ * The registered snapshot listeners are notified after the transaction has been committed.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class SnapshotWriter {
+
+	private final EventStorageEngine eventStorageEngine;
+	private final TransactionManager transactionManager;
+	private final int queueCapacity;
+	private final int batchSize;
+	private final EmbeddedServerMonitor embeddedServerMonitor;
+
+	private final Set<Consumer<String>> snapshotListeners = new CopyOnWriteArraySet<>( );
+	private final Map<String, DomainEventMessage<?>> queuedSnapshots = new LinkedHashMap<>( );
+	private final Thread writerThread;
+	private boolean running = true;
+
+	/**
+	 * Creates and starts the {@link SnapshotWriter}.
+	 */
+	SnapshotWriter( final EventStorageEngine eventStorageEngine, final TransactionManager transactionManager, final int queueCapacity, final int batchSize,
+			final EmbeddedServerMonitor embeddedServerMonitor ) {
+		if ( queueCapacity <= 0 || batchSize <= 0 ) {
+			throw new IllegalArgumentException( "The queue capacity and the batch size of the snapshot writer have to be positive." );
+		}
+		this.eventStorageEngine = eventStorageEngine;
+		this.transactionManager = transactionManager;
+		this.queueCapacity = queueCapacity;
+		this.batchSize = batchSize;
+		this.embeddedServerMonitor = embeddedServerMonitor;
+		writerThread = new Thread( this::writeQueuedSnapshots, "EmbeddedServerSnapshotWriter" );
+		writerThread.setDaemon( true );
+		writerThread.start( );
+	}
+
+	/**
+	 * Queues the given snapshot. This method never blocks.
+	 */
+	void storeSnapshot( final DomainEventMessage<?> snapshot ) {
+		final String aggregateIdentifier = snapshot.getAggregateIdentifier( );
+		synchronized ( queuedSnapshots ) {
+			if ( !running ) {
+				throw new IllegalStateException( "The snapshot writer has been shut down." );
+			}
+			final DomainEventMessage<?> queuedSnapshot = queuedSnapshots.get( aggregateIdentifier );
+			if ( queuedSnapshot != null ) {
+				embeddedServerMonitor.snapshotSuperseded( );
+				if ( queuedSnapshot.getSequenceNumber( ) < snapshot.getSequenceNumber( ) ) {
+					queuedSnapshots.put( aggregateIdentifier, snapshot );
+				}
+			} else if ( queuedSnapshots.size( ) >= queueCapacity ) {
+				embeddedServerMonitor.snapshotDropped( );
+				log.debug( "Snapshot queue is full. Dropping snapshot of aggregate [{}].", aggregateIdentifier );
+			} else {
+				queuedSnapshots.put( aggregateIdentifier, snapshot );
+				embeddedServerMonitor.snapshotQueueSizeChanged( queuedSnapshots.size( ) );
+				queuedSnapshots.notifyAll( );
+			}
+		}
+	}
+
+	/**
+	 * Registers the given {@code listener} which is notified with the aggregate identifier whenever a snapshot has been
+	 * written.
+	 */
+	Registration registerSnapshotListener( final Consumer<String> listener ) {
+		snapshotListeners.add( listener );
+		return ( ) -> snapshotListeners.remove( listener );
+	}
+
+	/**
+	 * Writes the snapshots which are still queued and stops the writer thread.
+	 */
+	void shutDown( ) {
+		synchronized ( queuedSnapshots ) {
+			running = false;
+			queuedSnapshots.notifyAll( );
+		}
+		try {
+			writerThread.join( );
+		} catch ( final InterruptedException e ) {
+			log.warn( "Interrupted while waiting for the snapshot writer to finish.", e );
+			Thread.currentThread( ).interrupt( );
+		}
+	}
+
+	private void writeQueuedSnapshots( ) {
+		List<DomainEventMessage<?>> batch;
+		while ( !( batch = takeBatch( ) ).isEmpty( ) ) {
+			write( batch );
+		}
+	}
+
+	/**
+	 * Waits for queued snapshots and removes up to {@link #batchSize} of them from the queue. Returns an empty list if the
+	 * writer has been shut down and the queue is empty.
+	 */
+	private List<DomainEventMessage<?>> takeBatch( ) {
+		synchronized ( queuedSnapshots ) {
+			while ( running && queuedSnapshots.isEmpty( ) ) {
+				try {
+					queuedSnapshots.wait( );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread( ).interrupt( );
+					return new ArrayList<>( );
+				}
+			}
+			final List<DomainEventMessage<?>> batch = new ArrayList<>( Math.min( batchSize, queuedSnapshots.size( ) ) );
+			final Iterator<DomainEventMessage<?>> iterator = queuedSnapshots.values( ).iterator( );
+			while ( iterator.hasNext( ) && batch.size( ) < batchSize ) {
+				batch.add( iterator.next( ) );
+				iterator.remove( );
+			}
+			embeddedServerMonitor.snapshotQueueSizeChanged( queuedSnapshots.size( ) );
+			return batch;
+		}
+	}
+
+	private void write( final List<DomainEventMessage<?>> batch ) {
+		try {
+			final long start = System.nanoTime( );
+			transactionManager.executeInTransaction( ( ) -> batch.forEach( eventStorageEngine::storeSnapshot ) );
+			embeddedServerMonitor.snapshotsWritten( batch.size( ), System.nanoTime( ) - start );
+			batch.forEach( this::snapshotWritten );
+		} catch ( final RuntimeException e ) {
+			if ( batch.size( ) == 1 ) {
+				embeddedServerMonitor.snapshotWriteFailed( );
+				log.warn( "Failed to store snapshot of aggregate [{}].", batch.get( 0 ).getAggregateIdentifier( ), e );
+			} else {
+				// Write the snapshots one by one, so that a single faulty snapshot does not prevent the others from being stored.
+				log.debug( "Failed to store a batch of {} snapshots. Storing them separately.", batch.size( ), e );
+				batch.forEach( snapshot -> write( List.of( snapshot ) ) );
+			}
+		}
+	}
+
+	private void snapshotWritten( final DomainEventMessage<?> snapshot ) {
+		snapshotListeners.forEach( listener -> listener.accept( snapshot.getAggregateIdentifier( ) ) );
+	}
+}
@@ -0,0 +1,57 @@
+package de.libutzki.axon.embeddedserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AggregateCommandSchedulerTest {
+
+	private static final String AGGREGATE_IDENTIFIER = "aggregate";
+
+	private AggregateCommandScheduler aggregateCommandScheduler;
+
+	@AfterEach
+	void shutDown( ) {
+		aggregateCommandScheduler.shutDown( );
+	}
+
+	@Test
+	void testCommandExceedingTheQueueOfItsAggregateIsRejected( ) {
+		aggregateCommandScheduler = new AggregateCommandScheduler( 1, 1, 30000 );
+		final AtomicBoolean otherAggregateExecuted = new AtomicBoolean( );
+
+		// The first command is never completed, so the second one stays in the queue.
+		assertThat( aggregateCommandScheduler.schedule( AGGREGATE_IDENTIFIER, completion -> {
+		} ) ).isTrue( );
+		assertThat( aggregateCommandScheduler.schedule( AGGREGATE_IDENTIFIER, Runnable::run ) ).isTrue( );
+		assertThat( aggregateCommandScheduler.schedule( AGGREGATE_IDENTIFIER, Runnable::run ) ).isFalse( );
+		assertThat( aggregateCommandScheduler.schedule( "otherAggregate", completion -> {
+			otherAggregateExecuted.set( true );
+			completion.run( );
+		} ) ).isTrue( );
+
+		assertThat( otherAggregateExecuted ).isTrue( );
+	}
+
+	@Test
+	void testNextCommandIsExecutedIfTheCompletionTimesOut( ) throws InterruptedException {
+		aggregateCommandScheduler = new AggregateCommandScheduler( 1, 10, 100 );
+		final CountDownLatch secondCommandExecuted = new CountDownLatch( 1 );
+
+		aggregateCommandScheduler.schedule( AGGREGATE_IDENTIFIER, completion -> {
+			// The callback of the command is lost.
+		} );
+		aggregateCommandScheduler.schedule( AGGREGATE_IDENTIFIER, completion -> {
+			secondCommandExecuted.countDown( );
+			completion.run( );
+		} );
+
+		assertThat( secondCommandExecuted.await( 5, TimeUnit.SECONDS ) ).isTrue( );
+	}
+
+}
@@ -0,0 +1,176 @@
+package de.libutzki.axon.embeddedserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventsourcing.eventstore.EventStoreException;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.modelling.command.AggregateStreamCreationException;
+import org.axonframework.modelling.command.ConcurrencyException;
+import org.axonframework.serialization.xml.XStreamSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EmbeddedServerSegmentEventStorageEngineTest {
+
+	private static final int SEGMENT_SIZE = 4096;
+
+	@TempDir
+	Path storageDirectory;
+
+	private EmbeddedServerSegmentEventStorageEngine storageEngine;
+
+	@AfterEach
+	void shutDown( ) {
+		storageEngine.shutDown( );
+	}
+
+	@Test
+	void testEventsAreRecoveredAfterRestart( ) {
+		storageEngine = createStorageEngine( );
+		storageEngine.appendEvents( event( "aggregate1", 0 ), event( "aggregate1", 1 ), event( "aggregate2", 0 ) );
+		storageEngine.appendEvents( event( "aggregate1", 2 ) );
+
+		restart( );
+
+		assertThat( aggregateEvents( "aggregate1" ) ).containsExactly( "aggregate1-0", "aggregate1-1", "aggregate1-2" );
+		assertThat( storageEngine.lastSequenceNumberFor( "aggregate2" ) ).contains( 0L );
+		storageEngine.appendEvents( event( "aggregate2", 1 ) );
+		assertThat( trackedEvents( ) ).containsExactly( "aggregate1-0", "aggregate1-1", "aggregate2-0", "aggregate1-2", "aggregate2-1" );
+		assertThat( storageEngine.createHeadToken( ) ).isEqualTo( new GlobalSequenceTrackingToken( 4 ) );
+	}
+
+	@Test
+	void testEventsAreVisibleAfterTheUnitOfWorkHasBeenCommitted( ) {
+		storageEngine = createStorageEngine( );
+		final UnitOfWork<?> unitOfWork = DefaultUnitOfWork.startAndGet( null );
+		unitOfWork.onPrepareCommit( u -> {
+			storageEngine.appendEvents( event( "aggregate1", 0 ) );
+			storageEngine.appendEvents( event( "aggregate1", 1 ) );
+			assertThat( trackedEvents( ) ).isEmpty( );
+		} );
+		unitOfWork.commit( );
+
+		assertThat( trackedEvents( ) ).containsExactly( "aggregate1-0", "aggregate1-1" );
+	}
+
+	@Test
+	void testEventsAreDiscardedWhenTheUnitOfWorkIsRolledBack( ) {
+		storageEngine = createStorageEngine( );
+		storageEngine.appendEvents( event( "aggregate1", 0 ) );
+		final UnitOfWork<?> unitOfWork = DefaultUnitOfWork.startAndGet( null );
+		unitOfWork.onPrepareCommit( u -> {
+			storageEngine.appendEvents( event( "aggregate1", 1 ), event( "aggregate1", 2 ) );
+			throw new IllegalStateException( "Rollback" );
+		} );
+		assertThatThrownBy( unitOfWork::commit ).isInstanceOf( IllegalStateException.class );
+
+		storageEngine.appendEvents( event( "aggregate1", 1 ) );
+		restart( );
+
+		assertThat( trackedEvents( ) ).containsExactly( "aggregate1-0", "aggregate1-1" );
+	}
+
+	@Test
+	void testEventsAreDiscardedWhenTheUnitOfWorkIsRolledBackAfterASegmentRollover( ) {
+		storageEngine = createStorageEngine( );
+		storageEngine.appendEvents( largeEvent( "aggregate1", 0 ) );
+		final UnitOfWork<?> unitOfWork = DefaultUnitOfWork.startAndGet( null );
+		unitOfWork.onPrepareCommit( u -> {
+			// The first batch still fits into the first segment, the second one is appended to a new segment.
+			storageEngine.appendEvents( largeEvent( "aggregate1", 1 ) );
+			storageEngine.appendEvents( largeEvent( "aggregate1", 2 ) );
+			assertThat( storageDirectory.resolve( "0000000001.events" ) ).exists( );
+			throw new IllegalStateException( "Rollback" );
+		} );
+		assertThatThrownBy( unitOfWork::commit ).isInstanceOf( IllegalStateException.class );
+
+		storageEngine.appendEvents( event( "aggregate1", 1 ) );
+		storageEngine.appendEvents( largeEvent( "aggregate1", 2 ), largeEvent( "aggregate1", 3 ) );
+		restart( );
+
+		assertThat( trackedEvents( ) ).containsExactly( "aggregate1-0", "aggregate1-1", "aggregate1-2", "aggregate1-3" );
+		storageEngine.appendEvents( event( "aggregate1", 4 ) );
+		assertThat( aggregateEvents( "aggregate1" ) ).containsExactly( "aggregate1-0", "aggregate1-1", "aggregate1-2", "aggregate1-3", "aggregate1-4" );
+	}
+
+	@Test
+	void testConflictingBatchIsRejectedCompletely( ) {
+		storageEngine = createStorageEngine( );
+		storageEngine.appendEvents( event( "aggregate1", 0 ), event( "aggregate1", 1 ) );
+
+		assertThatThrownBy( ( ) -> storageEngine.appendEvents( event( "aggregate2", 0 ), event( "aggregate1", 1 ) ) ).isInstanceOf( ConcurrencyException.class );
+		assertThatThrownBy( ( ) -> storageEngine.appendEvents( event( "aggregate2", 0 ), event( "aggregate2", 0 ) ) ).isInstanceOf( AggregateStreamCreationException.class );
+		restart( );
+
+		assertThat( trackedEvents( ) ).containsExactly( "aggregate1-0", "aggregate1-1" );
+		assertThat( storageEngine.lastSequenceNumberFor( "aggregate2" ) ).isEmpty( );
+	}
+
+	@Test
+	void testOversizedRecordRejectsTheWholeBatch( ) {
+		storageEngine = createStorageEngine( );
+		storageEngine.appendEvents( event( "aggregate1", 0 ) );
+
+		final DomainEventMessage<?> oversizedEvent = new GenericDomainEventMessage<>( "TestAggregate", "aggregate2", 0, "x".repeat( SEGMENT_SIZE * 2 ) );
+		assertThatThrownBy( ( ) -> storageEngine.appendEvents( event( "aggregate1", 1 ), oversizedEvent ) ).isInstanceOf( EventStoreException.class );
+
+		storageEngine.appendEvents( event( "aggregate1", 1 ) );
+		restart( );
+
+		assertThat( trackedEvents( ) ).containsExactly( "aggregate1-0", "aggregate1-1" );
+		assertThat( storageEngine.lastSequenceNumberFor( "aggregate2" ) ).isEmpty( );
+	}
+
+	private EmbeddedServerSegmentEventStorageEngine createStorageEngine( ) {
+		return EmbeddedServerSegmentEventStorageEngine.builder( )
+				.storageDirectory( storageDirectory )
+				.segmentSize( SEGMENT_SIZE )
+				.eventSerializer( XStreamSerializer.defaultSerializer( ) )
+				.snapshotSerializer( XStreamSerializer.defaultSerializer( ) )
+				.build( );
+	}
+
+	private void restart( ) {
+		storageEngine.shutDown( );
+		storageEngine = createStorageEngine( );
+	}
+
+	private List<String> aggregateEvents( final String aggregateIdentifier ) {
+		return storageEngine.readEventData( aggregateIdentifier, 0 ).map( EmbeddedServerSegmentEventStorageEngineTest::describe ).collect( Collectors.toList( ) );
+	}
+
+	private List<String> trackedEvents( ) {
+		return storageEngine.readEventData( null, false ).map( eventData -> describe( ( DomainEventData<?> ) eventData ) ).collect( Collectors.toList( ) );
+	}
+
+	/**
+	 * The storage engine of the embedded server does not create messages, so the events are identified by their aggregate
+	 * and sequence number.
+	 */
+	private static String describe( final DomainEventData<?> eventData ) {
+		return eventData.getAggregateIdentifier( ) + "-" + eventData.getSequenceNumber( );
+	}
+
+	private static DomainEventMessage<?> event( final String aggregateIdentifier, final long sequenceNumber ) {
+		return new GenericDomainEventMessage<>( "TestAggregate", aggregateIdentifier, sequenceNumber, aggregateIdentifier + "-" + sequenceNumber );
+	}
+
+	/**
+	 * Returns an event which occupies about a third of a segment.
+	 */
+	private static DomainEventMessage<?> largeEvent( final String aggregateIdentifier, final long sequenceNumber ) {
+		return new GenericDomainEventMessage<>( "TestAggregate", aggregateIdentifier, sequenceNumber, "x".repeat( SEGMENT_SIZE / 3 ) );
+	}
+
+}
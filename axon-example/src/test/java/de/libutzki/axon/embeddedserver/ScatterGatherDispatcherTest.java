@@ -0,0 +1,125 @@
+package de.libutzki.axon.embeddedserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.monitoring.MessageMonitor.MonitorCallback;
+import org.axonframework.queryhandling.GenericQueryMessage;
+import org.axonframework.queryhandling.GenericQueryResponseMessage;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+import org.axonframework.queryhandling.QueryResponseMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ScatterGatherDispatcherTest {
+
+	private final ScatterGatherDispatcher scatterGatherDispatcher = new ScatterGatherDispatcher( 1, 1 );
+	private final Map<QueryBus, String> outcomes = new ConcurrentHashMap<>( );
+	private final QueryMessage<String, String> query = new GenericQueryMessage<>( "payload", "testQuery", ResponseTypes.instanceOf( String.class ) );
+
+	@AfterEach
+	void shutDown( ) {
+		scatterGatherDispatcher.shutDown( );
+	}
+
+	@Test
+	void testFailureOfAQueryBusIsThrownToTheConsumer( ) {
+		final QueryBus failingQueryBus = mock( QueryBus.class );
+		final IllegalStateException failure = new IllegalStateException( "failure" );
+		when( failingQueryBus.scatterGather( any( ), anyLong( ), any( ) ) ).thenThrow( failure );
+
+		try ( Stream<QueryResponseMessage<String>> responses = scatterGather( failingQueryBus, respondingQueryBus( "response" ) ) ) {
+			assertThatThrownBy( ( ) -> responses.collect( Collectors.toList( ) ) ).isSameAs( failure );
+		}
+		assertThat( outcomes.get( failingQueryBus ) ).isEqualTo( "failure: failure" );
+	}
+
+	@Test
+	void testOutcomeOfEachQueryBusIsReported( ) throws InterruptedException {
+		final QueryBus respondingQueryBus = respondingQueryBus( "response" );
+		final QueryBus lateQueryBus = mock( QueryBus.class );
+		final CountDownLatch releaseLateQueryBus = new CountDownLatch( 1 );
+		when( lateQueryBus.scatterGather( any( ), anyLong( ), any( ) ) ).thenAnswer( invocation -> {
+			releaseLateQueryBus.await( );
+			return Stream.empty( );
+		} );
+		final ScatterGatherDispatcher twoThreadScatterGatherDispatcher = new ScatterGatherDispatcher( 2, 1 );
+		try ( Stream<QueryResponseMessage<String>> responses = twoThreadScatterGatherDispatcher.scatterGather( List.of( respondingQueryBus, lateQueryBus ), query, 200,
+				TimeUnit.MILLISECONDS, this::recordingMonitorCallback ) ) {
+			assertThat( responses.map( QueryResponseMessage::getPayload ).collect( Collectors.toList( ) ) ).containsExactly( "response" );
+		} finally {
+			releaseLateQueryBus.countDown( );
+			twoThreadScatterGatherDispatcher.shutDown( );
+		}
+
+		assertThat( outcomes ).containsEntry( respondingQueryBus, "success" );
+		assertThat( outcomes.get( lateQueryBus ) ).startsWith( "failure: " );
+	}
+
+	@Test
+	void testQueryBussesExceedingThePoolAndTheQueueAreQueriedOnTheCallersThread( ) throws InterruptedException {
+		final CountDownLatch releaseFirstQueryBus = new CountDownLatch( 1 );
+		final QueryBus blockingQueryBus = mock( QueryBus.class );
+		when( blockingQueryBus.scatterGather( any( ), anyLong( ), any( ) ) ).thenAnswer( invocation -> {
+			releaseFirstQueryBus.await( );
+			return Stream.of( new GenericQueryResponseMessage<>( "first" ) );
+		} );
+		final QueryBus callerThreadQueryBus = mock( QueryBus.class );
+		final Thread callerThread = Thread.currentThread( );
+		when( callerThreadQueryBus.scatterGather( any( ), anyLong( ), any( ) ) ).thenAnswer( invocation -> {
+			// The only thread of the pool is blocked and the queue is occupied, so this query bus is queried by the caller.
+			assertThat( Thread.currentThread( ) ).isSameAs( callerThread );
+			releaseFirstQueryBus.countDown( );
+			return Stream.of( new GenericQueryResponseMessage<>( "third" ) );
+		} );
+
+		try ( Stream<QueryResponseMessage<String>> responses = scatterGather( blockingQueryBus, respondingQueryBus( "second" ), callerThreadQueryBus ) ) {
+			assertThat( responses.map( QueryResponseMessage::getPayload ).collect( Collectors.toList( ) ) ).containsExactlyInAnyOrder( "first", "second", "third" );
+		}
+	}
+
+	private Stream<QueryResponseMessage<String>> scatterGather( final QueryBus... queryBusses ) {
+		return scatterGatherDispatcher.scatterGather( List.of( queryBusses ), query, 5, TimeUnit.SECONDS, this::recordingMonitorCallback );
+	}
+
+	private MonitorCallback recordingMonitorCallback( final QueryBus queryBus ) {
+		return new MonitorCallback( ) {
+
+			@Override
+			public void reportSuccess( ) {
+				outcomes.put( queryBus, "success" );
+			}
+
+			@Override
+			public void reportFailure( final Throwable cause ) {
+				outcomes.put( queryBus, "failure: " + cause.getMessage( ) );
+			}
+
+			@Override
+			public void reportIgnored( ) {
+				outcomes.put( queryBus, "ignored" );
+			}
+		};
+	}
+
+	private static QueryBus respondingQueryBus( final String response ) {
+		final QueryBus queryBus = mock( QueryBus.class );
+		when( queryBus.scatterGather( any( ), anyLong( ), any( ) ) ).thenAnswer( invocation -> Stream.of( new GenericQueryResponseMessage<>( response ) ) );
+		return queryBus;
+	}
+
+}
@@ -0,0 +1,73 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.serialization.Serializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+
+class EmbeddedServerTrackingEventStreamTest {
+
+	private final EventPrefetchExecutor eventPrefetchExecutor = new EventPrefetchExecutor( 10, Long.MAX_VALUE );
+
+	@AfterEach
+	void shutDown( ) {
+		eventPrefetchExecutor.shutDown( );
+	}
+
+	@Test
+	void testCloseInterruptsABlockedPrefetcherAndClosesTheEventStream( ) throws InterruptedException {
+		final CountDownLatch blocked = new CountDownLatch( 1 );
+		final CountDownLatch interrupted = new CountDownLatch( 1 );
+		final AtomicBoolean closed = new AtomicBoolean( );
+		// Simulates a read from the storage engine which does not return, e.g. because the database does not respond.
+		final Iterator<TrackedEventData<?>> blockingIterator = new Iterator<TrackedEventData<?>>( ) {
+
+			@Override
+			public boolean hasNext( ) {
+				blocked.countDown( );
+				try {
+					new CountDownLatch( 1 ).await( );
+				} catch ( final InterruptedException e ) {
+					interrupted.countDown( );
+					throw new IllegalStateException( e );
+				}
+				return false;
+			}
+
+			@Override
+			public TrackedEventData<?> next( ) {
+				throw new NoSuchElementException( );
+			}
+		};
+		final Stream<TrackedEventData<?>> eventDataStream = StreamSupport.stream( Spliterators.spliteratorUnknownSize( blockingIterator, Spliterator.ORDERED ), false )
+				.onClose( ( ) -> closed.set( true ) );
+		final EmbeddedServer embeddedServer = mock( EmbeddedServer.class );
+		when( embeddedServer.registerEventAvailabilityListener( any( ) ) ).thenReturn( ( ) -> true );
+
+		final EmbeddedServerTrackingEventStream eventStream = new EmbeddedServerTrackingEventStream( embeddedServer, eventDataStream, null, mock( Serializer.class ), null, null,
+				eventPrefetchExecutor );
+		assertThat( blocked.await( 5, TimeUnit.SECONDS ) ).isTrue( );
+		eventStream.close( );
+
+		assertThat( interrupted.await( 5, TimeUnit.SECONDS ) ).isTrue( );
+		assertThat( closed ).isTrue( );
+	}
+
+}
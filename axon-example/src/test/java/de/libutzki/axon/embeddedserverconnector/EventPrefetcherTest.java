@@ -0,0 +1,93 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.eventhandling.GenericTrackedEventMessage;
+import org.axonframework.eventhandling.GlobalSequenceTrackingToken;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.messaging.GenericMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class EventPrefetcherTest {
+
+	private static final long EVENT_SIZE = 100;
+
+	private final EventPrefetchExecutor eventPrefetchExecutor = new EventPrefetchExecutor( 100, 250 );
+	private final AtomicInteger readEvents = new AtomicInteger( );
+
+	@AfterEach
+	void shutDown( ) {
+		eventPrefetchExecutor.shutDown( );
+	}
+
+	@Test
+	void testBufferIsBoundedByBytes( ) throws InterruptedException {
+		final EventPrefetcher eventPrefetcher = start( source( Integer.MAX_VALUE, null ) );
+
+		// The third event exceeds the limit of 250 bytes, so the prefetcher waits afterwards.
+		awaitReadEvents( 3 );
+		Thread.sleep( 200 );
+		assertThat( readEvents.get( ) ).isEqualTo( 3 );
+
+		eventPrefetcher.nextAvailable( );
+		awaitReadEvents( 4 );
+		Thread.sleep( 200 );
+		assertThat( readEvents.get( ) ).isEqualTo( 4 );
+	}
+
+	@Test
+	void testFailureIsRethrownAfterThePrefetchedEvents( ) throws InterruptedException {
+		final IllegalStateException failure = new IllegalStateException( "Failure" );
+		final EventPrefetcher eventPrefetcher = start( source( 2, failure ) );
+
+		assertThat( eventPrefetcher.nextAvailable( ).trackingToken( ) ).isEqualTo( new GlobalSequenceTrackingToken( 0 ) );
+		assertThat( eventPrefetcher.nextAvailable( ).trackingToken( ) ).isEqualTo( new GlobalSequenceTrackingToken( 1 ) );
+		assertThatThrownBy( ( ) -> eventPrefetcher.hasNextAvailable( System.currentTimeMillis( ) + 1000 ) ).isSameAs( failure );
+		assertThatThrownBy( eventPrefetcher::nextAvailable ).isSameAs( failure );
+	}
+
+	private EventPrefetcher start( final Iterator<TrackedEventMessage<?>> source ) {
+		return eventPrefetchExecutor.start( source, ( ) -> readEvents.get( ) * EVENT_SIZE, deadline -> Thread.sleep( 10 ) );
+	}
+
+	/**
+	 * Returns a source of {@code eventCount} events of {@link #EVENT_SIZE} bytes each, which throws the given failure
+	 * afterwards.
+	 */
+	private Iterator<TrackedEventMessage<?>> source( final int eventCount, final RuntimeException failure ) {
+		return new Iterator<TrackedEventMessage<?>>( ) {
+
+			@Override
+			public boolean hasNext( ) {
+				if ( readEvents.get( ) < eventCount ) {
+					return true;
+				}
+				if ( failure != null ) {
+					throw failure;
+				}
+				return false;
+			}
+
+			@Override
+			public TrackedEventMessage<?> next( ) {
+				final int sequence = readEvents.getAndIncrement( );
+				return new GenericTrackedEventMessage<>( new GlobalSequenceTrackingToken( sequence ), new GenericMessage<>( "event" + sequence ), Instant::now );
+			}
+		};
+	}
+
+	private void awaitReadEvents( final int count ) throws InterruptedException {
+		final long deadline = System.currentTimeMillis( ) + 5000;
+		while ( readEvents.get( ) < count && System.currentTimeMillis( ) < deadline ) {
+			Thread.sleep( 10 );
+		}
+		assertThat( readEvents.get( ) ).isEqualTo( count );
+	}
+
+}
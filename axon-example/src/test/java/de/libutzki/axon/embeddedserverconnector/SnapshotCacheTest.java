@@ -0,0 +1,59 @@
+package de.libutzki.axon.embeddedserverconnector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+
+class SnapshotCacheTest {
+
+	private static final String AGGREGATE_IDENTIFIER = "aggregate";
+
+	private final SnapshotCache snapshotCache = new SnapshotCache( mock( EmbeddedServer.class ), 10, 60000 );
+	private final AtomicInteger loadCount = new AtomicInteger( );
+
+	@Test
+	void testLoadedSnapshotIsCached( ) {
+		snapshotCache.get( AGGREGATE_IDENTIFIER, this::loadSnapshot );
+		snapshotCache.get( AGGREGATE_IDENTIFIER, this::loadSnapshot );
+
+		assertThat( loadCount.get( ) ).isEqualTo( 1 );
+	}
+
+	@Test
+	void testSnapshotLoadedDuringAnInvalidationIsNotCached( ) {
+		snapshotCache.get( AGGREGATE_IDENTIFIER, aggregateIdentifier -> {
+			// Another context stores a newer snapshot while the outdated one is loaded.
+			snapshotCache.invalidate( aggregateIdentifier );
+			return loadSnapshot( aggregateIdentifier );
+		} );
+		snapshotCache.get( AGGREGATE_IDENTIFIER, this::loadSnapshot );
+
+		assertThat( loadCount.get( ) ).isEqualTo( 2 );
+	}
+
+	@Test
+	void testSnapshotLoadedDuringAPutDoesNotReplaceThePutSnapshot( ) {
+		final IntermediateEventRepresentation storedSnapshot = mock( IntermediateEventRepresentation.class );
+		snapshotCache.get( AGGREGATE_IDENTIFIER, aggregateIdentifier -> {
+			// This context stores a newer snapshot while the outdated one is loaded.
+			snapshotCache.put( aggregateIdentifier, Optional.of( storedSnapshot ) );
+			return loadSnapshot( aggregateIdentifier );
+		} );
+
+		assertThat( snapshotCache.get( AGGREGATE_IDENTIFIER, this::loadSnapshot ) ).containsSame( storedSnapshot );
+		assertThat( loadCount.get( ) ).isEqualTo( 1 );
+	}
+
+	private Optional<IntermediateEventRepresentation> loadSnapshot( final String aggregateIdentifier ) {
+		loadCount.incrementAndGet( );
+		return Optional.empty( );
+	}
+
+}
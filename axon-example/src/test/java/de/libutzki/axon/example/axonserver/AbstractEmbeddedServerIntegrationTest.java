@@ -1,5 +1,6 @@
 package de.libutzki.axon.example.axonserver;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -22,7 +23,7 @@ public abstract class AbstractEmbeddedServerIntegrationTest {
 
 	protected ConfigurableApplicationContext child1Context;
 	protected ConfigurableApplicationContext child2Context;
-	private ConfigurableApplicationContext embeddedServerConfig;
+	protected ConfigurableApplicationContext embeddedServerContext;
 	private ConfigurableApplicationContext parentContext;
 
 	@BeforeEach
@@ -33,6 +34,7 @@ public abstract class AbstractEmbeddedServerIntegrationTest {
 		final Map<String, Object> properties = new LinkedHashMap<>( );
 		properties.put( "axon.localeventstore.enabled", useLocalEventStore( ) );
 		properties.put( "axon.axonserver.enabled", false );
+		configureProperties( properties );
 		environment.getPropertySources( ).addFirst( new MapPropertySource( "Test Properties", properties ) );
 
 		final SpringApplication parentApplication = new SpringApplication( ParentConfig.class );
@@ -41,25 +43,45 @@ public abstract class AbstractEmbeddedServerIntegrationTest {
 
 		final SpringApplication embeddedServerApplication = new SpringApplication( AxonEmbeddedServerConfiguration.class );
 		embeddedServerApplication.addInitializers( new ParentContextApplicationContextInitializer( parentContext ) );
-		embeddedServerConfig = embeddedServerApplication.run( args );
+		configureEmbeddedServer( embeddedServerApplication );
+		embeddedServerContext = embeddedServerApplication.run( args );
 
 		final SpringApplication springApplication1 = new SpringApplication( TestConfiguration.class, Child1Config.class );
 		springApplication1.addInitializers( new ParentContextApplicationContextInitializer( parentContext ) );
 		child1Context = springApplication1.run( args );
 
+		child2Context = startChild2( Collections.emptyMap( ) );
+	}
+
+	/**
+	 * Closes the second child context and starts it again. The given properties are added to the ones of the test.
+	 */
+	protected void restartChild2( final Map<String, Object> properties ) {
+		child2Context.close( );
+		child2Context = startChild2( properties );
+	}
+
+	private ConfigurableApplicationContext startChild2( final Map<String, Object> properties ) {
 		final SpringApplication springApplication2 = new SpringApplication( TestConfiguration.class, Child2Config.class );
 		springApplication2.addInitializers( new ParentContextApplicationContextInitializer( parentContext ) );
-		child2Context = springApplication2.run( args );
+		springApplication2.setDefaultProperties( properties );
+		return springApplication2.run( );
 	}
 
 	@AfterEach
 	void cleanup( ) {
 		child1Context.close( );
 		child2Context.close( );
-		embeddedServerConfig.close( );
+		embeddedServerContext.close( );
 		parentContext.close( );
 	}
 
 	protected abstract boolean useLocalEventStore( );
 
+	protected void configureProperties( final Map<String, Object> properties ) {
+	}
+
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+	}
+
 }
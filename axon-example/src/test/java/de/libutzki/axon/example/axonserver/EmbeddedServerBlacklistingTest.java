@@ -0,0 +1,62 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import de.libutzki.axon.localeventstore.GlobalEvent;
+import de.libutzki.axon.localeventstore.LocalAndGlobalEventStoreAdapter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+class EmbeddedServerBlacklistingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.connector.blacklisting.enabled", true );
+	}
+
+	@Test
+	void testBlacklistedPayloadTypesAreSkippedByTheServer( ) throws InterruptedException {
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final GlobalTestEvent firstEvent = new GlobalTestEvent( "1" );
+		child2EventGateway.publish( firstEvent );
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 3000 ) ).on( firstEvent );
+
+		try ( BlockingStream<TrackedEventMessage<?>> eventStream = child1Context.getBean( LocalAndGlobalEventStoreAdapter.class ).openStream( null ) ) {
+			final TrackedEventMessage<?> firstEventMessage = eventStream.nextAvailable( );
+			assertThat( firstEventMessage.getPayload( ) ).isEqualTo( firstEvent );
+			eventStream.blacklist( firstEventMessage );
+
+			final OtherGlobalTestEvent otherEvent = new OtherGlobalTestEvent( "3" );
+			child2EventGateway.publish( new GlobalTestEvent( "2" ) );
+			child2EventGateway.publish( otherEvent );
+
+			assertThat( eventStream.hasNextAvailable( 3, TimeUnit.SECONDS ) ).isTrue( );
+			assertThat( eventStream.nextAvailable( ).getPayload( ) ).isEqualTo( otherEvent );
+		}
+	}
+
+	@RequiredArgsConstructor
+	@Value
+	@GlobalEvent
+	static class OtherGlobalTestEvent {
+		private final String payload;
+	}
+
+}
@@ -0,0 +1,162 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerCatchUpRegionTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int EVENT_COUNT = 40;
+	private static final int BATCH_SIZE = 5;
+	private static final int STREAM_COUNT = 4;
+
+	private static final AtomicInteger catchUpRows = new AtomicInteger( );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.tail-cache.max-events", 5 );
+		properties.put( "axon.embeddedserver.catch-up.max-events", 20 );
+		properties.put( "axon.embeddedserver.catch-up.batch-size", BATCH_SIZE );
+	}
+
+	@Override
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+		embeddedServerApplication.addPrimarySources( List.of( CatchUpMonitoringConfiguration.class ) );
+	}
+
+	@Test
+	void testStreamsAtTheSamePositionShareTheirReads( ) throws InterruptedException {
+		publishGlobalEvents( );
+		catchUpRows.set( 0 );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final List<Stream<? extends TrackedEventData<?>>> streams = IntStream.range( 0, STREAM_COUNT ).mapToObj( i -> embeddedServer.openStream( null ) ).collect( Collectors.toList( ) );
+		final List<List<String>> readEvents = streams.stream( ).map( stream -> new ArrayList<String>( ) ).collect( Collectors.toList( ) );
+		try {
+			final List<Spliterator<? extends TrackedEventData<?>>> spliterators = streams.stream( ).map( Stream::spliterator ).collect( Collectors.toList( ) );
+			boolean advanced = true;
+			while ( advanced ) {
+				advanced = false;
+				for ( int i = 0; i < STREAM_COUNT; i++ ) {
+					final List<String> events = readEvents.get( i );
+					advanced |= spliterators.get( i ).tryAdvance( eventData -> events.add( eventData.getEventIdentifier( ) ) );
+				}
+			}
+		} finally {
+			streams.forEach( Stream::close );
+		}
+
+		final List<String> allEvents = readEvents.get( 0 );
+		assertThat( allEvents ).hasSizeGreaterThanOrEqualTo( EVENT_COUNT ).doesNotHaveDuplicates( );
+		assertThat( readEvents ).allSatisfy( events -> assertThat( events ).isEqualTo( allEvents ) );
+		assertThat( catchUpRows.get( ) ).isPositive( ).isLessThanOrEqualTo( allEvents.size( ) + BATCH_SIZE );
+	}
+
+	@Test
+	void testStreamFallingBehindItsRegionReadsAllEvents( ) throws InterruptedException {
+		publishGlobalEvents( );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final List<String> fastEvents = new ArrayList<>( );
+		final List<String> slowEvents = new ArrayList<>( );
+		try ( Stream<? extends TrackedEventData<?>> fastStream = embeddedServer.openStream( null );
+				Stream<? extends TrackedEventData<?>> slowStream = embeddedServer.openStream( null ) ) {
+			final Spliterator<? extends TrackedEventData<?>> fastSpliterator = fastStream.spliterator( );
+			final Spliterator<? extends TrackedEventData<?>> slowSpliterator = slowStream.spliterator( );
+			slowSpliterator.tryAdvance( eventData -> slowEvents.add( eventData.getEventIdentifier( ) ) );
+			while ( fastSpliterator.tryAdvance( eventData -> fastEvents.add( eventData.getEventIdentifier( ) ) ) ) {
+				// The fast stream moves the region beyond the position of the slow stream.
+			}
+			while ( slowSpliterator.tryAdvance( eventData -> slowEvents.add( eventData.getEventIdentifier( ) ) ) ) {
+				// The slow stream continues with the storage engine.
+			}
+		}
+
+		assertThat( fastEvents ).hasSizeGreaterThanOrEqualTo( EVENT_COUNT ).doesNotHaveDuplicates( );
+		assertThat( slowEvents ).isEqualTo( fastEvents );
+	}
+
+	@Test
+	void testStreamBeyondAnIdleRegionOnlyReadsTheEventsAfterItsToken( ) throws InterruptedException {
+		publishGlobalEvents( );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final List<TrackedEventData<?>> allEvents;
+		try ( Stream<? extends TrackedEventData<?>> stream = embeddedServer.openStream( null ) ) {
+			allEvents = stream.collect( Collectors.toList( ) );
+		}
+		try ( Stream<? extends TrackedEventData<?>> stream = embeddedServer.openStream( null ) ) {
+			// Leaves an idle region at the beginning of the event store, which has fetched a single batch.
+			stream.spliterator( ).tryAdvance( eventData -> {
+			} );
+		}
+		final int skippedEventCount = EVENT_COUNT - 10;
+		final TrackingToken trackingToken = allEvents.get( skippedEventCount - 1 ).trackingToken( );
+		catchUpRows.set( 0 );
+
+		final List<String> readEvents;
+		try ( Stream<? extends TrackedEventData<?>> stream = embeddedServer.openStream( trackingToken ) ) {
+			readEvents = stream.map( TrackedEventData::getEventIdentifier ).collect( Collectors.toList( ) );
+		}
+
+		assertThat( readEvents ).isEqualTo( allEvents.stream( ).skip( skippedEventCount ).map( TrackedEventData::getEventIdentifier ).collect( Collectors.toList( ) ) );
+		assertThat( catchUpRows.get( ) ).isLessThanOrEqualTo( allEvents.size( ) - skippedEventCount );
+	}
+
+	private void publishGlobalEvents( ) throws InterruptedException {
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		GlobalTestEvent lastEvent = null;
+		for ( int i = 0; i < EVENT_COUNT; i++ ) {
+			lastEvent = new GlobalTestEvent( "event" + i );
+			child2EventGateway.publish( lastEvent );
+		}
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 5000 ) ).on( lastEvent );
+		// Lets the tracking processors of the contexts catch up, so that they do not use the catch-up regions anymore.
+		Thread.sleep( 500 );
+	}
+
+	@Configuration
+	static class CatchUpMonitoringConfiguration {
+
+		@Bean
+		@Primary
+		EmbeddedServerMonitor catchUpRecordingEmbeddedServerMonitor( ) {
+			return new EmbeddedServerMonitor( ) {
+
+				@Override
+				public void catchUpEventsFetched( final String originContext, final int rows, final long durationNanos ) {
+					catchUpRows.addAndGet( rows );
+				}
+			};
+		}
+	}
+
+}
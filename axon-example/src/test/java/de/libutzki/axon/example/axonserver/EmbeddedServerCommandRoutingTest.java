@@ -0,0 +1,65 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandResultMessage;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.callbacks.FutureCallback;
+import org.axonframework.common.Registration;
+import org.axonframework.modelling.command.TargetAggregateIdentifier;
+import org.junit.jupiter.api.Test;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+class EmbeddedServerCommandRoutingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String COMMAND_NAME = "testCommand";
+	private static final int AGGREGATES = 20;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Test
+	void testCommandsOfAnAggregateAreRoutedToTheSameContext( ) {
+		final CommandBus child1CommandBus = child1Context.getBean( CommandBus.class );
+		final Registration child1Registration = child1CommandBus.subscribe( COMMAND_NAME, command -> "child1" );
+		final Registration child2Registration = child2Context.getBean( CommandBus.class ).subscribe( COMMAND_NAME, command -> "child2" );
+		try {
+			final Map<String, String> owners = new HashMap<>( );
+			for ( int aggregate = 0; aggregate < AGGREGATES; aggregate++ ) {
+				owners.put( "aggregate-" + aggregate, dispatch( child1CommandBus, "aggregate-" + aggregate ) );
+			}
+			assertThat( new HashSet<>( owners.values( ) ) ).containsExactlyInAnyOrder( "child1", "child2" );
+
+			owners.forEach( ( aggregateIdentifier, owner ) -> assertThat( dispatch( child1CommandBus, aggregateIdentifier ) ).isEqualTo( owner ) );
+		} finally {
+			child1Registration.cancel( );
+			child2Registration.cancel( );
+		}
+	}
+
+	private static String dispatch( final CommandBus commandBus, final String aggregateIdentifier ) {
+		final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+		commandBus.dispatch( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( new TestCommand( aggregateIdentifier ) ), COMMAND_NAME ), callback );
+		final CommandResultMessage<?> result = callback.getResult( 3, TimeUnit.SECONDS );
+		assertThat( result.isExceptional( ) ).isFalse( );
+		return ( String ) result.getPayload( );
+	}
+
+	@RequiredArgsConstructor
+	@Value
+	static class TestCommand {
+		@TargetAggregateIdentifier
+		private final String aggregateIdentifier;
+	}
+
+}
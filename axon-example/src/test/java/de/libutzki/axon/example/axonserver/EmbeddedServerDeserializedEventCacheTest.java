@@ -0,0 +1,100 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerDeserializedEventCacheTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int EVENT_COUNT = 10;
+
+	private static final AtomicInteger cacheHits = new AtomicInteger( );
+	private static final AtomicInteger cacheMisses = new AtomicInteger( );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+		embeddedServerApplication.addPrimarySources( List.of( CacheMonitoringConfiguration.class ) );
+	}
+
+	@Test
+	void testStreamsOfAContextDeserializeEachEventOnce( ) throws InterruptedException {
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		GlobalTestEvent lastEvent = null;
+		for ( int i = 0; i < EVENT_COUNT; i++ ) {
+			lastEvent = new GlobalTestEvent( "event" + i );
+			child2EventGateway.publish( lastEvent );
+		}
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 5000 ) ).on( lastEvent );
+		// Lets the tracking processors of the contexts catch up, so that they do not access the caches anymore.
+		Thread.sleep( 500 );
+		cacheHits.set( 0 );
+		cacheMisses.set( 0 );
+
+		final EventStore eventStore = child1Context.getBean( "eventStore", EventStore.class );
+		final List<Object> firstPayloads = readPayloads( eventStore );
+		final List<Object> secondPayloads = readPayloads( eventStore );
+
+		assertThat( firstPayloads ).hasSizeGreaterThanOrEqualTo( EVENT_COUNT ).hasSameSizeAs( secondPayloads );
+		for ( int i = 0; i < firstPayloads.size( ); i++ ) {
+			assertThat( secondPayloads.get( i ) ).isSameAs( firstPayloads.get( i ) );
+		}
+		// The tracking processor of the context has read the events before, so all of them are cached already.
+		assertThat( cacheMisses.get( ) ).isZero( );
+		assertThat( cacheHits.get( ) ).isEqualTo( firstPayloads.size( ) + secondPayloads.size( ) );
+	}
+
+	private static List<Object> readPayloads( final EventStore eventStore ) throws InterruptedException {
+		final List<Object> payloads = new ArrayList<>( );
+		try ( BlockingStream<TrackedEventMessage<?>> stream = eventStore.openStream( null ) ) {
+			while ( stream.hasNextAvailable( ) ) {
+				payloads.add( stream.nextAvailable( ).getPayload( ) );
+			}
+		}
+		return payloads;
+	}
+
+	@Configuration
+	static class CacheMonitoringConfiguration {
+
+		@Bean
+		@Primary
+		EmbeddedServerMonitor cacheRecordingEmbeddedServerMonitor( ) {
+			return new EmbeddedServerMonitor( ) {
+
+				@Override
+				public void deserializedEventCacheHit( final String context ) {
+					cacheHits.incrementAndGet( );
+				}
+
+				@Override
+				public void deserializedEventCacheMiss( final String context ) {
+					cacheMisses.incrementAndGet( );
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,236 @@
+package de.libutzki.axon.example.axonserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.eventhandling.EventHandler;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.modelling.command.TargetAggregateIdentifier;
+import org.axonframework.queryhandling.GenericQueryMessage;
+import org.axonframework.queryhandling.QueryBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.ParentContextApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import de.libutzki.axon.embeddedserver.AxonEmbeddedServerConfiguration;
+import de.libutzki.axon.example.axonserver.child.ChildConfig;
+import de.libutzki.axon.example.axonserver.parent.ParentConfig;
+import de.libutzki.axon.localeventstore.GlobalEvent;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Starts a configurable number of child contexts and drives commands, queries and events between them at a fixed rate.
+ * It reports the throughput and the latency distribution of each kind of message. The latency of an event is measured
+ * from publishing it in one context to handling it in another one, so it includes the forwarding from the local to the
+ * global event store if the local event store is enabled.<br>
+ * <br>
+ * All latencies are measured from the time a message should have been sent according to the rate, so a stalled sender
+ * does not hide the delay of the messages it hasn't sent in time (coordinated omission). Failed messages are counted as
+ * errors instead of being recorded as latencies.<br>
+ * <br>
+ * The load test is not part of the regular build, run it with
+ * {@code mvn test -Dtest=EmbeddedServerLoadBenchmark -Dload.children=4 -Dload.local-event-store=true -Dload.rate=50 -Dload.duration=10}.
+ * The rate is the number of commands, queries and events which are sent per second each, the duration is given in
+ * seconds.
+ */
+class EmbeddedServerLoadBenchmark {
+
+	private static final String COMMAND_NAME = "loadCommand";
+	private static final String QUERY_NAME = "loadQuery";
+
+	private static final int CHILDREN = Integer.getInteger( "load.children", 4 );
+	private static final boolean LOCAL_EVENT_STORE = Boolean.parseBoolean( System.getProperty( "load.local-event-store", "true" ) );
+	private static final int RATE = Integer.getInteger( "load.rate", 50 );
+	private static final int DURATION_SECONDS = Integer.getInteger( "load.duration", 10 );
+	private static final int WORKERS = Integer.getInteger( "load.workers", 16 );
+
+	private static final LatencyRecorder commandLatencies = new LatencyRecorder( );
+	private static final LatencyRecorder queryLatencies = new LatencyRecorder( );
+	private static final LatencyRecorder eventLatencies = new LatencyRecorder( );
+
+	private final List<ConfigurableApplicationContext> childContexts = new ArrayList<>( );
+	private final AtomicLong publishedEvents = new AtomicLong( );
+	private ConfigurableApplicationContext embeddedServerContext;
+	private ConfigurableApplicationContext parentContext;
+
+	@BeforeEach
+	void init( ) {
+		final String[] args = new String[0];
+
+		final StandardEnvironment environment = new StandardEnvironment( );
+		final Map<String, Object> properties = new LinkedHashMap<>( );
+		properties.put( "axon.localeventstore.enabled", LOCAL_EVENT_STORE );
+		properties.put( "axon.axonserver.enabled", false );
+		environment.getPropertySources( ).addFirst( new MapPropertySource( "Load Test Properties", properties ) );
+
+		final SpringApplication parentApplication = new SpringApplication( ParentConfig.class );
+		parentApplication.setEnvironment( environment );
+		parentContext = parentApplication.run( args );
+
+		final SpringApplication embeddedServerApplication = new SpringApplication( AxonEmbeddedServerConfiguration.class );
+		embeddedServerApplication.addInitializers( new ParentContextApplicationContextInitializer( parentContext ) );
+		embeddedServerContext = embeddedServerApplication.run( args );
+
+		for ( int child = 1; child <= CHILDREN; child++ ) {
+			final SpringApplication childApplication = new SpringApplication( LoadChildConfig.class );
+			childApplication.addInitializers( new ParentContextApplicationContextInitializer( parentContext ) );
+			childApplication.setDefaultProperties( Map.of( "spring.application.name", "Child" + child ) );
+			final ConfigurableApplicationContext childContext = childApplication.run( args );
+			childContext.getBean( CommandBus.class ).subscribe( COMMAND_NAME, command -> null );
+			childContext.getBean( QueryBus.class ).subscribe( QUERY_NAME, String.class, query -> "response" );
+			childContexts.add( childContext );
+		}
+		commandLatencies.reset( );
+		queryLatencies.reset( );
+		eventLatencies.reset( );
+	}
+
+	@AfterEach
+	void cleanup( ) {
+		childContexts.forEach( ConfigurableApplicationContext::close );
+		embeddedServerContext.close( );
+		parentContext.close( );
+	}
+
+	@Test
+	void benchmarkLoad( ) throws InterruptedException {
+		final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor( );
+		final ExecutorService workers = Executors.newFixedThreadPool( WORKERS );
+		final long period = TimeUnit.SECONDS.toNanos( 1 ) / RATE;
+		final long startNanos = System.nanoTime( );
+		final AtomicLong sequence = new AtomicLong( );
+		// The messages are sent by the workers, so that a slow message does not delay the following ones. The latencies are
+		// measured from the intended send time, which is derived from the rate instead of the time the scheduler has
+		// actually run. This way they include the time a message has been delayed by the scheduler or by waiting for a
+		// worker.
+		scheduler.scheduleAtFixedRate( ( ) -> {
+			final long intendedNanos = startNanos + sequence.getAndIncrement( ) * period;
+			workers.execute( ( ) -> sendCommand( intendedNanos ) );
+			workers.execute( ( ) -> sendQuery( intendedNanos ) );
+			workers.execute( ( ) -> publishEvent( intendedNanos ) );
+		}, 0, period, TimeUnit.NANOSECONDS );
+
+		Thread.sleep( TimeUnit.SECONDS.toMillis( DURATION_SECONDS ) );
+		scheduler.shutdown( );
+		scheduler.awaitTermination( 10, TimeUnit.SECONDS );
+		workers.shutdown( );
+		workers.awaitTermination( 30, TimeUnit.SECONDS );
+
+		// Each event is handled by all other children, wait for the stragglers.
+		final long expectedEvents = publishedEvents.get( ) * ( CHILDREN - 1 );
+		final long deadline = System.currentTimeMillis( ) + 30_000;
+		while ( eventLatencies.getCount( ) < expectedEvents && System.currentTimeMillis( ) < deadline ) {
+			Thread.sleep( 100 );
+		}
+
+		final long durationMillis = TimeUnit.SECONDS.toMillis( DURATION_SECONDS );
+		System.out.printf( "%s: %d children, local event store %s, %d messages/s each%n", getClass( ).getSimpleName( ), CHILDREN, LOCAL_EVENT_STORE ? "enabled" : "disabled", RATE );
+		commandLatencies.outputPercentileDistribution( System.out, "Commands (dispatch to result)", durationMillis );
+		queryLatencies.outputPercentileDistribution( System.out, "Queries (query to response)", durationMillis );
+		eventLatencies.outputPercentileDistribution( System.out, "Events (publish to handle in another context, " + eventLatencies.getCount( ) + " of " + expectedEvents + ")", durationMillis );
+	}
+
+	private void sendCommand( final long start ) {
+		try {
+			randomChild( ).getBean( CommandBus.class ).dispatch( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( new LoadCommand( UUID.randomUUID( ).toString( ) ) ), COMMAND_NAME ),
+					( command, result ) -> {
+						if ( result.isExceptional( ) ) {
+							commandLatencies.recordError( );
+						} else {
+							commandLatencies.record( System.nanoTime( ) - start );
+						}
+					} );
+		} catch ( final RuntimeException e ) {
+			commandLatencies.recordError( );
+		}
+	}
+
+	private void sendQuery( final long start ) {
+		try {
+			randomChild( ).getBean( QueryBus.class ).query( new GenericQueryMessage<>( "payload", QUERY_NAME, ResponseTypes.instanceOf( String.class ) ) )
+					.whenComplete( ( response, exception ) -> {
+						if ( exception != null || response.isExceptional( ) ) {
+							queryLatencies.recordError( );
+						} else {
+							queryLatencies.record( System.nanoTime( ) - start );
+						}
+					} );
+		} catch ( final RuntimeException e ) {
+			queryLatencies.recordError( );
+		}
+	}
+
+	private void publishEvent( final long start ) {
+		final ConfigurableApplicationContext childContext = randomChild( );
+		try {
+			childContext.getBean( EventGateway.class ).publish( new LoadEvent( childContext.getEnvironment( ).getProperty( "spring.application.name" ), start ) );
+			publishedEvents.incrementAndGet( );
+		} catch ( final RuntimeException e ) {
+			eventLatencies.recordError( );
+		}
+	}
+
+	private ConfigurableApplicationContext randomChild( ) {
+		return childContexts.get( ThreadLocalRandom.current( ).nextInt( childContexts.size( ) ) );
+	}
+
+	@Configuration
+	@Import( ChildConfig.class )
+	static class LoadChildConfig {
+
+		@Bean
+		LoadEventHandler loadEventHandler( @Value( "${spring.application.name}" ) final String contextName ) {
+			return new LoadEventHandler( contextName );
+		}
+	}
+
+	@RequiredArgsConstructor
+	static class LoadEventHandler {
+
+		private final String contextName;
+
+		@EventHandler
+		void on( final LoadEvent loadEvent ) {
+			if ( !contextName.equals( loadEvent.getOrigin( ) ) ) {
+				eventLatencies.record( System.nanoTime( ) - loadEvent.getPublishedNanos( ) );
+			}
+		}
+	}
+
+	@RequiredArgsConstructor
+	@lombok.Value
+	@GlobalEvent
+	static class LoadEvent {
+		private final String origin;
+		private final long publishedNanos;
+	}
+
+	@RequiredArgsConstructor
+	@lombok.Value
+	static class LoadCommand {
+		@TargetAggregateIdentifier
+		private final String aggregateIdentifier;
+	}
+
+}
@@ -0,0 +1,91 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.gateway.CommandGateway;
+import org.axonframework.common.Registration;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import de.libutzki.axon.embeddedservermicrometer.MicrometerEmbeddedServerMonitor;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EmbeddedServerMicrometerTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String COMMAND_NAME = "testCommand";
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry( );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return false;
+	}
+
+	@Override
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+		// The registry is provided by the parent context, so that the contexts of the connectors see it as well.
+		embeddedServerApplication.addInitializers( applicationContext -> ( ( ConfigurableApplicationContext ) applicationContext.getParent( ) ).getBeanFactory( )
+				.registerSingleton( "meterRegistry", meterRegistry ) );
+	}
+
+	@Test
+	void testMonitorsAreOnlyRegisteredInTheEmbeddedServerContext( ) {
+		assertThat( embeddedServerContext.getBean( EmbeddedServerMonitor.class ) ).isInstanceOf( MicrometerEmbeddedServerMonitor.class );
+		assertThat( BeanFactoryUtils.beansOfTypeIncludingAncestors( child1Context, MicrometerEmbeddedServerMonitor.class ) ).isEmpty( );
+		assertThat( BeanFactoryUtils.beansOfTypeIncludingAncestors( child2Context, MicrometerEmbeddedServerMonitor.class ) ).isEmpty( );
+	}
+
+	@Test
+	void testCommandsAreTaggedWithTheCommandName( ) {
+		final Registration registration = child2Context.getBean( CommandBus.class ).subscribe( COMMAND_NAME, command -> "result" );
+		try {
+			child1Context.getBean( CommandGateway.class ).sendAndWait( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( "payload" ), COMMAND_NAME ) );
+
+			assertThat( meterRegistry.find( "embeddedserver.commands" )
+					.tag( "messageName", COMMAND_NAME )
+					.tag( "origin", "Child1" )
+					.tag( "target", "Child2" )
+					.tag( "outcome", "success" )
+					.timer( ) ).isNotNull( );
+		} finally {
+			registration.cancel( );
+		}
+	}
+
+	@Test
+	void testEventStoreAccessIsTaggedWithTheContext( ) {
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Test" );
+		child2Context.getBean( EventGateway.class ).publish( globalTestEvent );
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 3000 ) ).on( globalTestEvent );
+
+		assertThat( meterRegistry.find( "embeddedserver.events.appended.duration" ).tag( "context", "Child2" ).timer( ) ).isNotNull( );
+		assertThat( meterRegistry.find( "embeddedserver.events" ).tag( "messageName", GlobalTestEvent.class.getName( ) ).timer( ) ).isNotNull( );
+		// The fetches are shared by the streams of both contexts and reported with the context of the fetching stream.
+		assertThat( contexts( meterRegistry.find( "embeddedserver.events.fetched.duration" ).timers( ) ) ).isNotEmpty( ).isSubsetOf( "Child1", "Child2" );
+
+		child1Context.getBean( "eventStore", EventStore.class ).readEvents( "aggregate" ).asStream( ).count( );
+
+		assertThat( meterRegistry.find( "embeddedserver.snapshot.read.duration" ).tag( "context", "Child1" ).timer( ) ).isNotNull( );
+		assertThat( meterRegistry.find( "embeddedserver.aggregate.read.duration" ).tag( "context", "Child1" ).timer( ) ).isNotNull( );
+	}
+
+	private static Set<String> contexts( final Collection<? extends Meter> meters ) {
+		return meters.stream( ).map( meter -> meter.getId( ).getTag( "context" ) ).collect( Collectors.toSet( ) );
+	}
+}
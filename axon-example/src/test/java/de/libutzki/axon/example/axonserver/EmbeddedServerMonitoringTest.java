@@ -0,0 +1,194 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.axonframework.common.Registration;
+import org.axonframework.config.ConfigurerModule;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.Message;
+import org.axonframework.messaging.MetaData;
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.monitoring.MessageMonitor;
+import org.axonframework.monitoring.MessageMonitor.MonitorCallback;
+import org.axonframework.monitoring.NoOpMessageMonitorCallback;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryGateway;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerMonitoringTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String QUERY_NAME = "testQuery";
+
+	private static final List<MetaData> monitoredQueryMetaData = new CopyOnWriteArrayList<>( );
+	private static final List<String> monitoredScatterGatherQueries = new CopyOnWriteArrayList<>( );
+	private static final AtomicInteger appendedEvents = new AtomicInteger( );
+	private static final List<Integer> appendedBatchSizes = new CopyOnWriteArrayList<>( );
+	private static final List<String> appendingContexts = new CopyOnWriteArrayList<>( );
+	private static final List<Integer> snapshotQueueSizes = new CopyOnWriteArrayList<>( );
+	private static volatile CountDownLatch snapshotWritten;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+		monitoredQueryMetaData.clear( );
+		monitoredScatterGatherQueries.clear( );
+		appendedEvents.set( 0 );
+		appendedBatchSizes.clear( );
+		appendingContexts.clear( );
+		snapshotQueueSizes.clear( );
+		snapshotWritten = new CountDownLatch( 1 );
+		embeddedServerApplication.addPrimarySources( List.of( MonitoringConfiguration.class ) );
+	}
+
+	@Test
+	void testQueryIsMonitoredWithOriginAndTargetContext( ) {
+		final Registration registration = child2Context.getBean( QueryBus.class ).subscribe( QUERY_NAME, String.class, query -> "response" );
+		try {
+			child1Context.getBean( QueryGateway.class ).query( QUERY_NAME, "payload", ResponseTypes.instanceOf( String.class ) ).join( );
+
+			assertThat( monitoredQueryMetaData ).hasSize( 1 );
+			assertThat( monitoredQueryMetaData.get( 0 ) )
+					.containsEntry( EmbeddedServerMonitor.ORIGIN_CONTEXT, "Child1" )
+					.containsEntry( EmbeddedServerMonitor.TARGET_CONTEXT, "Child2" );
+		} finally {
+			registration.cancel( );
+		}
+	}
+
+	@Test
+	void testScatterGatherQueryIsMonitoredPerTargetContext( ) {
+		final Registration child1Registration = child1Context.getBean( QueryBus.class ).subscribe( QUERY_NAME, String.class, query -> "child1" );
+		final Registration child2Registration = child2Context.getBean( QueryBus.class ).subscribe( QUERY_NAME, String.class, query -> "child2" );
+		try {
+			final List<String> responses = child1Context.getBean( QueryGateway.class )
+					.scatterGather( QUERY_NAME, "payload", ResponseTypes.instanceOf( String.class ), 3, TimeUnit.SECONDS )
+					.collect( Collectors.toList( ) );
+
+			assertThat( responses ).containsExactlyInAnyOrder( "child1", "child2" );
+			assertThat( monitoredScatterGatherQueries ).containsExactlyInAnyOrder( "Child1 -> Child1: success", "Child1 -> Child2: success" );
+		} finally {
+			child1Registration.cancel( );
+			child2Registration.cancel( );
+		}
+	}
+
+	@Test
+	void testAppendedEventsAreMonitored( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Test" );
+		child2Context.getBean( EventGateway.class ).publish( globalTestEvent );
+		verify( child1EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+
+		assertThat( appendedEvents ).hasValue( 1 );
+		assertThat( appendingContexts ).containsExactly( "Child2" );
+	}
+
+	@Test
+	void testGlobalEventsOfAUnitOfWorkAreForwardedWithASingleAppend( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final List<GlobalTestEvent> globalTestEvents = IntStream.range( 0, 5 ).mapToObj( i -> new GlobalTestEvent( "Test" + i ) ).collect( Collectors.toList( ) );
+		DefaultUnitOfWork.startAndGet( null ).execute( ( ) -> globalTestEvents.forEach( child2EventGateway::publish ) );
+		verify( child1EventHandler, timeout( 3000 ) ).on( globalTestEvents.get( globalTestEvents.size( ) - 1 ) );
+
+		// The events are committed to the local event store together, so the forwarder reads them as one batch and appends
+		// them to the global event store with a single publish in a single transaction.
+		assertThat( appendedBatchSizes ).containsExactly( globalTestEvents.size( ) );
+	}
+
+	@Test
+	void testWrittenSnapshotsAreMonitored( ) throws InterruptedException {
+		child1Context.getBean( "eventStore", EventStore.class ).storeSnapshot( new GenericDomainEventMessage<>( "Aggregate", "aggregate", 5, new GlobalTestEvent( "Snapshot" ) ) );
+
+		assertThat( snapshotWritten.await( 3, TimeUnit.SECONDS ) ).isTrue( );
+		assertThat( snapshotQueueSizes ).containsExactly( 1, 0 );
+	}
+
+	@Configuration
+	static class MonitoringConfiguration {
+
+		@Bean
+		@Primary
+		EmbeddedServerMonitor recordingEmbeddedServerMonitor( ) {
+			return new EmbeddedServerMonitor( ) {
+
+				@Override
+				public void eventsAppended( final String originContext, final int batchSize, final long durationNanos ) {
+					appendedEvents.addAndGet( batchSize );
+					appendedBatchSizes.add( batchSize );
+					appendingContexts.add( originContext );
+				}
+
+				@Override
+				public void snapshotQueueSizeChanged( final int queueSize ) {
+					snapshotQueueSizes.add( queueSize );
+				}
+
+				@Override
+				public void snapshotsWritten( final int batchSize, final long durationNanos ) {
+					snapshotWritten.countDown( );
+				}
+			};
+		}
+
+		@Bean
+		ConfigurerModule queryMonitorConfigurerModule( ) {
+			final MessageMonitor<Message<?>> queryMonitor = message -> {
+				monitoredQueryMetaData.add( message.getMetaData( ) );
+				return NoOpMessageMonitorCallback.INSTANCE;
+			};
+			return configurer -> configurer.configureMessageMonitor( EmbeddedServer.class, "embeddedServerQueries", configuration -> queryMonitor );
+		}
+
+		@Bean
+		MessageMonitor<Message<?>> embeddedServerScatterGatherMonitor( ) {
+			return message -> {
+				final String contexts = message.getMetaData( ).get( EmbeddedServerMonitor.ORIGIN_CONTEXT ) + " -> " + message.getMetaData( ).get( EmbeddedServerMonitor.TARGET_CONTEXT );
+				return new MonitorCallback( ) {
+
+					@Override
+					public void reportSuccess( ) {
+						monitoredScatterGatherQueries.add( contexts + ": success" );
+					}
+
+					@Override
+					public void reportFailure( final Throwable cause ) {
+						monitoredScatterGatherQueries.add( contexts + ": failure" );
+					}
+
+					@Override
+					public void reportIgnored( ) {
+						monitoredScatterGatherQueries.add( contexts + ": ignored" );
+					}
+				};
+			};
+		}
+	}
+
+}
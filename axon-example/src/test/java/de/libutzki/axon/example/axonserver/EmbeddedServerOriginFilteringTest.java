@@ -0,0 +1,77 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EventStreamOptions;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerOriginFilteringTest extends AbstractEmbeddedServerIntegrationTest {
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Test
+	void testOwnEventsAreExcludedFromGlobalStream( ) throws InterruptedException {
+		final GlobalTestEvent child1Event = new GlobalTestEvent( "Child1" );
+		final GlobalTestEvent child2Event = new GlobalTestEvent( "Child2" );
+		child1Context.getBean( EventGateway.class ).publish( child1Event );
+		child2Context.getBean( EventGateway.class ).publish( child2Event );
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 3000 ) ).on( child2Event );
+		verify( child2Context.getBean( ChildEventHandler.class ), timeout( 3000 ) ).on( child1Event );
+
+		final List<Object> payloads = new ArrayList<>( );
+		try ( BlockingStream<TrackedEventMessage<?>> globalStream = child1Context.getBean( "eventStore", EventStore.class ).openStream( null ) ) {
+			while ( globalStream.hasNextAvailable( ) ) {
+				payloads.add( globalStream.nextAvailable( ).getPayload( ) );
+			}
+		}
+		assertThat( payloads ).containsExactly( child2Event );
+	}
+
+	@Test
+	void testExcludedEventsAreCoveredByTheTrackingTokenOfTheNextEvent( ) {
+		final GlobalTestEvent child1Event = new GlobalTestEvent( "Child1" );
+		final GlobalTestEvent child2Event = new GlobalTestEvent( "Child2" );
+		child2Context.getBean( EventGateway.class ).publish( child2Event );
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 3000 ) ).on( child2Event );
+		child1Context.getBean( EventGateway.class ).publish( child1Event );
+		// The event of the first context has to be forwarded before the next event is published, so that it is in between.
+		verify( child2Context.getBean( ChildEventHandler.class ), timeout( 3000 ) ).on( child1Event );
+		child2Context.getBean( EventGateway.class ).publish( child2Event );
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 3000 ).times( 2 ) ).on( child2Event );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final List<TrackedEventData<?>> allEvents = read( embeddedServer.openStream( null ) );
+		final List<TrackedEventData<?>> filteredEvents = read( embeddedServer.openStream( null, EventStreamOptions.NONE.withExcludedOrigin( "Child1" ) ) );
+
+		assertThat( allEvents ).hasSize( 3 );
+		assertThat( filteredEvents ).extracting( TrackedEventData::getEventIdentifier )
+				.containsExactly( allEvents.get( 0 ).getEventIdentifier( ), allEvents.get( 2 ).getEventIdentifier( ) );
+		assertThat( filteredEvents.get( 1 ).trackingToken( ).covers( allEvents.get( 1 ).trackingToken( ) ) ).isTrue( );
+	}
+
+	private static List<TrackedEventData<?>> read( final Stream<? extends TrackedEventData<?>> eventStream ) {
+		try ( eventStream ) {
+			return eventStream.collect( Collectors.toList( ) );
+		}
+	}
+
+}
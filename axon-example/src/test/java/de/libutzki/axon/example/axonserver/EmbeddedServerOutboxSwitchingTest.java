@@ -0,0 +1,70 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import de.libutzki.axon.localeventstore.LocalAndGlobalEventStoreAdapter;
+
+class EmbeddedServerOutboxSwitchingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	// The local event store of the second context has to survive its restarts.
+	private final String databaseUrl = "jdbc:h2:mem:" + UUID.randomUUID( ) + ";DB_CLOSE_DELAY=-1";
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Test
+	void testEventsPublishedBeforeTheOutboxIsEnabledAreForwarded( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		restartChild2WithOutbox( false );
+		// Stops the tracking event processor, so that the event is not forwarded before the restart.
+		child2Context.getBean( LocalAndGlobalEventStoreAdapter.class ).shutdown( );
+		final GlobalTestEvent trackedEvent = new GlobalTestEvent( "Tracked" );
+		child2Context.getBean( EventGateway.class ).publish( trackedEvent );
+		verify( child1EventHandler, after( 1000 ).never( ) ).on( trackedEvent );
+
+		restartChild2WithOutbox( true );
+		final GlobalTestEvent outboxEvent = new GlobalTestEvent( "Outbox" );
+		child2Context.getBean( EventGateway.class ).publish( outboxEvent );
+
+		verify( child1EventHandler, timeout( 5000 ) ).on( trackedEvent );
+		verify( child1EventHandler, timeout( 5000 ) ).on( outboxEvent );
+		verify( child1EventHandler, after( 1000 ).times( 1 ) ).on( trackedEvent );
+		verify( child1EventHandler, times( 1 ) ).on( outboxEvent );
+	}
+
+	@Test
+	void testEventsForwardedByTheOutboxAreNotForwardedAgainOnceItIsDisabled( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		restartChild2WithOutbox( true );
+		final GlobalTestEvent outboxEvent = new GlobalTestEvent( "Outbox" );
+		child2Context.getBean( EventGateway.class ).publish( outboxEvent );
+		verify( child1EventHandler, timeout( 5000 ) ).on( outboxEvent );
+
+		restartChild2WithOutbox( false );
+		final GlobalTestEvent trackedEvent = new GlobalTestEvent( "Tracked" );
+		child2Context.getBean( EventGateway.class ).publish( trackedEvent );
+
+		verify( child1EventHandler, timeout( 5000 ) ).on( trackedEvent );
+		verify( child1EventHandler, after( 1000 ).times( 1 ) ).on( outboxEvent );
+	}
+
+	private void restartChild2WithOutbox( final boolean outboxEnabled ) {
+		restartChild2( Map.of( "spring.datasource.url", databaseUrl,
+				"spring.jpa.hibernate.ddl-auto", "update",
+				"axon.localeventstore.outbox.enabled", outboxEnabled ) );
+	}
+
+}
@@ -0,0 +1,77 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerPrefetchingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int EVENT_COUNT = 20;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.connector.prefetch.max-events", 3 );
+	}
+
+	@Test
+	void testPrefetchedStreamReturnsAllEventsInOrder( ) throws InterruptedException {
+		final List<GlobalTestEvent> publishedEvents = publishGlobalEvents( EVENT_COUNT );
+
+		final List<Object> payloads = new ArrayList<>( );
+		try ( BlockingStream<TrackedEventMessage<?>> globalStream = child1Context.getBean( "eventStore", EventStore.class ).openStream( null ) ) {
+			while ( globalStream.hasNextAvailable( ) ) {
+				payloads.add( globalStream.nextAvailable( ).getPayload( ) );
+				// Handling the events slower than they are prefetched fills the buffer.
+				Thread.sleep( 10 );
+			}
+		}
+
+		assertThat( payloads ).containsExactlyElementsOf( publishedEvents );
+	}
+
+	@Test
+	void testPrefetchedStreamReturnsEventsCommittedWhileWaiting( ) throws InterruptedException {
+		final List<Object> payloads = new ArrayList<>( );
+		try ( BlockingStream<TrackedEventMessage<?>> globalStream = child1Context.getBean( "eventStore", EventStore.class ).openStream( null ) ) {
+			assertThat( globalStream.hasNextAvailable( ) ).isFalse( );
+
+			final List<GlobalTestEvent> publishedEvents = publishGlobalEvents( 1 );
+			assertThat( globalStream.hasNextAvailable( 5, TimeUnit.SECONDS ) ).isTrue( );
+			payloads.add( globalStream.nextAvailable( ).getPayload( ) );
+
+			assertThat( payloads ).containsExactlyElementsOf( publishedEvents );
+		}
+	}
+
+	private List<GlobalTestEvent> publishGlobalEvents( final int count ) {
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final List<GlobalTestEvent> events = new ArrayList<>( );
+		for ( int i = 0; i < count; i++ ) {
+			final GlobalTestEvent event = new GlobalTestEvent( "event" + i );
+			child2EventGateway.publish( event );
+			events.add( event );
+		}
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 5000 ) ).on( events.get( events.size( ) - 1 ) );
+		return events;
+	}
+
+}
@@ -0,0 +1,64 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.common.Registration;
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.queryhandling.GenericQueryMessage;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryResponseMessage;
+import org.junit.jupiter.api.Test;
+
+class EmbeddedServerQueryRoutingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String QUERY_NAME = "testQuery";
+
+	private final CountDownLatch queryStarted = new CountDownLatch( 1 );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Test
+	void testConcurrentQueriesAreSpreadAcrossReplicas( ) throws InterruptedException, ExecutionException {
+		final Registration child1Registration = subscribe( child1Context.getBean( QueryBus.class ), "child1" );
+		final Registration child2Registration = subscribe( child2Context.getBean( QueryBus.class ), "child2" );
+		try {
+			final QueryBus queryBus = child1Context.getBean( QueryBus.class );
+			final List<CompletableFuture<QueryResponseMessage<String>>> futures = new ArrayList<>( );
+			futures.add( CompletableFuture.supplyAsync( ( ) -> queryBus.query( query( ) ).join( ) ) );
+			// The second query is sent while the first one is in flight.
+			assertThat( queryStarted.await( 3, TimeUnit.SECONDS ) ).isTrue( );
+			futures.add( CompletableFuture.supplyAsync( ( ) -> queryBus.query( query( ) ).join( ) ) );
+			final List<String> responses = new ArrayList<>( );
+			for ( final CompletableFuture<QueryResponseMessage<String>> future : futures ) {
+				responses.add( future.get( ).getPayload( ) );
+			}
+			assertThat( responses ).containsExactlyInAnyOrder( "child1", "child2" );
+		} finally {
+			child1Registration.cancel( );
+			child2Registration.cancel( );
+		}
+	}
+
+	private static GenericQueryMessage<String, String> query( ) {
+		return new GenericQueryMessage<>( "payload", QUERY_NAME, ResponseTypes.instanceOf( String.class ) );
+	}
+
+	private Registration subscribe( final QueryBus queryBus, final String response ) {
+		return queryBus.subscribe( QUERY_NAME, String.class, query -> {
+			queryStarted.countDown( );
+			Thread.sleep( 500 );
+			return response;
+		} );
+	}
+
+}
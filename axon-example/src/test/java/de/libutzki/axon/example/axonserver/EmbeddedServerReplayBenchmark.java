@@ -0,0 +1,138 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+/**
+ * Measures how long a tracking processor needs to replay the global event store. Child1 reads all events from the
+ * tail via its event store, as a processor does after a reset, and spends a configurable time on handling each event.
+ * The benchmark reports the throughput of reading without handling, of handling without reading and of the replay.
+ * Without prefetching the replay takes as long as reading and handling together, with prefetching it should take about
+ * as long as the slower of both. The handler either keeps the CPU busy or waits like a handler which writes to a
+ * database. Reading can only overlap with a busy handler if there is a spare CPU.<br>
+ * <br>
+ * The benchmark is not part of the regular build, run it with
+ * {@code mvn test -Dtest=EmbeddedServerReplayBenchmark -Dreplay.events=20000 -Dreplay.handler-micros=50 -Dreplay.handler-blocking=false -Dreplay.prefetch=1000}.
+ * {@code replay.prefetch} is the number of prefetched events, {@code 0} disables prefetching.
+ */
+class EmbeddedServerReplayBenchmark extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int EVENTS = Integer.getInteger( "replay.events", 20000 );
+	private static final int HANDLER_MICROS = Integer.getInteger( "replay.handler-micros", 50 );
+	private static final boolean HANDLER_BLOCKING = Boolean.getBoolean( "replay.handler-blocking" );
+	private static final int PREFETCH = Integer.getInteger( "replay.prefetch", 1000 );
+	private static final int ITERATIONS = Integer.getInteger( "replay.iterations", 3 );
+	private static final int PUBLISH_BATCH_SIZE = 1000;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return false;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.connector.prefetch.max-events", PREFETCH );
+		// A replay reads the events from the storage engine instead of the tail cache.
+		properties.put( "axon.embeddedserver.tail-cache.max-events", 100 );
+		// Each replay deserializes the events again instead of taking them from the cache of the context.
+		properties.put( "axon.embeddedserver.connector.deserialized-event-cache.max-events", 0 );
+		properties.put( "logging.level.root", "warn" );
+	}
+
+	@Test
+	void benchmarkReplay( ) throws InterruptedException {
+		publishEvents( );
+		final EventStore eventStore = child1Context.getBean( "eventStore", EventStore.class );
+
+		// The first replay warms up the JIT compiler.
+		replay( eventStore, 0 );
+		replay( eventStore, HANDLER_MICROS );
+		long readNanos = Long.MAX_VALUE;
+		long handleNanos = Long.MAX_VALUE;
+		long replayNanos = Long.MAX_VALUE;
+		for ( int i = 0; i < ITERATIONS; i++ ) {
+			readNanos = Math.min( readNanos, replay( eventStore, 0 ) );
+			handleNanos = Math.min( handleNanos, handle( HANDLER_MICROS ) );
+			replayNanos = Math.min( replayNanos, replay( eventStore, HANDLER_MICROS ) );
+		}
+
+		System.out.printf( "%s: %d events, %d us %s per event handled, prefetching %s, %d CPUs (best of %d)%n", getClass( ).getSimpleName( ), EVENTS, HANDLER_MICROS,
+				HANDLER_BLOCKING ? "waiting" : "busy", PREFETCH > 0 ? PREFETCH + " events" : "disabled", Runtime.getRuntime( ).availableProcessors( ), ITERATIONS );
+		print( "Reading only", readNanos );
+		print( "Handling only", handleNanos );
+		print( "Replay", replayNanos );
+		print( "Sum of reading and handling", readNanos + handleNanos );
+		print( "Slower of reading and handling", Math.max( readNanos, handleNanos ) );
+	}
+
+	private void publishEvents( ) {
+		final EventStore eventStore = child2Context.getBean( EventStore.class );
+		GlobalTestEvent lastEvent = null;
+		for ( int published = 0; published < EVENTS; published += PUBLISH_BATCH_SIZE ) {
+			final List<GenericEventMessage<GlobalTestEvent>> events = IntStream.range( published, Math.min( published + PUBLISH_BATCH_SIZE, EVENTS ) )
+					.mapToObj( i -> new GenericEventMessage<>( new GlobalTestEvent( "event" + i ) ) )
+					.collect( Collectors.toList( ) );
+			eventStore.publish( events );
+			lastEvent = events.get( events.size( ) - 1 ).getPayload( );
+		}
+		// The tracking processors of the contexts must not compete with the replay.
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 120000 ) ).on( lastEvent );
+	}
+
+	private static long replay( final EventStore eventStore, final int handlerMicros ) throws InterruptedException {
+		final long start = System.nanoTime( );
+		try ( BlockingStream<TrackedEventMessage<?>> eventStream = eventStore.openStream( null ) ) {
+			for ( int i = 0; i < EVENTS; i++ ) {
+				eventStream.nextAvailable( ).getPayload( );
+				work( handlerMicros );
+			}
+		}
+		return System.nanoTime( ) - start;
+	}
+
+	private static long handle( final int handlerMicros ) {
+		final long start = System.nanoTime( );
+		for ( int i = 0; i < EVENTS; i++ ) {
+			work( handlerMicros );
+		}
+		return System.nanoTime( ) - start;
+	}
+
+	/**
+	 * Simulates an event handler which occupies the processor thread for the given time.
+	 */
+	private static void work( final int micros ) {
+		if ( micros == 0 ) {
+			return;
+		}
+		if ( HANDLER_BLOCKING ) {
+			LockSupport.parkNanos( TimeUnit.MICROSECONDS.toNanos( micros ) );
+			return;
+		}
+		final long end = System.nanoTime( ) + TimeUnit.MICROSECONDS.toNanos( micros );
+		while ( System.nanoTime( ) < end ) {
+			Thread.onSpinWait( );
+		}
+	}
+
+	private static void print( final String name, final long nanos ) {
+		System.out.printf( "  %-32s %8d ms %10.0f events/s%n", name, TimeUnit.NANOSECONDS.toMillis( nanos ), EVENTS * 1e9 / nanos );
+	}
+
+}
@@ -0,0 +1,84 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.axonframework.common.Registration;
+import org.axonframework.messaging.responsetypes.ResponseTypes;
+import org.axonframework.queryhandling.GenericQueryMessage;
+import org.axonframework.queryhandling.QueryBus;
+import org.axonframework.queryhandling.QueryMessage;
+import org.axonframework.queryhandling.QueryResponseMessage;
+import org.junit.jupiter.api.Test;
+
+class EmbeddedServerScatterGatherTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String QUERY_NAME = "testQuery";
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Test
+	void testQueryBussesAreQueriedConcurrently( ) {
+		// Each handler waits until the other one has started, which is only possible if both are executed concurrently.
+		final CountDownLatch handlersStarted = new CountDownLatch( 2 );
+		final Registration child1Registration = subscribe( child1Context.getBean( QueryBus.class ), "child1", handlersStarted );
+		final Registration child2Registration = subscribe( child2Context.getBean( QueryBus.class ), "child2", handlersStarted );
+		try {
+			final List<String> responses = scatterGather( 5000 );
+
+			assertThat( responses ).containsExactlyInAnyOrder( "child1", "child2" );
+		} finally {
+			child1Registration.cancel( );
+			child2Registration.cancel( );
+		}
+	}
+
+	@Test
+	void testLateResponderIsCancelled( ) throws InterruptedException {
+		final CountDownLatch releaseChild2 = new CountDownLatch( 1 );
+		final CountDownLatch child2Cancelled = new CountDownLatch( 1 );
+		final Registration child1Registration = child1Context.getBean( QueryBus.class ).subscribe( QUERY_NAME, String.class, query -> "child1" );
+		final Registration child2Registration = child2Context.getBean( QueryBus.class ).subscribe( QUERY_NAME, String.class, query -> {
+			try {
+				releaseChild2.await( );
+			} catch ( final InterruptedException e ) {
+				child2Cancelled.countDown( );
+				throw e;
+			}
+			return "child2";
+		} );
+		try {
+			final List<String> responses = scatterGather( 500 );
+
+			assertThat( responses ).containsExactly( "child1" );
+			assertThat( child2Cancelled.await( 5, TimeUnit.SECONDS ) ).isTrue( );
+		} finally {
+			releaseChild2.countDown( );
+			child1Registration.cancel( );
+			child2Registration.cancel( );
+		}
+	}
+
+	private static Registration subscribe( final QueryBus queryBus, final String response, final CountDownLatch handlersStarted ) {
+		return queryBus.subscribe( QUERY_NAME, String.class, query -> {
+			handlersStarted.countDown( );
+			return handlersStarted.await( 3, TimeUnit.SECONDS ) ? response : "sequential";
+		} );
+	}
+
+	private List<String> scatterGather( final long timeout ) {
+		final QueryMessage<String, String> query = new GenericQueryMessage<>( "payload", QUERY_NAME, ResponseTypes.instanceOf( String.class ) );
+		try ( Stream<QueryResponseMessage<String>> responses = child1Context.getBean( QueryBus.class ).scatterGather( query, timeout, TimeUnit.MILLISECONDS ) ) {
+			return responses.map( QueryResponseMessage::getPayload ).collect( Collectors.toList( ) );
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.EventMessageHandler;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventhandling.Segment;
+import org.axonframework.eventhandling.SimpleEventHandlerInvoker;
+import org.axonframework.eventhandling.TrackedEventData;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingEventProcessorConfiguration;
+import org.axonframework.eventhandling.async.SequentialPerAggregatePolicy;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EventStreamOptions;
+import de.libutzki.axon.embeddedserverconnector.EmbeddedServerTrackingEventProcessor;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import de.libutzki.axon.localeventstore.LocalAndGlobalEventStoreAdapter;
+
+class EmbeddedServerSegmentFilteringTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int AGGREGATE_COUNT = 20;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Test
+	void testEachEventBelongsToExactlyOneSegment( ) {
+		publishGlobalEvents( );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final Segment[] segments = Segment.computeSegments( 0, 1 );
+		final List<String> allEvents = read( embeddedServer.openStream( null ) );
+		final List<String> segment0Events = read( embeddedServer.openStream( null, EventStreamOptions.NONE.withSegment( segments[0] ) ) );
+		final List<String> segment1Events = read( embeddedServer.openStream( null, EventStreamOptions.NONE.withSegment( segments[1] ) ) );
+
+		assertThat( segment0Events ).isNotEmpty( ).doesNotContainAnyElementsOf( segment1Events );
+		assertThat( segment1Events ).isNotEmpty( );
+		assertThat( Stream.concat( segment0Events.stream( ), segment1Events.stream( ) ) ).containsExactlyInAnyOrderElementsOf( allEvents );
+	}
+
+	@Test
+	void testSegmentedProcessorHandlesEachEventOnce( ) throws InterruptedException {
+		final List<GlobalTestEvent> publishedEvents = publishGlobalEvents( );
+
+		final Queue<Object> handledPayloads = new ConcurrentLinkedQueue<>( );
+		final EventMessageHandler eventHandler = event -> handledPayloads.add( event.getPayload( ) );
+		final TrackingEventProcessor processor = EmbeddedServerTrackingEventProcessor.builder( )
+				.name( "segmentedProcessor" )
+				.eventHandlerInvoker( SimpleEventHandlerInvoker.builder( )
+						.eventHandlers( eventHandler )
+						.sequencingPolicy( SequentialPerAggregatePolicy.instance( ) )
+						.build( ) )
+				.messageSource( child1Context.getBean( LocalAndGlobalEventStoreAdapter.class ) )
+				.tokenStore( child1Context.getBean( TokenStore.class ) )
+				.transactionManager( child1Context.getBean( TransactionManager.class ) )
+				.trackingEventProcessorConfiguration( TrackingEventProcessorConfiguration.forParallelProcessing( 2 ).andInitialSegmentsCount( 2 ) )
+				.build( );
+		processor.start( );
+		try {
+			final long deadline = System.currentTimeMillis( ) + 5000;
+			while ( handledPayloads.size( ) < publishedEvents.size( ) && System.currentTimeMillis( ) < deadline ) {
+				Thread.sleep( 50 );
+			}
+			Thread.sleep( 200 );
+		} finally {
+			processor.shutDown( );
+		}
+
+		assertThat( handledPayloads ).containsExactlyInAnyOrderElementsOf( publishedEvents );
+	}
+
+	private List<GlobalTestEvent> publishGlobalEvents( ) {
+		final LocalAndGlobalEventStoreAdapter child2EventStore = child2Context.getBean( LocalAndGlobalEventStoreAdapter.class );
+		final List<GlobalTestEvent> events = new ArrayList<>( );
+		for ( int i = 0; i < AGGREGATE_COUNT; i++ ) {
+			final GlobalTestEvent event = new GlobalTestEvent( "aggregate" + i );
+			child2EventStore.publish( new GenericDomainEventMessage<>( "TestAggregate", "aggregate" + i, 0, event ) );
+			events.add( event );
+		}
+		verify( child1Context.getBean( ChildEventHandler.class ), timeout( 5000 ) ).on( events.get( events.size( ) - 1 ) );
+		return events;
+	}
+
+	private static List<String> read( final Stream<? extends TrackedEventData<?>> eventStream ) {
+		try ( eventStream ) {
+			return eventStream.map( TrackedEventData::getEventIdentifier ).collect( Collectors.toList( ) );
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventsourcing.eventstore.DomainEventStream;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerSnapshotCacheTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String AGGREGATE_IDENTIFIER = "aggregate";
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return false;
+	}
+
+	@Test
+	void testSnapshotStoredByOtherContextInvalidatesCache( ) throws InterruptedException {
+		final EventStore child1EventStore = child1Context.getBean( "eventStore", EventStore.class );
+		final EventStore child2EventStore = child2Context.getBean( "eventStore", EventStore.class );
+
+		assertThat( child2EventStore.readEvents( AGGREGATE_IDENTIFIER ).hasNext( ) ).isFalse( );
+
+		child1EventStore.storeSnapshot( new GenericDomainEventMessage<>( "Aggregate", AGGREGATE_IDENTIFIER, 5, new GlobalTestEvent( "Snapshot 5" ) ) );
+		assertThat( awaitSnapshot( child2EventStore, 5 ).getSequenceNumber( ) ).isEqualTo( 5 );
+
+		child1EventStore.storeSnapshot( new GenericDomainEventMessage<>( "Aggregate", AGGREGATE_IDENTIFIER, 7, new GlobalTestEvent( "Snapshot 7" ) ) );
+		final DomainEventMessage<?> snapshot = awaitSnapshot( child2EventStore, 7 );
+		assertThat( snapshot.getSequenceNumber( ) ).isEqualTo( 7 );
+		assertThat( snapshot.getPayload( ) ).isEqualTo( new GlobalTestEvent( "Snapshot 7" ) );
+	}
+
+	@Test
+	void testCachedSnapshotIsDeserializedForEachLoad( ) {
+		final EventStore child1EventStore = child1Context.getBean( "eventStore", EventStore.class );
+		child1EventStore.storeSnapshot( new GenericDomainEventMessage<>( "Aggregate", AGGREGATE_IDENTIFIER, 5, new GlobalTestEvent( "Snapshot" ) ) );
+
+		final Object firstPayload = readSnapshot( child1EventStore ).getPayload( );
+		final Object secondPayload = readSnapshot( child1EventStore ).getPayload( );
+		assertThat( firstPayload ).isEqualTo( secondPayload ).isNotSameAs( secondPayload );
+	}
+
+	private static DomainEventMessage<?> readSnapshot( final EventStore eventStore ) {
+		return eventStore.readEvents( AGGREGATE_IDENTIFIER ).next( );
+	}
+
+	/**
+	 * Snapshots are written asynchronously, so other contexts see them with a delay.
+	 */
+	private static DomainEventMessage<?> awaitSnapshot( final EventStore eventStore, final long sequenceNumber ) throws InterruptedException {
+		final long deadline = System.currentTimeMillis( ) + 3000;
+		while ( System.currentTimeMillis( ) < deadline ) {
+			final DomainEventStream domainEventStream = eventStore.readEvents( AGGREGATE_IDENTIFIER );
+			if ( domainEventStream.hasNext( ) && domainEventStream.peek( ).getSequenceNumber( ) == sequenceNumber ) {
+				return domainEventStream.next( );
+			}
+			Thread.sleep( 10 );
+		}
+		return fail( "Snapshot with sequence number %d has not been stored.", sequenceNumber );
+	}
+
+}
@@ -0,0 +1,60 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+/**
+ * Measures the time between publishing an event in one child context and handling it in the tracking processor of
+ * another child context. When the tracking processor polls the embedded server every 100 ms, most events wait for the
+ * processor to wake up and the latency is dominated by the polling interval.
+ */
+class EmbeddedServerTrackingLatencyTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int WARMUP_EVENTS = 5;
+	private static final int MEASURED_EVENTS = 20;
+	private static final long IDLE_MILLIS = 20;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return false;
+	}
+
+	@Test
+	void trackingProcessorIsWokenUpWhenEventsAreCommitted( ) throws InterruptedException {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final Semaphore handledEvents = new Semaphore( 0 );
+		doAnswer( invocation -> {
+			handledEvents.release( );
+			return null;
+		} ).when( child1EventHandler ).on( any( GlobalTestEvent.class ) );
+
+		final long[] latencies = new long[MEASURED_EVENTS];
+		for ( int i = 0; i < WARMUP_EVENTS + MEASURED_EVENTS; i++ ) {
+			// Give the tracking processor the chance to run out of events and to wait for new ones.
+			Thread.sleep( IDLE_MILLIS );
+			final long start = System.nanoTime( );
+			child2EventGateway.publish( new GlobalTestEvent( "Event " + i ) );
+			assertThat( handledEvents.tryAcquire( 3, TimeUnit.SECONDS ) ).isTrue( );
+			if ( i >= WARMUP_EVENTS ) {
+				latencies[i - WARMUP_EVENTS] = System.nanoTime( ) - start;
+			}
+		}
+
+		Arrays.sort( latencies );
+		final long p90LatencyMillis = TimeUnit.NANOSECONDS.toMillis( latencies[MEASURED_EVENTS * 9 / 10] );
+		assertThat( p90LatencyMillis ).isLessThan( 60 );
+	}
+
+}
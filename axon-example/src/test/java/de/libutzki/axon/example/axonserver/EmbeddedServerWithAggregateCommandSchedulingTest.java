@@ -0,0 +1,127 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.callbacks.FutureCallback;
+import org.axonframework.common.Registration;
+import org.axonframework.modelling.command.TargetAggregateIdentifier;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+class EmbeddedServerWithAggregateCommandSchedulingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String COMMAND_NAME = "testCommand";
+	private static final String FAILING_COMMAND_NAME = "failingCommand";
+
+	private final AtomicInteger runningCommands = new AtomicInteger( );
+	private final AtomicInteger maxRunningCommands = new AtomicInteger( );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.aggregate-command-scheduling.enabled", true );
+	}
+
+	@Test
+	void testCommandsOfAnAggregateAreExecutedOneAfterAnother( ) {
+		final Registration registration = child2Context.getBean( CommandBus.class ).subscribe( COMMAND_NAME, this::handle );
+		try {
+			dispatchConcurrently( "aggregate", "aggregate", "aggregate", "aggregate" );
+			assertThat( maxRunningCommands ).hasValue( 1 );
+		} finally {
+			registration.cancel( );
+		}
+	}
+
+	@Test
+	void testCommandsOfDifferentAggregatesAreExecutedInParallel( ) {
+		final Registration registration = child2Context.getBean( CommandBus.class ).subscribe( COMMAND_NAME, this::handle );
+		try {
+			dispatchConcurrently( "aggregate1", "aggregate2" );
+			assertThat( maxRunningCommands ).hasValue( 2 );
+		} finally {
+			registration.cancel( );
+		}
+	}
+
+	@Test
+	void testFailingDispatchIsReportedToTheCallback( ) throws InterruptedException {
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final CommandBus failingCommandBus = mock( CommandBus.class );
+		doThrow( new IllegalStateException( "Dispatch failed" ) ).when( failingCommandBus ).dispatch( any( ), any( ) );
+		embeddedServer.registerCommandBusForCommand( failingCommandBus, FAILING_COMMAND_NAME );
+		final Registration registration = child2Context.getBean( CommandBus.class ).subscribe( COMMAND_NAME, this::handle );
+		try {
+			// The aggregate is idle, so the command is dispatched on the caller's thread.
+			assertThat( dispatch( embeddedServer, FAILING_COMMAND_NAME, "aggregate" ).getResult( 5, TimeUnit.SECONDS ).exceptionResult( ) ).hasMessage( "Dispatch failed" );
+
+			// The command is queued behind a running command and dispatched on a thread of the scheduler.
+			final FutureCallback<Object, Object> runningCallback = dispatch( embeddedServer, COMMAND_NAME, "aggregate" );
+			final FutureCallback<Object, Object> queuedCallback = dispatch( embeddedServer, FAILING_COMMAND_NAME, "aggregate" );
+			assertThat( runningCallback.getResult( 5, TimeUnit.SECONDS ).isExceptional( ) ).isFalse( );
+			assertThat( queuedCallback.getResult( 5, TimeUnit.SECONDS ).exceptionResult( ) ).hasMessage( "Dispatch failed" );
+		} finally {
+			registration.cancel( );
+			embeddedServer.unregisterCommandBusForCommand( failingCommandBus, FAILING_COMMAND_NAME );
+		}
+	}
+
+	/**
+	 * Dispatches the command on another thread, as the running command of the aggregate is executed on the thread which
+	 * dispatches it.
+	 */
+	private FutureCallback<Object, Object> dispatch( final EmbeddedServer embeddedServer, final String commandName, final String aggregateIdentifier ) throws InterruptedException {
+		final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+		final Thread thread = new Thread( ( ) -> embeddedServer.dispatch( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( new TestCommand( aggregateIdentifier ) ), commandName ), callback, null ) );
+		thread.start( );
+		// Lets the command reach the scheduler before the next one is dispatched.
+		thread.join( 100 );
+		return callback;
+	}
+
+	private Object handle( final Object command ) throws InterruptedException {
+		maxRunningCommands.accumulateAndGet( runningCommands.incrementAndGet( ), Math::max );
+		Thread.sleep( 200 );
+		runningCommands.decrementAndGet( );
+		return null;
+	}
+
+	private void dispatchConcurrently( final String... aggregateIdentifiers ) {
+		final CommandBus child1CommandBus = child1Context.getBean( CommandBus.class );
+		final List<Thread> threads = new ArrayList<>( );
+		final List<FutureCallback<Object, Object>> callbacks = new ArrayList<>( );
+		for ( final String aggregateIdentifier : aggregateIdentifiers ) {
+			final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+			callbacks.add( callback );
+			threads.add( new Thread( ( ) -> child1CommandBus.dispatch( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( new TestCommand( aggregateIdentifier ) ), COMMAND_NAME ), callback ) ) );
+		}
+		threads.forEach( Thread::start );
+		callbacks.forEach( callback -> assertThat( callback.getResult( 5, TimeUnit.SECONDS ).isExceptional( ) ).isFalse( ) );
+	}
+
+	@RequiredArgsConstructor
+	@Value
+	static class TestCommand {
+		@TargetAggregateIdentifier
+		private final String aggregateIdentifier;
+	}
+
+}
@@ -0,0 +1,159 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.axonframework.commandhandling.GenericCommandMessage.asCommandMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.CommandMessage;
+import org.axonframework.commandhandling.CommandResultMessage;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.callbacks.FutureCallback;
+import org.axonframework.commandhandling.distributed.CommandDispatchException;
+import org.axonframework.common.Registration;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+
+class EmbeddedServerWithAsyncCommandDispatchTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final String COMMAND_NAME = "testCommand";
+	private static final String NESTED_COMMAND_NAME = "nestedTestCommand";
+
+	private static final AtomicInteger rejectedCommands = new AtomicInteger( );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.async-command-dispatch.enabled", true );
+		properties.put( "axon.embeddedserver.async-command-dispatch.pool-size", 1 );
+		properties.put( "axon.embeddedserver.async-command-dispatch.queue-capacity", 1 );
+	}
+
+	@Override
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+		embeddedServerApplication.addPrimarySources( List.of( AsyncCommandMonitoringConfiguration.class ) );
+	}
+
+	@Test
+	void testCommandIsHandledOnThreadOfTargetContext( ) {
+		final CommandBus child1CommandBus = child1Context.getBean( CommandBus.class );
+		final CommandBus child2CommandBus = child2Context.getBean( CommandBus.class );
+		final Registration registration = child2CommandBus.subscribe( COMMAND_NAME, command -> Thread.currentThread( ).getName( ) );
+		try {
+			final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+			child1CommandBus.dispatch( command( ), callback );
+			final CommandResultMessage<?> result = callback.getResult( 3, TimeUnit.SECONDS );
+			assertThat( result.isExceptional( ) ).isFalse( );
+			assertThat( ( String ) result.getPayload( ) ).startsWith( "EmbeddedServerCommandDispatcher-" );
+		} finally {
+			registration.cancel( );
+		}
+	}
+
+	@Test
+	void testCommandSentBackToTheSendingContextDoesNotDeadlock( ) {
+		final CommandBus child1CommandBus = child1Context.getBean( CommandBus.class );
+		final CommandBus child2CommandBus = child2Context.getBean( CommandBus.class );
+		// child1 -> child2 -> child1, each handler waits for the result of the command it sends. With a pool size of 1, the
+		// last command can't be executed on the pool of child1, as its only thread is waiting.
+		final Registration child1Registration = child1CommandBus.subscribe( COMMAND_NAME, command -> {
+			if ( "nested".equals( command.getPayload( ) ) ) {
+				return "done";
+			}
+			return sendAndWait( child1CommandBus, new GenericCommandMessage<>( asCommandMessage( "payload" ), NESTED_COMMAND_NAME ) );
+		} );
+		final Registration child2Registration = child2CommandBus.subscribe( NESTED_COMMAND_NAME,
+				command -> sendAndWait( child2CommandBus, new GenericCommandMessage<>( asCommandMessage( "nested" ), COMMAND_NAME ) ) );
+		try {
+			final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+			child2CommandBus.dispatch( command( ), callback );
+			final CommandResultMessage<?> result = callback.getResult( 5, TimeUnit.SECONDS );
+			assertThat( result ).isNotNull( );
+			assertThat( result.isExceptional( ) ).isFalse( );
+			assertThat( result.getPayload( ) ).isEqualTo( "done" );
+		} finally {
+			child1Registration.cancel( );
+			child2Registration.cancel( );
+		}
+	}
+
+	@Test
+	void testCommandIsRejectedIfQueueIsFull( ) throws InterruptedException {
+		rejectedCommands.set( 0 );
+		final CommandBus child1CommandBus = child1Context.getBean( CommandBus.class );
+		final CommandBus child2CommandBus = child2Context.getBean( CommandBus.class );
+		final CountDownLatch handlerStarted = new CountDownLatch( 1 );
+		final CountDownLatch releaseHandler = new CountDownLatch( 1 );
+		final Registration registration = child2CommandBus.subscribe( COMMAND_NAME, command -> {
+			handlerStarted.countDown( );
+			releaseHandler.await( );
+			return null;
+		} );
+		try {
+			final FutureCallback<Object, Object> runningCallback = new FutureCallback<>( );
+			final FutureCallback<Object, Object> queuedCallback = new FutureCallback<>( );
+			final FutureCallback<Object, Object> rejectedCallback = new FutureCallback<>( );
+			child1CommandBus.dispatch( command( ), runningCallback );
+			assertThat( handlerStarted.await( 3, TimeUnit.SECONDS ) ).isTrue( );
+			child1CommandBus.dispatch( command( ), queuedCallback );
+			child1CommandBus.dispatch( command( ), rejectedCallback );
+
+			final CommandResultMessage<?> rejectedResult = rejectedCallback.getResult( 3, TimeUnit.SECONDS );
+			assertThat( rejectedResult.isExceptional( ) ).isTrue( );
+			assertThat( rejectedResult.exceptionResult( ) ).isInstanceOf( CommandDispatchException.class );
+			assertThat( rejectedCommands.get( ) ).isEqualTo( 1 );
+
+			releaseHandler.countDown( );
+			assertThat( runningCallback.getResult( 3, TimeUnit.SECONDS ).isExceptional( ) ).isFalse( );
+			assertThat( queuedCallback.getResult( 3, TimeUnit.SECONDS ).isExceptional( ) ).isFalse( );
+		} finally {
+			releaseHandler.countDown( );
+			registration.cancel( );
+		}
+	}
+
+	private static CommandMessage<?> command( ) {
+		return new GenericCommandMessage<>( asCommandMessage( "payload" ), COMMAND_NAME );
+	}
+
+	private static Object sendAndWait( final CommandBus commandBus, final CommandMessage<?> command ) {
+		final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+		commandBus.dispatch( command, callback );
+		final CommandResultMessage<?> result = callback.getResult( 3, TimeUnit.SECONDS );
+		if ( result == null ) {
+			throw new IllegalStateException( "Timed out waiting for " + command.getCommandName( ) );
+		}
+		return result.getPayload( );
+	}
+
+	@Configuration
+	static class AsyncCommandMonitoringConfiguration {
+
+		@Bean
+		@Primary
+		EmbeddedServerMonitor asyncCommandRecordingEmbeddedServerMonitor( ) {
+			return new EmbeddedServerMonitor( ) {
+
+				@Override
+				public void asyncCommandRejected( final String targetContext ) {
+					rejectedCommands.incrementAndGet( );
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.messaging.unitofwork.DefaultUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.embeddedserver.EmbeddedServerMonitor;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerWithGroupCommitTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int PUBLISHERS = 8;
+	private static final int EVENTS_PER_PUBLISHER = 10;
+	private static final int JDBC_BATCH_EVENTS = 50;
+
+	private static final List<Integer> committedBatches = new CopyOnWriteArrayList<>( );
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.group-commit.enabled", true );
+		properties.put( "axon.embeddedserver.group-commit.window", 200 );
+		properties.put( "spring.jpa.properties.hibernate.generate_statistics", true );
+	}
+
+	@Override
+	protected void configureEmbeddedServer( final SpringApplication embeddedServerApplication ) {
+		committedBatches.clear( );
+		embeddedServerApplication.addPrimarySources( List.of( GroupCommitMonitoringConfiguration.class ) );
+	}
+
+	@Test
+	void testGlobalEventWithGroupCommit( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Test" );
+		child2EventGateway.publish( globalTestEvent );
+		verify( child1EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+	}
+
+	@Test
+	void testConcurrentPublishersWithGroupCommit( ) throws InterruptedException {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final ExecutorService executorService = Executors.newFixedThreadPool( PUBLISHERS );
+		for ( int publisher = 0; publisher < PUBLISHERS; publisher++ ) {
+			final int publisherNumber = publisher;
+			executorService.execute( ( ) -> {
+				for ( int event = 0; event < EVENTS_PER_PUBLISHER; event++ ) {
+					embeddedServer.publish( Collections.singletonList( GenericEventMessage.asEventMessage( new GlobalTestEvent( publisherNumber + "-" + event ) ) ) );
+				}
+			} );
+		}
+		executorService.shutdown( );
+		executorService.awaitTermination( 10, TimeUnit.SECONDS );
+		verify( child1EventHandler, timeout( 5000 ).times( PUBLISHERS * EVENTS_PER_PUBLISHER ) ).on( any( GlobalTestEvent.class ) );
+	}
+
+	@Test
+	void testConcurrentPublishCallsAreCommittedInOneBatch( ) throws InterruptedException {
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final ExecutorService executorService = Executors.newFixedThreadPool( PUBLISHERS );
+		for ( int publisher = 0; publisher < PUBLISHERS; publisher++ ) {
+			final int publisherNumber = publisher;
+			executorService.execute( ( ) -> {
+				try {
+					start.await( );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread( ).interrupt( );
+					return;
+				}
+				embeddedServer.publish( Collections.singletonList( GenericEventMessage.asEventMessage( new GlobalTestEvent( "Publisher " + publisherNumber ) ) ) );
+			} );
+		}
+		start.countDown( );
+		executorService.shutdown( );
+		assertThat( executorService.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue( );
+
+		// All calls are queued within the window of the first call, so they share a transaction.
+		assertThat( committedBatches.stream( ).mapToInt( Integer::intValue ).sum( ) ).isEqualTo( PUBLISHERS );
+		assertThat( committedBatches ).hasSizeLessThan( PUBLISHERS );
+	}
+
+	@Test
+	void testEventsOfARolledBackUnitOfWorkAreNotCommitted( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final GlobalTestEvent rolledBackEvent = new GlobalTestEvent( "Rolled back" );
+		final UnitOfWork<?> unitOfWork = DefaultUnitOfWork.startAndGet( null );
+		embeddedServer.publish( Collections.singletonList( GenericEventMessage.asEventMessage( rolledBackEvent ) ) );
+		// A handler which fails after the events have been published, e.g. the commit of the caller's own changes.
+		unitOfWork.onPrepareCommit( u -> {
+			throw new IllegalStateException( "Rollback" );
+		} );
+		assertThatThrownBy( unitOfWork::commit ).isInstanceOf( IllegalStateException.class );
+
+		final GlobalTestEvent committedEvent = new GlobalTestEvent( "Committed" );
+		child2Context.getBean( EventGateway.class ).publish( committedEvent );
+		verify( child1EventHandler, timeout( 3000 ) ).on( committedEvent );
+		verify( child1EventHandler, never( ) ).on( rolledBackEvent );
+	}
+
+	@Test
+	void testUnitsOfWorkJoinAGroupWhenTheyCommit( ) throws InterruptedException {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final ExecutorService executorService = Executors.newFixedThreadPool( PUBLISHERS );
+		for ( int publisher = 0; publisher < PUBLISHERS; publisher++ ) {
+			final int publisherNumber = publisher;
+			executorService.execute( ( ) -> {
+				try {
+					start.await( );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread( ).interrupt( );
+					return;
+				}
+				// Like a command handler which applies two events.
+				final UnitOfWork<?> unitOfWork = DefaultUnitOfWork.startAndGet( null );
+				embeddedServer.publish( Collections.singletonList( GenericEventMessage.asEventMessage( new GlobalTestEvent( "Unit of work " + publisherNumber + "-0" ) ) ) );
+				embeddedServer.publish( Collections.singletonList( GenericEventMessage.asEventMessage( new GlobalTestEvent( "Unit of work " + publisherNumber + "-1" ) ) ) );
+				unitOfWork.commit( );
+			} );
+		}
+		start.countDown( );
+		executorService.shutdown( );
+		assertThat( executorService.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue( );
+
+		// Each unit of work hands its events over as one call when it commits.
+		assertThat( committedBatches.stream( ).mapToInt( Integer::intValue ).sum( ) ).isEqualTo( PUBLISHERS );
+		assertThat( committedBatches ).hasSizeLessThan( PUBLISHERS );
+		verify( child1EventHandler, timeout( 5000 ).times( 2 * PUBLISHERS ) ).on( any( GlobalTestEvent.class ) );
+	}
+
+	@Test
+	void testEventsAreInsertedWithJdbcBatches( ) {
+		final Statistics statistics = embeddedServerContext.getBean( EntityManagerFactory.class ).unwrap( SessionFactory.class ).getStatistics( );
+		final List<EventMessage<?>> events = new ArrayList<>( );
+		for ( int i = 0; i < JDBC_BATCH_EVENTS; i++ ) {
+			events.add( GenericEventMessage.asEventMessage( new GlobalTestEvent( "Event " + i ) ) );
+		}
+		final long preparedStatements = statistics.getPrepareStatementCount( );
+		child1Context.getBean( EmbeddedServer.class ).publish( events );
+
+		// Each event fetches its global index from the sequence, but the inserts share a single prepared statement. Without
+		// batching each insert would be prepared separately.
+		assertThat( statistics.getPrepareStatementCount( ) - preparedStatements ).isLessThan( JDBC_BATCH_EVENTS + JDBC_BATCH_EVENTS / 2 );
+		// The persistence units of the contexts are not affected.
+		assertThat( child1Context.getBean( EntityManagerFactory.class ).getProperties( ) ).doesNotContainKey( "hibernate.jdbc.batch_size" );
+	}
+
+	@Configuration
+	static class GroupCommitMonitoringConfiguration {
+
+		@Bean
+		@Primary
+		EmbeddedServerMonitor groupCommitRecordingEmbeddedServerMonitor( ) {
+			return new EmbeddedServerMonitor( ) {
+
+				@Override
+				public void groupCommitted( final int publishCalls, final int events, final long durationNanos ) {
+					committedBatches.add( publishCalls );
+				}
+			};
+		}
+	}
+
+}
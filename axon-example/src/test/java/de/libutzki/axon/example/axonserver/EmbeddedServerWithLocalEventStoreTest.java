@@ -5,7 +5,10 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
 import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
 import org.junit.jupiter.api.Test;
 
 import de.libutzki.axon.embeddedserver.EmbeddedServer;
@@ -49,4 +52,21 @@ class EmbeddedServerWithLocalEventStoreTest extends AbstractEmbeddedServerIntegr
 		verify( child1EventHandler, never( ) ).on( localTestEvent );
 	}
 
+	@Test
+	void testGlobalDomainEventsAreNumberedConsecutively( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final EventStore child2EventStore = child2Context.getBean( EventStore.class );
+		final GlobalTestEvent lastGlobalTestEvent = new GlobalTestEvent( "4" );
+		child2EventStore.publish(
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 0, new LocalTestEvent( "0" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 1, new GlobalTestEvent( "1" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 2, new LocalTestEvent( "2" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 3, new GlobalTestEvent( "3" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 4, lastGlobalTestEvent ) );
+		verify( child1EventHandler, timeout( 3000 ) ).on( lastGlobalTestEvent );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		assertThat( embeddedServer.readEvents( "aggregate" ).map( DomainEventData::getSequenceNumber ) ).containsExactly( 0L, 1L, 2L );
+	}
+
 }
@@ -0,0 +1,93 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+
+import org.axonframework.commandhandling.CommandBus;
+import org.axonframework.commandhandling.GenericCommandMessage;
+import org.axonframework.commandhandling.callbacks.FutureCallback;
+import org.axonframework.common.Registration;
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import de.libutzki.axon.example.axonserver.TestConfiguration.LocalTestEvent;
+
+class EmbeddedServerWithOutboxTest extends AbstractEmbeddedServerIntegrationTest {
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.localeventstore.outbox.enabled", true );
+	}
+
+	@Test
+	void testGlobalEventIsForwarded( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final ChildEventHandler child2EventHandler = child2Context.getBean( ChildEventHandler.class );
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Test" );
+		child2Context.getBean( EventGateway.class ).publish( globalTestEvent );
+		verify( child1EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+		verify( child2EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+	}
+
+	@Test
+	void testLocalEventIsNotForwarded( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final ChildEventHandler child2EventHandler = child2Context.getBean( ChildEventHandler.class );
+		final LocalTestEvent localTestEvent = new LocalTestEvent( "Test" );
+		child2Context.getBean( EventGateway.class ).publish( localTestEvent );
+		verify( child2EventHandler, timeout( 3000 ) ).on( localTestEvent );
+		verify( child1EventHandler, after( 1000 ).never( ) ).on( localTestEvent );
+	}
+
+	@Test
+	void testGlobalEventOfCommandHandlerIsForwardedAfterCommit( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Command" );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final Registration registration = child2Context.getBean( CommandBus.class ).subscribe( "testCommand", command -> {
+			child2EventGateway.publish( globalTestEvent );
+			return null;
+		} );
+		try {
+			final FutureCallback<Object, Object> callback = new FutureCallback<>( );
+			child1Context.getBean( CommandBus.class ).dispatch( new GenericCommandMessage<>( GenericCommandMessage.asCommandMessage( "payload" ), "testCommand" ), callback );
+			assertThat( callback.getResult( ).isExceptional( ) ).isFalse( );
+			verify( child1EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+		} finally {
+			registration.cancel( );
+		}
+	}
+
+	@Test
+	void testGlobalDomainEventsAreNumberedConsecutively( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final GlobalTestEvent lastGlobalTestEvent = new GlobalTestEvent( "3" );
+		child2Context.getBean( EventStore.class ).publish(
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 0, new GlobalTestEvent( "0" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 1, new LocalTestEvent( "1" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 2, new GlobalTestEvent( "2" ) ),
+				new GenericDomainEventMessage<>( "TestAggregate", "aggregate", 3, lastGlobalTestEvent ) );
+		verify( child1EventHandler, timeout( 3000 ) ).on( lastGlobalTestEvent );
+		verify( child1EventHandler, never( ) ).on( new LocalTestEvent( "1" ) );
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		assertThat( embeddedServer.readEvents( "aggregate" ).map( DomainEventData::getSequenceNumber ) ).containsExactly( 0L, 1L, 2L );
+	}
+
+}
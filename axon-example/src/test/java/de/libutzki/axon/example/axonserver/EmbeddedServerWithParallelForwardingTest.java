@@ -0,0 +1,75 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.DomainEventMessage;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.embeddedserver.EmbeddedServer;
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import de.libutzki.axon.localeventstore.LocalAndGlobalEventStoreAdapter;
+
+class EmbeddedServerWithParallelForwardingTest extends AbstractEmbeddedServerIntegrationTest {
+
+	private static final int EVENTS_PER_AGGREGATE = 20;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.localeventstore.forwarding.threads", 2 );
+		properties.put( "axon.localeventstore.forwarding.segments", 2 );
+	}
+
+	@Test
+	void testEventsOfEachAggregateAreForwardedInOrder( ) throws InterruptedException {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final LocalAndGlobalEventStoreAdapter child2EventStore = child2Context.getBean( LocalAndGlobalEventStoreAdapter.class );
+		final List<DomainEventMessage<?>> events = new ArrayList<>( );
+		for ( int sequenceNumber = 0; sequenceNumber < EVENTS_PER_AGGREGATE; sequenceNumber++ ) {
+			for ( final String aggregateIdentifier : List.of( "aggregate1", "aggregate2", "aggregate3" ) ) {
+				events.add( new GenericDomainEventMessage<>( "TestAggregate", aggregateIdentifier, sequenceNumber, new GlobalTestEvent( aggregateIdentifier + "-" + sequenceNumber ) ) );
+			}
+		}
+		child2EventStore.publish( events );
+		for ( final String aggregateIdentifier : List.of( "aggregate1", "aggregate2", "aggregate3" ) ) {
+			verify( child1EventHandler, timeout( 10000 ) ).on( new GlobalTestEvent( aggregateIdentifier + "-" + ( EVENTS_PER_AGGREGATE - 1 ) ) );
+		}
+
+		final EmbeddedServer embeddedServer = child1Context.getBean( EmbeddedServer.class );
+		for ( final String aggregateIdentifier : List.of( "aggregate1", "aggregate2", "aggregate3" ) ) {
+			final List<String> payloads = new ArrayList<>( );
+			embeddedServer.readEvents( aggregateIdentifier ).forEach( eventData -> payloads.add( payload( eventData ) ) );
+			assertThat( payloads ).hasSize( EVENTS_PER_AGGREGATE );
+			for ( int sequenceNumber = 0; sequenceNumber < EVENTS_PER_AGGREGATE; sequenceNumber++ ) {
+				assertThat( payloads.get( sequenceNumber ) ).contains( aggregateIdentifier + "-" + sequenceNumber );
+			}
+		}
+
+		// Both segments are claimed and have caught up.
+		final long deadline = System.currentTimeMillis( ) + 10000;
+		Map<Integer, Long> forwardingLag = child2EventStore.getForwardingLag( );
+		while ( ( forwardingLag.size( ) < 2 || forwardingLag.values( ).stream( ).anyMatch( lag -> lag > 0 ) ) && System.currentTimeMillis( ) < deadline ) {
+			Thread.sleep( 100 );
+			forwardingLag = child2EventStore.getForwardingLag( );
+		}
+		assertThat( forwardingLag ).containsOnlyKeys( 0, 1 ).containsValues( 0L, 0L );
+	}
+
+	private static String payload( final DomainEventData<?> eventData ) {
+		return new String( ( byte[] ) eventData.getPayload( ).getData( ) );
+	}
+
+}
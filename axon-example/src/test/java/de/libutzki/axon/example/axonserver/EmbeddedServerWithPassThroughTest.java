@@ -0,0 +1,38 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.junit.jupiter.api.Test;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+
+class EmbeddedServerWithPassThroughTest extends AbstractEmbeddedServerIntegrationTest {
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return false;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.pass-through.enabled", true );
+	}
+
+	@Test
+	void testGlobalEventIsPassedThrough( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final ChildEventHandler child2EventHandler = child2Context.getBean( ChildEventHandler.class );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Test" );
+		child2EventGateway.publish( globalTestEvent );
+		verify( child1EventHandler, timeout( 3000 ) ).on( same( globalTestEvent ) );
+		verify( child2EventHandler, timeout( 3000 ) ).on( same( globalTestEvent ) );
+	}
+
+}
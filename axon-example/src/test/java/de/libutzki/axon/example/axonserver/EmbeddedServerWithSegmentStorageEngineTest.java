@@ -0,0 +1,57 @@
+package de.libutzki.axon.example.axonserver;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.axonframework.eventhandling.gateway.EventGateway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.libutzki.axon.example.axonserver.TestConfiguration.ChildEventHandler;
+import de.libutzki.axon.example.axonserver.TestConfiguration.GlobalTestEvent;
+import de.libutzki.axon.example.axonserver.TestConfiguration.LocalTestEvent;
+
+class EmbeddedServerWithSegmentStorageEngineTest extends AbstractEmbeddedServerIntegrationTest {
+
+	@TempDir
+	Path storageDirectory;
+
+	@Override
+	protected boolean useLocalEventStore( ) {
+		return true;
+	}
+
+	@Override
+	protected void configureProperties( final Map<String, Object> properties ) {
+		properties.put( "axon.embeddedserver.storage-engine", "segment" );
+		properties.put( "axon.embeddedserver.segment-storage.directory", storageDirectory.toString( ) );
+		properties.put( "axon.embeddedserver.segment-storage.segment-size", 1024 * 1024 );
+	}
+
+	@Test
+	void testGlobalEventWithSegmentStorageEngine( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final ChildEventHandler child2EventHandler = child2Context.getBean( ChildEventHandler.class );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final GlobalTestEvent globalTestEvent = new GlobalTestEvent( "Test" );
+		child2EventGateway.publish( globalTestEvent );
+		verify( child1EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+		verify( child2EventHandler, timeout( 3000 ) ).on( globalTestEvent );
+	}
+
+	@Test
+	void testLocalEventWithSegmentStorageEngine( ) {
+		final ChildEventHandler child1EventHandler = child1Context.getBean( ChildEventHandler.class );
+		final ChildEventHandler child2EventHandler = child2Context.getBean( ChildEventHandler.class );
+		final EventGateway child2EventGateway = child2Context.getBean( EventGateway.class );
+		final LocalTestEvent localTestEvent = new LocalTestEvent( "Test" );
+		child2EventGateway.publish( localTestEvent );
+		verify( child2EventHandler, timeout( 3000 ) ).on( localTestEvent );
+		verify( child1EventHandler, never( ) ).on( localTestEvent );
+	}
+
+}
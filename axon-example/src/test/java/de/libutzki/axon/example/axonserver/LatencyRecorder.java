@@ -0,0 +1,53 @@
+package de.libutzki.axon.example.axonserver;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Records latencies and prints their percentile distribution in the layout of HdrHistogram's
+ * {@code outputPercentileDistribution}. All values are kept, which is fine for the duration of a load test. Failed
+ * messages are counted separately, so that fast failures do not improve the distribution.
+ */
+final class LatencyRecorder {
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+
+	private long[] latencies = new long[1024];
+	private int count;
+	private int errorCount;
+
+	synchronized void record( final long latencyNanos ) {
+		if ( count == latencies.length ) {
+			latencies = Arrays.copyOf( latencies, count * 2 );
+		}
+		latencies[count++] = latencyNanos;
+	}
+
+	synchronized void recordError( ) {
+		errorCount++;
+	}
+
+	synchronized int getCount( ) {
+		return count;
+	}
+
+	synchronized void reset( ) {
+		count = 0;
+		errorCount = 0;
+	}
+
+	synchronized void outputPercentileDistribution( final PrintStream printStream, final String name, final long durationMillis ) {
+		final long[] sorted = Arrays.copyOf( latencies, count );
+		Arrays.sort( sorted );
+		printStream.printf( "%s: %d recorded, %.0f/s, %d errors%n", name, count, count * 1000.0 / durationMillis, errorCount );
+		printStream.printf( "%12s %14s %10s%n", "Value (ms)", "Percentile", "TotalCount" );
+		if ( count == 0 ) {
+			return;
+		}
+		for ( final double percentile : PERCENTILES ) {
+			final int index = Math.max( 0, ( int ) Math.ceil( percentile / 100 * count ) - 1 );
+			printStream.printf( "%12.3f %14.6f %10d%n", sorted[index] / 1_000_000.0, percentile / 100, index + 1 );
+		}
+		printStream.printf( "#[Mean    = %12.3f, Max     = %12.3f]%n", Arrays.stream( sorted ).average( ).orElse( 0 ) / 1_000_000.0, sorted[count - 1] / 1_000_000.0 );
+	}
+}
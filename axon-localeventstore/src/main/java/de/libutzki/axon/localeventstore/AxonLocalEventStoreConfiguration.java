@@ -4,13 +4,16 @@ import org.axonframework.common.jdbc.PersistenceExceptionResolver;
 import org.axonframework.common.jpa.EntityManagerProvider;
 import org.axonframework.common.transaction.TransactionManager;
 import org.axonframework.config.Configurer;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
 import org.axonframework.eventsourcing.eventstore.EmbeddedEventStore;
 import org.axonframework.eventsourcing.eventstore.EventStorageEngine;
 import org.axonframework.eventsourcing.eventstore.EventStore;
 import org.axonframework.eventsourcing.eventstore.jpa.JpaEventStorageEngine;
+import org.axonframework.lifecycle.Phase;
 import org.axonframework.messaging.annotation.ParameterResolverFactory;
 import org.axonframework.serialization.Serializer;
 import org.axonframework.spring.config.AxonConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -37,13 +40,22 @@ public class AxonLocalEventStoreConfiguration {
 
 	@Bean
 	@Primary
-	EventStore localAndGlobalEventStoreAdapter( final EventStorageEngine storageEngine, @Qualifier( "eventStore" ) final EventStore globalEventStore, final org.axonframework.config.Configuration configuration, final ParameterResolverFactory parameterResolveFactory, @Value( "${spring.application.name}" ) final String applicationName ) {
+	LocalAndGlobalEventStoreAdapter localAndGlobalEventStoreAdapter( final EventStorageEngine storageEngine, @Qualifier( "eventStore" ) final EventStore globalEventStore, final org.axonframework.config.Configuration configuration, final ParameterResolverFactory parameterResolveFactory, @Value( "${spring.application.name}" ) final String applicationName,
+			@Value( "${axon.localeventstore.sequence-cache.max-entries:1000}" ) final int sequenceCacheMaxEntries,
+			@Value( "${axon.localeventstore.forwarding.batch-size:100}" ) final int forwardingBatchSize,
+			@Value( "${axon.localeventstore.forwarding.threads:1}" ) final int forwardingThreads,
+			@Value( "${axon.localeventstore.forwarding.segments:1}" ) final int forwardingSegments,
+			final ObjectProvider<GlobalEventOutbox> outbox ) {
 		final EmbeddedEventStore localEventStore = EmbeddedEventStore.builder( )
 				.storageEngine( storageEngine )
 				.messageMonitor( configuration.messageMonitor( EventStore.class, "localEventStore" ) )
 				.build( );
 		configuration.onShutdown( localEventStore::shutDown );
-		return new LocalAndGlobalEventStoreAdapter( localEventStore, globalEventStore, configuration, parameterResolveFactory, applicationName );
+		final LocalAndGlobalEventStoreAdapter localAndGlobalEventStoreAdapter = new LocalAndGlobalEventStoreAdapter( localEventStore, globalEventStore, configuration, parameterResolveFactory, applicationName,
+				sequenceCacheMaxEntries, forwardingBatchSize, forwardingThreads, forwardingSegments, outbox.getIfAvailable( ) );
+		configuration.onStart( Phase.INBOUND_EVENT_CONNECTORS, localAndGlobalEventStoreAdapter::start );
+		configuration.onShutdown( Phase.INBOUND_EVENT_CONNECTORS, localAndGlobalEventStoreAdapter::shutdown );
+		return localAndGlobalEventStoreAdapter;
 	}
 
 	@Bean
@@ -63,4 +75,20 @@ public class AxonLocalEventStoreConfiguration {
 				.transactionManager( transactionManager )
 				.build( );
 	}
+
+	/**
+	 * The outbox and its entity are only registered if it is enabled.
+	 */
+	@Configuration
+	@ConditionalOnProperty( name = "axon.localeventstore.outbox.enabled", havingValue = "true" )
+	@EntityScan( basePackageClasses = GlobalEventOutboxEntry.class )
+	static class GlobalEventOutboxConfiguration {
+
+		@Bean
+		GlobalEventOutbox globalEventOutbox( final EntityManagerProvider entityManagerProvider, final TransactionManager transactionManager, final TokenStore tokenStore,
+				@Qualifier( "eventSerializer" ) final Serializer eventSerializer, final AxonConfiguration configuration,
+				@Value( "${axon.localeventstore.forwarding.batch-size:100}" ) final int forwardingBatchSize ) {
+			return new GlobalEventOutbox( entityManagerProvider, transactionManager, tokenStore, eventSerializer, configuration.upcasterChain( ), forwardingBatchSize );
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package de.libutzki.axon.localeventstore;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.axonframework.common.stream.BlockingStream;
+import org.axonframework.eventhandling.TrackedEventMessage;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventsourcing.MultiStreamableMessageSource;
+import org.axonframework.messaging.StreamableMessageSource;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The {@link MultiStreamableMessageSource} ignores {@link BlockingStream#blacklist(Object)}, so a tracking processor
+ * would never tell the underlying event stores which payload types it is not interested in. The
+ * {@link BlacklistForwardingStream} wraps the stream of a {@link MultiStreamableMessageSource} and forwards the
+ * blacklisted messages to the streams of all sources. Sources which do not support blacklisting ignore them.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@RequiredArgsConstructor
+final class BlacklistForwardingStream implements BlockingStream<TrackedEventMessage<?>> {
+
+	private final BlockingStream<TrackedEventMessage<?>> delegate;
+	private final List<BlockingStream<TrackedEventMessage<?>>> sourceStreams;
+
+	/**
+	 * Opens a stream which combines the streams of the given sources like the {@link MultiStreamableMessageSource} does.
+	 */
+	static BlockingStream<TrackedEventMessage<?>> open( final Map<String, StreamableMessageSource<TrackedEventMessage<?>>> messageSources, final TrackingToken trackingToken ) {
+		final List<BlockingStream<TrackedEventMessage<?>>> sourceStreams = new CopyOnWriteArrayList<>( );
+		final MultiStreamableMessageSource.Builder builder = MultiStreamableMessageSource.builder( );
+		messageSources.forEach( ( sourceName, messageSource ) -> builder.addMessageSource( sourceName, new CollectingMessageSource( messageSource, sourceStreams ) ) );
+		return new BlacklistForwardingStream( builder.build( ).openStream( trackingToken ), sourceStreams );
+	}
+
+	@Override
+	public Optional<TrackedEventMessage<?>> peek( ) {
+		return delegate.peek( );
+	}
+
+	@Override
+	public boolean hasNextAvailable( final int timeout, final TimeUnit unit ) throws InterruptedException {
+		return delegate.hasNextAvailable( timeout, unit );
+	}
+
+	@Override
+	public TrackedEventMessage<?> nextAvailable( ) throws InterruptedException {
+		return delegate.nextAvailable( );
+	}
+
+	@Override
+	public void blacklist( final TrackedEventMessage<?> ignoredMessage ) {
+		sourceStreams.forEach( sourceStream -> sourceStream.blacklist( ignoredMessage ) );
+	}
+
+	@Override
+	public void close( ) {
+		delegate.close( );
+	}
+
+	/**
+	 * Delegates to the given source and collects the opened streams.
+	 */
+	@RequiredArgsConstructor
+	private static final class CollectingMessageSource implements StreamableMessageSource<TrackedEventMessage<?>> {
+
+		private final StreamableMessageSource<TrackedEventMessage<?>> delegate;
+		private final List<BlockingStream<TrackedEventMessage<?>>> openedStreams;
+
+		@Override
+		public BlockingStream<TrackedEventMessage<?>> openStream( final TrackingToken trackingToken ) {
+			final BlockingStream<TrackedEventMessage<?>> stream = delegate.openStream( trackingToken );
+			openedStreams.add( stream );
+			return stream;
+		}
+
+		@Override
+		public TrackingToken createTailToken( ) {
+			return delegate.createTailToken( );
+		}
+
+		@Override
+		public TrackingToken createHeadToken( ) {
+			return delegate.createHeadToken( );
+		}
+
+		@Override
+		public TrackingToken createTokenAt( final Instant dateTime ) {
+			return delegate.createTokenAt( dateTime );
+		}
+
+		@Override
+		public TrackingToken createTokenSince( final Duration duration ) {
+			return delegate.createTokenSince( duration );
+		}
+	}
+}
@@ -0,0 +1,406 @@
+package de.libutzki.axon.localeventstore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.axonframework.common.jpa.EntityManagerProvider;
+import org.axonframework.common.transaction.TransactionManager;
+import org.axonframework.eventhandling.DomainEventData;
+import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.EventTrackerStatus;
+import org.axonframework.eventhandling.GapAwareTrackingToken;
+import org.axonframework.eventhandling.GenericDomainEventMessage;
+import org.axonframework.eventhandling.GenericEventMessage;
+import org.axonframework.eventhandling.TrackingEventProcessor;
+import org.axonframework.eventhandling.TrackingToken;
+import org.axonframework.eventhandling.tokenstore.TokenStore;
+import org.axonframework.eventhandling.tokenstore.UnableToClaimTokenException;
+import org.axonframework.eventsourcing.eventstore.jpa.DomainEventEntry;
+import org.axonframework.messaging.ResultMessage;
+import org.axonframework.messaging.unitofwork.BatchingUnitOfWork;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
+import org.axonframework.serialization.LazyDeserializingObject;
+import org.axonframework.serialization.SerializedMessage;
+import org.axonframework.serialization.Serializer;
+import org.axonframework.serialization.upcasting.event.EventUpcaster;
+import org.axonframework.serialization.upcasting.event.InitialEventRepresentation;
+import org.axonframework.serialization.upcasting.event.IntermediateEventRepresentation;
+import org.axonframework.serialization.upcasting.event.NoOpEventUpcaster;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The {@link GlobalEventOutbox} keeps track of the global events which have not been forwarded to the global event store
+ * yet. Whenever events are published to the local event store, an {@link GlobalEventOutboxEntry entry} is written for
+ * each global event in the same transaction. A single thread reads the entries, passes the referenced events to the
+ * {@link GlobalEventPublisher} and deletes the entries in one transaction per batch. This way forwarding only reads the
+ * global events instead of tracking all events of the local event store.<br>
+ * <br>
+ * The forwarder is notified as soon as entries have been committed. It polls the outbox periodically as well, in order
+ * to forward the entries written before a restart and to retry failed batches. Like the tracking event processor, the
+ * outbox forwards the events at least once: If the local transaction fails after the events have been published to the
+ * global event store, they are forwarded again.<br>
+ * <br>
+ * The outbox takes over from the tracking event processor which forwarded the events before the outbox has been
+ * enabled: The processor keeps on forwarding until it has caught up, skipping the events which have an entry already.
+ * Afterwards the outbox keeps the processor's tokens in front of the oldest event which has not been forwarded yet, so
+ * the processor neither skips nor repeats events once the outbox is disabled again.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Log4j2
+final class GlobalEventOutbox {
+
+	private static final long POLL_INTERVAL_MILLIS = 1000;
+
+	private final EntityManagerProvider entityManagerProvider;
+	private final TransactionManager transactionManager;
+	private final TokenStore tokenStore;
+	private final Serializer serializer;
+	private final EventUpcaster upcasterChain;
+	private final int batchSize;
+
+	private final Object monitor = new Object( );
+	private boolean running;
+	private boolean entriesAvailable = true;
+	private boolean forwardedSinceTokenUpdate;
+	private Thread forwarderThread;
+
+	private final LongAdder forwardedCount = new LongAdder( );
+	private final LongAdder failedCount = new LongAdder( );
+
+	GlobalEventOutbox( final EntityManagerProvider entityManagerProvider, final TransactionManager transactionManager, final TokenStore tokenStore, final Serializer serializer,
+			final EventUpcaster upcasterChain, final int batchSize ) {
+		if ( batchSize <= 0 ) {
+			throw new IllegalArgumentException( "The batch size of the global event outbox has to be positive." );
+		}
+		this.entityManagerProvider = entityManagerProvider;
+		this.transactionManager = transactionManager;
+		this.tokenStore = tokenStore;
+		this.serializer = serializer;
+		this.upcasterChain = upcasterChain == null ? NoOpEventUpcaster.INSTANCE : upcasterChain;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Starts forwarding the events of the outbox to the given {@code globalEventPublisher}. If the given {@code tracker} has
+	 * forwarded the global events before, it is run until it has caught up first. It has to skip the events which have
+	 * an entry (see {@link #hasEntry(String)}). The tokens of the tracker are initialized with {@code trackerSegments}
+	 * segments, if it hasn't been run yet.
+	 */
+	void start( final GlobalEventPublisher globalEventPublisher, final TrackingEventProcessor tracker, final int trackerSegments ) {
+		synchronized ( monitor ) {
+			running = true;
+		}
+		forwarderThread = new Thread( ( ) -> {
+			if ( catchUp( tracker ) ) {
+				updateTrackerToken( tracker.getName( ), trackerSegments );
+				forwardEntries( globalEventPublisher, tracker.getName( ), trackerSegments );
+			}
+		}, "GlobalEventOutboxForwarder" );
+		forwarderThread.setDaemon( true );
+		forwarderThread.start( );
+	}
+
+	/**
+	 * Publishes the given events by means of {@code localEventStore} and writes an entry for each global event in the same
+	 * transaction. If a unit of work is active, the entries are written when it is about to be committed. They join the
+	 * transaction of the unit of work, so a transaction has to be attached to it.
+	 */
+	void publish( final List<? extends EventMessage<?>> events, final Consumer<List<? extends EventMessage<?>>> localEventStore ) {
+		final List<GlobalEventOutboxEntry> entries = events.stream( )
+				.filter( event -> event.getPayloadType( ).isAnnotationPresent( GlobalEvent.class ) )
+				.map( event -> new GlobalEventOutboxEntry( event.getIdentifier( ) ) )
+				.collect( Collectors.toList( ) );
+		if ( entries.isEmpty( ) ) {
+			localEventStore.accept( events );
+		} else if ( CurrentUnitOfWork.isStarted( ) ) {
+			if ( !entityManagerProvider.getEntityManager( ).isJoinedToTransaction( ) ) {
+				throw new IllegalStateException( "Global events can only be published within a unit of work which has a transaction attached, "
+						+ "otherwise the outbox entries are not written in the transaction of the events." );
+			}
+			localEventStore.accept( events );
+			final UnitOfWork<?> unitOfWork = CurrentUnitOfWork.get( ).root( );
+			unitOfWork.onPrepareCommit( u -> persist( entries ) );
+			unitOfWork.afterCommit( u -> signalEntriesAvailable( ) );
+		} else {
+			transactionManager.executeInTransaction( ( ) -> {
+				localEventStore.accept( events );
+				persist( entries );
+			} );
+			signalEntriesAvailable( );
+		}
+	}
+
+	/**
+	 * Returns whether the event with the given identifier has an entry, which means it is forwarded by the outbox.
+	 */
+	boolean hasEntry( final String eventIdentifier ) {
+		return !entityManagerProvider.getEntityManager( )
+				.createQuery( "SELECT e.id FROM GlobalEventOutboxEntry e WHERE e.eventIdentifier = :eventIdentifier", Long.class )
+				.setParameter( "eventIdentifier", eventIdentifier )
+				.getResultList( )
+				.isEmpty( );
+	}
+
+	/**
+	 * Stops the forwarder thread. The entries which have not been forwarded yet are forwarded after the next start.
+	 */
+	void shutDown( ) {
+		synchronized ( monitor ) {
+			running = false;
+			monitor.notifyAll( );
+		}
+		if ( forwarderThread != null ) {
+			try {
+				forwarderThread.join( );
+			} catch ( final InterruptedException e ) {
+				log.warn( "Interrupted while waiting for the global event outbox to finish.", e );
+				Thread.currentThread( ).interrupt( );
+			}
+		}
+		log.debug( "Global event outbox: {} events forwarded, {} batches failed.", getForwardedCount( ), getFailedCount( ) );
+	}
+
+	/**
+	 * Returns the number of entries which have not been forwarded yet.
+	 */
+	long getPendingCount( ) {
+		return transactionManager.fetchInTransaction( ( ) -> entityManagerProvider.getEntityManager( )
+				.createQuery( "SELECT COUNT(e) FROM GlobalEventOutboxEntry e", Long.class )
+				.getSingleResult( ) );
+	}
+
+	long getForwardedCount( ) {
+		return forwardedCount.sum( );
+	}
+
+	long getFailedCount( ) {
+		return failedCount.sum( );
+	}
+
+	private void persist( final List<GlobalEventOutboxEntry> entries ) {
+		final EntityManager entityManager = entityManagerProvider.getEntityManager( );
+		entries.forEach( entityManager::persist );
+	}
+
+	private void signalEntriesAvailable( ) {
+		synchronized ( monitor ) {
+			entriesAvailable = true;
+			monitor.notifyAll( );
+		}
+	}
+
+	/**
+	 * Runs the given tracker until each of its segments has caught up, if it has forwarded the global events before.
+	 * Returns {@code false} if the outbox has been shut down in the meantime.
+	 */
+	private boolean catchUp( final TrackingEventProcessor tracker ) {
+		if ( transactionManager.fetchInTransaction( ( ) -> tokenStore.fetchSegments( tracker.getName( ) ) ).length == 0 ) {
+			return isRunning( );
+		}
+		log.info( "Forwarding the global events which have been published before the outbox has been enabled." );
+		tracker.start( );
+		try {
+			while ( isRunning( ) && !hasCaughtUp( tracker ) ) {
+				awaitShutDown( POLL_INTERVAL_MILLIS );
+			}
+		} finally {
+			tracker.shutDown( );
+		}
+		return isRunning( );
+	}
+
+	private boolean hasCaughtUp( final TrackingEventProcessor tracker ) {
+		final Map<Integer, EventTrackerStatus> processingStatus = tracker.processingStatus( );
+		final int segmentCount = transactionManager.fetchInTransaction( ( ) -> tokenStore.fetchSegments( tracker.getName( ) ) ).length;
+		return processingStatus.size( ) == segmentCount && processingStatus.values( ).stream( ).allMatch( EventTrackerStatus::isCaughtUp );
+	}
+
+	private void forwardEntries( final GlobalEventPublisher globalEventPublisher, final String trackerName, final int trackerSegments ) {
+		while ( awaitEntriesAvailable( ) ) {
+			try {
+				// Keep on forwarding as long as the batches are full, there might be more entries.
+				int forwardedEntries;
+				do {
+					forwardedEntries = forwardBatch( globalEventPublisher );
+					forwardedSinceTokenUpdate |= forwardedEntries > 0;
+				} while ( forwardedEntries == batchSize && isRunning( ) );
+				if ( forwardedSinceTokenUpdate ) {
+					updateTrackerToken( trackerName, trackerSegments );
+				}
+			} catch ( final RuntimeException e ) {
+				failedCount.increment( );
+				log.warn( "Failed to forward global events. Retrying in {} ms.", POLL_INTERVAL_MILLIS, e );
+			}
+		}
+		updateTrackerToken( trackerName, trackerSegments );
+	}
+
+	/**
+	 * Moves the tokens of the tracker in front of the oldest event which has not been forwarded yet, or to the head of the
+	 * local event store if all events have been forwarded. The tokens are initialized if they don't exist yet.
+	 */
+	private void updateTrackerToken( final String trackerName, final int trackerSegments ) {
+		try {
+			transactionManager.executeInTransaction( ( ) -> {
+				final TrackingToken trackingToken = forwardedToken( );
+				final int[] segments = tokenStore.fetchSegments( trackerName );
+				if ( segments.length == 0 ) {
+					tokenStore.initializeTokenSegments( trackerName, trackerSegments, trackingToken );
+					return;
+				}
+				for ( final int segment : segments ) {
+					tokenStore.storeToken( trackingToken, trackerName, segment );
+					tokenStore.releaseClaim( trackerName, segment );
+				}
+			} );
+			forwardedSinceTokenUpdate = false;
+		} catch ( final UnableToClaimTokenException e ) {
+			log.debug( "The tokens of {} are claimed by another instance. Not updating them.", trackerName, e );
+		} catch ( final RuntimeException e ) {
+			log.warn( "Failed to update the tokens of {}.", trackerName, e );
+		}
+	}
+
+	/**
+	 * Returns a token which covers all events of the local event store up to the oldest event which has an entry.
+	 */
+	private TrackingToken forwardedToken( ) {
+		final EntityManager entityManager = entityManagerProvider.getEntityManager( );
+		final Long headIndex = entityManager.createQuery( "SELECT MAX(d.globalIndex) FROM DomainEventEntry d", Long.class ).getSingleResult( );
+		final Long oldestPendingIndex = entityManager
+				.createQuery( "SELECT MIN(d.globalIndex) FROM DomainEventEntry d, GlobalEventOutboxEntry e WHERE d.eventIdentifier = e.eventIdentifier", Long.class )
+				.getSingleResult( );
+		if ( headIndex == null ) {
+			return null;
+		}
+		final long index = oldestPendingIndex == null ? headIndex : Math.min( headIndex, oldestPendingIndex - 1 );
+		return index < 0 ? null : GapAwareTrackingToken.newInstance( index, Collections.emptySet( ) );
+	}
+
+	private void awaitShutDown( final long millis ) {
+		synchronized ( monitor ) {
+			if ( running ) {
+				try {
+					monitor.wait( millis );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread( ).interrupt( );
+					running = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until entries have been signaled or the poll interval has elapsed. Returns {@code false} if the outbox has been
+	 * shut down.
+	 */
+	private boolean awaitEntriesAvailable( ) {
+		synchronized ( monitor ) {
+			final long deadline = System.currentTimeMillis( ) + POLL_INTERVAL_MILLIS;
+			long millisLeft = POLL_INTERVAL_MILLIS;
+			while ( running && !entriesAvailable && millisLeft > 0 ) {
+				try {
+					monitor.wait( millisLeft );
+				} catch ( final InterruptedException e ) {
+					Thread.currentThread( ).interrupt( );
+					return false;
+				}
+				millisLeft = deadline - System.currentTimeMillis( );
+			}
+			entriesAvailable = false;
+			return running;
+		}
+	}
+
+	private boolean isRunning( ) {
+		synchronized ( monitor ) {
+			return running;
+		}
+	}
+
+	/**
+	 * Forwards the events of the oldest entries and deletes the entries. Returns the number of forwarded entries.
+	 */
+	private int forwardBatch( final GlobalEventPublisher globalEventPublisher ) {
+		final List<GlobalEventOutboxEntry> entries = new ArrayList<>( );
+		final List<EventMessage<?>> events = new ArrayList<>( );
+		transactionManager.executeInTransaction( ( ) -> read( entries, events ) );
+		if ( entries.isEmpty( ) ) {
+			return 0;
+		}
+
+		final List<Long> entryIds = entries.stream( ).map( GlobalEventOutboxEntry::getId ).collect( Collectors.toList( ) );
+		if ( events.isEmpty( ) ) {
+			log.warn( "The events of {} outbox entries don't exist in the local event store.", entries.size( ) );
+			transactionManager.executeInTransaction( ( ) -> delete( entryIds ) );
+			return entries.size( );
+		}
+		final BatchingUnitOfWork<EventMessage<?>> unitOfWork = new BatchingUnitOfWork<>( events );
+		unitOfWork.attachTransaction( transactionManager );
+		unitOfWork.onPrepareCommit( u -> delete( entryIds ) );
+		final ResultMessage<?> result = unitOfWork.executeWithResult( ( ) -> globalEventPublisher.handle( unitOfWork.getMessage( ) ) );
+		if ( result.isExceptional( ) ) {
+			throw new IllegalStateException( "Failed to forward a batch of " + entries.size( ) + " global events.", result.exceptionResult( ) );
+		}
+		forwardedCount.add( events.size( ) );
+		return entries.size( );
+	}
+
+	private void delete( final List<Long> entryIds ) {
+		entityManagerProvider.getEntityManager( )
+				.createQuery( "DELETE FROM GlobalEventOutboxEntry e WHERE e.id IN :ids" )
+				.setParameter( "ids", entryIds )
+				.executeUpdate( );
+	}
+
+	private void read( final List<GlobalEventOutboxEntry> entries, final List<EventMessage<?>> events ) {
+		final EntityManager entityManager = entityManagerProvider.getEntityManager( );
+		entries.addAll( entityManager.createQuery( "SELECT e FROM GlobalEventOutboxEntry e ORDER BY e.id", GlobalEventOutboxEntry.class )
+				.setMaxResults( batchSize )
+				.getResultList( ) );
+		if ( entries.isEmpty( ) ) {
+			return;
+		}
+		final List<String> eventIdentifiers = entries.stream( ).map( GlobalEventOutboxEntry::getEventIdentifier ).collect( Collectors.toList( ) );
+		final Map<String, DomainEventEntry> eventEntries = entityManager.createQuery( "SELECT e FROM DomainEventEntry e WHERE e.eventIdentifier IN :eventIdentifiers", DomainEventEntry.class )
+				.setParameter( "eventIdentifiers", eventIdentifiers )
+				.getResultStream( )
+				.collect( Collectors.toMap( DomainEventEntry::getEventIdentifier, Function.identity( ) ) );
+		// The events are forwarded in the order in which they have been published.
+		final List<DomainEventData<?>> eventData = eventIdentifiers.stream( )
+				.map( eventEntries::get )
+				.filter( Objects::nonNull )
+				.collect( Collectors.toList( ) );
+		upcasterChain.upcast( eventData.stream( ).map( data -> new InitialEventRepresentation( data, serializer ) ) )
+				.map( this::toEventMessage )
+				.forEach( events::add );
+	}
+
+	/**
+	 * The local event store stores all events as domain events, but events which have not been published by an aggregate
+	 * lack the aggregate type and identifier.
+	 */
+	private EventMessage<?> toEventMessage( final IntermediateEventRepresentation representation ) {
+		final SerializedMessage<?> message = new SerializedMessage<>( representation.getMessageIdentifier( ),
+				new LazyDeserializingObject<>( representation::getData, representation.getType( ), serializer ),
+				representation.getMetaData( ) );
+		if ( representation.getAggregateIdentifier( ).isPresent( ) ) {
+			return new GenericDomainEventMessage<>( representation.getAggregateType( ).orElse( null ), representation.getAggregateIdentifier( ).get( ), representation.getSequenceNumber( ).get( ),
+					message, representation::getTimestamp );
+		}
+		return new GenericEventMessage<>( message, representation::getTimestamp );
+	}
+}
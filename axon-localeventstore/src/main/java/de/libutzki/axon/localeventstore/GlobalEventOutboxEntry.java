@@ -0,0 +1,34 @@
+package de.libutzki.axon.localeventstore;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * An entry of the {@link GlobalEventOutbox}. It just references a global event in the local event store by its
+ * identifier, the event itself is read from the local event store when it is forwarded.
+ *
+ * @author oliver.libutzki
+ *
+ */
+@Entity
+@Getter
+@NoArgsConstructor( access = AccessLevel.PROTECTED )
+class GlobalEventOutboxEntry {
+
+	@Id
+	@GeneratedValue
+	private long id;
+
+	@Column( nullable = false, unique = true )
+	private String eventIdentifier;
+
+	GlobalEventOutboxEntry( final String eventIdentifier ) {
+		this.eventIdentifier = eventIdentifier;
+	}
+}
@@ -1,7 +1,8 @@
 package de.libutzki.axon.localeventstore;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.List;
 
 import org.axonframework.eventhandling.DomainEventMessage;
 import org.axonframework.eventhandling.DomainEventSequenceAware;
@@ -10,20 +11,32 @@ import org.axonframework.eventhandling.EventMessageHandler;
 import org.axonframework.eventhandling.GenericDomainEventMessage;
 import org.axonframework.eventhandling.GenericEventMessage;
 import org.axonframework.eventsourcing.eventstore.EventStore;
+import org.axonframework.messaging.unitofwork.CurrentUnitOfWork;
+import org.axonframework.messaging.unitofwork.UnitOfWork;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
 /**
  * The {@link GlobalEventPublisher} is responsible for copying non-local events (events not marked with
- * {@link GlobalEvent}) into the global event store. It also marks the events with their origin module.
+ * {@link GlobalEvent}) into the global event store. It also marks the events with their origin module.<br>
+ * <br>
+ * The events of a batch of the tracking event processor are handled in a single unit of work. They are collected and
+ * published to the global event store with a single call, when the unit of work is about to be committed.<br>
+ * <br>
+ * The sequence numbers of domain events in the global event store are assigned by the {@link GlobalSequenceCache}, if
+ * one is given. Otherwise the global event store is asked for the last sequence number of each aggregate once per batch.
  */
 @Log4j2
 @RequiredArgsConstructor
 final class GlobalEventPublisher implements EventMessageHandler {
 
+	private final String pendingEventsKey = GlobalEventPublisher.class.getName( ) + ".pendingEvents@" + System.identityHashCode( this );
+	private final String batchSequenceCacheKey = GlobalEventPublisher.class.getName( ) + ".batchSequenceCache@" + System.identityHashCode( this );
+
 	private final EventStore globalEventStore;
 	private final String origin;
+	private final GlobalSequenceCache sequenceCache;
 
 	@Override
 	public Object handle( final EventMessage<?> eventMessage ) throws Exception {
@@ -34,19 +47,52 @@ final class GlobalEventPublisher implements EventMessageHandler {
 			if ( eventMessage instanceof DomainEventMessage && globalEventStore instanceof DomainEventSequenceAware ) {
 				final DomainEventMessage<?> domainEventMessage = ( DomainEventMessage<?> ) eventMessage;
 				final String aggregateIdentifier = domainEventMessage.getAggregateIdentifier( );
-				final Optional<Long> sequenceNumber = globalEventStore.lastSequenceNumberFor( aggregateIdentifier );
 				if ( domainEventMessage.getType( ) == null ) {
 					eventMessageToBePublished = new GenericEventMessage<>( domainEventMessage, domainEventMessage::getTimestamp );
 				} else {
-					eventMessageToBePublished = new GenericDomainEventMessage<>( domainEventMessage.getType( ), domainEventMessage.getAggregateIdentifier( ), sequenceNumber.map( seq -> seq + 1 ).orElse( 0L ), domainEventMessage, domainEventMessage.getTimestamp( ) );
+					eventMessageToBePublished = new GenericDomainEventMessage<>( domainEventMessage.getType( ), domainEventMessage.getAggregateIdentifier( ), nextSequenceNumber( aggregateIdentifier ), domainEventMessage, domainEventMessage.getTimestamp( ) );
 				}
 			} else {
 				eventMessageToBePublished = eventMessage;
 			}
 			log.debug( ( ) -> "Event published to global event store: " + eventMessage );
-			globalEventStore.publish( eventMessageToBePublished.andMetaData( Collections.singletonMap( MetadataKeys.ORIGIN, origin ) ) );
+			publish( eventMessageToBePublished.andMetaData( Collections.singletonMap( MetadataKeys.ORIGIN, origin ) ) );
 		}
 
 		return null;
 	}
+
+	private void publish( final EventMessage<?> eventMessage ) {
+		if ( !CurrentUnitOfWork.isStarted( ) ) {
+			globalEventStore.publish( eventMessage );
+			return;
+		}
+		final UnitOfWork<?> unitOfWork = CurrentUnitOfWork.get( ).root( );
+		final List<EventMessage<?>> pendingEvents = unitOfWork.getOrComputeResource( pendingEventsKey, key -> {
+			final List<EventMessage<?>> events = new ArrayList<>( );
+			unitOfWork.onPrepareCommit( u -> globalEventStore.publish( events ) );
+			return events;
+		} );
+		pendingEvents.add( eventMessage );
+	}
+
+	private long nextSequenceNumber( final String aggregateIdentifier ) {
+		if ( !CurrentUnitOfWork.isStarted( ) ) {
+			return sequenceCache == null
+					? globalEventStore.lastSequenceNumberFor( aggregateIdentifier ).map( seq -> seq + 1 ).orElse( 0L )
+					: sequenceCache.nextSequenceNumber( aggregateIdentifier, globalEventStore::lastSequenceNumberFor );
+		}
+		final UnitOfWork<?> unitOfWork = CurrentUnitOfWork.get( ).root( );
+		if ( sequenceCache == null ) {
+			// The events of a batch are appended together, so the sequence numbers handed out within the batch have to be
+			// remembered even if there is no cache.
+			return unitOfWork.getOrComputeResource( batchSequenceCacheKey, key -> new GlobalSequenceCache( Integer.MAX_VALUE ) )
+					.nextSequenceNumber( aggregateIdentifier, globalEventStore::lastSequenceNumberFor );
+		}
+		final long sequenceNumber = sequenceCache.nextSequenceNumber( aggregateIdentifier, globalEventStore::lastSequenceNumberFor );
+		// The event is appended when the unit of work is committed. If it can't be appended (e.g. because of a conflicting
+		// sequence number), the sequence number has to be looked up again when the event is handled once more.
+		unitOfWork.onRollback( u -> sequenceCache.evict( aggregateIdentifier ) );
+		return sequenceNumber;
+	}
 }
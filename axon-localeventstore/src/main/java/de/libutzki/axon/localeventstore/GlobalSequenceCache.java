@@ -0,0 +1,79 @@
+package de.libutzki.axon.localeventstore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The {@link GlobalSequenceCache} remembers the next sequence number of the most recently forwarded aggregates in the
+ * global event store. The {@link GlobalEventPublisher} of a context is the only one which forwards the context's
+ * aggregates, so the global event store only has to be asked once per aggregate instead of once per event.<br>
+ * <br>
+ * An entry has to be evicted as soon as appending an event with the handed out sequence number fails, so that the next
+ * attempt asks the global event store again. The cache is bounded by the number of aggregates, the least recently used
+ * aggregates are evicted first.
+ *
+ * @author oliver.libutzki
+ *
+ */
+final class GlobalSequenceCache {
+
+	private final Map<String, Long> nextSequenceNumbers;
+	private final LongAdder hitCount = new LongAdder( );
+	private final LongAdder missCount = new LongAdder( );
+
+	GlobalSequenceCache( final int maxEntries ) {
+		if ( maxEntries <= 0 ) {
+			throw new IllegalArgumentException( "The global sequence cache has to hold at least one aggregate." );
+		}
+		this.nextSequenceNumbers = new LinkedHashMap<String, Long>( 16, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry<String, Long> eldest ) {
+				return size( ) > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the next sequence number of the given aggregate and reserves it, so that the following call returns the
+	 * subsequent sequence number. If the aggregate is not cached, the {@code lastSequenceNumberLookup} is asked.
+	 */
+	long nextSequenceNumber( final String aggregateIdentifier, final Function<String, Optional<Long>> lastSequenceNumberLookup ) {
+		synchronized ( nextSequenceNumbers ) {
+			final Long cachedSequenceNumber = nextSequenceNumbers.get( aggregateIdentifier );
+			final long nextSequenceNumber;
+			if ( cachedSequenceNumber != null ) {
+				hitCount.increment( );
+				nextSequenceNumber = cachedSequenceNumber;
+			} else {
+				missCount.increment( );
+				nextSequenceNumber = lastSequenceNumberLookup.apply( aggregateIdentifier ).map( sequenceNumber -> sequenceNumber + 1 ).orElse( 0L );
+			}
+			nextSequenceNumbers.put( aggregateIdentifier, nextSequenceNumber + 1 );
+			return nextSequenceNumber;
+		}
+	}
+
+	/**
+	 * Evicts the given aggregate, e.g. because appending an event with a sequence number handed out by this cache has
+	 * failed.
+	 */
+	void evict( final String aggregateIdentifier ) {
+		synchronized ( nextSequenceNumbers ) {
+			nextSequenceNumbers.remove( aggregateIdentifier );
+		}
+	}
+
+	long getHitCount( ) {
+		return hitCount.sum( );
+	}
+
+	long getMissCount( ) {
+		return missCount.sum( );
+	}
+}
@@ -1,6 +1,10 @@
 package de.libutzki.axon.localeventstore;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import org.axonframework.common.Registration;
 import org.axonframework.common.stream.BlockingStream;
@@ -8,65 +12,155 @@ import org.axonframework.common.transaction.TransactionManager;
 import org.axonframework.config.Configuration;
 import org.axonframework.eventhandling.DomainEventMessage;
 import org.axonframework.eventhandling.EventMessage;
+import org.axonframework.eventhandling.EventMessageHandler;
 import org.axonframework.eventhandling.SimpleEventHandlerInvoker;
 import org.axonframework.eventhandling.TrackedEventMessage;
 import org.axonframework.eventhandling.TrackingEventProcessor;
 import org.axonframework.eventhandling.TrackingEventProcessorConfiguration;
 import org.axonframework.eventhandling.TrackingToken;
-import org.axonframework.eventhandling.async.SequentialPolicy;
+import org.axonframework.eventhandling.async.SequentialPerAggregatePolicy;
 import org.axonframework.eventhandling.tokenstore.TokenStore;
-import org.axonframework.eventsourcing.MultiStreamableMessageSource;
 import org.axonframework.eventsourcing.eventstore.DomainEventStream;
 import org.axonframework.eventsourcing.eventstore.EventStore;
 import org.axonframework.messaging.MessageDispatchInterceptor;
 import org.axonframework.messaging.StreamableMessageSource;
 import org.axonframework.messaging.annotation.ParameterResolverFactory;
 
+import lombok.extern.log4j.Log4j2;
+
 /**
  * The {@link LocalAndGlobalEventStoreAdapter} is an adapter between the local and the global event store. Registrations
  * are dispatched and events are concatenated.
  */
+@Log4j2
 public final class LocalAndGlobalEventStoreAdapter implements EventStore {
 
 	private final EventStore localEventStore;
 	private final EventStore globalEventStore;
 
-	private final StreamableMessageSource<TrackedEventMessage<?>> messageSource;
+	private final Map<String, StreamableMessageSource<TrackedEventMessage<?>>> messageSources;
 	private final TrackingEventProcessor trackingEventProcessor;
+	private final GlobalEventOutbox outbox;
+	private final GlobalSequenceCache sequenceCache;
+	private final GlobalEventPublisher globalEventPublisher;
+	private final int forwardingSegments;
+
+	/**
+	 * Creates an adapter which forwards the global events of the local event store to the global event store, as soon as
+	 * it has been {@link #start() started}.
+	 *
+	 * @param sequenceCacheMaxEntries
+	 *                                The number of aggregates whose next global sequence number is cached, {@code 0}
+	 *                                looks up the sequence number for each forwarded event.
+	 * @param forwardingBatchSize
+	 *                                The maximum number of events which are forwarded to the global event store in a
+	 *                                single transaction.
+	 * @param forwardingThreads
+	 *                                The number of threads which forward the events. The events of an aggregate are
+	 *                                forwarded in order, while the events of different aggregates are forwarded in
+	 *                                parallel.
+	 * @param forwardingSegments
+	 *                                The number of segments the local event store is split into initially. A thread
+	 *                                processes one segment at a time, so it should be at least the number of threads.
+	 */
+	public LocalAndGlobalEventStoreAdapter( final EventStore localEventStore, final EventStore globalEventStore, final Configuration configuration, final ParameterResolverFactory parameterResolverFactory, final String origin,
+			final int sequenceCacheMaxEntries, final int forwardingBatchSize, final int forwardingThreads, final int forwardingSegments ) {
+		this( localEventStore, globalEventStore, configuration, parameterResolverFactory, origin, sequenceCacheMaxEntries, forwardingBatchSize, forwardingThreads, forwardingSegments, null );
+	}
 
-	public LocalAndGlobalEventStoreAdapter( final EventStore localEventStore, final EventStore globalEventStore, final Configuration configuration, final ParameterResolverFactory parameterResolverFactory, final String origin ) {
+	/**
+	 * Creates an adapter which forwards the global events by means of the given {@code outbox}, if it is not
+	 * {@code null}. Otherwise the local event store is tracked. In the former case the tracking event processor just
+	 * forwards the events which have been published before the outbox has been enabled.
+	 */
+	LocalAndGlobalEventStoreAdapter( final EventStore localEventStore, final EventStore globalEventStore, final Configuration configuration, final ParameterResolverFactory parameterResolverFactory, final String origin,
+			final int sequenceCacheMaxEntries, final int forwardingBatchSize, final int forwardingThreads, final int forwardingSegments, final GlobalEventOutbox outbox ) {
 		this.localEventStore = localEventStore;
 		this.globalEventStore = globalEventStore;
-		messageSource = MultiStreamableMessageSource.builder( )
-				.addMessageSource( "globalEventStore", globalEventStore )
-				.addMessageSource( "localEventStore", localEventStore )
-				.build( );
+		sequenceCache = sequenceCacheMaxEntries > 0 ? new GlobalSequenceCache( sequenceCacheMaxEntries ) : null;
+		messageSources = new LinkedHashMap<>( );
+		messageSources.put( "globalEventStore", globalEventStore );
+		messageSources.put( "localEventStore", localEventStore );
+
+		globalEventPublisher = new GlobalEventPublisher( globalEventStore, origin, sequenceCache );
+		this.outbox = outbox;
+		this.forwardingSegments = forwardingSegments;
 
+		final EventMessageHandler eventHandler = outbox == null ? globalEventPublisher : eventMessage -> {
+			// The events which have an outbox entry are forwarded by the outbox.
+			if ( eventMessage.getPayloadType( ).isAnnotationPresent( GlobalEvent.class ) && outbox.hasEntry( eventMessage.getIdentifier( ) ) ) {
+				return null;
+			}
+			return globalEventPublisher.handle( eventMessage );
+		};
 		final SimpleEventHandlerInvoker eventHandlerInvoker = SimpleEventHandlerInvoker.builder( )
-				.sequencingPolicy( new SequentialPolicy( ) )
+				.sequencingPolicy( SequentialPerAggregatePolicy.instance( ) )
 				.parameterResolverFactory( parameterResolverFactory )
-				.eventHandlers( new GlobalEventPublisher( globalEventStore, origin ) )
+				.eventHandlers( eventHandler )
 				.build( );
 
 		trackingEventProcessor = TrackingEventProcessor.builder( )
 				.name( "localEventStoreTracker" )
 				.eventHandlerInvoker( eventHandlerInvoker )
-				.trackingEventProcessorConfiguration( TrackingEventProcessorConfiguration.forSingleThreadedProcessing( ) )
+				.trackingEventProcessorConfiguration( TrackingEventProcessorConfiguration.forParallelProcessing( forwardingThreads )
+						.andInitialSegmentsCount( forwardingSegments )
+						.andBatchSize( forwardingBatchSize ) )
 				.messageMonitor( configuration.messageMonitor( TrackingEventProcessor.class, "localEventStoreTracker" ) )
 				.messageSource( localEventStore )
 				.tokenStore( configuration.getComponent( TokenStore.class ) )
 				.transactionManager( configuration.getComponent( TransactionManager.class ) )
 				.build( );
-		trackingEventProcessor.start( );
+	}
+
+	/**
+	 * Starts forwarding the global events.
+	 */
+	public void start( ) {
+		if ( outbox != null ) {
+			outbox.start( globalEventPublisher, trackingEventProcessor, forwardingSegments );
+		} else {
+			trackingEventProcessor.start( );
+		}
 	}
 
 	public void shutdown( ) {
-		trackingEventProcessor.shutDown( );
+		if ( outbox != null ) {
+			outbox.shutDown( );
+		} else {
+			trackingEventProcessor.shutDown( );
+		}
+		if ( sequenceCache != null ) {
+			log.debug( "Global sequence cache: {} hits, {} misses.", sequenceCache.getHitCount( ), sequenceCache.getMissCount( ) );
+		}
+	}
+
+	/**
+	 * Returns the number of events each segment of the forwarding processor lags behind the head of the local event store,
+	 * by segment identifier. Only the segments which are currently claimed by this instance are contained. If the global
+	 * events are forwarded by means of the outbox, segment {@code 0} contains the number of events which have not been
+	 * forwarded yet.
+	 */
+	public Map<Integer, Long> getForwardingLag( ) {
+		if ( outbox != null ) {
+			return Collections.singletonMap( 0, outbox.getPendingCount( ) );
+		}
+		final TrackingToken headToken = localEventStore.createHeadToken( );
+		final long headPosition = headToken == null ? -1 : headToken.position( ).orElse( -1 );
+		final Map<Integer, Long> forwardingLag = new TreeMap<>( );
+		trackingEventProcessor.processingStatus( ).forEach( ( segment, status ) -> {
+			final long currentPosition = status.getCurrentPosition( ).orElse( -1 );
+			forwardingLag.put( segment, Math.max( 0, headPosition - currentPosition ) );
+		} );
+		return forwardingLag;
 	}
 
 	@Override
 	public void publish( final List<? extends EventMessage<?>> events ) {
-		localEventStore.publish( events );
+		if ( outbox != null ) {
+			outbox.publish( events, localEventStore::publish );
+		} else {
+			localEventStore.publish( events );
+		}
 	}
 
 	@Override
@@ -91,9 +185,13 @@ public final class LocalAndGlobalEventStoreAdapter implements EventStore {
 		};
 	}
 
+	/**
+	 * Opens a stream of the local and the global events. Payload types blacklisted by a tracking processor are forwarded
+	 * to the streams of both event stores.
+	 */
 	@Override
 	public BlockingStream<TrackedEventMessage<?>> openStream( final TrackingToken trackingToken ) {
-		return messageSource.openStream( trackingToken );
+		return BlacklistForwardingStream.open( messageSources, trackingToken );
 	}
 
 	@Override
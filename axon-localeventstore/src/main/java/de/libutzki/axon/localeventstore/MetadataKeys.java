@@ -9,7 +9,8 @@ final class MetadataKeys {
 	}
 
 	/**
-	 * The origin module of an event.
+	 * The origin module of an event. The embedded server uses the same key to skip a module's own events when the
+	 * module opens a stream.
 	 */
 	static final String ORIGIN = "origin";
 